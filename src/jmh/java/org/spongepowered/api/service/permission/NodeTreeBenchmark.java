@@ -0,0 +1,116 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.permission;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spongepowered.api.util.Tristate;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link NodeTree#get(String)} on a tree shaped like a typical
+ * group with a couple of thousand permissions.
+ *
+ * <p>Run with {@code -prof gc}: {@code gc.alloc.rate.norm} should be zero
+ * bytes per operation for every benchmark.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class NodeTreeBenchmark {
+
+    private NodeTree tree;
+
+    /**
+     * Builds a tree of 2,000 permissions spread over 20 plugins.
+     */
+    @Setup
+    public void setUp() {
+        Map<String, Boolean> values = new HashMap<String, Boolean>();
+        for (int plugin = 0; plugin < 20; plugin++) {
+            for (int command = 0; command < 100; command++) {
+                values.put("plugin" + plugin + ".command" + command + ".use", command % 3 != 0);
+            }
+        }
+        values.put("essentials", true);
+        values.put("essentials.fly", false);
+        this.tree = NodeTree.of(values);
+    }
+
+    /**
+     * A node that is set explicitly.
+     *
+     * @return The value of the node
+     */
+    @Benchmark
+    public Tristate exactMatch() {
+        return this.tree.get("plugin7.command42.use");
+    }
+
+    /**
+     * A node that is set explicitly, queried in a different case.
+     *
+     * @return The value of the node
+     */
+    @Benchmark
+    public Tristate mixedCase() {
+        return this.tree.get("Plugin7.Command42.USE");
+    }
+
+    /**
+     * A node that inherits the value of a parent node.
+     *
+     * @return The value of the node
+     */
+    @Benchmark
+    public Tristate inheritedFromParent() {
+        return this.tree.get("essentials.home.other");
+    }
+
+    /**
+     * A node that is not in the tree at all.
+     *
+     * @return The value of the node
+     */
+    @Benchmark
+    public Tristate undefined() {
+        return this.tree.get("worldedit.selection.pos1");
+    }
+
+}
@@ -0,0 +1,331 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.persistence.codec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spongepowered.api.service.persistence.data.DataQuery;
+import org.spongepowered.api.service.persistence.data.DataView;
+import org.spongepowered.api.service.persistence.data.MemoryDataContainer;
+import org.spongepowered.api.util.reflect.Property;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares writing and reading an object through a codec generated by
+ * {@link DataCodecRegistry} with doing so through reflective calls to the
+ * accessors and mutators of the same properties.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class DataCodecBenchmark {
+
+    private DataCodec<Entity> codec;
+    private List<Property> properties;
+    private List<Property> positionProperties;
+    private Entity entity;
+    private MemoryDataContainer container;
+
+    /**
+     * Creates the codec and an entity with a nested position.
+     */
+    @Setup
+    public void setUp() {
+        this.codec = new DataCodecRegistry().getCodec(Entity.class);
+        CodecGenerator generator = new CodecGenerator();
+        this.properties = generator.findProperties(Entity.class);
+        this.positionProperties = generator.findProperties(Position.class);
+
+        this.entity = new Entity();
+        this.entity.setId("minecraft:zombie");
+        this.entity.setHealth(20);
+        this.entity.setAge(1200);
+        this.entity.setOnGround(true);
+        this.entity.setPosition(new Position());
+        this.entity.getPosition().setX(12.5);
+        this.entity.getPosition().setY(64);
+        this.entity.getPosition().setZ(-3.25);
+
+        this.container = new MemoryDataContainer();
+        this.codec.write(this.entity, this.container);
+    }
+
+    /**
+     * Writes the entity through the generated codec.
+     *
+     * @return The container
+     */
+    @Benchmark
+    public MemoryDataContainer writeGenerated() {
+        MemoryDataContainer container = new MemoryDataContainer();
+        this.codec.write(this.entity, container);
+        return container;
+    }
+
+    /**
+     * Writes the entity through reflective calls to its accessors.
+     *
+     * @return The container
+     * @throws Exception Never
+     */
+    @Benchmark
+    public MemoryDataContainer writeReflective() throws Exception {
+        MemoryDataContainer container = new MemoryDataContainer();
+        writeProperties(this.entity, this.properties, container);
+        return container;
+    }
+
+    /**
+     * Reads the entity through the generated codec.
+     *
+     * @return The entity
+     */
+    @Benchmark
+    public Entity readGenerated() {
+        return this.codec.read(this.container);
+    }
+
+    /**
+     * Reads the entity through reflective calls to its mutators.
+     *
+     * @return The entity
+     * @throws Exception Never
+     */
+    @Benchmark
+    public Entity readReflective() throws Exception {
+        Entity entity = new Entity();
+        readProperties(entity, this.properties, this.container);
+        return entity;
+    }
+
+    private void writeProperties(Object object, List<Property> properties, DataView view) throws InvocationTargetException,
+            IllegalAccessException {
+        for (Property property : properties) {
+            Object value = property.getAccessor().invoke(object);
+            if (value instanceof Position) {
+                writeProperties(value, this.positionProperties, view.createView(new DataQuery(property.getName())));
+            } else if (value != null) {
+                view.set(new DataQuery(property.getName()), value);
+            }
+        }
+    }
+
+    private void readProperties(Object object, List<Property> properties, DataView view) throws InvocationTargetException,
+            IllegalAccessException {
+        for (Property property : properties) {
+            Object value = view.get(new DataQuery(property.getName())).orNull();
+            if (value == null) {
+                continue;
+            }
+            if (property.getType() == Position.class) {
+                Position position = new Position();
+                readProperties(position, this.positionProperties, AbstractDataCodec.toView(value));
+                value = position;
+            }
+            property.getMutator().get().invoke(object, value);
+        }
+    }
+
+    /**
+     * A position in a world.
+     */
+    public static class Position {
+
+        private double x;
+        private double y;
+        private double z;
+
+        /**
+         * Gets the x coordinate.
+         *
+         * @return The x coordinate
+         */
+        public double getX() {
+            return this.x;
+        }
+
+        /**
+         * Sets the x coordinate.
+         *
+         * @param x The x coordinate
+         */
+        public void setX(double x) {
+            this.x = x;
+        }
+
+        /**
+         * Gets the y coordinate.
+         *
+         * @return The y coordinate
+         */
+        public double getY() {
+            return this.y;
+        }
+
+        /**
+         * Sets the y coordinate.
+         *
+         * @param y The y coordinate
+         */
+        public void setY(double y) {
+            this.y = y;
+        }
+
+        /**
+         * Gets the z coordinate.
+         *
+         * @return The z coordinate
+         */
+        public double getZ() {
+            return this.z;
+        }
+
+        /**
+         * Sets the z coordinate.
+         *
+         * @param z The z coordinate
+         */
+        public void setZ(double z) {
+            this.z = z;
+        }
+    }
+
+    /**
+     * An entity with a nested position.
+     */
+    public static class Entity {
+
+        private String id;
+        private float health;
+        private int age;
+        private boolean onGround;
+        private Position position;
+
+        /**
+         * Gets the id.
+         *
+         * @return The id
+         */
+        public String getId() {
+            return this.id;
+        }
+
+        /**
+         * Sets the id.
+         *
+         * @param id The id
+         */
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        /**
+         * Gets the health.
+         *
+         * @return The health
+         */
+        public float getHealth() {
+            return this.health;
+        }
+
+        /**
+         * Sets the health.
+         *
+         * @param health The health
+         */
+        public void setHealth(float health) {
+            this.health = health;
+        }
+
+        /**
+         * Gets the age.
+         *
+         * @return The age
+         */
+        public int getAge() {
+            return this.age;
+        }
+
+        /**
+         * Sets the age.
+         *
+         * @param age The age
+         */
+        public void setAge(int age) {
+            this.age = age;
+        }
+
+        /**
+         * Gets whether the entity is on the ground.
+         *
+         * @return Whether the entity is on the ground
+         */
+        public boolean isOnGround() {
+            return this.onGround;
+        }
+
+        /**
+         * Sets whether the entity is on the ground.
+         *
+         * @param onGround Whether the entity is on the ground
+         */
+        public void setOnGround(boolean onGround) {
+            this.onGround = onGround;
+        }
+
+        /**
+         * Gets the position.
+         *
+         * @return The position
+         */
+        public Position getPosition() {
+            return this.position;
+        }
+
+        /**
+         * Sets the position.
+         *
+         * @param position The position
+         */
+        public void setPosition(Position position) {
+            this.position = position;
+        }
+    }
+
+}
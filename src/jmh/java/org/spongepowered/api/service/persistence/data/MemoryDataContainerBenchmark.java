@@ -0,0 +1,129 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.persistence.data;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link MemoryDataContainer} on a container shaped like the data
+ * of an entity with an inventory.
+ *
+ * <p>Run with {@code -prof gc}: {@code gc.alloc.rate.norm} of the lookups
+ * should only account for the returned {@code Optional}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MemoryDataContainerBenchmark {
+
+    private static final DataQuery HEALTH = new DataQuery("entity", "attributes", "health");
+    private static final DataQuery SLOT_COUNT = new DataQuery("entity", "inventory", "slot20", "count");
+    private static final DataQuery MISSING = new DataQuery("entity", "inventory", "slot99", "count");
+
+    private MemoryDataContainer container;
+    private int counter;
+
+    /**
+     * Builds a container with 36 inventory slots and a few attributes.
+     */
+    @Setup
+    public void setUp() {
+        this.container = new MemoryDataContainer();
+        this.container.set(HEALTH, 20.0);
+        this.container.set(new DataQuery("entity", "attributes", "speed"), 0.1);
+        this.container.set(new DataQuery("entity", "position"), Arrays.asList(12.5, 64.0, -3.5));
+        for (int slot = 0; slot < 36; slot++) {
+            DataView view = this.container.createView(new DataQuery("entity", "inventory", "slot" + slot));
+            view.set(new DataQuery("id"), "minecraft:stone");
+            view.set(new DataQuery("count"), slot);
+            view.set(new DataQuery("damage"), (short) 0);
+        }
+    }
+
+    /**
+     * Reads a value four levels deep.
+     *
+     * @return The value
+     */
+    @Benchmark
+    public Object getDeep() {
+        return this.container.getInt(SLOT_COUNT);
+    }
+
+    /**
+     * Reads a primitive value.
+     *
+     * @return The value
+     */
+    @Benchmark
+    public Object getDouble() {
+        return this.container.getDouble(HEALTH);
+    }
+
+    /**
+     * Reads a path that does not exist.
+     *
+     * @return Whether the path exists
+     */
+    @Benchmark
+    public boolean containsMissing() {
+        return this.container.contains(MISSING);
+    }
+
+    /**
+     * Overwrites an existing primitive value.
+     */
+    @Benchmark
+    public void setExisting() {
+        this.container.set(SLOT_COUNT, this.counter++ & 63);
+    }
+
+    /**
+     * Lists all values of the container.
+     *
+     * @return The values
+     */
+    @Benchmark
+    public Map<DataQuery, Object> getValuesDeep() {
+        return this.container.getValues(true);
+    }
+
+}
@@ -0,0 +1,285 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.persistence.data;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link NbtCodec} with a serializer that walks the values of
+ * each view through {@link DataView#getValues(boolean)}, on a container
+ * shaped like the data of a chunk section with a few entities. Also
+ * compares reading single values from a {@link LazyDataContainer} with
+ * decoding the whole container, and saving a change to an
+ * {@link NbtDataSource} as a patch with saving the whole container.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class NbtCodecBenchmark {
+
+    private static final DataQuery HEALTH = new DataQuery("entities", "entity8", "health");
+
+    private MemoryDataContainer container;
+    private byte[] encoded;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 16);
+    private ByteBuffer buffer;
+    private NbtDataSource source;
+
+    /**
+     * Builds a chunk section with block and light arrays, a height map and
+     * 16 entities.
+     *
+     * @throws IOException Never
+     */
+    @Setup
+    public void setUp() throws IOException {
+        this.container = new MemoryDataContainer();
+        byte[] blocks = new byte[4096];
+        Arrays.fill(blocks, (byte) 1);
+        this.container.setByteArray(new DataQuery("section", "blocks"), blocks);
+        this.container.setByteArray(new DataQuery("section", "light"), new byte[2048]);
+        int[] heights = new int[256];
+        Arrays.fill(heights, 64);
+        this.container.setIntArray(new DataQuery("section", "heights"), heights);
+        for (int i = 0; i < 16; i++) {
+            DataView entity = this.container.createView(new DataQuery("entities", "entity" + i));
+            entity.set(new DataQuery("id"), "minecraft:zombie");
+            entity.set(new DataQuery("health"), 20.0);
+            entity.set(new DataQuery("air"), (short) 300);
+            entity.set(new DataQuery("position"), Arrays.asList(12.5, 64.0, -3.5));
+            entity.set(new DataQuery("onGround"), true);
+        }
+
+        this.encoded = write();
+        this.buffer = ByteBuffer.allocate(this.encoded.length);
+        this.source = new NbtDataSource(ByteBuffer.wrap(this.encoded));
+        this.container.clearChanges();
+    }
+
+    /**
+     * Writes the container to a stream.
+     *
+     * @return The written bytes
+     * @throws IOException Never
+     */
+    @Benchmark
+    public byte[] write() throws IOException {
+        this.out.reset();
+        NbtCodec.write(this.container, this.out);
+        return this.out.toByteArray();
+    }
+
+    /**
+     * Writes the container to a buffer.
+     *
+     * @return The buffer
+     */
+    @Benchmark
+    public ByteBuffer writeBuffer() {
+        this.buffer.clear();
+        NbtCodec.write(this.container, this.buffer);
+        return this.buffer;
+    }
+
+    /**
+     * Writes the container to a stream through its values.
+     *
+     * @return The written bytes
+     * @throws IOException Never
+     */
+    @Benchmark
+    public byte[] writeNaive() throws IOException {
+        this.out.reset();
+        DataOutputStream data = new DataOutputStream(this.out);
+        data.writeByte(NbtCodec.TAG_COMPOUND);
+        data.writeUTF("");
+        writeView(this.container, data);
+        data.flush();
+        return this.out.toByteArray();
+    }
+
+    /**
+     * Reads the container from a stream.
+     *
+     * @return The container
+     * @throws IOException Never
+     */
+    @Benchmark
+    public DataContainer read() throws IOException {
+        return NbtCodec.read(new ByteArrayInputStream(this.encoded));
+    }
+
+    /**
+     * Reads the container from a buffer.
+     *
+     * @return The container
+     */
+    @Benchmark
+    public DataContainer readBuffer() {
+        return NbtCodec.read(ByteBuffer.wrap(this.encoded));
+    }
+
+    /**
+     * Reads one value of an entity by decoding the whole container.
+     *
+     * @return The value
+     */
+    @Benchmark
+    public Object readOne() {
+        return NbtCodec.read(ByteBuffer.wrap(this.encoded)).getDouble(HEALTH);
+    }
+
+    /**
+     * Reads one value of an entity from a lazy container.
+     *
+     * @return The value
+     */
+    @Benchmark
+    public Object readOneLazily() {
+        return new LazyDataContainer(ByteBuffer.wrap(this.encoded)).getDouble(HEALTH);
+    }
+
+    /**
+     * Reads one value of an entity from a lazy container and writes the
+     * container back.
+     *
+     * @return The buffer
+     */
+    @Benchmark
+    public ByteBuffer readOneAndWriteLazily() {
+        LazyDataContainer container = new LazyDataContainer(ByteBuffer.wrap(this.encoded));
+        container.getDouble(HEALTH);
+        this.buffer.clear();
+        NbtCodec.write(container, this.buffer);
+        return this.buffer;
+    }
+
+    /**
+     * Saves a change to one value of an entity by writing the whole
+     * container.
+     *
+     * @return The source
+     */
+    @Benchmark
+    public NbtDataSource saveFully() {
+        this.container.set(HEALTH, 20.0);
+        this.source.apply(DataPatch.of(this.container));
+        return this.source;
+    }
+
+    /**
+     * Saves a change to one value of an entity as a patch.
+     *
+     * @return The source
+     */
+    @Benchmark
+    public NbtDataSource saveIncrementally() {
+        this.container.set(HEALTH, 20.0);
+        this.source.apply(this.container.getChanges());
+        this.container.clearChanges();
+        return this.source;
+    }
+
+    private static void writeView(DataView view, DataOutputStream data) throws IOException {
+        for (Map.Entry<DataQuery, Object> entry : view.getValues(false).entrySet()) {
+            Object value = entry.getValue();
+            data.writeByte(tagOf(value));
+            data.writeUTF(entry.getKey().asString('.'));
+            writeValue(value, data);
+        }
+        data.writeByte(NbtCodec.TAG_END);
+    }
+
+    private static byte tagOf(Object value) {
+        if (value instanceof Boolean) {
+            return NbtCodec.TAG_BYTE;
+        } else if (value instanceof Short) {
+            return NbtCodec.TAG_SHORT;
+        } else if (value instanceof Double) {
+            return NbtCodec.TAG_DOUBLE;
+        } else if (value instanceof String) {
+            return NbtCodec.TAG_STRING;
+        } else if (value instanceof byte[]) {
+            return NbtCodec.TAG_BYTE_ARRAY;
+        } else if (value instanceof int[]) {
+            return NbtCodec.TAG_INT_ARRAY;
+        } else if (value instanceof List) {
+            return NbtCodec.TAG_LIST;
+        }
+        return NbtCodec.TAG_COMPOUND;
+    }
+
+    private static void writeValue(Object value, DataOutputStream data) throws IOException {
+        if (value instanceof Boolean) {
+            data.writeByte((Boolean) value ? 1 : 0);
+        } else if (value instanceof Short) {
+            data.writeShort((Short) value);
+        } else if (value instanceof Double) {
+            data.writeDouble((Double) value);
+        } else if (value instanceof String) {
+            data.writeUTF((String) value);
+        } else if (value instanceof byte[]) {
+            data.writeInt(((byte[]) value).length);
+            data.write((byte[]) value);
+        } else if (value instanceof int[]) {
+            data.writeInt(((int[]) value).length);
+            for (int element : (int[]) value) {
+                data.writeInt(element);
+            }
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            data.writeByte(list.isEmpty() ? NbtCodec.TAG_END : tagOf(list.get(0)));
+            data.writeInt(list.size());
+            for (Object element : list) {
+                writeValue(element, data);
+            }
+        } else {
+            writeView((DataView) value, data);
+        }
+    }
+
+}
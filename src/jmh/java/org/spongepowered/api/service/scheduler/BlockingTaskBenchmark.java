@@ -0,0 +1,241 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.scheduler;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spongepowered.api.plugin.PluginContainer;
+import org.spongepowered.api.plugin.PluginManager;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long the {@link SimpleAsynchronousScheduler} takes to drain a
+ * burst of tasks that spend most of their time blocked, once on a cached
+ * platform thread pool and once on virtual threads.
+ *
+ * <p>The {@code virtual} executor is only available when the benchmark JVM
+ * supports virtual threads. On other JVMs it falls back to the cached thread
+ * pool, with a warning, so that the default run still completes; its results
+ * then measure the pool.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BlockingTaskBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(BlockingTaskBenchmark.class);
+    private static final byte[] PAYLOAD = new byte[4096];
+
+    @Param({"pool", "virtual"})
+    public String executor;
+
+    @Param({"100", "1000", "10000"})
+    public int tasks;
+
+    private final Object plugin = new Object();
+    private SimpleAsynchronousScheduler scheduler;
+    private File directory;
+
+    /**
+     * Creates the scheduler on the executor under test.
+     *
+     * @throws IOException If the scratch directory cannot be created
+     */
+    @Setup
+    public void setUp() throws IOException {
+        ExecutorService service;
+        if ("virtual".equals(this.executor)) {
+            Optional<ExecutorService> virtual = TaskExecutors.newVirtualThreadExecutor("Benchmark-");
+            if (virtual.isPresent()) {
+                service = virtual.get();
+            } else {
+                log.warn("This JVM does not support virtual threads, so the virtual executor falls back to the cached thread pool");
+                service = TaskExecutors.newThreadPool("Benchmark-");
+            }
+        } else {
+            service = TaskExecutors.newThreadPool("Benchmark-");
+        }
+        this.scheduler = new SimpleAsynchronousScheduler(new SinglePluginManager(this.plugin), service);
+        this.directory = File.createTempFile("scheduler", "benchmark");
+        if (!this.directory.delete() || !this.directory.mkdir()) {
+            throw new IOException("Unable to create " + this.directory);
+        }
+    }
+
+    /**
+     * Shuts the scheduler down and removes the scratch directory.
+     */
+    @TearDown
+    public void tearDown() {
+        this.scheduler.shutdown();
+        File[] files = this.directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        this.directory.delete();
+    }
+
+    /**
+     * Tasks that wait one millisecond, standing in for a round trip to a
+     * database or a local HTTP service.
+     *
+     * @throws InterruptedException If interrupted while waiting for the tasks
+     */
+    @Benchmark
+    public void remoteCall() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(this.tasks);
+        Runnable task = new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }
+        };
+        for (int i = 0; i < this.tasks; i++) {
+            this.scheduler.runTask(this.plugin, task);
+        }
+        done.await();
+    }
+
+    /**
+     * Tasks that each write a small file and force it to disk.
+     *
+     * @throws InterruptedException If interrupted while waiting for the tasks
+     */
+    @Benchmark
+    public void fileWrite() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(this.tasks);
+        for (int i = 0; i < this.tasks; i++) {
+            final File file = new File(this.directory, i + ".dat");
+            this.scheduler.runTask(this.plugin, new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        FileOutputStream out = new FileOutputStream(file);
+                        try {
+                            out.write(PAYLOAD);
+                            out.getFD().sync();
+                        } finally {
+                            out.close();
+                        }
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+        done.await();
+    }
+
+    private static final class SinglePluginManager implements PluginManager, PluginContainer {
+
+        private final Object plugin;
+
+        SinglePluginManager(Object plugin) {
+            this.plugin = plugin;
+        }
+
+        @Override
+        public Optional<PluginContainer> fromInstance(Object instance) {
+            return instance == this.plugin ? Optional.<PluginContainer>of(this) : Optional.<PluginContainer>absent();
+        }
+
+        @Override
+        public Optional<PluginContainer> getPlugin(String id) {
+            return getId().equals(id) ? Optional.<PluginContainer>of(this) : Optional.<PluginContainer>absent();
+        }
+
+        @Override
+        public Logger getLogger(PluginContainer plugin) {
+            return LoggerFactory.getLogger(getId());
+        }
+
+        @Override
+        public Collection<PluginContainer> getPlugins() {
+            return ImmutableList.<PluginContainer>of(this);
+        }
+
+        @Override
+        public boolean isLoaded(String id) {
+            return getId().equals(id);
+        }
+
+        @Override
+        public String getId() {
+            return "benchmark";
+        }
+
+        @Override
+        public String getName() {
+            return "Benchmark";
+        }
+
+        @Override
+        public String getVersion() {
+            return "1.0";
+        }
+
+        @Override
+        public Object getInstance() {
+            return this.plugin;
+        }
+    }
+
+}
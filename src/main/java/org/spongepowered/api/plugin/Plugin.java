@@ -82,5 +82,18 @@ public @interface Plugin {
      */
     String dependencies() default "";
 
+    /**
+     * The services this plugin uses while it initializes.
+     *
+     * <p>When plugins are initialized in parallel, this plugin waits until
+     * a provider is registered for each of these services, as with
+     * {@link org.spongepowered.api.service.ServiceManager#potentiallyProvide(Class)}.
+     * If no other plugin can make progress while it waits, it is initialized
+     * without the missing services.</p>
+     *
+     * @return The services this plugin depends on
+     * @see PluginInitializer
+     */
+    Class<?>[] serviceDependencies() default {};
 
 }
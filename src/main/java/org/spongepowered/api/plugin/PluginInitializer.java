@@ -0,0 +1,397 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.plugin;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableMap;
+import org.spongepowered.api.service.ServiceManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+/**
+ * Runs a step of plugin initialization, such as the handlers of a state
+ * event, for many plugins at once.
+ *
+ * <p>A plugin is initialized after the plugins it is ordered after by
+ * {@link Plugin#dependencies()}, and before those it is ordered before.
+ * It also waits for a provider of each of its
+ * {@link Plugin#serviceDependencies()} to be registered, unless no other
+ * plugin can make progress. Plugins that do not depend on each other are
+ * initialized at the same time by the executor.</p>
+ *
+ * <p>Plugins should only be initialized in parallel if their
+ * initialization is safe to run concurrently with that of other
+ * plugins.</p>
+ */
+public class PluginInitializer {
+
+    private final ServiceManager serviceManager;
+    private final Executor executor;
+
+    /**
+     * Create a new initializer.
+     *
+     * @param serviceManager The service manager to wait for services with
+     * @param executor The executor to initialize plugins with
+     */
+    public PluginInitializer(ServiceManager serviceManager, Executor executor) {
+        this.serviceManager = checkNotNull(serviceManager, "serviceManager");
+        this.executor = checkNotNull(executor, "executor");
+    }
+
+    /**
+     * Run a step of initialization for the given plugins, and wait until it
+     * has finished for all of them.
+     *
+     * <p>A failure of the step for one plugin does not stop the others, and
+     * is reported in the returned report. If the executor rejects the step
+     * for a plugin, the {@link RejectedExecutionException} is reported as
+     * its failure.</p>
+     *
+     * @param plugins The plugins to initialize
+     * @param step The step to run for each plugin
+     * @return A report of the time the step took for each plugin
+     * @throws IllegalArgumentException Thrown if the plugins are ordered in a cycle
+     * @throws InterruptedException Thrown if interrupted while waiting
+     */
+    public Report initialize(Collection<PluginContainer> plugins, Step step) throws InterruptedException {
+        checkNotNull(plugins, "plugins");
+        checkNotNull(step, "step");
+        return new Run(plugins, step).await();
+    }
+
+    /**
+     * A step of initialization.
+     */
+    public interface Step {
+
+        /**
+         * Run this step for a plugin.
+         *
+         * @param plugin The plugin
+         * @throws Exception Thrown if this step fails for the plugin
+         */
+        void run(PluginContainer plugin) throws Exception;
+
+    }
+
+    /**
+     * The outcome of a step of initialization.
+     */
+    public static final class Report {
+
+        private final long totalNanos;
+        private final Map<PluginContainer, Long> nanos;
+        private final Map<PluginContainer, Throwable> failures;
+
+        Report(long totalNanos, Map<PluginContainer, Long> nanos, Map<PluginContainer, Throwable> failures) {
+            this.totalNanos = totalNanos;
+            this.nanos = ImmutableMap.copyOf(nanos);
+            this.failures = ImmutableMap.copyOf(failures);
+        }
+
+        /**
+         * Gets the plugins, in the order they finished.
+         *
+         * @return The plugins
+         */
+        public Collection<PluginContainer> getPlugins() {
+            return this.nanos.keySet();
+        }
+
+        /**
+         * Gets the time the step took for a plugin.
+         *
+         * @param plugin The plugin
+         * @param unit The unit of the time
+         * @return The time
+         */
+        public long getTime(PluginContainer plugin, TimeUnit unit) {
+            Long nanos = this.nanos.get(plugin);
+            return unit.convert(nanos == null ? 0 : nanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Gets the time until the step had finished for all plugins.
+         *
+         * @param unit The unit of the time
+         * @return The time
+         */
+        public long getTotalTime(TimeUnit unit) {
+            return unit.convert(this.totalNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Gets the exceptions thrown by the step, by plugin.
+         *
+         * @return The failures
+         */
+        public Map<PluginContainer, Throwable> getFailures() {
+            return this.failures;
+        }
+
+        /**
+         * Returns a report listing the plugins from slowest to fastest.
+         *
+         * @return The report
+         */
+        @Override
+        public String toString() {
+            List<Map.Entry<PluginContainer, Long>> entries = new ArrayList<Map.Entry<PluginContainer, Long>>(this.nanos.entrySet());
+            Collections.sort(entries, new Comparator<Map.Entry<PluginContainer, Long>>() {
+                @Override
+                public int compare(Map.Entry<PluginContainer, Long> o1, Map.Entry<PluginContainer, Long> o2) {
+                    return o2.getValue().compareTo(o1.getValue());
+                }
+            });
+
+            StringBuilder builder = new StringBuilder();
+            builder.append("Initialized ").append(entries.size()).append(" plugins in ")
+                    .append(getTotalTime(TimeUnit.MILLISECONDS)).append(" ms");
+            for (Map.Entry<PluginContainer, Long> entry : entries) {
+                builder.append("\n  ").append(entry.getKey().getId()).append(": ")
+                        .append(TimeUnit.NANOSECONDS.toMillis(entry.getValue())).append(" ms");
+                if (this.failures.containsKey(entry.getKey())) {
+                    builder.append(" (failed)");
+                }
+            }
+            return builder.toString();
+        }
+
+    }
+
+    private static final class Node {
+
+        final PluginContainer plugin;
+        final List<Node> dependents = new ArrayList<Node>();
+        final Set<Class<?>> services = new HashSet<Class<?>>();
+        int dependencies;
+        boolean submitted;
+
+        Node(PluginContainer plugin) {
+            this.plugin = plugin;
+        }
+
+    }
+
+    private final class Run {
+
+        private final Step step;
+        private final Map<String, Node> nodes = new LinkedHashMap<String, Node>();
+        private final Map<PluginContainer, Long> nanos = new LinkedHashMap<PluginContainer, Long>();
+        private final Map<PluginContainer, Throwable> failures = new LinkedHashMap<PluginContainer, Throwable>();
+        private final long start = System.nanoTime();
+        private int running;
+        private int remaining;
+
+        Run(Collection<PluginContainer> plugins, Step step) {
+            this.step = step;
+            for (PluginContainer plugin : plugins) {
+                this.nodes.put(plugin.getId(), new Node(plugin));
+            }
+            this.remaining = this.nodes.size();
+
+            for (Node node : this.nodes.values()) {
+                @Nullable Plugin annotation = node.plugin.getInstance().getClass().getAnnotation(Plugin.class);
+                if (annotation != null) {
+                    addDependencies(node, annotation.dependencies());
+                    for (Class<?> service : annotation.serviceDependencies()) {
+                        node.services.add(service);
+                    }
+                }
+            }
+            checkCycles();
+        }
+
+        private void addDependencies(Node node, String dependencies) {
+            for (String dependency : dependencies.split(";")) {
+                int colon = dependency.indexOf(':');
+                if (colon < 0) {
+                    continue;
+                }
+                String type = dependency.substring(0, colon).trim();
+                String id = dependency.substring(colon + 1);
+                int at = id.indexOf('@');
+                if (at >= 0) {
+                    id = id.substring(0, at);
+                }
+                @Nullable Node other = this.nodes.get(id.trim());
+                if (other == null || other == node) {
+                    continue;
+                }
+
+                if (type.equals("after") || type.equals("required-after")) {
+                    other.dependents.add(node);
+                    node.dependencies++;
+                } else if (type.equals("before") || type.equals("required-before")) {
+                    node.dependents.add(other);
+                    other.dependencies++;
+                }
+            }
+        }
+
+        private void checkCycles() {
+            Map<Node, Integer> dependencies = new LinkedHashMap<Node, Integer>();
+            List<Node> free = new ArrayList<Node>();
+            for (Node node : this.nodes.values()) {
+                dependencies.put(node, node.dependencies);
+                if (node.dependencies == 0) {
+                    free.add(node);
+                }
+            }
+            while (!free.isEmpty()) {
+                for (Node dependent : free.remove(free.size() - 1).dependents) {
+                    int left = dependencies.get(dependent) - 1;
+                    dependencies.put(dependent, left);
+                    if (left == 0) {
+                        free.add(dependent);
+                    }
+                }
+            }
+
+            List<String> cycle = new ArrayList<String>();
+            for (Map.Entry<Node, Integer> entry : dependencies.entrySet()) {
+                if (entry.getValue() > 0) {
+                    cycle.add(entry.getKey().plugin.getId());
+                }
+            }
+            if (!cycle.isEmpty()) {
+                throw new IllegalArgumentException("Plugins are ordered in a cycle: " + cycle);
+            }
+        }
+
+        Report await() throws InterruptedException {
+            // Listeners may be called right away, so they are added before
+            // anything is scheduled, and schedule nothing until then
+            synchronized (this) {
+                for (Node node : this.nodes.values()) {
+                    for (Class<?> service : new ArrayList<Class<?>>(node.services)) {
+                        awaitService(node, service);
+                    }
+                }
+                schedule();
+
+                while (this.remaining > 0) {
+                    wait();
+                }
+                return new Report(System.nanoTime() - this.start, this.nanos, this.failures);
+            }
+        }
+
+        private <T> void awaitService(final Node node, final Class<T> service) {
+            if (PluginInitializer.this.serviceManager.provide(service).isPresent()) {
+                node.services.remove(service);
+                return;
+            }
+            PluginInitializer.this.serviceManager.potentiallyProvide(service).executeWhenPresent(new Predicate<T>() {
+                @Override
+                public boolean apply(T input) {
+                    provided(node, service);
+                    return true;
+                }
+            });
+        }
+
+        synchronized void provided(Node node, Class<?> service) {
+            if (node.services.remove(service) && !node.submitted) {
+                schedule();
+            }
+        }
+
+        private void schedule() {
+            boolean progress = submitReady(false);
+            if (!progress && this.running == 0 && this.remaining > 0) {
+                // Nothing else can register the missing services
+                submitReady(true);
+            }
+        }
+
+        private boolean submitReady(boolean withoutServices) {
+            boolean submitted = false;
+            for (Node node : this.nodes.values()) {
+                if (!node.submitted && node.dependencies == 0 && (withoutServices || node.services.isEmpty())) {
+                    node.submitted = true;
+                    submitted = true;
+                    this.running++;
+                    submit(node);
+                }
+            }
+            return submitted;
+        }
+
+        private void submit(final Node node) {
+            try {
+                PluginInitializer.this.executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        @Nullable Throwable failure = null;
+                        long start = System.nanoTime();
+                        try {
+                            Run.this.step.run(node.plugin);
+                        } catch (Throwable t) {
+                            failure = t;
+                        }
+                        finished(node, System.nanoTime() - start, failure);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // The step never runs for the plugin, so it has failed, and
+                // the plugins waiting for it are released
+                finished(node, 0, e);
+            }
+        }
+
+        synchronized void finished(Node node, long nanos, @Nullable Throwable failure) {
+            this.nanos.put(node.plugin, nanos);
+            if (failure != null) {
+                this.failures.put(node.plugin, failure);
+            }
+            this.running--;
+            this.remaining--;
+            for (Node dependent : node.dependents) {
+                dependent.dependencies--;
+            }
+            schedule();
+            notifyAll();
+        }
+
+    }
+
+}
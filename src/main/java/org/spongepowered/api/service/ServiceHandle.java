@@ -0,0 +1,72 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service;
+
+import javax.annotation.Nullable;
+
+/**
+ * A handle to the provider of a service, which always reflects the current
+ * provider.
+ *
+ * <p>Handles are meant to be obtained once and kept, for code that looks up
+ * a service very often. Reading the provider from a handle does not look
+ * anything up and does not allocate.</p>
+ *
+ * @param <T> The type of the service
+ * @see ServiceManager#getHandle(Class)
+ */
+public interface ServiceHandle<T> {
+
+    /**
+     * Gets the service this is a handle to.
+     *
+     * @return The service
+     */
+    Class<T> getService();
+
+    /**
+     * Gets the current provider of the service.
+     *
+     * @return The provider, or null if none is registered
+     */
+    @Nullable
+    T get();
+
+    /**
+     * Gets the current provider of the service.
+     *
+     * @return The provider
+     * @throws ProvisioningException Thrown if no provider is registered
+     */
+    T getUnchecked() throws ProvisioningException;
+
+    /**
+     * Gets whether a provider is registered for the service.
+     *
+     * @return Whether a provider is registered
+     */
+    boolean isPresent();
+
+}
@@ -100,4 +100,18 @@ public interface ServiceManager {
      */
     <T> T provideUnchecked(Class<T> service) throws ProvisioningException;
 
+    /**
+     * Return a handle to the provider of the given service, which is
+     * updated whenever a provider is registered.
+     *
+     * <p>Unlike {@link #provide(Class)}, reading the provider from a handle
+     * costs a single field read, so handles should be kept by code that
+     * uses a service very often.</p>
+     *
+     * @param service The service
+     * @param <T> The type of service
+     * @return A handle to the current provider
+     */
+    <T> ServiceHandle<T> getHandle(Class<T> service);
+
 }
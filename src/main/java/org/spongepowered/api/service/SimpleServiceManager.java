@@ -49,6 +49,8 @@ public class SimpleServiceManager implements ServiceManager {
             new MapMaker().concurrencyLevel(3).makeMap();
     private final ConcurrentMap<Class<?>, SimpleServiceReference<?>> potentials =
             new MapMaker().concurrencyLevel(3).weakKeys().makeMap();
+    private final ConcurrentMap<Class<?>, SimpleServiceHandle<?>> handles =
+            new MapMaker().concurrencyLevel(3).weakKeys().makeMap();
     private final PluginManager pluginManager;
 
     /**
@@ -83,12 +85,37 @@ public class SimpleServiceManager implements ServiceManager {
             throw new ProviderExistsException("Provider for service " + service.getCanonicalName() + " has already been registered!");
         }
         @SuppressWarnings("unchecked")
+        SimpleServiceHandle<T> handle = (SimpleServiceHandle<T>) this.handles.get(service);
+        if (handle != null) {
+            handle.provider = provider;
+        }
+        @SuppressWarnings("unchecked")
         SimpleServiceReference<T> ref = (SimpleServiceReference<T>) this.potentials.remove(service);
         if (ref != null) {
             ref.registered(provider);
         }
     }
 
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> ServiceHandle<T> getHandle(Class<T> service) {
+        checkNotNull(service, "service");
+        SimpleServiceHandle<T> handle = (SimpleServiceHandle<T>) this.handles.get(service);
+        if (handle == null) {
+            SimpleServiceHandle<T> created = new SimpleServiceHandle<T>(service);
+            handle = (SimpleServiceHandle<T>) this.handles.putIfAbsent(service, created);
+            if (handle == null) {
+                handle = created;
+            }
+        }
+        // Registration may have missed a handle that was being created
+        @Nullable Provider provider = this.providers.get(service);
+        if (provider != null) {
+            handle.provider = (T) provider.provider;
+        }
+        return handle;
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public <T> ServiceReference<T> potentiallyProvide(Class<T> service) {
@@ -109,7 +136,7 @@ public class SimpleServiceManager implements ServiceManager {
     public <T> Optional<T> provide(Class<T> service) {
         checkNotNull(service, "service");
         @Nullable Provider provider = this.providers.get(service);
-        return provider != null ? (Optional<T>) Optional.of(provider.provider) : Optional.<T>absent();
+        return provider != null ? (Optional<T>) provider.optional : Optional.<T>absent();
     }
 
     @SuppressWarnings("unchecked")
@@ -129,10 +156,47 @@ public class SimpleServiceManager implements ServiceManager {
         @SuppressWarnings("unused")
         private final PluginContainer container;
         private final Object provider;
+        private final Optional<Object> optional;
 
         private Provider(PluginContainer container, Object provider) {
             this.container = container;
             this.provider = provider;
+            this.optional = Optional.of(provider);
+        }
+    }
+
+    private static class SimpleServiceHandle<T> implements ServiceHandle<T> {
+
+        private final Class<T> service;
+        @Nullable private volatile T provider;
+
+        SimpleServiceHandle(Class<T> service) {
+            this.service = service;
+        }
+
+        @Override
+        public Class<T> getService() {
+            return this.service;
+        }
+
+        @Nullable
+        @Override
+        public T get() {
+            return this.provider;
+        }
+
+        @Override
+        public T getUnchecked() throws ProvisioningException {
+            @Nullable T provider = this.provider;
+            if (provider == null) {
+                throw new ProvisioningException("No provider is registered for the service '" + this.service.getName() + "'", this.service);
+            }
+            return provider;
+        }
+
+        @Override
+        public boolean isPresent() {
+            return this.provider != null;
         }
     }
 
@@ -0,0 +1,311 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.command;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableMap;
+import org.spongepowered.api.entity.player.Player;
+import org.spongepowered.api.util.command.CommandMapping;
+import org.spongepowered.api.util.command.CommandSource;
+import org.spongepowered.api.util.command.source.CommandBlockSource;
+import org.spongepowered.api.util.command.source.ConsoleSource;
+import org.spongepowered.api.util.command.source.RemoteSource;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An immutable snapshot of how often registered commands have been run, how
+ * often they failed and how long they took, split by the type of source
+ * that ran them.
+ *
+ * <p>Counters are cumulative from the registration of a command, so the
+ * activity within a period is the difference between two snapshots.</p>
+ *
+ * @see CommandService#getMetrics()
+ */
+public final class CommandMetrics {
+
+    /**
+     * The number of buckets of the execution time histograms.
+     */
+    public static final int BUCKETS = 10;
+
+    // The first bucket holds executions under 16 microseconds, and each
+    // following bucket a range four times as wide
+    private static final long FIRST_BOUND = TimeUnit.MICROSECONDS.toNanos(16);
+
+    private final Map<CommandMapping, Map<SourceType, Statistics>> statistics;
+
+    CommandMetrics(Map<CommandMapping, Map<SourceType, Statistics>> statistics) {
+        this.statistics = ImmutableMap.copyOf(statistics);
+    }
+
+    /**
+     * Gets the commands that have statistics in this snapshot.
+     *
+     * @return The commands
+     */
+    public Set<CommandMapping> getCommands() {
+        return this.statistics.keySet();
+    }
+
+    /**
+     * Gets the statistics of a command over all source types.
+     *
+     * @param mapping The command
+     * @return The statistics, which are empty if the command is unknown
+     */
+    public Statistics getStatistics(CommandMapping mapping) {
+        Statistics total = Statistics.EMPTY;
+        for (SourceType type : SourceType.values()) {
+            total = total.plus(getStatistics(mapping, type));
+        }
+        return total;
+    }
+
+    /**
+     * Gets the statistics of a command run by one type of source.
+     *
+     * @param mapping The command
+     * @param type The type of source
+     * @return The statistics, which are empty if the command is unknown
+     */
+    public Statistics getStatistics(CommandMapping mapping, SourceType type) {
+        checkNotNull(mapping, "mapping");
+        checkNotNull(type, "type");
+        Map<SourceType, Statistics> byType = this.statistics.get(mapping);
+        if (byType == null || !byType.containsKey(type)) {
+            return Statistics.EMPTY;
+        }
+        return byType.get(type);
+    }
+
+    /**
+     * Gets the statistics of all commands run by one type of source.
+     *
+     * @param type The type of source
+     * @return The statistics
+     */
+    public Statistics getStatistics(SourceType type) {
+        Statistics total = Statistics.EMPTY;
+        for (CommandMapping mapping : this.statistics.keySet()) {
+            total = total.plus(getStatistics(mapping, type));
+        }
+        return total;
+    }
+
+    /**
+     * Gets the upper bound of a bucket of the execution time histograms.
+     *
+     * @param bucket The index of the bucket
+     * @param unit The unit of the bound
+     * @return The exclusive upper bound, or {@link Long#MAX_VALUE} for the
+     *         last bucket
+     */
+    public static long getUpperBound(int bucket, TimeUnit unit) {
+        checkArgument(bucket >= 0 && bucket < BUCKETS, "bucket out of range");
+        if (bucket == BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+        return unit.convert(FIRST_BOUND << (2 * bucket), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the histogram bucket for an execution time.
+     */
+    static int getBucket(long nanos) {
+        int bucket = 0;
+        for (long bound = FIRST_BOUND; nanos >= bound && bucket < BUCKETS - 1; bound <<= 2) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("statistics", this.statistics)
+                .toString();
+    }
+
+    /**
+     * The types of sources that statistics are kept for.
+     */
+    public enum SourceType {
+        /**
+         * A {@link Player}.
+         */
+        PLAYER,
+        /**
+         * The {@link ConsoleSource}.
+         */
+        CONSOLE,
+        /**
+         * A {@link RemoteSource}, such as RCON.
+         */
+        REMOTE,
+        /**
+         * A {@link CommandBlockSource}.
+         */
+        COMMAND_BLOCK,
+        /**
+         * Any other source.
+         */
+        OTHER;
+
+        /**
+         * Gets the type of a source.
+         *
+         * @param source The source
+         * @return The type of the source
+         */
+        public static SourceType of(CommandSource source) {
+            source = MainThreadCommandSource.unwrap(source);
+            if (source instanceof Player) {
+                return PLAYER;
+            } else if (source instanceof CommandBlockSource) {
+                return COMMAND_BLOCK;
+            } else if (source instanceof ConsoleSource) {
+                return CONSOLE;
+            } else if (source instanceof RemoteSource) {
+                return REMOTE;
+            }
+            return OTHER;
+        }
+    }
+
+    /**
+     * Counters of the executions of a command.
+     */
+    public static final class Statistics {
+
+        /**
+         * Statistics without any executions.
+         */
+        public static final Statistics EMPTY = new Statistics(0, 0, 0, 0, new long[BUCKETS]);
+
+        private final long invocations;
+        private final long failures;
+        private final long invocationFailures;
+        private final long totalNanos;
+        private final long[] histogram;
+
+        Statistics(long invocations, long failures, long invocationFailures, long totalNanos, long[] histogram) {
+            this.invocations = invocations;
+            this.failures = failures;
+            this.invocationFailures = invocationFailures;
+            this.totalNanos = totalNanos;
+            this.histogram = histogram;
+        }
+
+        /**
+         * Gets the number of times the command was run.
+         *
+         * @return The number of invocations
+         */
+        public long getInvocations() {
+            return this.invocations;
+        }
+
+        /**
+         * Gets the number of times the command threw a
+         * {@link org.spongepowered.api.util.command.CommandException}, other
+         * than an {@link org.spongepowered.api.util.command.InvocationCommandException}.
+         *
+         * @return The number of failures
+         */
+        public long getFailures() {
+            return this.failures;
+        }
+
+        /**
+         * Gets the number of times the command threw an
+         * {@link org.spongepowered.api.util.command.InvocationCommandException}
+         * or an unchecked exception.
+         *
+         * @return The number of invocation failures
+         */
+        public long getInvocationFailures() {
+            return this.invocationFailures;
+        }
+
+        /**
+         * Gets the total time the command took to execute.
+         *
+         * @param unit The unit of the time
+         * @return The total time
+         */
+        public long getTotalTime(TimeUnit unit) {
+            return unit.convert(this.totalNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Gets the number of executions that fell in a bucket of the
+         * execution time histogram.
+         *
+         * @param bucket The index of the bucket
+         * @return The number of executions
+         * @see CommandMetrics#getUpperBound(int, TimeUnit)
+         */
+        public long getCount(int bucket) {
+            checkArgument(bucket >= 0 && bucket < BUCKETS, "bucket out of range");
+            return this.histogram[bucket];
+        }
+
+        /**
+         * Returns the sum of these statistics and others.
+         *
+         * @param other The other statistics
+         * @return The combined statistics
+         */
+        public Statistics plus(Statistics other) {
+            long[] histogram = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                histogram[i] = this.histogram[i] + other.histogram[i];
+            }
+            return new Statistics(this.invocations + other.invocations, this.failures + other.failures,
+                    this.invocationFailures + other.invocationFailures, this.totalNanos + other.totalNanos, histogram);
+        }
+
+        @Override
+        public String toString() {
+            return Objects.toStringHelper(this)
+                    .add("invocations", this.invocations)
+                    .add("failures", this.failures)
+                    .add("invocationFailures", this.invocationFailures)
+                    .add("totalNanos", this.totalNanos)
+                    .add("histogram", Arrays.toString(this.histogram))
+                    .toString();
+        }
+
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.command;
+
+import org.spongepowered.api.service.command.CommandMetrics.SourceType;
+import org.spongepowered.api.service.command.CommandMetrics.Statistics;
+import org.spongepowered.api.util.command.CommandMapping;
+import org.spongepowered.api.util.command.CommandSource;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Records the executions of commands for {@link CommandMetrics} snapshots.
+ *
+ * <p>Recording only updates atomic counters, so commands can be recorded
+ * from any thread without locking.</p>
+ */
+final class CommandMetricsRecorder {
+
+    /**
+     * The outcomes of an execution.
+     */
+    enum Outcome {
+        SUCCESS,
+        FAILURE,
+        INVOCATION_FAILURE
+    }
+
+    private final ConcurrentMap<CommandMapping, AtomicReferenceArray<Counters>> counters =
+            new ConcurrentHashMap<CommandMapping, AtomicReferenceArray<Counters>>();
+
+    /**
+     * Records an execution of a command.
+     */
+    void record(CommandMapping mapping, CommandSource source, Outcome outcome, long nanos) {
+        AtomicReferenceArray<Counters> byType = this.counters.get(mapping);
+        if (byType == null) {
+            AtomicReferenceArray<Counters> created = new AtomicReferenceArray<Counters>(SourceType.values().length);
+            byType = this.counters.putIfAbsent(mapping, created);
+            if (byType == null) {
+                byType = created;
+            }
+        }
+
+        int type = SourceType.of(source).ordinal();
+        Counters counters = byType.get(type);
+        if (counters == null) {
+            byType.compareAndSet(type, null, new Counters());
+            counters = byType.get(type);
+        }
+        counters.record(outcome, nanos);
+    }
+
+    /**
+     * Forgets the counters of a command.
+     */
+    void forget(CommandMapping mapping) {
+        this.counters.remove(mapping);
+    }
+
+    /**
+     * Takes a snapshot of the counters.
+     */
+    CommandMetrics snapshot() {
+        Map<CommandMapping, Map<SourceType, Statistics>> statistics = new HashMap<CommandMapping, Map<SourceType, Statistics>>();
+        for (Map.Entry<CommandMapping, AtomicReferenceArray<Counters>> entry : this.counters.entrySet()) {
+            Map<SourceType, Statistics> byType = new EnumMap<SourceType, Statistics>(SourceType.class);
+            for (SourceType type : SourceType.values()) {
+                Counters counters = entry.getValue().get(type.ordinal());
+                if (counters != null) {
+                    byType.put(type, counters.snapshot());
+                }
+            }
+            statistics.put(entry.getKey(), byType);
+        }
+        return new CommandMetrics(statistics);
+    }
+
+    private static final class Counters {
+
+        private final AtomicLong invocations = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong invocationFailures = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLongArray histogram = new AtomicLongArray(CommandMetrics.BUCKETS);
+
+        void record(Outcome outcome, long nanos) {
+            this.invocations.incrementAndGet();
+            if (outcome == Outcome.FAILURE) {
+                this.failures.incrementAndGet();
+            } else if (outcome == Outcome.INVOCATION_FAILURE) {
+                this.invocationFailures.incrementAndGet();
+            }
+            this.totalNanos.addAndGet(nanos);
+            this.histogram.incrementAndGet(CommandMetrics.getBucket(nanos));
+        }
+
+        Statistics snapshot() {
+            long[] histogram = new long[CommandMetrics.BUCKETS];
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] = this.histogram.get(i);
+            }
+            return new Statistics(this.invocations.get(), this.failures.get(), this.invocationFailures.get(), this.totalNanos.get(),
+                    histogram);
+        }
+
+    }
+
+}
@@ -103,6 +103,34 @@ public interface CommandService extends Dispatcher {
      */
     Optional<CommandMapping> register(Object plugin, CommandCallable callable, List<String> aliases, Function<List<String>, List<String>> callback);
 
+    /**
+     * Register a given command, which is executed away from the main thread,
+     * using the given list of aliases.
+     *
+     * <p>Aliases are registered as in {@link #register(Object, CommandCallable, List)}.
+     * The command is run by the {@link org.spongepowered.api.service.scheduler.AsynchronousScheduler}
+     * on behalf of the plugin, and messages it sends to the command source
+     * are delivered on the main thread. Implementations may limit how many
+     * asynchronous commands a single source can run at once.</p>
+     *
+     * @param plugin A plugin instance
+     * @param callable The command
+     * @param aliases A list of aliases
+     * @return The registered command mapping, unless no aliases could be registered
+     * @throws IllegalArgumentException Thrown if {@code plugin} is not a plugin instance
+     * @see CommandMapping#isAsynchronous()
+     */
+    Optional<CommandMapping> registerAsynchronous(Object plugin, CommandCallable callable, List<String> aliases);
+
+    /**
+     * Gets a snapshot of the number of executions, failures and execution
+     * times of the registered commands, split by the type of source that
+     * ran them.
+     *
+     * @return A snapshot of the command metrics
+     */
+    CommandMetrics getMetrics();
+
     /**
      * Remove a mapping identified by the given alias.
      *
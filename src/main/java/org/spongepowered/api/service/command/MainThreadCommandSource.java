@@ -0,0 +1,170 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.command;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import org.spongepowered.api.service.scheduler.SynchronousScheduler;
+import org.spongepowered.api.text.message.Message;
+import org.spongepowered.api.util.command.CommandSource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.LinkedHashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Creates the command sources handed to asynchronous commands, which queue
+ * the messages sent to them and deliver them to the real source on the main
+ * thread, in order. All other methods are passed through.
+ *
+ * <p>A handed out source is a proxy implementing every public interface of
+ * the real source, so asynchronous commands can still check whether their
+ * source is, for example, a player.</p>
+ */
+final class MainThreadCommandSource implements InvocationHandler, Runnable {
+
+    private final CommandSource source;
+    private final Object plugin;
+    private final SynchronousScheduler scheduler;
+    private final Queue<Object> messages = new ConcurrentLinkedQueue<Object>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private MainThreadCommandSource(CommandSource source, Object plugin, SynchronousScheduler scheduler) {
+        this.source = source;
+        this.plugin = plugin;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Creates a source that delivers the messages sent to it to another
+     * source on the main thread.
+     */
+    static CommandSource create(CommandSource source, Object plugin, SynchronousScheduler scheduler) {
+        Set<Class<?>> interfaces = new LinkedHashSet<Class<?>>();
+        for (Class<?> type = source.getClass(); type != null; type = type.getSuperclass()) {
+            collectInterfaces(type, interfaces);
+        }
+        // Interfaces that are not public could only be implemented within their own package
+        for (Class<?> type : ImmutableList.copyOf(interfaces)) {
+            if (!Modifier.isPublic(type.getModifiers())) {
+                interfaces.remove(type);
+            }
+        }
+        interfaces.add(CommandSource.class);
+        MainThreadCommandSource handler = new MainThreadCommandSource(source, plugin, scheduler);
+        ClassLoader loader = source.getClass().getClassLoader();
+        try {
+            return (CommandSource) Proxy.newProxyInstance(loader, interfaces.toArray(new Class<?>[interfaces.size()]), handler);
+        } catch (IllegalArgumentException e) {
+            // Some of the interfaces cannot be implemented together, or are not visible from the loader
+            return (CommandSource) Proxy.newProxyInstance(CommandSource.class.getClassLoader(), new Class<?>[] {CommandSource.class}, handler);
+        }
+    }
+
+    private static void collectInterfaces(Class<?> type, Set<Class<?>> interfaces) {
+        for (Class<?> implemented : type.getInterfaces()) {
+            if (interfaces.add(implemented)) {
+                collectInterfaces(implemented, interfaces);
+            }
+        }
+    }
+
+    /**
+     * Gets the source that messages are delivered to, if the given source
+     * was created by {@link #create(CommandSource, Object, SynchronousScheduler)}.
+     */
+    static CommandSource unwrap(CommandSource source) {
+        if (Proxy.isProxyClass(source.getClass())) {
+            InvocationHandler handler = Proxy.getInvocationHandler(source);
+            if (handler instanceof MainThreadCommandSource) {
+                return ((MainThreadCommandSource) handler).source;
+            }
+        }
+        return source;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getName().equals("sendMessage") && method.getParameterTypes().length == 1) {
+            Class<?> type = method.getParameterTypes()[0];
+            if (type == String[].class) {
+                enqueue(((String[]) args[0]).clone());
+                return null;
+            } else if (type == Message[].class) {
+                enqueue(((Message[]) args[0]).clone());
+                return null;
+            } else if (type == Iterable.class) {
+                enqueue(ImmutableList.copyOf((Iterable<?>) args[0]));
+                return null;
+            }
+        } else if (method.getName().equals("getCommandSource") && method.getParameterTypes().length == 0) {
+            return Optional.of(proxy);
+        } else if (method.getName().equals("equals") && method.getParameterTypes().length == 1) {
+            return proxy == args[0];
+        } else if (method.getName().equals("hashCode") && method.getParameterTypes().length == 0) {
+            return System.identityHashCode(proxy);
+        }
+        try {
+            return method.invoke(this.source, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void enqueue(Object messages) {
+        this.messages.add(messages);
+        if (this.scheduled.compareAndSet(false, true)) {
+            this.scheduler.runTask(this.plugin, this);
+        }
+    }
+
+    /**
+     * Delivers the queued messages. Runs on the main thread.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void run() {
+        // Reset first, so that messages queued from here on schedule another delivery
+        this.scheduled.set(false);
+        Object messages;
+        while ((messages = this.messages.poll()) != null) {
+            if (messages instanceof String[]) {
+                this.source.sendMessage((String[]) messages);
+            } else if (messages instanceof Message[]) {
+                this.source.sendMessage((Message[]) messages);
+            } else {
+                this.source.sendMessage((Iterable<Message>) messages);
+            }
+        }
+    }
+
+}
@@ -25,24 +25,34 @@
 
 package org.spongepowered.api.service.command;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.base.Function;
 import com.google.common.base.Functions;
 import com.google.common.base.Optional;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.MapMaker;
 import com.google.common.collect.Multimap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.spongepowered.api.event.message.CommandEvent;
 import org.spongepowered.api.plugin.PluginContainer;
 import org.spongepowered.api.plugin.PluginManager;
+import org.spongepowered.api.service.command.CommandMetricsRecorder.Outcome;
 import org.spongepowered.api.service.event.EventManager;
+import org.spongepowered.api.service.scheduler.AsynchronousScheduler;
+import org.spongepowered.api.service.scheduler.SynchronousScheduler;
+import org.spongepowered.api.util.command.CommandArguments;
 import org.spongepowered.api.util.command.CommandCallable;
 import org.spongepowered.api.util.command.CommandException;
 import org.spongepowered.api.util.command.CommandMapping;
 import org.spongepowered.api.util.command.CommandSource;
+import org.spongepowered.api.util.command.InvocationCommandException;
+import org.spongepowered.api.util.command.TokenizedCommandCallable;
+import org.spongepowered.api.util.command.dispatcher.CommandBlockPolicy;
 import org.spongepowered.api.util.command.dispatcher.SimpleDispatcher;
 import org.spongepowered.api.util.event.Order;
 import org.spongepowered.api.util.event.Subscribe;
@@ -52,8 +62,12 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 
 /**
@@ -64,26 +78,104 @@ import javax.inject.Inject;
  * {@link EventManager} in order to receive {@link CommandEvent}s in the
  * {@link #onCommandEvent(CommandEvent)} method.
  * </p>
+ *
+ * <p>
+ * Commands registered with {@link #registerAsynchronous(Object, CommandCallable, List)}
+ * are run by the {@link AsynchronousScheduler}, with the messages they send
+ * delivered to the source by the {@link SynchronousScheduler}. Each source
+ * may only run a limited number of them at once.
+ * </p>
  */
-public class SimpleCommandService implements CommandService {
+public class SimpleCommandService implements CommandService, TokenizedCommandCallable {
 
     private static final Logger log = LoggerFactory.getLogger(SimpleCommandService.class);
 
+    /**
+     * The default number of asynchronous commands a single source may run at
+     * once.
+     */
+    public static final int DEFAULT_MAXIMUM_PER_SOURCE = 2;
+
+    /**
+     * The default message sent to a source that tries to run more
+     * asynchronous commands at once than it may.
+     */
+    public static final String DEFAULT_BUSY_MESSAGE = "Please wait for your previous commands to finish.";
+
     private final PluginManager pluginManager;
-    private final SimpleDispatcher dispatcher = new SimpleDispatcher();
+    @Nullable private final AsynchronousScheduler asyncScheduler;
+    @Nullable private final SynchronousScheduler syncScheduler;
+    private final int maximumPerSource;
+    private volatile String busyMessage = DEFAULT_BUSY_MESSAGE;
+    private final SimpleDispatcher dispatcher = new SimpleDispatcher() {
+        @Override
+        protected void execute(CommandMapping mapping, CommandSource source, CommandArguments arguments, List<String> parents)
+                throws CommandException {
+            if (mapping.isAsynchronous()) {
+                executeAsynchronously(mapping, source, arguments, parents);
+            } else {
+                executeRecorded(mapping, source, arguments, parents);
+            }
+        }
+    };
     private final Multimap<PluginContainer, CommandMapping> owners = HashMultimap.create();
+    private final Map<CommandMapping, Object> asyncPlugins = new MapMaker().makeMap();
+    private final ConcurrentMap<CommandSource, AtomicInteger> running = new MapMaker().weakKeys().makeMap();
+    private final CommandMetricsRecorder metrics = new CommandMetricsRecorder();
     private final Object lock = new Object();
 
     /**
      * Construct a simple {@link CommandService}.
      *
+     * <p>Without schedulers, asynchronous commands are run directly on the
+     * calling thread.</p>
+     *
      * @param pluginManager The plugin manager to get the
      *            {@link PluginContainer} for a given plugin
      */
-    @Inject
     public SimpleCommandService(PluginManager pluginManager) {
         checkNotNull(pluginManager, "pluginManager");
         this.pluginManager = pluginManager;
+        this.asyncScheduler = null;
+        this.syncScheduler = null;
+        this.maximumPerSource = DEFAULT_MAXIMUM_PER_SOURCE;
+    }
+
+    /**
+     * Construct a simple {@link CommandService} which runs asynchronous
+     * commands with the given schedulers.
+     *
+     * @param pluginManager The plugin manager to get the
+     *            {@link PluginContainer} for a given plugin
+     * @param asyncScheduler The scheduler to run asynchronous commands with
+     * @param syncScheduler The scheduler to deliver their messages with
+     */
+    @Inject
+    public SimpleCommandService(PluginManager pluginManager, AsynchronousScheduler asyncScheduler, SynchronousScheduler syncScheduler) {
+        this(pluginManager, asyncScheduler, syncScheduler, DEFAULT_MAXIMUM_PER_SOURCE);
+    }
+
+    /**
+     * Construct a simple {@link CommandService} which runs asynchronous
+     * commands with the given schedulers.
+     *
+     * @param pluginManager The plugin manager to get the
+     *            {@link PluginContainer} for a given plugin
+     * @param asyncScheduler The scheduler to run asynchronous commands with
+     * @param syncScheduler The scheduler to deliver their messages with
+     * @param maximumPerSource The number of asynchronous commands a single
+     *            source may run at once
+     */
+    public SimpleCommandService(PluginManager pluginManager, AsynchronousScheduler asyncScheduler, SynchronousScheduler syncScheduler,
+            int maximumPerSource) {
+        checkNotNull(pluginManager, "pluginManager");
+        checkNotNull(asyncScheduler, "asyncScheduler");
+        checkNotNull(syncScheduler, "syncScheduler");
+        checkArgument(maximumPerSource > 0, "maximumPerSource must be positive");
+        this.pluginManager = pluginManager;
+        this.asyncScheduler = asyncScheduler;
+        this.syncScheduler = syncScheduler;
+        this.maximumPerSource = maximumPerSource;
     }
 
     /**
@@ -94,7 +186,8 @@ public class SimpleCommandService implements CommandService {
     @Subscribe(order = Order.LAST)
     public void onCommandEvent(final CommandEvent event) {
         try {
-            if (call(event.getSource(), event.getCommand() + " " + event.getArguments(), Collections.<String>emptyList())) {
+            CommandArguments arguments = new CommandArguments(event.getArguments());
+            if (this.dispatcher.call(event.getSource(), event.getCommand(), arguments, Collections.<String>emptyList())) {
                 event.setCancelled(true);
             }
         } catch (CommandException e) {
@@ -116,6 +209,11 @@ public class SimpleCommandService implements CommandService {
     @Override
     public Optional<CommandMapping> register(Object plugin, CommandCallable callable, List<String> aliases,
             Function<List<String>, List<String>> callback) {
+        return register(plugin, callable, aliases, callback, false);
+    }
+
+    private Optional<CommandMapping> register(Object plugin, CommandCallable callable, List<String> aliases,
+            Function<List<String>, List<String>> callback, boolean asynchronous) {
         checkNotNull(plugin);
 
         Optional<PluginContainer> containerOptional = this.pluginManager.fromInstance(plugin);
@@ -135,16 +233,24 @@ public class SimpleCommandService implements CommandService {
                 aliasesWithPrefix.add(container.getId() + ":" + alias);
             }
 
-            Optional<CommandMapping> mapping = this.dispatcher.register(callable, aliasesWithPrefix, callback);
+            Optional<CommandMapping> mapping = this.dispatcher.register(callable, aliasesWithPrefix, callback, asynchronous);
 
             if (mapping.isPresent()) {
                 this.owners.put(container, mapping.get());
+                if (asynchronous) {
+                    this.asyncPlugins.put(mapping.get(), plugin);
+                }
             }
 
             return mapping;
         }
     }
 
+    @Override
+    public Optional<CommandMapping> registerAsynchronous(Object plugin, CommandCallable callable, List<String> aliases) {
+        return register(plugin, callable, aliases, Functions.<List<String>>identity(), true);
+    }
+
     @Override
     public Optional<CommandMapping> remove(String alias) {
         synchronized (this.lock) {
@@ -172,6 +278,8 @@ public class SimpleCommandService implements CommandService {
     }
 
     private void forgetMapping(CommandMapping mapping) {
+        this.asyncPlugins.remove(mapping);
+        this.metrics.forget(mapping);
         Iterator<CommandMapping> it = this.owners.values().iterator();
         while (it.hasNext()) {
             if (it.next().equals(mapping)) {
@@ -181,6 +289,136 @@ public class SimpleCommandService implements CommandService {
         }
     }
 
+    private void executeAsynchronously(CommandMapping mapping, CommandSource source, CommandArguments arguments, List<String> parents)
+            throws CommandException {
+        final Object plugin = this.asyncPlugins.get(mapping);
+        if (plugin == null || this.asyncScheduler == null || this.syncScheduler == null) {
+            executeRecorded(mapping, source, arguments, parents);
+            return;
+        }
+
+        final AtomicInteger count = getRunning(source);
+        if (count.incrementAndGet() > this.maximumPerSource) {
+            count.decrementAndGet();
+            source.sendMessage(this.busyMessage);
+            return;
+        }
+
+        // The tokenizer is reused by the caller, so the command gets its own
+        final CommandMapping executed = mapping;
+        final CommandSource handoff = MainThreadCommandSource.create(source, plugin, this.syncScheduler);
+        final CommandArguments ownArguments = new CommandArguments(arguments.getRemaining());
+        final List<String> ownParents = ImmutableList.copyOf(parents);
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    executeRecorded(executed, handoff, ownArguments, ownParents);
+                } catch (CommandException e) {
+                    log.warn("Failed to execute a command", e);
+                } catch (RuntimeException e) {
+                    log.error("Asynchronous command threw an exception", e);
+                } finally {
+                    count.decrementAndGet();
+                }
+            }
+        };
+
+        if (!this.asyncScheduler.runTask(plugin, task).isPresent()) {
+            // The scheduler refused the task, so run it here rather than drop it
+            task.run();
+        }
+    }
+
+    private AtomicInteger getRunning(CommandSource source) {
+        AtomicInteger count = this.running.get(source);
+        if (count == null) {
+            AtomicInteger created = new AtomicInteger();
+            count = this.running.putIfAbsent(source, created);
+            if (count == null) {
+                count = created;
+            }
+        }
+        return count;
+    }
+
+    private void executeRecorded(CommandMapping mapping, CommandSource source, CommandArguments arguments, List<String> parents)
+            throws CommandException {
+        Outcome outcome = Outcome.INVOCATION_FAILURE;
+        long start = System.nanoTime();
+        try {
+            execute(mapping.getCallable(), source, arguments, parents);
+            outcome = Outcome.SUCCESS;
+        } catch (InvocationCommandException e) {
+            throw e;
+        } catch (CommandException e) {
+            outcome = Outcome.FAILURE;
+            throw e;
+        } finally {
+            this.metrics.record(mapping, source, outcome, System.nanoTime() - start);
+        }
+    }
+
+    private static void execute(CommandCallable callable, CommandSource source, CommandArguments arguments, List<String> parents)
+            throws CommandException {
+        if (callable instanceof TokenizedCommandCallable) {
+            ((TokenizedCommandCallable) callable).call(source, arguments, parents);
+        } else {
+            callable.call(source, arguments.getRemaining(), parents);
+        }
+    }
+
+    /**
+     * Gets the policy that limits the commands run by command blocks.
+     *
+     * @return The policy, if command blocks are limited
+     */
+    public Optional<CommandBlockPolicy> getCommandBlockPolicy() {
+        return this.dispatcher.getCommandBlockPolicy();
+    }
+
+    /**
+     * Sets the policy that limits the commands run by command blocks.
+     *
+     * @param policy The policy, or null to not limit command blocks
+     */
+    public void setCommandBlockPolicy(@Nullable CommandBlockPolicy policy) {
+        this.dispatcher.setCommandBlockPolicy(policy);
+    }
+
+    /**
+     * Gets the message sent to a source that tries to run more asynchronous
+     * commands at once than it may.
+     *
+     * @return The message
+     */
+    public String getBusyMessage() {
+        return this.busyMessage;
+    }
+
+    /**
+     * Sets the message sent to a source that tries to run more asynchronous
+     * commands at once than it may, for example to translate it.
+     *
+     * @param message The message
+     */
+    public void setBusyMessage(String message) {
+        this.busyMessage = checkNotNull(message, "message");
+    }
+
+    @Override
+    public CommandMetrics getMetrics() {
+        return this.metrics.snapshot();
+    }
+
+    /**
+     * Discard all cached completions, for example after the permissions of
+     * command sources have changed.
+     */
+    public void invalidateCompletions() {
+        this.dispatcher.invalidateCompletions();
+    }
+
     @Override
     public Set<PluginContainer> getPluginContainers() {
         synchronized (this.lock) {
@@ -230,6 +468,11 @@ public class SimpleCommandService implements CommandService {
         return this.dispatcher.call(source, arguments, parents);
     }
 
+    @Override
+    public boolean call(CommandSource source, CommandArguments arguments, List<String> parents) throws CommandException {
+        return this.dispatcher.call(source, arguments, parents);
+    }
+
     @Override
     public boolean testPermission(CommandSource source) {
         return this.dispatcher.testPermission(source);
@@ -240,6 +483,11 @@ public class SimpleCommandService implements CommandService {
         return this.dispatcher.getSuggestions(source, arguments);
     }
 
+    @Override
+    public List<String> getSuggestions(CommandSource source, CommandArguments arguments) throws CommandException {
+        return this.dispatcher.getSuggestions(source, arguments);
+    }
+
     @Override
     public Optional<String> getShortDescription() {
         return this.dispatcher.getShortDescription();
@@ -29,9 +29,9 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 import org.spongepowered.api.service.permission.context.Context;
+import org.spongepowered.api.service.permission.context.ContextSet;
 import org.spongepowered.api.util.Tristate;
 
 import java.util.ArrayList;
@@ -40,19 +40,25 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.annotation.Nullable;
 
 /**
  * A subject data implementation storing all contained data in memory.
  *
+ * <p>Registered {@link SubjectDataListener}s are notified after every change.
+ *
  * <p>This class is thread-safe.
  */
 public class MemorySubjectData implements SubjectData {
 
+    private static final NodeTree EMPTY_TREE = NodeTree.of(Collections.<String, Boolean>emptyMap());
+
     private final PermissionService service;
     private final ConcurrentMap<Set<Context>, NodeTree> permissions = Maps.newConcurrentMap();
     private final ConcurrentMap<Set<Context>, List<Map.Entry<String, String>>> parents = Maps.newConcurrentMap();
+    private final List<SubjectDataListener> listeners = new CopyOnWriteArrayList<SubjectDataListener>();
 
     /**
      * Creates a new subject data instance, using the provided service to request instances of permission subjects.
@@ -64,6 +70,67 @@ public class MemorySubjectData implements SubjectData {
         this.service = service;
     }
 
+    /**
+     * Register a listener to be notified after this data changes.
+     *
+     * @param listener The listener
+     */
+    public void addListener(SubjectDataListener listener) {
+        this.listeners.add(checkNotNull(listener, "listener"));
+    }
+
+    /**
+     * Unregister a listener previously added with {@link #addListener(SubjectDataListener)}.
+     *
+     * @param listener The listener
+     * @return Whether the listener was registered
+     */
+    public boolean removeListener(SubjectDataListener listener) {
+        return this.listeners.remove(listener);
+    }
+
+    private void updated() {
+        for (SubjectDataListener listener : this.listeners) {
+            listener.onUpdate(this);
+        }
+    }
+
+    /**
+     * Returns the node tree holding the permissions set in the given context
+     * combination.
+     *
+     * @param contexts The context combination
+     * @return The node tree, which is empty if no permissions are set
+     */
+    public NodeTree getNodeTree(Set<Context> contexts) {
+        NodeTree perms = this.permissions.get(contexts);
+        return perms == null ? EMPTY_TREE : perms;
+    }
+
+    /**
+     * Returns the identifiers of the parents set in each context combination,
+     * without looking up the parent subjects.
+     */
+    Map<Set<Context>, List<Map.Entry<String, String>>> getAllParentIdentifiers() {
+        return ImmutableMap.copyOf(this.parents);
+    }
+
+    /**
+     * Replaces the permissions of a context combination without notifying
+     * listeners, for loading stored data.
+     */
+    void load(Set<Context> contexts, NodeTree permissions) {
+        this.permissions.put(ContextSet.of(contexts), permissions);
+    }
+
+    /**
+     * Replaces the parents of a context combination without notifying
+     * listeners, for loading stored data.
+     */
+    void load(Set<Context> contexts, List<Map.Entry<String, String>> parents) {
+        this.parents.put(ContextSet.of(contexts), ImmutableList.copyOf(parents));
+    }
+
     @Override
     public Map<Set<Context>, Map<String, Boolean>> getAllPermissions() {
         ImmutableMap.Builder<Set<Context>, Map<String, Boolean>> ret = ImmutableMap.builder();
@@ -81,14 +148,14 @@ public class MemorySubjectData implements SubjectData {
 
     @Override
     public boolean setPermission(Set<Context> contexts, String permission, Tristate value) {
-        contexts = ImmutableSet.copyOf(contexts);
+        contexts = ContextSet.of(contexts);
         while (true) {
             NodeTree oldTree = this.permissions.get(contexts);
-            if (oldTree != null && oldTree.get(permission) == value) {
+            if ((oldTree == null ? EMPTY_TREE : oldTree).getExplicit(permission) == value) {
                 return false;
             }
 
-            if (oldTree == null && value != Tristate.UNDEFINED) {
+            if (oldTree == null) {
                 if (this.permissions.putIfAbsent(contexts, NodeTree.of(ImmutableMap.of(permission, value.asBoolean()))) == null) {
                     break;
                 }
@@ -98,20 +165,56 @@ public class MemorySubjectData implements SubjectData {
                 }
             }
         }
+        updated();
+        return true;
+
+    }
+
+    @Override
+    public boolean setPermissions(Set<Context> contexts, Map<String, Tristate> values) {
+        contexts = ContextSet.of(contexts);
+        while (true) {
+            NodeTree oldTree = this.permissions.get(contexts);
+            if (!changes(oldTree == null ? EMPTY_TREE : oldTree, values)) {
+                return false;
+            }
+
+            // All changes are applied to a single copy of the tree, which is swapped in at once
+            NodeTree newTree = (oldTree == null ? EMPTY_TREE : oldTree).withAll(values);
+            if (updateCollection(this.permissions, contexts, oldTree, newTree)) {
+                break;
+            }
+        }
+        updated();
         return true;
+    }
 
+    private static boolean changes(NodeTree tree, Map<String, Tristate> values) {
+        for (Map.Entry<String, Tristate> ent : values.entrySet()) {
+            if (tree.getExplicit(ent.getKey()) != ent.getValue()) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @Override
     public boolean clearPermissions() {
         boolean wasEmpty = this.permissions.isEmpty();
         this.permissions.clear();
+        if (!wasEmpty) {
+            updated();
+        }
         return !wasEmpty;
     }
 
     @Override
     public boolean clearPermissions(Set<Context> context) {
-        return this.permissions.remove(context) != null;
+        if (this.permissions.remove(context) != null) {
+            updated();
+            return true;
+        }
+        return false;
     }
 
     @Override
@@ -143,7 +246,7 @@ public class MemorySubjectData implements SubjectData {
 
     @Override
     public boolean addParent(Set<Context> contexts, Subject parent) {
-        contexts = ImmutableSet.copyOf(contexts);
+        contexts = ContextSet.of(contexts);
         while (true) {
             Map.Entry<String, String> newEnt = Maps.immutableEntry(parent.getContainingCollection().getIdentifier(),
                     parent.getIdentifier());
@@ -157,6 +260,7 @@ public class MemorySubjectData implements SubjectData {
             }
 
             if (updateCollection(this.parents, contexts, oldParents, newParents)) {
+                updated();
                 return true;
             }
         }
@@ -177,7 +281,7 @@ public class MemorySubjectData implements SubjectData {
 
     @Override
     public boolean removeParent(Set<Context> contexts, Subject parent) {
-        contexts = ImmutableSet.copyOf(contexts);
+        contexts = ContextSet.of(contexts);
         while (true) {
             Map.Entry<String, String> removeEnt = Maps.immutableEntry(parent.getContainingCollection().getIdentifier(),
                     parent.getIdentifier());
@@ -191,6 +295,7 @@ public class MemorySubjectData implements SubjectData {
             newParents.remove(removeEnt);
 
             if (updateCollection(this.parents, contexts, oldParents, Collections.unmodifiableList(newParents))) {
+                updated();
                 return true;
             }
         }
@@ -201,11 +306,18 @@ public class MemorySubjectData implements SubjectData {
     public boolean clearParents() {
         boolean wasEmpty = this.parents.isEmpty();
         this.parents.clear();
+        if (!wasEmpty) {
+            updated();
+        }
         return !wasEmpty;
     }
 
     @Override
     public boolean clearParents(Set<Context> contexts) {
-        return this.parents.remove(contexts) != null;
+        if (this.parents.remove(contexts) != null) {
+            updated();
+            return true;
+        }
+        return false;
     }
 }
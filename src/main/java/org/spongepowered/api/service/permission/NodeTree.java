@@ -24,33 +24,51 @@
  */
 package org.spongepowered.api.service.permission;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import com.google.common.collect.ImmutableMap;
 import org.spongepowered.api.util.Tristate;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
 
 /**
  * An immutable tree structure for determining node data. Any changes will create new copies of the necessary tree objects.
  * Keys are case-insensitive.
  * Segments of nodes are split by the '.' character
+ *
+ * <p>Lookups through {@link #get(String)} walk the node string by index and fold case one character at a time, so a
+ * permission check does not allocate.</p>
+ *
+ * <p>A segment consisting of {@code *} matches any single segment, so {@code region.*.build} applies to
+ * {@code region.spawn.build} and everything below it. Where a node matches both an exact segment and a wildcard, the values
+ * set through the exact segment win. Wildcards are compiled into the tree once, on the first lookup, so lookups stay
+ * proportional to the depth of the node. A node prefixed with {@code -} sets the opposite value on the node without the
+ * prefix: {@code -essentials.fly = true} is stored, and exported by {@link #asMap()}, as {@code essentials.fly = false}.</p>
  */
 public class NodeTree {
 
-    private static final Pattern SPLIT_REGEX = Pattern.compile("\\.");
-    private final Node rootNode;
+    private static final String WILDCARD = "*";
+    private static final char NEGATION = '-';
 
+    private final Node rootNode;
+    @Nullable private volatile Node lookupNode;
 
     private NodeTree(Tristate value) {
-        this.rootNode = new Node(new HashMap<String, Node>());
-        this.rootNode.value = value;
+        this.rootNode = Node.EMPTY.withValue(value);
     }
 
     private NodeTree(Node rootNode) {
         this.rootNode = rootNode;
     }
 
+    private NodeTree(Node rootNode, Node lookupNode) {
+        this.rootNode = rootNode;
+        this.lookupNode = lookupNode;
+    }
+
     /**
      * Create a new node tree with the given values, and a default value of UNDEFINED.
      *
@@ -69,22 +87,29 @@ public class NodeTree {
      * @return The newly created node tree
      */
     public static NodeTree of(Map<String, Boolean> values, Tristate defaultValue) {
-        NodeTree newTree = new NodeTree(defaultValue);
+        Builder builder = builder().defaultValue(defaultValue);
         for (Map.Entry<String, Boolean> value : values.entrySet()) {
-            String[] parts = SPLIT_REGEX.split(value.getKey().toLowerCase());
-            Node currentNode = newTree.rootNode;
-            for (String part : parts) {
-                if (currentNode.children.containsKey(part)) {
-                    currentNode = currentNode.children.get(part);
-                } else {
-                    Node newNode = new Node(new HashMap<String, Node>());
-                    currentNode.children.put(part, newNode);
-                    currentNode = newNode;
-                }
-            }
-            currentNode.value = Tristate.fromBoolean(value.getValue());
+            builder.value(value.getKey(), Tristate.fromBoolean(value.getValue()));
         }
-        return newTree;
+        return builder.build();
+    }
+
+    /**
+     * Create a builder for a new, empty node tree.
+     *
+     * @return The new builder
+     */
+    public static Builder builder() {
+        return new Builder(null);
+    }
+
+    /**
+     * Create a builder starting out with the values of this node tree.
+     *
+     * @return The new builder
+     */
+    public Builder toBuilder() {
+        return new Builder(this.rootNode);
     }
 
     /**
@@ -94,20 +119,82 @@ public class NodeTree {
      * @return The tristate value for the given node
      */
     public Tristate get(String node) {
-        String[] parts = SPLIT_REGEX.split(node.toLowerCase());
-        Node currentNode = this.rootNode;
-        Tristate lastUndefinedVal = Tristate.UNDEFINED;
-        for (String str : parts) {
-            if (!currentNode.children.containsKey(str)) {
+        Node currentNode = getLookupNode();
+        Tristate lastUndefinedVal = currentNode.value;
+        int length = segmentsEnd(node);
+        if (length < 0) {
+            return lastUndefinedVal;
+        }
+        int start = 0;
+        while (true) {
+            int end = node.indexOf('.', start);
+            if (end < 0 || end > length) {
+                end = length;
+            }
+            Node next = currentNode.get(node, start, end);
+            currentNode = next == null ? currentNode.wildcard : next;
+            if (currentNode == null) {
                 break;
             }
-            currentNode = currentNode.children.get(str);
             if (currentNode.value != Tristate.UNDEFINED) {
                 lastUndefinedVal = currentNode.value;
             }
+            if (end == length) {
+                break;
+            }
+            start = end + 1;
         }
         return lastUndefinedVal;
+    }
 
+    /**
+     * Returns the value set on exactly the given node, ignoring values
+     * inherited from parent nodes and wildcards. A node prefixed with
+     * {@code -} returns the opposite of the value set on the node without
+     * the prefix.
+     *
+     * @param node The path to get the node value at
+     * @return The tristate value set on the given node, or UNDEFINED if none is set
+     */
+    public Tristate getExplicit(String node) {
+        if (isNegated(node)) {
+            return negate(getExplicit(node.substring(1)));
+        }
+        Node currentNode = this.rootNode;
+        int length = segmentsEnd(node);
+        if (length < 0) {
+            return currentNode.value;
+        }
+        int start = 0;
+        while (true) {
+            int end = node.indexOf('.', start);
+            if (end < 0 || end > length) {
+                end = length;
+            }
+            currentNode = currentNode.get(node, start, end);
+            if (currentNode == null) {
+                return Tristate.UNDEFINED;
+            }
+            if (end == length) {
+                return currentNode.value;
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Gets the root of the tree used for lookups, in which every wildcard has
+     * been merged into the exact segments next to it.
+     */
+    private Node getLookupNode() {
+        if (!this.rootNode.wildcards) {
+            return this.rootNode;
+        }
+        Node lookupNode = this.lookupNode;
+        if (lookupNode == null) {
+            this.lookupNode = lookupNode = Node.compile(this.rootNode);
+        }
+        return lookupNode;
     }
 
     /**
@@ -117,8 +204,11 @@ public class NodeTree {
      */
     public Map<String, Boolean> asMap() {
         ImmutableMap.Builder<String, Boolean> ret = ImmutableMap.builder();
-        for (Map.Entry<String, Node> ent : this.rootNode.children.entrySet()) {
-            populateMap(ret, ent.getKey(), ent.getValue());
+        Node root = this.rootNode;
+        for (int i = 0; i < root.keys.length; i++) {
+            if (root.keys[i] != null) {
+                populateMap(ret, root.keys[i], root.children[i]);
+            }
         }
         return ret.build();
     }
@@ -127,8 +217,10 @@ public class NodeTree {
         if (currentNode.value != Tristate.UNDEFINED) {
             values.put(prefix, currentNode.value.asBoolean());
         }
-        for (Map.Entry<String, Node> ent : currentNode.children.entrySet()) {
-            populateMap(values, prefix + '.' + ent.getKey(), ent.getValue());
+        for (int i = 0; i < currentNode.keys.length; i++) {
+            if (currentNode.keys[i] != null) {
+                populateMap(values, prefix + '.' + currentNode.keys[i], currentNode.children[i]);
+            }
         }
     }
 
@@ -140,21 +232,15 @@ public class NodeTree {
      * @return The new, modified node tree
      */
     public NodeTree withValue(String node, Tristate value) {
-        String[] parts = SPLIT_REGEX.split(node.toLowerCase());
-        Node newRoot = new Node(new HashMap<String, Node>(this.rootNode.children));
-        Node newPtr = newRoot;
-        Node currentPtr = this.rootNode;
-
-        newPtr.value = currentPtr == null ? Tristate.UNDEFINED : currentPtr.value;
-        for (String part : parts) {
-            Node oldChild = currentPtr == null ? null : currentPtr.children.get(part);
-            Node newChild = new Node(oldChild != null ? new HashMap<String, Node>(oldChild.children) : new HashMap<String, Node>());
-            newPtr.children.put(part, newChild);
-            currentPtr = oldChild;
-            newPtr = newChild;
+        if (isNegated(node)) {
+            node = node.substring(1);
+            value = negate(value);
+        }
+        int length = segmentsEnd(node);
+        if (length < 0) {
+            return new NodeTree(this.rootNode.withValue(value));
         }
-        newPtr.value = value;
-        return new NodeTree(newRoot);
+        return new NodeTree(this.rootNode.withValue(node, 0, length, value));
     }
 
     /**
@@ -164,20 +250,429 @@ public class NodeTree {
      * @return The new node tree
      */
     public NodeTree withAll(Map<String, Tristate> values) {
-        NodeTree ret = this;
-        for (Map.Entry<String, Tristate> ent : values.entrySet()) {
-            ret = ret.withValue(ent.getKey(), ent.getValue());
+        if (values.isEmpty()) {
+            return this;
+        }
+        return toBuilder().values(values).build();
+    }
+
+    /**
+     * Return a new node tree that falls back to the given tree for every node
+     * that is undefined in this tree.
+     *
+     * <p>For any node, {@code a.withFallback(b).get(node)} is equal to
+     * {@code a.get(node)} if that is defined, and to {@code b.get(node)}
+     * otherwise. Unchanged subtrees of both trees are shared.</p>
+     *
+     * <p>Wildcards of both trees are compiled before merging, so a wildcard
+     * in this tree shadows the nodes of the fallback below its prefix. The
+     * merged tree therefore holds the compiled wildcards, and
+     * {@link #asMap()} of it includes the nodes they were expanded into.</p>
+     *
+     * @param fallback The tree with lower priority
+     * @return The merged node tree
+     */
+    public NodeTree withFallback(NodeTree fallback) {
+        Node own = getLookupNode();
+        Node other = fallback.getLookupNode();
+        Node merged = own.withFallback(other);
+        if (merged == own) {
+            return this;
+        } else if (merged == other) {
+            return fallback;
         }
-        return ret;
+        return new NodeTree(merged, merged);
     }
 
-    private static class Node {
+    /**
+     * Gets the end of the last segment of a node, ignoring trailing
+     * separators, or -1 if the node consists only of separators.
+     */
+    private static int segmentsEnd(String node) {
+        int length = node.length();
+        while (length > 0 && node.charAt(length - 1) == '.') {
+            length--;
+        }
+        return length == 0 && node.length() > 0 ? -1 : length;
+    }
 
-        private final Map<String, Node> children;
-        private Tristate value = Tristate.UNDEFINED;
+    private static boolean isNegated(String node) {
+        return node.length() > 1 && node.charAt(0) == NEGATION;
+    }
+
+    private static Tristate negate(Tristate value) {
+        return value == Tristate.UNDEFINED ? value : Tristate.fromBoolean(!value.asBoolean());
+    }
+
+    private static char fold(char c) {
+        return Character.toLowerCase(c);
+    }
 
-        private Node(Map<String, Node> children) {
+    static String fold(String segment) {
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            if (fold(c) != c) {
+                char[] folded = segment.toCharArray();
+                for (int j = i; j < folded.length; j++) {
+                    folded[j] = fold(folded[j]);
+                }
+                return new String(folded);
+            }
+        }
+        return segment;
+    }
+
+    private static int hash(String node, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + fold(node.charAt(i));
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * An immutable node whose children are kept in an open addressing table
+     * of case-folded keys, probed with linear probing.
+     */
+    private static final class Node {
+
+        static final Node EMPTY = new Node(Tristate.UNDEFINED, new String[0], new Node[0], 0);
+
+        final Tristate value;
+        final String[] keys;
+        final Node[] children;
+        final int size;
+        @Nullable final Node wildcard;
+        final boolean wildcards;
+
+        Node(Tristate value, String[] keys, Node[] children, int size) {
+            this.value = value;
+            this.keys = keys;
             this.children = children;
+            this.size = size;
+            this.wildcard = get(WILDCARD);
+            boolean wildcards = this.wildcard != null;
+            for (int i = 0; i < children.length && !wildcards; i++) {
+                wildcards = children[i] != null && children[i].wildcards;
+            }
+            this.wildcards = wildcards;
+        }
+
+        /**
+         * Gets the child named by the given range of a node string, folding
+         * the case of each character as it is compared.
+         */
+        @Nullable
+        Node get(String node, int start, int end) {
+            if (this.size == 0) {
+                return null;
+            }
+            int length = end - start;
+            int mask = this.keys.length - 1;
+            for (int i = hash(node, start, end) & mask;; i = (i + 1) & mask) {
+                String key = this.keys[i];
+                if (key == null) {
+                    return null;
+                }
+                if (key.length() == length && matches(key, node, start)) {
+                    return this.children[i];
+                }
+            }
+        }
+
+        @Nullable
+        Node get(String key) {
+            return get(key, 0, key.length());
+        }
+
+        private static boolean matches(String key, String node, int start) {
+            for (int i = 0; i < key.length(); i++) {
+                if (key.charAt(i) != fold(node.charAt(start + i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        Node withValue(Tristate value) {
+            return value == this.value ? this : new Node(value, this.keys, this.children, this.size);
+        }
+
+        Node withValue(String node, int start, int length, Tristate value) {
+            int end = node.indexOf('.', start);
+            if (end < 0 || end > length) {
+                end = length;
+            }
+            String key = fold(node.substring(start, end));
+            Node child = get(key);
+            if (child == null) {
+                child = EMPTY;
+            }
+            return withChild(key, end == length ? child.withValue(value) : child.withValue(node, end + 1, length, value));
+        }
+
+        /**
+         * Merges this node with a fallback node, both of which must be
+         * {@link #compile(Node) compiled}. A defined value on this node
+         * shadows everything in the fallback below it. A segment that only
+         * one of the nodes has an exact child for is matched by the wildcard
+         * child of the other node, if any.
+         */
+        Node withFallback(Node fallback) {
+            if (this.value != Tristate.UNDEFINED || (fallback.value == Tristate.UNDEFINED && fallback.size == 0)) {
+                return this;
+            }
+            if (this.size == 0) {
+                return fallback;
+            }
+            Map<String, Node> merged = new HashMap<String, Node>();
+            for (int i = 0; i < this.keys.length; i++) {
+                if (this.keys[i] != null) {
+                    Node other = fallback.get(this.keys[i]);
+                    if (other == null) {
+                        other = fallback.wildcard;
+                    }
+                    merged.put(this.keys[i], other == null ? this.children[i] : this.children[i].withFallback(other));
+                }
+            }
+            for (int i = 0; i < fallback.keys.length; i++) {
+                if (fallback.keys[i] != null && !merged.containsKey(fallback.keys[i])) {
+                    merged.put(fallback.keys[i], this.wildcard == null
+                            ? fallback.children[i] : this.wildcard.withFallback(fallback.children[i]));
+                }
+            }
+            return of(fallback.value, merged);
+        }
+
+        /**
+         * Compiles the wildcards below a node by merging the wildcard child
+         * of every node into each of its exact children. The wildcard child
+         * itself is kept for segments without an exact child.
+         */
+        static Node compile(Node node) {
+            if (!node.wildcards) {
+                return node;
+            }
+            Map<String, Node> compiled = new HashMap<String, Node>();
+            for (int i = 0; i < node.keys.length; i++) {
+                if (node.keys[i] != null) {
+                    Node child = node.children[i];
+                    if (node.wildcard != null && child != node.wildcard) {
+                        child = child.overlay(node.wildcard);
+                    }
+                    compiled.put(node.keys[i], compile(child));
+                }
+            }
+            return of(node.value, compiled);
+        }
+
+        /**
+         * Merges a wildcard node into this node. Values of this node win over
+         * those of the wildcard at the same depth, while deeper values of
+         * either are kept.
+         */
+        private Node overlay(Node wildcard) {
+            Tristate value = this.value != Tristate.UNDEFINED ? this.value : wildcard.value;
+            if (wildcard.size == 0) {
+                return withValue(value);
+            }
+            if (this.size == 0) {
+                return wildcard.withValue(value);
+            }
+            Map<String, Node> merged = new HashMap<String, Node>();
+            for (int i = 0; i < this.keys.length; i++) {
+                if (this.keys[i] != null) {
+                    merged.put(this.keys[i], this.children[i]);
+                }
+            }
+            for (int i = 0; i < wildcard.keys.length; i++) {
+                if (wildcard.keys[i] != null) {
+                    Node own = merged.get(wildcard.keys[i]);
+                    merged.put(wildcard.keys[i], own == null ? wildcard.children[i] : own.overlay(wildcard.children[i]));
+                }
+            }
+            return of(value, merged);
+        }
+
+        Node withChild(String key, Node child) {
+            int size = get(key) == null ? this.size + 1 : this.size;
+            int capacity = capacityFor(size);
+            String[] keys = new String[capacity];
+            Node[] children = new Node[capacity];
+            for (int i = 0; i < this.keys.length; i++) {
+                if (this.keys[i] != null && !this.keys[i].equals(key)) {
+                    insert(keys, children, this.keys[i], this.children[i]);
+                }
+            }
+            insert(keys, children, key, child);
+            return new Node(this.value, keys, children, size);
+        }
+
+        static Node of(Tristate value, Map<String, Node> children) {
+            int capacity = capacityFor(children.size());
+            String[] keys = new String[capacity];
+            Node[] nodes = new Node[capacity];
+            for (Map.Entry<String, Node> child : children.entrySet()) {
+                insert(keys, nodes, child.getKey(), child.getValue());
+            }
+            return new Node(value, keys, nodes, children.size());
+        }
+
+        private static int capacityFor(int size) {
+            return size == 0 ? 0 : Integer.highestOneBit(size) << 2;
+        }
+
+        private static void insert(String[] keys, Node[] children, String key, Node child) {
+            int mask = keys.length - 1;
+            int i = hash(key, 0, key.length()) & mask;
+            while (keys[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            children[i] = child;
+        }
+    }
+
+    /**
+     * A mutable node used while building a tree. It starts out as a view of
+     * an existing node, if any, and only copies the children that are
+     * actually changed.
+     */
+    private static final class MutableNode {
+
+        @Nullable private final Node source;
+        @Nullable private Map<String, MutableNode> children;
+        private Tristate value;
+
+        MutableNode(@Nullable Node source) {
+            this.source = source;
+            this.value = source == null ? Tristate.UNDEFINED : source.value;
+        }
+
+        MutableNode resolve(String node) {
+            int length = segmentsEnd(node);
+            if (length < 0) {
+                return this;
+            }
+            MutableNode currentNode = this;
+            int start = 0;
+            while (true) {
+                int end = node.indexOf('.', start);
+                if (end < 0 || end > length) {
+                    end = length;
+                }
+                currentNode = currentNode.child(fold(node.substring(start, end)));
+                if (end == length) {
+                    return currentNode;
+                }
+                start = end + 1;
+            }
+        }
+
+        private MutableNode child(String key) {
+            if (this.children == null) {
+                this.children = new HashMap<String, MutableNode>();
+            }
+            MutableNode child = this.children.get(key);
+            if (child == null) {
+                child = new MutableNode(this.source == null ? null : this.source.get(key));
+                this.children.put(key, child);
+            }
+            return child;
+        }
+
+        Node freeze() {
+            if (this.children == null) {
+                return this.source == null ? Node.EMPTY.withValue(this.value) : this.source.withValue(this.value);
+            }
+            Map<String, Node> frozen = new HashMap<String, Node>();
+            if (this.source != null) {
+                for (int i = 0; i < this.source.keys.length; i++) {
+                    if (this.source.keys[i] != null) {
+                        frozen.put(this.source.keys[i], this.source.children[i]);
+                    }
+                }
+            }
+            for (Map.Entry<String, MutableNode> child : this.children.entrySet()) {
+                Node node = child.getValue().freeze();
+                if (node.value == Tristate.UNDEFINED && node.size == 0) {
+                    frozen.remove(child.getKey());
+                } else {
+                    frozen.put(child.getKey(), node);
+                }
+            }
+            return Node.of(this.value, frozen);
+        }
+    }
+
+    /**
+     * A builder applying many changes to a node tree at once. Changed nodes
+     * are copied once when the tree is {@link #build() built}, rather than
+     * once per change, and unchanged subtrees of the tree the builder started
+     * from are shared.
+     *
+     * <p>Builders are not thread-safe.</p>
+     */
+    public static final class Builder {
+
+        private MutableNode root;
+
+        Builder(@Nullable Node source) {
+            this.root = new MutableNode(source);
+        }
+
+        /**
+         * Sets the value of a node.
+         *
+         * @param node The node path to change the value of
+         * @param value The value to set, or UNDEFINED to remove
+         * @return This builder
+         */
+        public Builder value(String node, Tristate value) {
+            checkNotNull(node, "node");
+            checkNotNull(value, "value");
+            if (isNegated(node)) {
+                this.root.resolve(node.substring(1)).value = negate(value);
+            } else {
+                this.root.resolve(node).value = value;
+            }
+            return this;
+        }
+
+        /**
+         * Sets the values of many nodes.
+         *
+         * @param values The values to set, where UNDEFINED removes a value
+         * @return This builder
+         */
+        public Builder values(Map<String, Tristate> values) {
+            for (Map.Entry<String, Tristate> ent : values.entrySet()) {
+                value(ent.getKey(), ent.getValue());
+            }
+            return this;
+        }
+
+        /**
+         * Sets the fallback value for any completely undefined nodes.
+         *
+         * @param defaultValue The default value
+         * @return This builder
+         */
+        public Builder defaultValue(Tristate defaultValue) {
+            this.root.value = checkNotNull(defaultValue, "defaultValue");
+            return this;
+        }
+
+        /**
+         * Builds an immutable node tree holding the current values. The
+         * builder can be used further afterwards.
+         *
+         * @return The new node tree
+         */
+        public NodeTree build() {
+            Node frozen = this.root.freeze();
+            this.root = new MutableNode(frozen);
+            return new NodeTree(frozen);
         }
     }
 }
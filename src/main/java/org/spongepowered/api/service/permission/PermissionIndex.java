@@ -0,0 +1,298 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.permission;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.spongepowered.api.service.permission.context.Context;
+import org.spongepowered.api.util.Tristate;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * An inverted index from permission nodes to the subjects that set them,
+ * used to find every subject with a given permission without evaluating
+ * all subjects.
+ *
+ * <p>The index records, for every tracked subject, the nodes it has an
+ * explicit value for in any context combination, and which subjects
+ * inherit from it. A query for a permission only evaluates the subjects that
+ * set that permission or one of its parent nodes, and the subjects that
+ * inherit from those. Parents are only followed if they are tracked as well,
+ * so groups should be tracked along with the subjects that inherit from
+ * them.</p>
+ *
+ * <p>Subjects are {@link #track(Subject) tracked} explicitly. If their data
+ * is {@link MemorySubjectData}, the index listens for changes itself,
+ * otherwise {@link #update(Subject)} has to be called after each change.
+ * Values are resolved through a {@link PermissionResolver} and do not take
+ * the default data into account.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+public class PermissionIndex {
+
+    private static final String WILDCARD = "*";
+
+    private final PermissionResolver resolver;
+    private final ConcurrentMap<Map.Entry<String, String>, Tracked> subjects = Maps.newConcurrentMap();
+    private final ConcurrentMap<String, Set<Map.Entry<String, String>>> nodes = Maps.newConcurrentMap();
+    private final ConcurrentMap<Map.Entry<String, String>, Set<Map.Entry<String, String>>> children = Maps.newConcurrentMap();
+
+    /**
+     * Creates a new, empty index.
+     *
+     * @param resolver The resolver used to evaluate candidate subjects
+     */
+    public PermissionIndex(PermissionResolver resolver) {
+        this.resolver = checkNotNull(resolver, "resolver");
+    }
+
+    /**
+     * Starts tracking the given subject, indexing its current data.
+     *
+     * @param subject The subject to track
+     */
+    public void track(Subject subject) {
+        checkNotNull(subject, "subject");
+        Map.Entry<String, String> key = identify(subject);
+        Tracked tracked = new Tracked(subject);
+        if (this.subjects.putIfAbsent(key, tracked) != null) {
+            return;
+        }
+        for (SubjectData data : getData(subject)) {
+            if (data instanceof MemorySubjectData) {
+                ((MemorySubjectData) data).addListener(tracked);
+            }
+        }
+        update(subject);
+    }
+
+    /**
+     * Stops tracking the given subject, removing it from the index.
+     *
+     * @param subject The subject to stop tracking
+     * @return Whether the subject was tracked
+     */
+    public boolean untrack(Subject subject) {
+        checkNotNull(subject, "subject");
+        Map.Entry<String, String> key = identify(subject);
+        @Nullable Tracked tracked = this.subjects.remove(key);
+        if (tracked == null) {
+            return false;
+        }
+        for (SubjectData data : getData(subject)) {
+            if (data instanceof MemorySubjectData) {
+                ((MemorySubjectData) data).removeListener(tracked);
+            }
+        }
+        synchronized (this) {
+            reindex(key, tracked, Collections.<String>emptySet(), Collections.<Map.Entry<String, String>>emptySet());
+        }
+        return true;
+    }
+
+    /**
+     * Updates the index entries of a tracked subject from its current data.
+     *
+     * @param subject The subject that changed
+     */
+    public void update(Subject subject) {
+        checkNotNull(subject, "subject");
+        Map.Entry<String, String> key = identify(subject);
+        @Nullable Tracked tracked = this.subjects.get(key);
+        if (tracked == null) {
+            return;
+        }
+
+        Set<String> nodes = new HashSet<String>();
+        Set<Map.Entry<String, String>> parents = new HashSet<Map.Entry<String, String>>();
+        for (SubjectData data : getData(subject)) {
+            for (Map<String, Boolean> permissions : data.getAllPermissions().values()) {
+                for (String permission : permissions.keySet()) {
+                    nodes.add(indexKey(permission));
+                }
+            }
+            for (List<Subject> inherited : data.getAllParents().values()) {
+                for (Subject parent : inherited) {
+                    parents.add(identify(parent));
+                }
+            }
+        }
+        synchronized (this) {
+            if (this.subjects.get(key) == tracked) {
+                reindex(key, tracked, nodes, parents);
+            }
+        }
+    }
+
+    private void reindex(Map.Entry<String, String> key, Tracked tracked, Set<String> nodes, Set<Map.Entry<String, String>> parents) {
+        for (String node : Sets.difference(tracked.nodes, nodes)) {
+            remove(this.nodes, node, key);
+        }
+        for (String node : Sets.difference(nodes, tracked.nodes)) {
+            add(this.nodes, node, key);
+        }
+        for (Map.Entry<String, String> parent : Sets.difference(tracked.parents, parents)) {
+            remove(this.children, parent, key);
+        }
+        for (Map.Entry<String, String> parent : Sets.difference(parents, tracked.parents)) {
+            add(this.children, parent, key);
+        }
+        tracked.nodes = ImmutableSet.copyOf(nodes);
+        tracked.parents = ImmutableSet.copyOf(parents);
+    }
+
+    private static <K> void add(ConcurrentMap<K, Set<Map.Entry<String, String>>> index, K key, Map.Entry<String, String> subject) {
+        @Nullable Set<Map.Entry<String, String>> subjects = index.get(key);
+        if (subjects == null) {
+            subjects = Sets.newSetFromMap(Maps.<Map.Entry<String, String>, Boolean>newConcurrentMap());
+            index.put(key, subjects);
+        }
+        subjects.add(subject);
+    }
+
+    private static <K> void remove(ConcurrentMap<K, Set<Map.Entry<String, String>>> index, K key, Map.Entry<String, String> subject) {
+        @Nullable Set<Map.Entry<String, String>> subjects = index.get(key);
+        if (subjects != null) {
+            subjects.remove(subject);
+            if (subjects.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Return all tracked subjects of a collection with the given permission
+     * set, either directly or through inheritance.
+     *
+     * @param collection The identifier of the collection the subjects
+     *     belong to
+     * @param contexts The context combination to check for permissions in
+     * @param permission The permission to check
+     * @return The subjects with this permission set, and the value this
+     *     permission is set to
+     * @see SubjectCollection#getAllWithPermission(Set, String)
+     */
+    public Map<Subject, Boolean> getAllWithPermission(String collection, Set<Context> contexts, String permission) {
+        checkNotNull(collection, "collection");
+        checkNotNull(contexts, "contexts");
+        checkNotNull(permission, "permission");
+
+        // A value set on any parent node of the permission applies to it, as may any wildcard
+        Set<Map.Entry<String, String>> candidates = new HashSet<Map.Entry<String, String>>();
+        Queue<Map.Entry<String, String>> queue = new ArrayDeque<Map.Entry<String, String>>();
+        String node = NodeTree.fold(permission);
+        addCandidates(WILDCARD, candidates, queue);
+        for (int end = node.indexOf('.'); end != -1; end = node.indexOf('.', end + 1)) {
+            addCandidates(node.substring(0, end), candidates, queue);
+        }
+        addCandidates(node, candidates, queue);
+
+        // Any subject inheriting from a candidate may be affected too
+        while (!queue.isEmpty()) {
+            @Nullable Set<Map.Entry<String, String>> inheriting = this.children.get(queue.poll());
+            if (inheriting != null) {
+                for (Map.Entry<String, String> child : inheriting) {
+                    if (candidates.add(child)) {
+                        queue.add(child);
+                    }
+                }
+            }
+        }
+
+        ImmutableMap.Builder<Subject, Boolean> ret = ImmutableMap.builder();
+        for (Map.Entry<String, String> candidate : candidates) {
+            @Nullable Tracked tracked = this.subjects.get(candidate);
+            if (tracked == null || !candidate.getKey().equals(collection)) {
+                continue;
+            }
+            Tristate value = this.resolver.getEffectiveTree(tracked.subject, contexts).get(permission);
+            if (value != Tristate.UNDEFINED) {
+                ret.put(tracked.subject, value.asBoolean());
+            }
+        }
+        return ret.build();
+    }
+
+    private void addCandidates(String node, Set<Map.Entry<String, String>> candidates, Queue<Map.Entry<String, String>> queue) {
+        @Nullable Set<Map.Entry<String, String>> subjects = this.nodes.get(node);
+        if (subjects != null) {
+            for (Map.Entry<String, String> subject : subjects) {
+                if (candidates.add(subject)) {
+                    queue.add(subject);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the key a node is indexed under. All nodes containing a wildcard
+     * share a single key, which is checked by every query.
+     */
+    private static String indexKey(String permission) {
+        String node = NodeTree.fold(permission.startsWith("-") ? permission.substring(1) : permission);
+        return node.equals(WILDCARD) || node.startsWith(WILDCARD + ".") || node.endsWith("." + WILDCARD) || node.contains("." + WILDCARD + ".")
+                ? WILDCARD : node;
+    }
+
+    private static Set<SubjectData> getData(Subject subject) {
+        return ImmutableSet.of(subject.getTransientData(), subject.getData());
+    }
+
+    private static Map.Entry<String, String> identify(Subject subject) {
+        return Maps.immutableEntry(subject.getContainingCollection().getIdentifier(), subject.getIdentifier());
+    }
+
+    private final class Tracked implements SubjectDataListener {
+
+        final Subject subject;
+        Set<String> nodes = ImmutableSet.of();
+        Set<Map.Entry<String, String>> parents = ImmutableSet.of();
+
+        Tracked(Subject subject) {
+            this.subject = subject;
+        }
+
+        @Override
+        public void onUpdate(SubjectData data) {
+            update(this.subject);
+        }
+    }
+
+}
@@ -0,0 +1,367 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.permission;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Maps;
+import org.spongepowered.api.service.permission.context.Context;
+import org.spongepowered.api.service.permission.context.ContextSet;
+import org.spongepowered.api.util.Tristate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+/**
+ * Resolves the value of a permission for a {@link Subject}, remembering the
+ * results.
+ *
+ * <p>Resolving a permission consults, in order, the transient data of the
+ * subject, its persistent data, its parents (transient parents first, each
+ * resolved in the same way) and finally the
+ * {@link PermissionService#getDefaultData() default data}. The first defined
+ * value wins. Only the exact context combination that is passed in is
+ * consulted.</p>
+ *
+ * <p>Resolved values are kept in a bounded cache keyed by subject, context
+ * combination and permission, so repeated checks are a single hash lookup.
+ * Every entry is stamped with the epoch that was current when it was
+ * resolved. {@link #invalidate()} bumps the epoch, which makes all existing
+ * entries stale at once. This resolver is a {@link SubjectDataListener}
+ * that invalidates itself on any update, so it should be
+ * {@link MemorySubjectData#addListener(SubjectDataListener) registered}
+ * with every data object of the permission service, including the default
+ * data.</p>
+ *
+ * <p>Underneath the value cache, the inheritance of each subject is
+ * flattened into an {@link #getEffectiveTree(Subject, Set) effective tree}
+ * per context combination, so resolving a value that is not cached yet is
+ * a single tree lookup however deep the inheritance is. An effective tree
+ * remembers which data objects it was built from. When one of them changes,
+ * only the trees built from it are rebuilt, on top of the still valid trees
+ * of unaffected parents.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+public class PermissionResolver implements SubjectDataListener {
+
+    /**
+     * The number of resolved values and effective trees kept by default.
+     */
+    public static final long DEFAULT_MAXIMUM_SIZE = 100000;
+
+    private final PermissionService service;
+    private final AtomicLong epoch = new AtomicLong();
+    private final ConcurrentMap<SubjectData, Long> versions = new MapMaker().weakKeys().makeMap();
+    private final Cache<Key, Resolved> cache;
+    private final Cache<Key, EffectiveTree> trees;
+
+    /**
+     * Creates a new resolver caching up to {@link #DEFAULT_MAXIMUM_SIZE}
+     * values and trees.
+     *
+     * @param service The service providing the default data
+     */
+    public PermissionResolver(PermissionService service) {
+        this(service, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * Creates a new resolver.
+     *
+     * @param service The service providing the default data
+     * @param maximumSize The maximum number of resolved values, and of
+     *     effective trees, to cache
+     */
+    public PermissionResolver(PermissionService service, long maximumSize) {
+        checkNotNull(service, "service");
+        checkArgument(maximumSize >= 0, "maximumSize cannot be negative");
+        this.service = service;
+        this.cache = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+        this.trees = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+    }
+
+    /**
+     * Returns the calculated value set for a given permission.
+     *
+     * @param subject The subject to check
+     * @param contexts The contexts to check for permissions in
+     * @param permission The permission to check
+     * @return The tristate true/false/unset value for permissions
+     */
+    public Tristate getPermissionValue(Subject subject, Set<Context> contexts, String permission) {
+        checkNotNull(subject, "subject");
+        checkNotNull(contexts, "contexts");
+        checkNotNull(permission, "permission");
+
+        long epoch = this.epoch.get();
+        Key key = new Key(subject, contexts, permission);
+        @Nullable Resolved resolved = this.cache.getIfPresent(key);
+        if (resolved != null && resolved.epoch == epoch) {
+            return resolved.value;
+        }
+
+        Tristate value = resolve(subject, contexts, permission);
+        this.cache.put(key.immutableCopy(), new Resolved(epoch, value));
+        return value;
+    }
+
+    /**
+     * Returns the effective tree of a subject: its own permissions merged
+     * with those of all of its parents, in priority order. The default data
+     * is not included.
+     *
+     * <p>If the inheritance of the subject contains a cycle, each parent is
+     * only merged in the first time it is reached.</p>
+     *
+     * @param subject The subject
+     * @param contexts The context combination
+     * @return The effective node tree
+     */
+    public NodeTree getEffectiveTree(Subject subject, Set<Context> contexts) {
+        checkNotNull(subject, "subject");
+        checkNotNull(contexts, "contexts");
+        return flatten(subject, contexts, new HashMap<Map.Entry<String, String>, Integer>()).tree;
+    }
+
+    /**
+     * Gets the current epoch, which changes whenever any data that
+     * permissions are resolved from changes.
+     *
+     * @return The current epoch
+     */
+    public long getEpoch() {
+        return this.epoch.get();
+    }
+
+    /**
+     * Marks every cached value as stale.
+     *
+     * <p>Effective trees are only rebuilt if data they were built from has
+     * been {@link #onUpdate(SubjectData) updated}.</p>
+     */
+    public void invalidate() {
+        this.epoch.incrementAndGet();
+    }
+
+    @Override
+    public void onUpdate(SubjectData data) {
+        this.versions.put(data, this.epoch.incrementAndGet());
+    }
+
+    /**
+     * Resolves the value of a permission without consulting the value
+     * cache.
+     *
+     * @param subject The subject to check
+     * @param contexts The contexts to check for permissions in
+     * @param permission The permission to check
+     * @return The tristate true/false/unset value for permissions
+     */
+    protected Tristate resolve(Subject subject, Set<Context> contexts, String permission) {
+        Tristate value = getEffectiveTree(subject, contexts).get(permission);
+        if (value == Tristate.UNDEFINED) {
+            value = getNodeTree(this.service.getDefaultData(), contexts).get(permission);
+        }
+        return value;
+    }
+
+    /**
+     * Flattens the inheritance of a subject, reusing the cached effective
+     * trees of parents that are still current.
+     *
+     * @param stack The subjects currently being flattened, mapped to their
+     *     depth, to detect cycles
+     */
+    private EffectiveTree flatten(Subject subject, Set<Context> contexts, Map<Map.Entry<String, String>, Integer> stack) {
+        Key key = new Key(subject, contexts, "");
+        @Nullable EffectiveTree cached = this.trees.getIfPresent(key);
+        if (cached != null && cached.isCurrent() && Collections.disjoint(cached.members, stack.keySet())) {
+            return cached;
+        }
+
+        Map.Entry<String, String> identifier = identify(subject);
+        int depth = stack.size();
+        stack.put(identifier, depth);
+
+        List<SubjectData> dependencies = new ArrayList<SubjectData>();
+        List<Long> versions = new ArrayList<Long>();
+        Set<Map.Entry<String, String>> members = new HashSet<Map.Entry<String, String>>();
+        members.add(identifier);
+        int cut = Integer.MAX_VALUE;
+
+        SubjectData transientData = subject.getTransientData();
+        SubjectData data = subject.getData();
+        List<SubjectData> sources = data == transientData
+                ? Collections.singletonList(data) : Arrays.asList(transientData, data);
+
+        NodeTree tree = null;
+        for (SubjectData source : sources) {
+            // Record the version before reading so that a concurrent update leaves this tree stale
+            dependencies.add(source);
+            versions.add(getVersion(source));
+            NodeTree own = getNodeTree(source, contexts);
+            tree = tree == null ? own : tree.withFallback(own);
+        }
+        for (SubjectData source : sources) {
+            for (Subject parent : source.getParents(contexts)) {
+                Integer parentDepth = stack.get(identify(parent));
+                if (parentDepth != null) {
+                    cut = Math.min(cut, parentDepth);
+                    continue;
+                }
+                EffectiveTree inherited = flatten(parent, contexts, stack);
+                cut = Math.min(cut, inherited.cut);
+                tree = tree.withFallback(inherited.tree);
+                dependencies.addAll(inherited.dependencies);
+                versions.addAll(inherited.versions);
+                members.addAll(inherited.members);
+            }
+        }
+        stack.remove(identifier);
+
+        EffectiveTree flattened = new EffectiveTree(tree, dependencies, versions, members, cut < depth ? cut : Integer.MAX_VALUE);
+        if (flattened.cut == Integer.MAX_VALUE) {
+            // Only trees that did not stop at a subject further up the stack are the same from every starting point
+            this.trees.put(key.immutableCopy(), flattened);
+        }
+        return flattened;
+    }
+
+    private long getVersion(SubjectData data) {
+        @Nullable Long version = this.versions.get(data);
+        return version == null ? 0 : version;
+    }
+
+    private static NodeTree getNodeTree(SubjectData data, Set<Context> contexts) {
+        if (data instanceof MemorySubjectData) {
+            return ((MemorySubjectData) data).getNodeTree(contexts);
+        }
+        return NodeTree.of(data.getPermissions(contexts));
+    }
+
+    private static Map.Entry<String, String> identify(Subject subject) {
+        return Maps.immutableEntry(subject.getContainingCollection().getIdentifier(), subject.getIdentifier());
+    }
+
+    private final class EffectiveTree {
+
+        final NodeTree tree;
+        final List<SubjectData> dependencies;
+        final List<Long> versions;
+        final Set<Map.Entry<String, String>> members;
+        final int cut;
+
+        EffectiveTree(NodeTree tree, List<SubjectData> dependencies, List<Long> versions, Set<Map.Entry<String, String>> members, int cut) {
+            this.tree = tree;
+            this.dependencies = dependencies;
+            this.versions = versions;
+            this.members = members;
+            this.cut = cut;
+        }
+
+        boolean isCurrent() {
+            for (int i = 0; i < this.dependencies.size(); i++) {
+                if (getVersion(this.dependencies.get(i)) != this.versions.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Resolved {
+
+        final long epoch;
+        final Tristate value;
+
+        Resolved(long epoch, Tristate value) {
+            this.epoch = epoch;
+            this.value = value;
+        }
+    }
+
+    private static final class Key {
+
+        private final String collection;
+        private final String subject;
+        private final Set<Context> contexts;
+        private final String permission;
+
+        Key(Subject subject, Set<Context> contexts, String permission) {
+            this(subject.getContainingCollection().getIdentifier(), subject.getIdentifier(), contexts, permission);
+        }
+
+        private Key(String collection, String subject, Set<Context> contexts, String permission) {
+            this.collection = collection;
+            this.subject = subject;
+            this.contexts = contexts;
+            this.permission = permission;
+        }
+
+        Key immutableCopy() {
+            return new Key(this.collection, this.subject, ContextSet.of(this.contexts), this.permission);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return this.permission.equals(key.permission)
+                    && this.subject.equals(key.subject)
+                    && this.collection.equals(key.collection)
+                    && this.contexts.equals(key.contexts);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = this.collection.hashCode();
+            result = 31 * result + this.subject.hashCode();
+            result = 31 * result + this.contexts.hashCode();
+            result = 31 * result + this.permission.hashCode();
+            return result;
+        }
+    }
+
+}
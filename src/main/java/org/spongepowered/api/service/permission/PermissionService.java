@@ -25,6 +25,7 @@
 package org.spongepowered.api.service.permission;
 
 import com.google.common.base.Optional;
+import org.spongepowered.api.service.permission.context.ContextCache;
 import org.spongepowered.api.service.permission.context.ContextCalculator;
 
 import java.util.Map;
@@ -82,9 +83,22 @@ public interface PermissionService {
 
     /**
      * Register a function that calculates contexts relevant to a given user at
-     * the time the function is called.
+     * the time the function is called. The results of the calculator may be
+     * cached for the rest of the tick.
      *
      * @param calculator The context calculator to register
      */
     void registerContextCalculator(ContextCalculator calculator);
+
+    /**
+     * Register a function that calculates contexts relevant to a given user,
+     * declaring how long its results may be cached. A calculator registered
+     * with {@link ContextCache.Lifetime#UNTIL_INVALIDATED} is responsible for
+     * signalling when its results change.
+     *
+     * @param calculator The context calculator to register
+     * @param lifetime How long the results of the calculator stay valid
+     * @see ContextCache
+     */
+    void registerContextCalculator(ContextCalculator calculator, ContextCache.Lifetime lifetime);
 }
@@ -27,6 +27,7 @@ package org.spongepowered.api.service.permission;
 
 import com.google.common.base.Optional;
 import org.spongepowered.api.service.permission.context.Context;
+import org.spongepowered.api.service.permission.context.ContextSet;
 import org.spongepowered.api.util.Tristate;
 import org.spongepowered.api.util.command.CommandSource;
 
@@ -178,7 +179,7 @@ public interface Subject {
      * from {@link PermissionService#registerContextCalculator(org.spongepowered.api.service.permission.context.ContextCalculator)}.
      * The result of these calculations may be cached.
      *
-     * @return An immutable set of active contexts
+     * @return The canonical set of active contexts
      */
-    Set<Context> getActiveContexts();
+    ContextSet getActiveContexts();
 }
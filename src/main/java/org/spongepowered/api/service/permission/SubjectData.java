@@ -25,9 +25,9 @@
 package org.spongepowered.api.service.permission;
 
 import org.spongepowered.api.service.permission.context.Context;
+import org.spongepowered.api.service.permission.context.ContextSet;
 import org.spongepowered.api.util.Tristate;
 
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -44,7 +44,7 @@ public interface SubjectData {
      * A convenience constant for the global context combination (the empty
      * set), if you want your code to look especially fancy.
      */
-    Set<Context> GLOBAL_CONTEXT = Collections.emptySet();
+    Set<Context> GLOBAL_CONTEXT = ContextSet.EMPTY;
 
     /**
      * Return all permissions associated with this data object.
@@ -77,6 +77,18 @@ public interface SubjectData {
      */
     boolean setPermission(Set<Context> contexts, String permission, Tristate value);
 
+    /**
+     * Set many permissions at once, as a single change. Setting a value as
+     * {@link Tristate#UNDEFINED} unsets the permission. An empty set of
+     * contexts applies these permissions to the global context.
+     *
+     * @param contexts The particular combination of contexts to set these
+     *                 permissions in
+     * @param values The permissions to set, and the values to set them to
+     * @return Whether any change occurred
+     */
+    boolean setPermissions(Set<Context> contexts, Map<String, Tristate> values);
+
     /**
      * Clear all permissions set in any context.
      *
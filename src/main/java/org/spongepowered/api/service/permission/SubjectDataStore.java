@@ -0,0 +1,581 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.permission;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spongepowered.api.service.permission.context.Context;
+import org.spongepowered.api.util.Tristate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.Nullable;
+
+/**
+ * A persistent store of subject data, backed by a compacted snapshot file
+ * and an append-only log in a local directory.
+ *
+ * <p>Only an index of record offsets is kept in memory for every stored
+ * subject. The data of a subject is loaded on first access as a
+ * {@link MemorySubjectData}, and the least recently used data is evicted
+ * once more than the configured number of subjects are loaded. Subjects
+ * that are {@link #setOnline(String, String, boolean) online} are never
+ * evicted.</p>
+ *
+ * <p>Every change to loaded data is written to the log as a record holding
+ * the full data of the subject. Records are written asynchronously by a
+ * single writer thread, which commits all records that accumulated since
+ * its last write with a single sync of the log. {@link #compact()} rewrites
+ * the latest record of every subject into a new snapshot and empties the
+ * log.</p>
+ *
+ * <p>Data objects obtained from this store should not be kept once the
+ * subject is offline, as a later {@link #get(String, String)} may load a new
+ * copy after the old one was evicted.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+public class SubjectDataStore implements Closeable {
+
+    /**
+     * The number of offline subjects kept loaded by default.
+     */
+    public static final int DEFAULT_MAXIMUM_LOADED = 10000;
+
+    private static final Logger log = LoggerFactory.getLogger(SubjectDataStore.class);
+    private static final String SNAPSHOT_FILE = "subjects.dat";
+    private static final String LOG_FILE = "subjects.log";
+    private static final String OLD_SUFFIX = ".old";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final PermissionService service;
+    private final File directory;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ConcurrentMap<Map.Entry<String, String>, Long> index = Maps.newConcurrentMap();
+    private final ConcurrentMap<Map.Entry<String, String>, byte[]> pending = Maps.newConcurrentMap();
+    private final ConcurrentMap<Map.Entry<String, String>, MemorySubjectData> online = Maps.newConcurrentMap();
+    private final Cache<Map.Entry<String, String>, MemorySubjectData> loaded;
+    private final ExecutorService writer;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private RandomAccessFile snapshot;
+    private final RandomAccessFile logFile;
+
+    /**
+     * Opens the store in the given directory, keeping up to
+     * {@link #DEFAULT_MAXIMUM_LOADED} offline subjects loaded.
+     *
+     * @param service The service to request parent subjects from
+     * @param directory The directory holding the store files
+     * @throws IOException If the store could not be opened
+     */
+    public SubjectDataStore(PermissionService service, File directory) throws IOException {
+        this(service, directory, DEFAULT_MAXIMUM_LOADED);
+    }
+
+    /**
+     * Opens the store in the given directory, creating it if necessary.
+     *
+     * @param service The service to request parent subjects from
+     * @param directory The directory holding the store files
+     * @param maximumLoaded The maximum number of offline subjects to keep
+     *     loaded
+     * @throws IOException If the store could not be opened
+     */
+    public SubjectDataStore(PermissionService service, File directory, int maximumLoaded) throws IOException {
+        checkNotNull(service, "service");
+        checkNotNull(directory, "directory");
+        checkArgument(maximumLoaded >= 0, "maximumLoaded cannot be negative");
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        this.service = service;
+        this.directory = directory;
+        this.loaded = CacheBuilder.newBuilder().maximumSize(maximumLoaded).build();
+
+        // A compaction that was interrupted before the new snapshot was in place
+        File snapshotFile = new File(directory, SNAPSHOT_FILE);
+        File oldSnapshotFile = new File(directory, SNAPSHOT_FILE + OLD_SUFFIX);
+        if (oldSnapshotFile.exists() && !snapshotFile.exists() && !oldSnapshotFile.renameTo(snapshotFile)) {
+            throw new IOException("Could not restore " + oldSnapshotFile);
+        }
+        this.snapshot = new RandomAccessFile(snapshotFile, "rw");
+        this.logFile = new RandomAccessFile(new File(directory, LOG_FILE), "rw");
+        scan(this.snapshot.getChannel(), false);
+        scan(this.logFile.getChannel(), true);
+        if (oldSnapshotFile.exists() && !oldSnapshotFile.delete()) {
+            log.warn("Could not delete {}", oldSnapshotFile);
+        }
+
+        this.writer = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("permission-store-writer")
+                .setDaemon(true)
+                .build());
+    }
+
+    /**
+     * Gets the data of a subject, loading it if necessary. Subjects without
+     * stored data are given empty data, which is stored once it changes.
+     *
+     * @param collection The identifier of the collection of the subject
+     * @param identifier The identifier of the subject
+     * @return The data of the subject
+     */
+    public MemorySubjectData get(String collection, String identifier) {
+        final Map.Entry<String, String> key = Maps.immutableEntry(checkNotNull(collection, "collection"),
+                checkNotNull(identifier, "identifier"));
+        @Nullable MemorySubjectData data = this.online.get(key);
+        if (data != null) {
+            return data;
+        }
+        try {
+            return this.loaded.get(key, new Callable<MemorySubjectData>() {
+
+                @Override
+                public MemorySubjectData call() throws IOException {
+                    return load(key);
+                }
+            });
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    /**
+     * Returns whether any data is stored for the given subject.
+     *
+     * @param collection The identifier of the collection of the subject
+     * @param identifier The identifier of the subject
+     * @return Whether any data is stored
+     */
+    public boolean hasRegistered(String collection, String identifier) {
+        Map.Entry<String, String> key = Maps.immutableEntry(collection, identifier);
+        return this.index.containsKey(key) || this.pending.containsKey(key);
+    }
+
+    /**
+     * Marks a subject as online or offline. The data of online subjects
+     * stays loaded, while offline subjects may be evicted.
+     *
+     * @param collection The identifier of the collection of the subject
+     * @param identifier The identifier of the subject
+     * @param online Whether the subject is online
+     */
+    public void setOnline(String collection, String identifier, boolean online) {
+        Map.Entry<String, String> key = Maps.immutableEntry(collection, identifier);
+        if (online) {
+            this.online.put(key, get(collection, identifier));
+        } else {
+            @Nullable MemorySubjectData data = this.online.remove(key);
+            if (data != null) {
+                this.loaded.put(key, data);
+            }
+        }
+    }
+
+    /**
+     * Writes all pending changes to disk, blocking until they are synced.
+     *
+     * @throws IOException If the changes could not be written
+     */
+    public void flush() throws IOException {
+        await(new Callable<Void>() {
+
+            @Override
+            public Void call() throws IOException {
+                writePending();
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Writes the latest data of every subject into a new snapshot and
+     * empties the log, blocking until done.
+     *
+     * @throws IOException If the store could not be compacted
+     */
+    public void compact() throws IOException {
+        await(new Callable<Void>() {
+
+            @Override
+            public Void call() throws IOException {
+                writePending();
+                writeSnapshot();
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Writes all pending changes and closes the store.
+     *
+     * @throws IOException If the changes could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            this.writer.shutdown();
+            try {
+                this.writer.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.lock.writeLock().lock();
+            try {
+                this.snapshot.close();
+                this.logFile.close();
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private void await(Callable<Void> task) throws IOException {
+        try {
+            this.writer.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the permission store", e);
+        } catch (ExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause(), IOException.class);
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    private MemorySubjectData load(Map.Entry<String, String> key) throws IOException {
+        MemorySubjectData data = new MemorySubjectData(this.service);
+        @Nullable byte[] record = this.pending.get(key);
+        if (record == null) {
+            record = read(key);
+        }
+        if (record != null) {
+            decode(record, data);
+        }
+        data.addListener(new RecordWriter(key));
+        return data;
+    }
+
+    @Nullable
+    private byte[] read(Map.Entry<String, String> key) throws IOException {
+        this.lock.readLock().lock();
+        try {
+            @Nullable Long position = this.index.get(key);
+            if (position == null) {
+                return null;
+            }
+            // Records in the log are stored as the complement of their offset
+            return position >= 0 ? read(this.snapshot.getChannel(), position) : read(this.logFile.getChannel(), ~position);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private static byte[] read(FileChannel channel, long position) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        readFully(channel, length, position);
+        ByteBuffer record = ByteBuffer.allocate(length.getInt(0));
+        readFully(channel, record, position + 4);
+        return record.array();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    private void scan(FileChannel channel, boolean isLog) throws IOException {
+        long size = channel.size();
+        long position = 0;
+        channel.position(0);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        while (position + 4 <= size) {
+            int length = in.readInt();
+            if (length < 0 || position + 4 + length > size) {
+                break;
+            }
+            byte[] record = new byte[length];
+            in.readFully(record);
+            this.index.put(readKey(record), isLog ? ~position : position);
+            position += 4 + length;
+        }
+        if (position < size) {
+            // The end of a record that was being written when the server stopped
+            log.warn("Discarding {} bytes of an incomplete record in the permission store", size - position);
+            channel.truncate(position);
+        }
+    }
+
+    private void scheduleFlush() {
+        if (this.flushScheduled.compareAndSet(false, true)) {
+            this.writer.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        writePending();
+                    } catch (IOException e) {
+                        log.error("Failed to write permission data", e);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Appends all pending records to the log with a single write and sync.
+     * Only called from the writer thread.
+     */
+    private void writePending() throws IOException {
+        // Reset first, so that changes made from here on schedule another flush
+        this.flushScheduled.set(false);
+        if (this.pending.isEmpty()) {
+            return;
+        }
+        Map<Map.Entry<String, String>, byte[]> batch = new HashMap<Map.Entry<String, String>, byte[]>(this.pending);
+        Map<Map.Entry<String, String>, Long> offsets = new HashMap<Map.Entry<String, String>, Long>();
+        FileChannel channel = this.logFile.getChannel();
+        long start = channel.size();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (Map.Entry<Map.Entry<String, String>, byte[]> record : batch.entrySet()) {
+            offsets.put(record.getKey(), start + bytes.size());
+            out.writeInt(record.getValue().length);
+            out.write(record.getValue());
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, start + buffer.position());
+        }
+        channel.force(false);
+
+        for (Map.Entry<Map.Entry<String, String>, Long> offset : offsets.entrySet()) {
+            this.index.put(offset.getKey(), ~offset.getValue());
+            this.pending.remove(offset.getKey(), batch.get(offset.getKey()));
+        }
+    }
+
+    /**
+     * Replaces the snapshot with the latest records of all non-empty subjects
+     * and empties the log. Only called from the writer thread.
+     */
+    private void writeSnapshot() throws IOException {
+        File snapshotFile = new File(this.directory, SNAPSHOT_FILE);
+        File oldSnapshotFile = new File(this.directory, SNAPSHOT_FILE + OLD_SUFFIX);
+        File newSnapshotFile = new File(this.directory, SNAPSHOT_FILE + TEMPORARY_SUFFIX);
+        Map<Map.Entry<String, String>, Long> offsets = new HashMap<Map.Entry<String, String>, Long>();
+
+        this.lock.writeLock().lock();
+        try {
+            FileOutputStream file = new FileOutputStream(newSnapshotFile);
+            try {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file));
+                long position = 0;
+                for (Map.Entry<String, String> key : this.index.keySet()) {
+                    @Nullable byte[] record = read(key);
+                    if (record == null || isEmpty(record)) {
+                        continue;
+                    }
+                    offsets.put(key, position);
+                    out.writeInt(record.length);
+                    out.write(record);
+                    position += 4 + record.length;
+                }
+                out.flush();
+                file.getFD().sync();
+            } finally {
+                file.close();
+            }
+
+            // The log is only emptied once the new snapshot is in place, see the constructor for recovery
+            this.snapshot.close();
+            if (!snapshotFile.renameTo(oldSnapshotFile) || !newSnapshotFile.renameTo(snapshotFile)) {
+                throw new IOException("Could not replace " + snapshotFile);
+            }
+            this.snapshot = new RandomAccessFile(snapshotFile, "rw");
+            this.logFile.getChannel().truncate(0);
+            this.logFile.getChannel().force(true);
+            this.index.clear();
+            this.index.putAll(offsets);
+            if (!oldSnapshotFile.delete()) {
+                log.warn("Could not delete {}", oldSnapshotFile);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private static Map.Entry<String, String> readKey(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        return Maps.immutableEntry(in.readUTF(), in.readUTF());
+    }
+
+    private static boolean isEmpty(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        in.readUTF();
+        in.readUTF();
+        return in.readInt() == 0 && in.readInt() == 0;
+    }
+
+    private static byte[] encode(Map.Entry<String, String> key, MemorySubjectData data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(key.getKey());
+        out.writeUTF(key.getValue());
+
+        Map<Set<Context>, Map<String, Boolean>> permissions = data.getAllPermissions();
+        out.writeInt(permissions.size());
+        for (Map.Entry<Set<Context>, Map<String, Boolean>> ent : permissions.entrySet()) {
+            writeContexts(out, ent.getKey());
+            out.writeInt(ent.getValue().size());
+            for (Map.Entry<String, Boolean> permission : ent.getValue().entrySet()) {
+                out.writeUTF(permission.getKey());
+                out.writeBoolean(permission.getValue());
+            }
+        }
+
+        Map<Set<Context>, List<Map.Entry<String, String>>> parents = data.getAllParentIdentifiers();
+        out.writeInt(parents.size());
+        for (Map.Entry<Set<Context>, List<Map.Entry<String, String>>> ent : parents.entrySet()) {
+            writeContexts(out, ent.getKey());
+            out.writeInt(ent.getValue().size());
+            for (Map.Entry<String, String> parent : ent.getValue()) {
+                out.writeUTF(parent.getKey());
+                out.writeUTF(parent.getValue());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void decode(byte[] record, MemorySubjectData data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        in.readUTF();
+        in.readUTF();
+
+        for (int i = in.readInt(); i > 0; i--) {
+            Set<Context> contexts = readContexts(in);
+            NodeTree.Builder permissions = NodeTree.builder();
+            for (int j = in.readInt(); j > 0; j--) {
+                permissions.value(in.readUTF(), Tristate.fromBoolean(in.readBoolean()));
+            }
+            data.load(contexts, permissions.build());
+        }
+
+        for (int i = in.readInt(); i > 0; i--) {
+            Set<Context> contexts = readContexts(in);
+            List<Map.Entry<String, String>> parents = new ArrayList<Map.Entry<String, String>>();
+            for (int j = in.readInt(); j > 0; j--) {
+                parents.add(Maps.immutableEntry(in.readUTF(), in.readUTF()));
+            }
+            data.load(contexts, parents);
+        }
+    }
+
+    private static void writeContexts(DataOutputStream out, Set<Context> contexts) throws IOException {
+        out.writeInt(contexts.size());
+        for (Context context : contexts) {
+            out.writeUTF(context.getType());
+            out.writeUTF(context.getName());
+        }
+    }
+
+    private static Set<Context> readContexts(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        Set<Context> contexts = new HashSet<Context>(size * 2);
+        for (int i = 0; i < size; i++) {
+            contexts.add(new Context(in.readUTF(), in.readUTF()));
+        }
+        return contexts;
+    }
+
+    /**
+     * Queues a record of a subject's data whenever it changes.
+     */
+    private final class RecordWriter implements SubjectDataListener {
+
+        private final Map.Entry<String, String> key;
+
+        RecordWriter(Map.Entry<String, String> key) {
+            this.key = key;
+        }
+
+        @Override
+        public void onUpdate(SubjectData data) {
+            // Encode and queue under one lock, so that a record encoded
+            // earlier never replaces one encoded later from newer data
+            synchronized (data) {
+                try {
+                    SubjectDataStore.this.pending.put(this.key, encode(this.key, (MemorySubjectData) data));
+                } catch (IOException e) {
+                    throw Throwables.propagate(e);
+                }
+            }
+            scheduleFlush();
+        }
+    }
+
+}
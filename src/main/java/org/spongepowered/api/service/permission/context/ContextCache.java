@@ -0,0 +1,236 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.permission.context;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.MapMaker;
+import org.spongepowered.api.service.permission.Subject;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+/**
+ * Remembers the contexts accumulated by {@link ContextCalculator}s for each
+ * subject, so a permission service does not run every calculator for every
+ * permission check.
+ *
+ * <p>Each calculator is registered with a {@link Lifetime} that says how
+ * long its results stay valid. Results of {@link Lifetime#TICK} calculators
+ * are dropped whenever {@link #tick()} is called, which the implementation
+ * should do once per server tick. Results of
+ * {@link Lifetime#UNTIL_INVALIDATED} calculators are kept until
+ * {@link #invalidate(Subject)} is called for the subject, for example when
+ * the subject changes world, or {@link #invalidate(ContextCalculator)} is
+ * called by the calculator itself. {@link Lifetime#NONE} calculators opt out
+ * of caching and run on every call.</p>
+ *
+ * <p>Subjects are held weakly. This class is thread-safe.</p>
+ */
+public class ContextCache {
+
+    /**
+     * How long the results of a context calculator stay valid.
+     */
+    public enum Lifetime {
+
+        /**
+         * The results are calculated again on every call.
+         */
+        NONE,
+
+        /**
+         * The results are valid until the next {@link ContextCache#tick()}.
+         */
+        TICK,
+
+        /**
+         * The results are valid until the subject or the calculator is
+         * explicitly invalidated.
+         */
+        UNTIL_INVALIDATED
+    }
+
+    private final List<ContextCalculator> uncached = new CopyOnWriteArrayList<ContextCalculator>();
+    private final List<ContextCalculator> perTick = new CopyOnWriteArrayList<ContextCalculator>();
+    private final List<ContextCalculator> untilInvalidated = new CopyOnWriteArrayList<ContextCalculator>();
+    private final ConcurrentMap<Subject, Entry> entries = new MapMaker().weakKeys().makeMap();
+    private final AtomicLong tick = new AtomicLong();
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Register a calculator whose results are valid for one tick.
+     *
+     * @param calculator The context calculator to register
+     */
+    public void register(ContextCalculator calculator) {
+        register(calculator, Lifetime.TICK);
+    }
+
+    /**
+     * Register a calculator.
+     *
+     * @param calculator The context calculator to register
+     * @param lifetime How long the results of the calculator stay valid
+     */
+    public void register(ContextCalculator calculator, Lifetime lifetime) {
+        checkNotNull(calculator, "calculator");
+        checkNotNull(lifetime, "lifetime");
+        switch (lifetime) {
+            case NONE:
+                this.uncached.add(calculator);
+                break;
+            case TICK:
+                this.perTick.add(calculator);
+                break;
+            default:
+                this.untilInvalidated.add(calculator);
+                break;
+        }
+        invalidateAll();
+    }
+
+    /**
+     * Gets the active contexts of a subject, running only the calculators
+     * whose cached results are no longer valid.
+     *
+     * @param subject The subject
+     * @return The canonical set of active contexts
+     */
+    public ContextSet getActiveContexts(Subject subject) {
+        checkNotNull(subject, "subject");
+        long tick = this.tick.get();
+        long generation = this.generation.get();
+        @Nullable Entry entry = this.entries.get(subject);
+        if (entry == null || entry.generation != generation || entry.tick != tick) {
+            // Read the markers first, so an invalidation during the calculation leaves the entry stale
+            ContextSet stable = entry != null && entry.generation == generation ? entry.stable : accumulate(subject, this.untilInvalidated);
+            ContextSet ticked = accumulate(subject, this.perTick);
+            Set<Context> combined = new HashSet<Context>(stable);
+            combined.addAll(ticked);
+            Entry updated = new Entry(generation, tick, stable, ContextSet.of(combined));
+            // Invalidating a subject replaces its entry with a new invalid
+            // one, so an entry that was invalidated in the meantime, or a
+            // subject that was invalidated before it had an entry, is never
+            // overwritten by the results calculated before the invalidation
+            if (entry == null) {
+                this.entries.putIfAbsent(subject, updated);
+            } else {
+                this.entries.replace(subject, entry, updated);
+            }
+            entry = updated;
+        }
+        if (this.uncached.isEmpty()) {
+            return entry.combined;
+        }
+        Set<Context> accumulator = new HashSet<Context>(entry.combined);
+        accumulate(subject, this.uncached, accumulator);
+        return ContextSet.of(accumulator);
+    }
+
+    /**
+     * Marks the end of a tick, dropping all results that were only valid
+     * for that tick.
+     */
+    public void tick() {
+        this.tick.incrementAndGet();
+    }
+
+    /**
+     * Drops all cached contexts of a subject.
+     *
+     * @param subject The subject whose contexts changed
+     */
+    public void invalidate(Subject subject) {
+        // A new instance every time, as entries are replaced by identity
+        this.entries.put(checkNotNull(subject, "subject"), Entry.invalid());
+    }
+
+    /**
+     * Drops all cached results of a calculator, for every subject.
+     *
+     * @param calculator The calculator whose results changed
+     */
+    public void invalidate(ContextCalculator calculator) {
+        checkNotNull(calculator, "calculator");
+        if (this.untilInvalidated.contains(calculator)) {
+            invalidateAll();
+        } else if (this.perTick.contains(calculator)) {
+            this.tick.incrementAndGet();
+        }
+    }
+
+    /**
+     * Drops all cached contexts.
+     */
+    public void invalidateAll() {
+        this.generation.incrementAndGet();
+    }
+
+    private static ContextSet accumulate(Subject subject, List<ContextCalculator> calculators) {
+        if (calculators.isEmpty()) {
+            return ContextSet.EMPTY;
+        }
+        Set<Context> accumulator = new HashSet<Context>();
+        accumulate(subject, calculators, accumulator);
+        return ContextSet.of(accumulator);
+    }
+
+    private static void accumulate(Subject subject, List<ContextCalculator> calculators, Set<Context> accumulator) {
+        for (ContextCalculator calculator : calculators) {
+            calculator.accumulateContexts(subject, accumulator);
+        }
+    }
+
+    private static final class Entry {
+
+        final long generation;
+        final long tick;
+        final ContextSet stable;
+        final ContextSet combined;
+
+        Entry(long generation, long tick, ContextSet stable, ContextSet combined) {
+            this.generation = generation;
+            this.tick = tick;
+            this.stable = stable;
+            this.combined = combined;
+        }
+
+        /**
+         * Creates an entry that matches no generation, marking the subject as
+         * invalidated.
+         */
+        static Entry invalid() {
+            return new Entry(-1, -1, ContextSet.EMPTY, ContextSet.EMPTY);
+        }
+    }
+
+}
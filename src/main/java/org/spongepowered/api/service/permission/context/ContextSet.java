@@ -0,0 +1,140 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.permission.context;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.MapMaker;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * An immutable, canonical combination of {@link Context}s.
+ *
+ * <p>Context sets are interned: there is only ever one instance for a given
+ * combination of contexts, so two context sets are equal only if they are
+ * the same instance. The hash code is computed once. This makes context
+ * sets cheap keys for maps holding data per context combination. A context
+ * set is still equal to any other {@link Set} holding the same contexts, as
+ * specified by {@link Set#equals(Object)}.</p>
+ */
+public final class ContextSet extends AbstractSet<Context> {
+
+    private static final ConcurrentMap<Set<Context>, ContextSet> CANONICAL = new MapMaker().weakValues().makeMap();
+
+    /**
+     * The context set holding no contexts, which is the global context
+     * combination.
+     */
+    public static final ContextSet EMPTY = new ContextSet(ImmutableSet.<Context>of());
+
+    private final ImmutableSet<Context> contexts;
+    private final int hash;
+
+    private ContextSet(ImmutableSet<Context> contexts) {
+        this.contexts = contexts;
+        this.hash = contexts.hashCode();
+    }
+
+    /**
+     * Gets the canonical context set holding the given contexts.
+     *
+     * <p>This returns the given set without a lookup if it is already a
+     * context set.</p>
+     *
+     * @param contexts The contexts
+     * @return The canonical context set
+     */
+    public static ContextSet of(Set<Context> contexts) {
+        checkNotNull(contexts, "contexts");
+        if (contexts instanceof ContextSet) {
+            return (ContextSet) contexts;
+        }
+        if (contexts.isEmpty()) {
+            return EMPTY;
+        }
+        // Any set can be used for the lookup, so only a new combination needs a copy
+        @Nullable ContextSet set = CANONICAL.get(contexts);
+        return set != null ? set : intern(ImmutableSet.copyOf(contexts));
+    }
+
+    /**
+     * Gets the canonical context set holding the given contexts.
+     *
+     * @param contexts The contexts
+     * @return The canonical context set
+     */
+    public static ContextSet of(Context... contexts) {
+        checkNotNull(contexts, "contexts");
+        if (contexts.length == 0) {
+            return EMPTY;
+        }
+        ImmutableSet<Context> copy = ImmutableSet.copyOf(contexts);
+        @Nullable ContextSet set = CANONICAL.get(copy);
+        return set != null ? set : intern(copy);
+    }
+
+    private static ContextSet intern(ImmutableSet<Context> contexts) {
+        ContextSet set = new ContextSet(contexts);
+        @Nullable ContextSet existing = CANONICAL.putIfAbsent(contexts, set);
+        return existing != null ? existing : set;
+    }
+
+    @Override
+    public Iterator<Context> iterator() {
+        return this.contexts.iterator();
+    }
+
+    @Override
+    public int size() {
+        return this.contexts.size();
+    }
+
+    @Override
+    public boolean contains(@Nullable Object o) {
+        return this.contexts.contains(o);
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+        if (this == o) {
+            return true;
+        }
+        // Context sets are canonical, so a different instance holds different contexts
+        return !(o instanceof ContextSet) && this.contexts.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.hash;
+    }
+
+}
@@ -0,0 +1,47 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.persistence;
+
+import org.spongepowered.api.service.persistence.data.DataPatch;
+
+/**
+ * A {@link DataSource} that can apply changes to the data it holds, so that
+ * saving data does not require serializing all of it again. How the cost of
+ * applying changes relates to the size of the data depends on the source.
+ */
+public interface IncrementalDataSource extends DataSource {
+
+    /**
+     * Applies the changes of a patch to the data in this source, as if the
+     * data was deserialized, changed and serialized again. If this source
+     * holds no data yet, the patch is applied to empty data.
+     *
+     * @param patch The changes to apply
+     * @throws InvalidDataException If the changes are incompatible with this
+     *     source
+     */
+    void apply(DataPatch patch) throws InvalidDataException;
+
+}
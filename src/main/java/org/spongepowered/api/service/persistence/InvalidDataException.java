@@ -24,8 +24,49 @@
  */
 package org.spongepowered.api.service.persistence;
 
+/**
+ * Thrown if data is malformed or cannot be represented.
+ */
 public class InvalidDataException extends UnsupportedOperationException {
 
     private static final long serialVersionUID = -754482190837922531L;
 
+    /**
+     * Constructs a new invalid data exception with a null message and a null
+     * cause.
+     */
+    public InvalidDataException() {
+    }
+
+    /**
+     * Constructs a new invalid data exception with the specified message and
+     * with a null cause.
+     *
+     * @param message The exception message
+     */
+    public InvalidDataException(String message) {
+        super(message);
+    }
+
+    /**
+     * Constructs a new invalid data exception with the specified message and
+     * cause.
+     *
+     * @param message The exception message
+     * @param cause The cause of this exception
+     */
+    public InvalidDataException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    /**
+     * Constructs a new invalid data exception with the specified cause and a
+     * null message.
+     *
+     * @param cause The cause of this exception
+     */
+    public InvalidDataException(Throwable cause) {
+        super(cause);
+    }
+
 }
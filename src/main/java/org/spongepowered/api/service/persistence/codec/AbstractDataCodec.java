@@ -0,0 +1,336 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.persistence.codec;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.primitives.Bytes;
+import com.google.common.primitives.Doubles;
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+import org.spongepowered.api.service.persistence.InvalidDataException;
+import org.spongepowered.api.service.persistence.data.DataQuery;
+import org.spongepowered.api.service.persistence.data.DataView;
+import org.spongepowered.api.service.persistence.data.MemoryDataContainer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The base of codecs that are generated by {@link DataCodecRegistry}, which
+ * provides conversions of the values that were read.
+ *
+ * <p>Numbers are converted between their types, as a number may be read
+ * back as another type than it was written as, such as a boolean as a
+ * byte. Lists of numbers are converted to primitive arrays, and lists and
+ * maps are copied into the type of list or map of a property.</p>
+ *
+ * @param <T> The type of objects
+ */
+public abstract class AbstractDataCodec<T> implements DataCodec<T> {
+
+    private final Class<T> type;
+    private final DataCodecRegistry registry;
+    private final Class<?>[] nestedTypes;
+    private final DataCodec<?>[] nestedCodecs;
+
+    /**
+     * Create a new codec.
+     *
+     * @param type The type of objects
+     * @param registry The registry to get the codecs of nested types from
+     * @param nestedTypes The types of properties that are written as views
+     */
+    protected AbstractDataCodec(Class<T> type, DataCodecRegistry registry, Class<?>[] nestedTypes) {
+        this.type = checkNotNull(type, "type");
+        this.registry = checkNotNull(registry, "registry");
+        this.nestedTypes = nestedTypes.clone();
+        this.nestedCodecs = new DataCodec<?>[nestedTypes.length];
+    }
+
+    @Override
+    public Class<T> getType() {
+        return this.type;
+    }
+
+    /**
+     * Gets the codec of a nested type. Codecs are looked up when first used,
+     * so that types may be nested within each other.
+     *
+     * @param index The index of the nested type
+     * @return The codec
+     */
+    @SuppressWarnings("unchecked")
+    protected final DataCodec<Object> getCodec(int index) {
+        DataCodec<?> codec = this.nestedCodecs[index];
+        if (codec == null) {
+            // Racing lookups find the same codec
+            codec = this.registry.getCodec(this.nestedTypes[index]);
+            this.nestedCodecs[index] = codec;
+        }
+        return (DataCodec<Object>) codec;
+    }
+
+    private static InvalidDataException cannotConvert(Object value, Class<?> type) {
+        return new InvalidDataException("Cannot convert a value of " + value.getClass().getName() + " to " + type.getName());
+    }
+
+    /**
+     * Converts a value to a view.
+     *
+     * @param value The value
+     * @return The view
+     * @throws InvalidDataException If the value is neither a view nor a map
+     */
+    protected static DataView toView(Object value) {
+        if (value instanceof DataView) {
+            return (DataView) value;
+        } else if (value instanceof Map) {
+            MemoryDataContainer container = new MemoryDataContainer();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                container.set(new DataQuery(entry.getKey().toString()), entry.getValue());
+            }
+            return container;
+        }
+        throw cannotConvert(value, DataView.class);
+    }
+
+    /**
+     * Converts a view to a map, and its nested views to nested maps.
+     */
+    private static Map<String, Object> toMap(DataView view) {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        for (Map.Entry<DataQuery, Object> entry : view.getValues(false).entrySet()) {
+            List<String> parts = entry.getKey().getParts();
+            Object value = entry.getValue();
+            map.put(parts.get(parts.size() - 1), value instanceof DataView ? toMap((DataView) value) : value);
+        }
+        return map;
+    }
+
+    /**
+     * Creates an empty list or map of a type that is not assignable from the
+     * default list or map.
+     */
+    private static Object newInstance(Class<?> type, Object value) {
+        try {
+            return type.newInstance();
+        } catch (InstantiationException e) {
+            throw new InvalidDataException(cannotConvert(value, type).getMessage(), e);
+        } catch (IllegalAccessException e) {
+            throw new InvalidDataException(cannotConvert(value, type).getMessage(), e);
+        }
+    }
+
+    /**
+     * Converts a value to a boolean.
+     *
+     * @param value The value
+     * @return The boolean
+     * @throws InvalidDataException If the value is not a boolean or number
+     */
+    protected static boolean toBoolean(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        } else if (value instanceof Number) {
+            return ((Number) value).intValue() != 0;
+        }
+        throw cannotConvert(value, boolean.class);
+    }
+
+    /**
+     * Converts a value to a number.
+     */
+    private static Number toNumber(Object value, Class<?> type) {
+        if (value instanceof Number) {
+            return (Number) value;
+        } else if (value instanceof Character) {
+            return (int) (Character) value;
+        } else if (value instanceof Boolean) {
+            return (Boolean) value ? 1 : 0;
+        }
+        throw cannotConvert(value, type);
+    }
+
+    /**
+     * Converts a value to a byte.
+     *
+     * @param value The value
+     * @return The byte
+     * @throws InvalidDataException If the value is not a number
+     */
+    protected static byte toByte(Object value) {
+        return toNumber(value, byte.class).byteValue();
+    }
+
+    /**
+     * Converts a value to a short.
+     *
+     * @param value The value
+     * @return The short
+     * @throws InvalidDataException If the value is not a number
+     */
+    protected static short toShort(Object value) {
+        return toNumber(value, short.class).shortValue();
+    }
+
+    /**
+     * Converts a value to a character.
+     *
+     * @param value The value
+     * @return The character
+     * @throws InvalidDataException If the value is not a character or
+     *     number
+     */
+    protected static char toChar(Object value) {
+        return value instanceof Character ? (Character) value : (char) toNumber(value, char.class).intValue();
+    }
+
+    /**
+     * Converts a value to an integer.
+     *
+     * @param value The value
+     * @return The integer
+     * @throws InvalidDataException If the value is not a number
+     */
+    protected static int toInt(Object value) {
+        return toNumber(value, int.class).intValue();
+    }
+
+    /**
+     * Converts a value to a long.
+     *
+     * @param value The value
+     * @return The long
+     * @throws InvalidDataException If the value is not a number
+     */
+    protected static long toLong(Object value) {
+        return toNumber(value, long.class).longValue();
+    }
+
+    /**
+     * Converts a value to a float.
+     *
+     * @param value The value
+     * @return The float
+     * @throws InvalidDataException If the value is not a number
+     */
+    protected static float toFloat(Object value) {
+        return toNumber(value, float.class).floatValue();
+    }
+
+    /**
+     * Converts a value to a double.
+     *
+     * @param value The value
+     * @return The double
+     * @throws InvalidDataException If the value is not a number
+     */
+    protected static double toDouble(Object value) {
+        return toNumber(value, double.class).doubleValue();
+    }
+
+    /**
+     * Converts a value to a constant of an enum by its name.
+     *
+     * @param value The value
+     * @param type The type of the enum
+     * @param <E> The type of the enum
+     * @return The constant
+     * @throws InvalidDataException If the value is not the name of a
+     *     constant of the enum
+     */
+    protected static <E extends Enum<E>> E toEnum(Object value, Class<E> type) {
+        if (value instanceof String) {
+            try {
+                return Enum.valueOf(type, (String) value);
+            } catch (IllegalArgumentException e) {
+                throw new InvalidDataException("No constant of " + type.getName() + " is named " + value, e);
+            }
+        }
+        throw cannotConvert(value, type);
+    }
+
+    /**
+     * Converts a value to a type that values may be stored as directly.
+     *
+     * @param value The value
+     * @param type The type
+     * @return The converted value
+     * @throws InvalidDataException If the value cannot be converted
+     */
+    @SuppressWarnings("unchecked")
+    protected static Object convert(Object value, Class<?> type) {
+        if (type.isInstance(value)) {
+            return value;
+        } else if (type == Boolean.class) {
+            return toBoolean(value);
+        } else if (type == Byte.class) {
+            return toByte(value);
+        } else if (type == Short.class) {
+            return toShort(value);
+        } else if (type == Character.class) {
+            return toChar(value);
+        } else if (type == Integer.class) {
+            return toInt(value);
+        } else if (type == Long.class) {
+            return toLong(value);
+        } else if (type == Float.class) {
+            return toFloat(value);
+        } else if (type == Double.class) {
+            return toDouble(value);
+        } else if (type == DataView.class) {
+            return toView(value);
+        } else if (Map.class.isAssignableFrom(type) && (value instanceof Map || value instanceof DataView)) {
+            Map<Object, Object> map = type.isAssignableFrom(LinkedHashMap.class)
+                    ? new LinkedHashMap<Object, Object>() : (Map<Object, Object>) newInstance(type, value);
+            map.putAll(value instanceof DataView ? toMap((DataView) value) : (Map<?, ?>) value);
+            return map;
+        } else if (List.class.isAssignableFrom(type) && value instanceof List) {
+            List<Object> list = type.isAssignableFrom(ArrayList.class)
+                    ? new ArrayList<Object>() : (List<Object>) newInstance(type, value);
+            list.addAll((List<?>) value);
+            return list;
+        } else if (value instanceof List) {
+            try {
+                if (type == byte[].class) {
+                    return Bytes.toArray((List<? extends Number>) value);
+                } else if (type == int[].class) {
+                    return Ints.toArray((List<? extends Number>) value);
+                } else if (type == long[].class) {
+                    return Longs.toArray((List<? extends Number>) value);
+                } else if (type == double[].class) {
+                    return Doubles.toArray((List<? extends Number>) value);
+                }
+            } catch (ClassCastException e) {
+                throw new InvalidDataException("Cannot convert a list with other values than numbers to " + type.getName(), e);
+            }
+        }
+        throw cannotConvert(value, type);
+    }
+
+}
@@ -0,0 +1,379 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.persistence.codec;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ARETURN;
+import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.GETSTATIC;
+import static org.objectweb.asm.Opcodes.IFNULL;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.NEW;
+import static org.objectweb.asm.Opcodes.PUTSTATIC;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V1_6;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.primitives.Primitives;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+import org.spongepowered.api.service.persistence.data.DataQuery;
+import org.spongepowered.api.service.persistence.data.DataView;
+import org.spongepowered.api.util.reflect.AccessorFirstStrategy;
+import org.spongepowered.api.util.reflect.Property;
+import org.spongepowered.api.util.reflect.PropertySearchStrategy;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates the bytecode of the codecs created by {@link DataCodecRegistry}.
+ *
+ * <p>A generated codec extends {@link AbstractDataCodec}, and has a constant
+ * {@link DataQuery} for each property of its type. Its {@code write} method
+ * calls each accessor and sets the value in the view, and its {@code read}
+ * method constructs the object and calls the mutator of each property that
+ * has a value in the view.</p>
+ */
+class CodecGenerator {
+
+    private static final String DATA_VIEW = Type.getInternalName(DataView.class);
+    private static final String DATA_QUERY = Type.getDescriptor(DataQuery.class);
+    private static final String DATA_CODEC = Type.getInternalName(DataCodec.class);
+    private static final String BASE = Type.getInternalName(AbstractDataCodec.class);
+
+    // The types of values that are stored in views as they are, along with
+    // their subtypes
+    private static final ImmutableSet<Class<?>> DIRECT_TYPES = ImmutableSet.<Class<?>>of(
+            String.class, byte[].class, int[].class, long[].class, double[].class, List.class, Map.class, DataView.class);
+
+    private final PropertySearchStrategy propertySearch = new AccessorFirstStrategy();
+
+    /**
+     * Gets whether values of a type are written by the codec of the type.
+     *
+     * @param type The type
+     * @return Whether values of the type are written as views
+     */
+    static boolean isNested(Class<?> type) {
+        if (type.isPrimitive() || Primitives.isWrapperType(type) || type.isEnum() || type == Object.class) {
+            return false;
+        }
+        for (Class<?> direct : DIRECT_TYPES) {
+            if (direct.isAssignableFrom(type)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the properties of a type that have both an accessor and a
+     * mutator, ordered by name.
+     *
+     * @param type The type
+     * @return The properties
+     */
+    public List<Property> findProperties(Class<?> type) {
+        List<Property> properties = new ArrayList<Property>();
+        for (Property property : this.propertySearch.findProperties(type)) {
+            if (property.getMutator().isPresent()) {
+                properties.add(property);
+            }
+        }
+        Collections.sort(properties, new Comparator<Property>() {
+            @Override
+            public int compare(Property o1, Property o2) {
+                return o1.getName().compareTo(o2.getName());
+            }
+        });
+        return properties;
+    }
+
+    /**
+     * Gets the types of the properties that are written as views, in the
+     * order that the generated codec refers to them.
+     *
+     * @param properties The properties
+     * @return The nested types
+     */
+    public Class<?>[] getNestedTypes(List<Property> properties) {
+        List<Class<?>> types = new ArrayList<Class<?>>();
+        for (Property property : properties) {
+            if (isNested(property.getType())) {
+                types.add(property.getType());
+            }
+        }
+        return types.toArray(new Class<?>[types.size()]);
+    }
+
+    /**
+     * Create the codec class.
+     *
+     * @param type The type
+     * @param name The canonical name of the generated class
+     * @param properties The properties to write and read
+     * @return The class' contents, to be loaded via a {@link ClassLoader}
+     */
+    public byte[] createClass(final Class<?> type, final String name, final List<Property> properties) {
+        checkNotNull(type, "type");
+        checkNotNull(name, "name");
+        checkArgument(Modifier.isPublic(type.getModifiers()) && !Modifier.isAbstract(type.getModifiers())
+                && (type.getEnclosingClass() == null || Modifier.isStatic(type.getModifiers())),
+                "%s is not a public concrete class", type);
+        try {
+            checkArgument(Modifier.isPublic(type.getConstructor().getModifiers()), "%s has no public constructor", type);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException(type + " has no public constructor without parameters", e);
+        }
+        // A codec without properties would write every object as an empty view
+        checkArgument(!properties.isEmpty(), "%s has no properties with both an accessor and a mutator", type);
+
+        final String internalName = name.replace('.', '/');
+        final String typeName = Type.getInternalName(type);
+
+        final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
+        cw.visit(V1_6, ACC_PUBLIC + ACC_SUPER, internalName, null, BASE, null);
+
+        // Create a constant query for each property
+        for (Property property : properties) {
+            cw.visitField(ACC_PRIVATE + ACC_STATIC + ACC_FINAL, property.getName(), DATA_QUERY, null, null).visitEnd();
+        }
+        {
+            MethodVisitor mv = cw.visitMethod(ACC_STATIC, "<clinit>", "()V", null, null);
+            mv.visitCode();
+            for (Property property : properties) {
+                mv.visitLdcInsn(property.getName());
+                mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(DataQuery.class), "of", "(Ljava/lang/String;)" + DATA_QUERY, false);
+                mv.visitFieldInsn(PUTSTATIC, internalName, property.getName(), DATA_QUERY);
+            }
+            mv.visitInsn(RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+
+        // Create the constructor
+        {
+            String descriptor = Type.getMethodDescriptor(Type.VOID_TYPE,
+                    Type.getType(Class.class), Type.getType(DataCodecRegistry.class), Type.getType(Class[].class));
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", descriptor, null, null);
+            mv.visitCode();
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitVarInsn(ALOAD, 2);
+            mv.visitVarInsn(ALOAD, 3);
+            mv.visitMethodInsn(INVOKESPECIAL, BASE, "<init>", descriptor, false);
+            mv.visitInsn(RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+
+        // Create write()
+        {
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "write", "(Ljava/lang/Object;L" + DATA_VIEW + ";)V", null, null);
+            mv.visitCode();
+
+            // T object = (T) param
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitTypeInsn(CHECKCAST, typeName);
+            mv.visitVarInsn(ASTORE, 3);
+
+            int nested = 0;
+            for (Property property : properties) {
+                Class<?> propertyType = property.getType();
+                Method accessor = property.getAccessor();
+
+                if (propertyType.isPrimitive()) {
+                    // view.set(QUERY, Wrapper.valueOf(object.getValue()))
+                    mv.visitVarInsn(ALOAD, 2);
+                    mv.visitFieldInsn(GETSTATIC, internalName, property.getName(), DATA_QUERY);
+                    mv.visitVarInsn(ALOAD, 3);
+                    mv.visitMethodInsn(INVOKEVIRTUAL, typeName, accessor.getName(), Type.getMethodDescriptor(accessor), false);
+                    visitBoxingMethod(mv, propertyType);
+                    visitSet(mv);
+                    continue;
+                }
+
+                // Object value = object.getValue()
+                mv.visitVarInsn(ALOAD, 3);
+                mv.visitMethodInsn(INVOKEVIRTUAL, typeName, accessor.getName(), Type.getMethodDescriptor(accessor), false);
+                mv.visitVarInsn(ASTORE, 4);
+
+                // if (value != null) {
+                Label afterSet = new Label();
+                mv.visitVarInsn(ALOAD, 4);
+                mv.visitJumpInsn(IFNULL, afterSet);
+
+                if (isNested(propertyType)) {
+                    // getCodec(index).write(value, view.createView(QUERY))
+                    mv.visitVarInsn(ALOAD, 0);
+                    mv.visitLdcInsn(nested++);
+                    mv.visitMethodInsn(INVOKEVIRTUAL, BASE, "getCodec", "(I)L" + DATA_CODEC + ";", false);
+                    mv.visitVarInsn(ALOAD, 4);
+                    mv.visitVarInsn(ALOAD, 2);
+                    mv.visitFieldInsn(GETSTATIC, internalName, property.getName(), DATA_QUERY);
+                    mv.visitMethodInsn(INVOKEINTERFACE, DATA_VIEW, "createView", "(" + DATA_QUERY + ")L" + DATA_VIEW + ";", true);
+                    mv.visitMethodInsn(INVOKEINTERFACE, DATA_CODEC, "write", "(Ljava/lang/Object;L" + DATA_VIEW + ";)V", true);
+                } else {
+                    // view.set(QUERY, value), or value.name() for enums
+                    mv.visitVarInsn(ALOAD, 2);
+                    mv.visitFieldInsn(GETSTATIC, internalName, property.getName(), DATA_QUERY);
+                    mv.visitVarInsn(ALOAD, 4);
+                    if (propertyType.isEnum()) {
+                        mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Enum", "name", "()Ljava/lang/String;", false);
+                    }
+                    visitSet(mv);
+                }
+
+                // }
+                mv.visitLabel(afterSet);
+            }
+
+            mv.visitInsn(RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+
+        // Create read()
+        {
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "read", "(L" + DATA_VIEW + ";)Ljava/lang/Object;", null, null);
+            mv.visitCode();
+
+            // T object = new T()
+            mv.visitTypeInsn(NEW, typeName);
+            mv.visitInsn(DUP);
+            mv.visitMethodInsn(INVOKESPECIAL, typeName, "<init>", "()V", false);
+            mv.visitVarInsn(ASTORE, 2);
+
+            int nested = 0;
+            for (Property property : properties) {
+                final Class<?> propertyType = property.getType();
+                final Method mutator = property.getMutator().get();
+
+                // Object value = view.get(QUERY).orNull()
+                mv.visitVarInsn(ALOAD, 1);
+                mv.visitFieldInsn(GETSTATIC, internalName, property.getName(), DATA_QUERY);
+                mv.visitMethodInsn(INVOKEINTERFACE, DATA_VIEW, "get", "(" + DATA_QUERY + ")" + Type.getDescriptor(Optional.class), true);
+                mv.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(Optional.class), "orNull", "()Ljava/lang/Object;", false);
+                mv.visitVarInsn(ASTORE, 3);
+
+                // if (value != null) {
+                Label afterSet = new Label();
+                mv.visitVarInsn(ALOAD, 3);
+                mv.visitJumpInsn(IFNULL, afterSet);
+
+                // object.setValue(convert(value))
+                mv.visitVarInsn(ALOAD, 2);
+                if (isNested(propertyType)) {
+                    mv.visitVarInsn(ALOAD, 0);
+                    mv.visitLdcInsn(nested++);
+                    mv.visitMethodInsn(INVOKEVIRTUAL, BASE, "getCodec", "(I)L" + DATA_CODEC + ";", false);
+                    mv.visitVarInsn(ALOAD, 3);
+                    mv.visitMethodInsn(INVOKESTATIC, BASE, "toView", "(Ljava/lang/Object;)L" + DATA_VIEW + ";", false);
+                    mv.visitMethodInsn(INVOKEINTERFACE, DATA_CODEC, "read", "(L" + DATA_VIEW + ";)Ljava/lang/Object;", true);
+                    mv.visitTypeInsn(CHECKCAST, Type.getInternalName(propertyType));
+                } else {
+                    mv.visitVarInsn(ALOAD, 3);
+                    visitConversionMethod(mv, propertyType);
+                }
+                mv.visitMethodInsn(INVOKEVIRTUAL, typeName, mutator.getName(), Type.getMethodDescriptor(mutator), false);
+
+                // }
+                mv.visitLabel(afterSet);
+            }
+
+            mv.visitVarInsn(ALOAD, 2);
+            mv.visitInsn(ARETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+
+        cw.visitEnd();
+
+        return cw.toByteArray();
+    }
+
+    private static void visitSet(MethodVisitor mv) {
+        mv.visitMethodInsn(INVOKEINTERFACE, DATA_VIEW, "set", "(" + DATA_QUERY + "Ljava/lang/Object;)V", true);
+    }
+
+    /**
+     * Insert the method to box a primitive value.
+     *
+     * @param mv The method visitor
+     * @param type The primitive type
+     */
+    private static void visitBoxingMethod(MethodVisitor mv, Class<?> type) {
+        Type wrapper = Type.getType(Primitives.wrap(type));
+        mv.visitMethodInsn(INVOKESTATIC, wrapper.getInternalName(), "valueOf",
+                Type.getMethodDescriptor(wrapper, Type.getType(type)), false);
+    }
+
+    /**
+     * Insert the methods to convert a value that was read to the type of a
+     * property.
+     *
+     * @param mv The method visitor
+     * @param type The type of the property
+     */
+    private static void visitConversionMethod(MethodVisitor mv, Class<?> type) {
+        if (type.isPrimitive()) {
+            // toInt(value), etc.
+            String name = "to" + Character.toUpperCase(type.getName().charAt(0)) + type.getName().substring(1);
+            mv.visitMethodInsn(INVOKESTATIC, BASE, name, "(Ljava/lang/Object;)" + Type.getDescriptor(type), false);
+        } else if (type.isEnum()) {
+            // (E) toEnum(value, E.class)
+            mv.visitLdcInsn(Type.getType(type));
+            mv.visitMethodInsn(INVOKESTATIC, BASE, "toEnum", "(Ljava/lang/Object;Ljava/lang/Class;)Ljava/lang/Enum;", false);
+            mv.visitTypeInsn(CHECKCAST, Type.getInternalName(type));
+        } else {
+            // (T) convert(value, T.class)
+            mv.visitLdcInsn(Type.getType(type));
+            mv.visitMethodInsn(INVOKESTATIC, BASE, "convert", "(Ljava/lang/Object;Ljava/lang/Class;)Ljava/lang/Object;", false);
+            mv.visitTypeInsn(CHECKCAST, Type.getInternalName(type));
+        }
+    }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.persistence.codec;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.spongepowered.api.util.reflect.Property;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Provides the {@link DataCodec}s of types, generating the codecs of types
+ * that have no registered codec at runtime.
+ *
+ * <p>A generated codec writes each property of an object that has both an
+ * accessor and a mutator, in the style of a Java bean, to the query of the
+ * name of the property. Primitives, their wrappers, strings, primitive
+ * arrays, lists, maps and views of any type, and values of properties of
+ * type {@link Object}, are written as they are, enums are written by name,
+ * and objects of other types are written to a nested view by the codec of
+ * their type.</p>
+ *
+ * <p>Unlike serializing objects through reflection, the properties of an
+ * object are written and read by generated bytecode, which avoids the cost
+ * of reflective calls on each object.</p>
+ */
+public class DataCodecRegistry {
+
+    private final CodecGenerator generator = new CodecGenerator();
+    private final AtomicInteger counter = new AtomicInteger();
+    private final String targetPackage;
+    private final LoadingCache<Class<?>, DataCodec<?>> codecs = CacheBuilder.newBuilder()
+            .build(new CacheLoader<Class<?>, DataCodec<?>>() {
+                @Override
+                public DataCodec<?> load(Class<?> type) {
+                    return createCodec(type);
+                }
+            });
+
+    /**
+     * Create a new registry that places generated codecs in the default
+     * package.
+     */
+    public DataCodecRegistry() {
+        this("org.spongepowered.api.service.persistence.codec.generated");
+    }
+
+    /**
+     * Create a new registry.
+     *
+     * @param targetPackage The target package to place generated codec classes in
+     */
+    public DataCodecRegistry(String targetPackage) {
+        checkNotNull(targetPackage, "targetPackage");
+        this.targetPackage = targetPackage;
+    }
+
+    /**
+     * Register a codec for its type, replacing the codec that the type had.
+     *
+     * @param codec The codec
+     * @param <T> The type of objects
+     */
+    public <T> void register(DataCodec<T> codec) {
+        checkNotNull(codec, "codec");
+        this.codecs.put(codec.getType(), codec);
+    }
+
+    /**
+     * Gets the codec of a type, generating it if the type has no registered
+     * codec.
+     *
+     * @param type The type
+     * @param <T> The type of objects
+     * @return The codec
+     * @throws IllegalArgumentException If a codec cannot be generated for the
+     *     type, as it is not a public concrete class with a public
+     *     constructor without parameters, or has no properties
+     */
+    @SuppressWarnings("unchecked")
+    public <T> DataCodec<T> getCodec(Class<T> type) {
+        checkNotNull(type, "type");
+        try {
+            return (DataCodec<T>) this.codecs.getUnchecked(type);
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof IllegalArgumentException) {
+                throw (IllegalArgumentException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Get the canonical name used for a generated codec class.
+     *
+     * @param type The type of objects
+     * @return Canonical name
+     */
+    protected String getClassName(Class<?> type) {
+        return this.targetPackage + "." + type.getSimpleName() + "$DataCodec" + this.counter.incrementAndGet();
+    }
+
+    private DataCodec<?> createCodec(Class<?> type) {
+        String name = getClassName(type);
+        List<Property> properties = this.generator.findProperties(type);
+        Class<?>[] nestedTypes = this.generator.getNestedTypes(properties);
+        byte[] bytes = this.generator.createClass(type, name, properties);
+
+        // Generated codecs refer to their type, so must be defined within its loader
+        ClassLoader parent = type.getClassLoader();
+        if (parent == null) {
+            parent = DataCodecRegistry.class.getClassLoader();
+        }
+        Class<?> codecClass = new LocalClassLoader(parent).defineClass(name, bytes);
+
+        try {
+            return (DataCodec<?>) codecClass.getConstructor(Class.class, DataCodecRegistry.class, Class[].class)
+                    .newInstance(type, this, nestedTypes);
+        } catch (InstantiationException e) {
+            throw new RuntimeException("Failed to create data codec", e);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Failed to create data codec", e);
+        } catch (InvocationTargetException e) {
+            throw new RuntimeException("Failed to create data codec", e);
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException("Failed to create data codec", e);
+        }
+    }
+
+    /**
+     * Class loader to use to call {@link #defineClass(String, byte[])}.
+     */
+    private static class LocalClassLoader extends ClassLoader {
+
+        public LocalClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        public Class<?> defineClass(String name, byte[] b) {
+            return defineClass(name, b, 0, b.length);
+        }
+    }
+
+}
@@ -0,0 +1,201 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.persistence.data;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.spongepowered.api.service.persistence.DataSerializable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A set of changes to a {@link DataView}, which can be saved instead of
+ * the whole view when only a small part of it was changed.
+ *
+ * <p>A patch sets values at some paths and removes the values at others.
+ * No path of a patch lies within another one. Values of a patch are copies,
+ * with views turned into maps, so patches are immutable and thread
+ * safe.</p>
+ *
+ * @see MemoryDataContainer#getChanges()
+ */
+public final class DataPatch {
+
+    private static final DataPatch EMPTY = new DataPatch(ImmutableMap.<DataQuery, Object>of(), ImmutableSet.<DataQuery>of());
+
+    private final ImmutableMap<DataQuery, Object> changes;
+    private final ImmutableSet<DataQuery> removals;
+
+    private DataPatch(ImmutableMap<DataQuery, Object> changes, ImmutableSet<DataQuery> removals) {
+        this.changes = changes;
+        this.removals = removals;
+    }
+
+    /**
+     * Gets an empty patch.
+     *
+     * @return An empty patch
+     */
+    public static DataPatch empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Gets a patch that sets all values of a view, which turns any view
+     * into a copy of it.
+     *
+     * @param view The view
+     * @return The patch
+     */
+    public static DataPatch of(DataView view) {
+        checkNotNull(view, "view");
+        return of(view, view.getKeys(false));
+    }
+
+    /**
+     * Gets a patch that sets the values at some paths of a view to their
+     * current values, and removes those at paths that do not exist. Paths
+     * within other paths are left out.
+     */
+    static DataPatch of(DataView view, Set<DataQuery> paths) {
+        ImmutableMap.Builder<DataQuery, Object> changes = ImmutableMap.builder();
+        ImmutableSet.Builder<DataQuery> removals = ImmutableSet.builder();
+        for (DataQuery path : paths) {
+            if (!isWithin(path, paths)) {
+                Optional<Object> value = view.get(path);
+                if (value.isPresent()) {
+                    changes.put(path, copy(value.get()));
+                } else {
+                    removals.add(path);
+                }
+            }
+        }
+        return new DataPatch(changes.build(), removals.build());
+    }
+
+    private static boolean isWithin(DataQuery path, Set<DataQuery> paths) {
+        List<String> parts = path.getParts();
+        for (int i = 1; i < parts.size(); i++) {
+            if (paths.contains(new DataQuery(parts.subList(0, i)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Object copy(Object value) {
+        if (value instanceof DataView) {
+            Map<String, Object> map = new LinkedHashMap<String, Object>();
+            for (Map.Entry<DataQuery, Object> entry : ((DataView) value).getValues(false).entrySet()) {
+                List<String> parts = entry.getKey().getParts();
+                map.put(parts.get(parts.size() - 1), copy(entry.getValue()));
+            }
+            return Collections.unmodifiableMap(map);
+        } else if (value instanceof DataSerializable) {
+            return copy(((DataSerializable) value).toContainer());
+        } else if (value instanceof Map) {
+            Map<Object, Object> map = new LinkedHashMap<Object, Object>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                map.put(entry.getKey(), copy(entry.getValue()));
+            }
+            return Collections.unmodifiableMap(map);
+        } else if (value instanceof List) {
+            List<Object> list = new ArrayList<Object>(((List<?>) value).size());
+            for (Object element : (List<?>) value) {
+                list.add(copy(element));
+            }
+            return Collections.unmodifiableList(list);
+        } else if (value instanceof byte[]) {
+            return ((byte[]) value).clone();
+        } else if (value instanceof int[]) {
+            return ((int[]) value).clone();
+        } else if (value instanceof long[]) {
+            return ((long[]) value).clone();
+        } else if (value instanceof double[]) {
+            return ((double[]) value).clone();
+        }
+        return value;
+    }
+
+    /**
+     * Gets the values that this patch sets, by their path.
+     *
+     * @return The values that are set
+     */
+    public Map<DataQuery, Object> getChanges() {
+        return this.changes;
+    }
+
+    /**
+     * Gets the paths of the values that this patch removes.
+     *
+     * @return The paths that are removed
+     */
+    public Set<DataQuery> getRemovals() {
+        return this.removals;
+    }
+
+    /**
+     * Gets whether this patch changes nothing.
+     *
+     * @return Whether this patch is empty
+     */
+    public boolean isEmpty() {
+        return this.changes.isEmpty() && this.removals.isEmpty();
+    }
+
+    /**
+     * Applies this patch to a view.
+     *
+     * @param view The view to change
+     */
+    public void applyTo(DataView view) {
+        checkNotNull(view, "view");
+        for (DataQuery path : this.removals) {
+            view.remove(path);
+        }
+        for (Map.Entry<DataQuery, Object> entry : this.changes.entrySet()) {
+            view.set(entry.getKey(), copy(entry.getValue()));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("changes", this.changes.keySet())
+                .add("removals", this.removals)
+                .toString();
+    }
+
+}
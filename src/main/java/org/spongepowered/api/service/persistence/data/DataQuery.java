@@ -24,22 +24,58 @@
  */
 package org.spongepowered.api.service.persistence.data;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import com.google.common.base.Joiner;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
 
 /**
  * Represents a query that can be done on views. Queries do not depend on
  * their separator, it is just a way to construct them.
+ *
+ * <p>Queries are immutable, and equal if they have the same parts. A query
+ * made by {@link #then(DataQuery)} shares the queries it is made of instead
+ * of copying their parts.</p>
  */
 public final class DataQuery {
 
+    private static final int MAXIMUM_CACHED = 4096;
+    private static final LoadingCache<String, DataQuery> cache = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_CACHED)
+            .build(new CacheLoader<String, DataQuery>() {
+                @Override
+                public DataQuery load(String path) {
+                    return new DataQuery(split('.', path));
+                }
+            });
+
     /**
-     * The parts that make up this query.
+     * The query that this query follows, if this query was made by
+     * {@link #then(DataQuery)}.
      */
-    private final ImmutableList<String> parts;
+    @Nullable private final DataQuery head;
+
+    /**
+     * The parts that follow the head, or all parts if there is no head.
+     */
+    private final ImmutableList<String> tail;
+
+    private final int size;
+    private final int hash;
+
+    /**
+     * The parts that make up this query, which are joined when first used
+     * if there is a head.
+     */
+    @Nullable private volatile ImmutableList<String> parts;
 
     /**
      * Constructs a query using the given separator character and path.
@@ -52,7 +88,7 @@ public final class DataQuery {
      * @param path The path
      */
     public DataQuery(char separator, String path) {
-        this(path.split(Pattern.quote(String.valueOf(separator))));
+        this(split(separator, checkNotNull(path, "path")));
     }
 
     /**
@@ -61,7 +97,7 @@ public final class DataQuery {
      * @param parts The parts
      */
     public DataQuery(String... parts) {
-        this.parts = ImmutableList.copyOf(parts);
+        this(ImmutableList.copyOf(parts));
     }
 
     /**
@@ -70,7 +106,69 @@ public final class DataQuery {
      * @param parts The parts
      */
     public DataQuery(List<String> parts) {
-        this.parts = ImmutableList.copyOf(parts);
+        this(null, ImmutableList.copyOf(parts));
+    }
+
+    private DataQuery(@Nullable DataQuery head, ImmutableList<String> tail) {
+        this.head = head;
+        this.tail = tail;
+        this.size = (head == null ? 0 : head.size) + tail.size();
+
+        // The same hash as the list of all parts
+        int hash = head == null ? 1 : head.hash;
+        for (int i = 0; i < tail.size(); i++) {
+            hash = 31 * hash + tail.get(i).hashCode();
+        }
+        this.hash = hash;
+        this.parts = head == null ? tail : null;
+    }
+
+    /**
+     * Gets a query for a path separated by dots, such as {@code "a.b.c"}.
+     *
+     * <p>Queries for frequently used paths are cached, so that they are only
+     * parsed once.</p>
+     *
+     * @param path The path
+     * @return The query
+     */
+    public static DataQuery of(String path) {
+        return cache.getUnchecked(checkNotNull(path, "path"));
+    }
+
+    /**
+     * Gets a query for a path separated by the given separator.
+     *
+     * @param separator The separator
+     * @param path The path
+     * @return The query
+     * @see #of(String)
+     */
+    public static DataQuery of(char separator, String path) {
+        return separator == '.' ? of(path) : new DataQuery(separator, path);
+    }
+
+    /**
+     * Splits a path in the same way as {@link String#split(String)}, which
+     * drops trailing empty parts.
+     */
+    private static ImmutableList<String> split(char separator, String path) {
+        if (path.isEmpty()) {
+            return ImmutableList.of(path);
+        }
+        List<String> parts = new ArrayList<String>();
+        int start = 0;
+        for (int i = path.indexOf(separator); i >= 0; i = path.indexOf(separator, start)) {
+            parts.add(path.substring(start, i));
+            start = i + 1;
+        }
+        parts.add(path.substring(start));
+
+        int size = parts.size();
+        while (size > 0 && parts.get(size - 1).isEmpty()) {
+            size--;
+        }
+        return ImmutableList.copyOf(parts.subList(0, size));
     }
 
     /**
@@ -79,7 +177,28 @@ public final class DataQuery {
      * @return The parts of this query
      */
     public ImmutableList<String> getParts() {
-        return this.parts;
+        ImmutableList<String> parts = this.parts;
+        if (parts == null) {
+            List<DataQuery> chain = new ArrayList<DataQuery>();
+            for (DataQuery query = this; query != null; query = query.head) {
+                chain.add(query);
+            }
+            ImmutableList.Builder<String> builder = ImmutableList.builder();
+            for (int i = chain.size() - 1; i >= 0; i--) {
+                builder.addAll(chain.get(i).tail);
+            }
+            this.parts = parts = builder.build();
+        }
+        return parts;
+    }
+
+    /**
+     * Gets the number of parts of this query.
+     *
+     * @return The number of parts
+     */
+    public int size() {
+        return this.size;
     }
 
     /**
@@ -90,13 +209,23 @@ public final class DataQuery {
      * @return The constructed query
      */
     public DataQuery then(DataQuery that) {
-        ImmutableList.Builder<String> builder =
-                new ImmutableList.Builder<String>();
-
-        builder.addAll(this.parts);
-        builder.addAll(that.parts);
+        if (that.size == 0) {
+            return this;
+        } else if (this.size == 0) {
+            return that;
+        }
+        return new DataQuery(this, that.getParts());
+    }
 
-        return new DataQuery(builder.build());
+    /**
+     * Returns a new query that is made up of this query's parts followed by the
+     * given part.
+     *
+     * @param part The part to follow this query
+     * @return The constructed query
+     */
+    public DataQuery then(String part) {
+        return new DataQuery(this.size == 0 ? null : this, ImmutableList.of(part));
     }
 
     /**
@@ -122,7 +251,7 @@ public final class DataQuery {
      * @return This query as a string
      */
     public String asString(String separator) {
-        return Joiner.on(separator).join(this.parts);
+        return Joiner.on(separator).join(getParts());
     }
 
     /**
@@ -135,4 +264,26 @@ public final class DataQuery {
         return asString(String.valueOf(separator));
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof DataQuery)) {
+            return false;
+        }
+        DataQuery other = (DataQuery) o;
+        return this.size == other.size && this.hash == other.hash && getParts().equals(other.getParts());
+    }
+
+    @Override
+    public int hashCode() {
+        return this.hash;
+    }
+
+    @Override
+    public String toString() {
+        return asString('.');
+    }
+
 }
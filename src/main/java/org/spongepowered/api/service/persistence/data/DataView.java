@@ -348,6 +348,102 @@ public interface DataView {
      */
     Optional<List<Map<?, ?>>> getMapList(DataQuery path);
 
+    /**
+     * Gets the array of bytes by path, if available.
+     * <p>If neither an array of bytes nor a {@link List} of
+     * {@link Byte} exists at the path, an absent is returned.</p>
+     * <p>Arrays stored with {@link #setByteArray(DataQuery, byte[])} are
+     * returned as they are, without copying or boxing, so changes to the
+     * returned array change the data of this view.</p>
+     *
+     * @param path The path of the value to get
+     * @return The array of bytes, if available
+     */
+    Optional<byte[]> getByteArray(DataQuery path);
+
+    /**
+     * Gets the array of ints by path, if available.
+     * <p>If neither an array of ints nor a {@link List} of
+     * {@link Integer} exists at the path, an absent is returned.</p>
+     * <p>Arrays stored with {@link #setIntArray(DataQuery, int[])} are
+     * returned as they are, without copying or boxing, so changes to the
+     * returned array change the data of this view.</p>
+     *
+     * @param path The path of the value to get
+     * @return The array of ints, if available
+     */
+    Optional<int[]> getIntArray(DataQuery path);
+
+    /**
+     * Gets the array of longs by path, if available.
+     * <p>If neither an array of longs nor a {@link List} of
+     * {@link Long} exists at the path, an absent is returned.</p>
+     * <p>Arrays stored with {@link #setLongArray(DataQuery, long[])} are
+     * returned as they are, without copying or boxing, so changes to the
+     * returned array change the data of this view.</p>
+     *
+     * @param path The path of the value to get
+     * @return The array of longs, if available
+     */
+    Optional<long[]> getLongArray(DataQuery path);
+
+    /**
+     * Gets the array of doubles by path, if available.
+     * <p>If neither an array of doubles nor a {@link List} of
+     * {@link Double} exists at the path, an absent is returned.</p>
+     * <p>Arrays stored with {@link #setDoubleArray(DataQuery, double[])} are
+     * returned as they are, without copying or boxing, so changes to the
+     * returned array change the data of this view.</p>
+     *
+     * @param path The path of the value to get
+     * @return The array of doubles, if available
+     */
+    Optional<double[]> getDoubleArray(DataQuery path);
+
+    /**
+     * Sets the given array of bytes according to the given path relative
+     * to this {@link DataView}'s path.
+     * <p>The array is stored without being copied, so it should not be
+     * changed afterwards except through this view.</p>
+     *
+     * @param path The path of the array to set
+     * @param value The array of bytes
+     */
+    void setByteArray(DataQuery path, byte[] value);
+
+    /**
+     * Sets the given array of ints according to the given path relative
+     * to this {@link DataView}'s path.
+     * <p>The array is stored without being copied, so it should not be
+     * changed afterwards except through this view.</p>
+     *
+     * @param path The path of the array to set
+     * @param value The array of ints
+     */
+    void setIntArray(DataQuery path, int[] value);
+
+    /**
+     * Sets the given array of longs according to the given path relative
+     * to this {@link DataView}'s path.
+     * <p>The array is stored without being copied, so it should not be
+     * changed afterwards except through this view.</p>
+     *
+     * @param path The path of the array to set
+     * @param value The array of longs
+     */
+    void setLongArray(DataQuery path, long[] value);
+
+    /**
+     * Sets the given array of doubles according to the given path relative
+     * to this {@link DataView}'s path.
+     * <p>The array is stored without being copied, so it should not be
+     * changed afterwards except through this view.</p>
+     *
+     * @param path The path of the array to set
+     * @param value The array of doubles
+     */
+    void setDoubleArray(DataQuery path, double[] value);
+
     /**
      * Gets the {@link DataSerializable} object by path, if available.
      * <p>If a {@link DataSerializable} exists, but is not the proper class
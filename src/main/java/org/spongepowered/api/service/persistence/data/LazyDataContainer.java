@@ -0,0 +1,114 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.persistence.data;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import org.spongepowered.api.service.persistence.InvalidDataException;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link DataContainer} that reads data in the binary NBT format, as
+ * written by {@link NbtCodec}, only when it is accessed.
+ *
+ * <p>The entries of each view are indexed when the view is first accessed,
+ * and their values and the views within them are decoded only when they
+ * are queried, so reading a few values of a large container skips most of
+ * its data. When the container is written with {@link NbtCodec}, the
+ * encoded data of views and values that have not been changed is copied
+ * as it is.</p>
+ *
+ * <p>Malformed data is only detected when it is accessed, and causes an
+ * {@link InvalidDataException} to be thrown then. The buffer that a
+ * container reads from must not be changed while the container is used.
+ * Containers are not thread safe.</p>
+ */
+public final class LazyDataContainer extends LazyDataView implements DataContainer {
+
+    /**
+     * Create a new container over the data in a buffer, from its current
+     * position. The position and order of the buffer are not changed.
+     *
+     * @param buffer The buffer to read from
+     * @throws InvalidDataException If the data does not start with a
+     *     compound
+     */
+    public LazyDataContainer(ByteBuffer buffer) {
+        super(payload(buffer));
+    }
+
+    /**
+     * Gets the payload of the compound at the start of a buffer.
+     */
+    private static ByteBuffer payload(ByteBuffer buffer) {
+        ByteBuffer data = checkNotNull(buffer, "buffer").slice();
+        try {
+            byte tag = data.get();
+            if (tag != NbtCodec.TAG_COMPOUND) {
+                throw new InvalidDataException("The data does not start with a compound, but with tag " + tag);
+            }
+            int length = data.getShort() & 0xFFFF;
+            if (length > data.remaining()) {
+                throw new InvalidDataException("The data ended before its name");
+            }
+            data.position(data.position() + length);
+        } catch (BufferUnderflowException e) {
+            throw new InvalidDataException("The data ended before its name", e);
+        }
+        return data.slice();
+    }
+
+    @Override
+    public DataContainer getContainer() {
+        return this;
+    }
+
+    @Override
+    public Optional<DataView> getParent() {
+        return Optional.absent();
+    }
+
+    @Override
+    public DataQuery getCurrentPath() {
+        return new DataQuery();
+    }
+
+    @Override
+    LazyDataContainer container() {
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("values", getValues(false))
+                .toString();
+    }
+
+}
@@ -0,0 +1,658 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.persistence.data;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.primitives.Bytes;
+import com.google.common.primitives.Doubles;
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+import org.spongepowered.api.service.persistence.DataSerializable;
+import org.spongepowered.api.service.persistence.InvalidDataException;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * A view of a {@link LazyDataContainer}, which indexes its encoded entries
+ * when first accessed and decodes each entry when it is queried.
+ */
+class LazyDataView implements DataView {
+
+    /**
+     * An entry of a view, which refers to its encoded payload and to the
+     * value that was decoded from it or replaced it.
+     */
+    static final class Entry {
+
+        final byte tag;
+        final int offset;
+        final int length;
+
+        // The decoded or new value, or null if it has not been decoded
+        @Nullable Object value;
+
+        // Whether the entry may still be written as its encoded payload
+        boolean verbatim;
+
+        Entry(byte tag, int offset, int length) {
+            this.tag = tag;
+            this.offset = offset;
+            this.length = length;
+            this.verbatim = true;
+        }
+
+        Entry(Object value) {
+            this.tag = -1;
+            this.offset = -1;
+            this.length = -1;
+            this.value = value;
+        }
+
+    }
+
+    @Nullable private final LazyDataContainer container;
+    @Nullable private final LazyDataView parent;
+    private final String name;
+    private final int depth;
+
+    // The encoded entries of this view, or null if it was created empty
+    @Nullable private ByteBuffer data;
+    @Nullable private Map<String, Entry> entries;
+    private boolean modified;
+    private boolean detached;
+
+    /**
+     * Create the root view of a container.
+     */
+    LazyDataView(ByteBuffer data) {
+        this.container = null;
+        this.parent = null;
+        this.name = "";
+        this.depth = 0;
+        this.data = data;
+    }
+
+    LazyDataView(LazyDataContainer container, LazyDataView parent, String name, @Nullable ByteBuffer data) {
+        this.container = container;
+        this.parent = parent;
+        this.name = name;
+        this.depth = parent.depth + 1;
+        this.data = data;
+        if (data == null) {
+            this.entries = new LinkedHashMap<String, Entry>();
+        }
+    }
+
+    LazyDataContainer container() {
+        return this.container;
+    }
+
+    /**
+     * Gets the entries of this view, indexing them first if needed.
+     */
+    Map<String, Entry> entries() {
+        if (this.entries == null) {
+            this.entries = index();
+        }
+        return this.entries;
+    }
+
+    private Map<String, Entry> index() {
+        Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+        ByteBuffer buffer = this.data.duplicate();
+        NbtInput in = NbtInput.of(buffer);
+        try {
+            for (byte tag = buffer.get(); tag != NbtCodec.TAG_END; tag = buffer.get()) {
+                String name = in.readUtf();
+                int offset = buffer.position();
+                NbtCodec.skipPayload(tag, buffer, this.depth + 1);
+                entries.put(name, new Entry(tag, offset, buffer.position() - offset));
+            }
+        } catch (IOException e) {
+            throw truncated(e);
+        } catch (BufferUnderflowException e) {
+            throw truncated(e);
+        }
+        // The data of the root extends to the end of the buffer until now
+        this.data.limit(buffer.position());
+        return entries;
+    }
+
+    private InvalidDataException truncated(Exception cause) {
+        return new InvalidDataException("The data of the view at '" + getCurrentPath().asString('.') + "' is truncated", cause);
+    }
+
+    /**
+     * Gets the encoded entries of this view, which must not be changed.
+     */
+    ByteBuffer payload() {
+        entries();
+        return this.data.duplicate();
+    }
+
+    /**
+     * Gets the encoded payload of an entry.
+     */
+    ByteBuffer payload(Entry entry) {
+        ByteBuffer buffer = this.data.duplicate();
+        buffer.position(entry.offset);
+        buffer.limit(entry.offset + entry.length);
+        return buffer;
+    }
+
+    /**
+     * Gets whether this view may be written as its encoded entries, which
+     * is the case until it or a view within it is changed.
+     */
+    boolean isVerbatim() {
+        if (this.data == null || this.modified) {
+            return false;
+        } else if (this.entries == null) {
+            return true;
+        }
+        for (Entry entry : this.entries.values()) {
+            if (!entry.verbatim || entry.value instanceof LazyDataView && !((LazyDataView) entry.value).isVerbatim()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Marks this view and all views within it as removed from their
+     * container.
+     */
+    private void detach() {
+        this.detached = true;
+        if (this.entries != null) {
+            for (Entry entry : this.entries.values()) {
+                if (entry.value instanceof LazyDataView) {
+                    ((LazyDataView) entry.value).detach();
+                }
+            }
+        }
+        this.data = null;
+        this.entries = Collections.emptyMap();
+    }
+
+    /**
+     * Gets the value of an entry, decoding it first if needed.
+     */
+    private Object decode(String name, Entry entry) {
+        if (entry.value != null) {
+            return entry.value;
+        } else if (entry.tag == NbtCodec.TAG_COMPOUND) {
+            entry.value = new LazyDataView(container(), this, name, payload(entry).slice());
+            return entry.value;
+        }
+
+        Object value;
+        try {
+            value = NbtCodec.readPayload(entry.tag, NbtInput.of(payload(entry)), this.depth + 1);
+        } catch (IOException e) {
+            throw truncated(e);
+        } catch (BufferUnderflowException e) {
+            throw truncated(e);
+        }
+        if (value instanceof List) {
+            value = Collections.unmodifiableList((List<?>) value);
+        }
+        // Values that could be changed by the caller are written from now on
+        entry.verbatim = isImmutable(value);
+        entry.value = value;
+        return value;
+    }
+
+    private static boolean isImmutable(Object value) {
+        if (value instanceof List) {
+            for (Object element : (List<?>) value) {
+                if (!(element instanceof Number || element instanceof String)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return value instanceof Number || value instanceof String;
+    }
+
+    /**
+     * Gets a value of this view, or null if there is none.
+     */
+    @Nullable
+    private Object child(String name) {
+        Entry entry = entries().get(name);
+        return entry != null ? decode(name, entry) : null;
+    }
+
+    /**
+     * Gets a view within this view, without decoding other values.
+     */
+    @Nullable
+    private LazyDataView childView(String name) {
+        Entry entry = entries().get(name);
+        if (entry == null || entry.value == null && entry.tag != NbtCodec.TAG_COMPOUND) {
+            return null;
+        }
+        Object value = decode(name, entry);
+        return value instanceof LazyDataView ? (LazyDataView) value : null;
+    }
+
+    /**
+     * Gets the view that contains the last part of a path, or null if it
+     * does not exist.
+     */
+    @Nullable
+    private LazyDataView parentOf(List<String> parts) {
+        LazyDataView view = this;
+        for (int i = 0; i < parts.size() - 1 && view != null; i++) {
+            view = view.childView(parts.get(i));
+        }
+        return view;
+    }
+
+    /**
+     * Gets the value at a path, or null if it does not exist.
+     */
+    @Nullable
+    private Object value(DataQuery path) {
+        List<String> parts = checkNotNull(path, "path").getParts();
+        if (parts.isEmpty()) {
+            return this;
+        }
+        LazyDataView view = parentOf(parts);
+        return view != null ? view.child(parts.get(parts.size() - 1)) : null;
+    }
+
+    @Override
+    public DataContainer getContainer() {
+        return container();
+    }
+
+    @Override
+    public DataQuery getCurrentPath() {
+        return this.parent.getCurrentPath().then(this.name);
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public Optional<DataView> getParent() {
+        return Optional.<DataView>fromNullable(this.parent);
+    }
+
+    @Override
+    public Set<DataQuery> getKeys(boolean deep) {
+        Set<DataQuery> keys = new LinkedHashSet<DataQuery>();
+        collectKeys(new DataQuery(), deep, keys);
+        return ImmutableSet.copyOf(keys);
+    }
+
+    private void collectKeys(DataQuery path, boolean deep, Set<DataQuery> keys) {
+        for (String key : entries().keySet()) {
+            DataQuery query = path.then(key);
+            keys.add(query);
+            LazyDataView view = deep ? childView(key) : null;
+            if (view != null) {
+                view.collectKeys(query, true, keys);
+            }
+        }
+    }
+
+    @Override
+    public Map<DataQuery, Object> getValues(boolean deep) {
+        Map<DataQuery, Object> values = new LinkedHashMap<DataQuery, Object>();
+        collectValues(new DataQuery(), deep, values);
+        return Collections.unmodifiableMap(values);
+    }
+
+    private void collectValues(DataQuery path, boolean deep, Map<DataQuery, Object> values) {
+        for (Map.Entry<String, Entry> entry : entries().entrySet()) {
+            DataQuery query = path.then(entry.getKey());
+            Object value = decode(entry.getKey(), entry.getValue());
+            values.put(query, value);
+            if (deep && value instanceof LazyDataView) {
+                ((LazyDataView) value).collectValues(query, true, values);
+            }
+        }
+    }
+
+    @Override
+    public boolean contains(DataQuery path) {
+        List<String> parts = checkNotNull(path, "path").getParts();
+        if (parts.isEmpty()) {
+            return true;
+        }
+        LazyDataView view = parentOf(parts);
+        return view != null && view.entries().containsKey(parts.get(parts.size() - 1));
+    }
+
+    @Override
+    public Optional<Object> get(DataQuery path) {
+        return Optional.fromNullable(value(path));
+    }
+
+    private <T> Optional<T> getObject(DataQuery path, Class<T> type) {
+        Object value = value(path);
+        return type.isInstance(value) ? Optional.of(type.cast(value)) : Optional.<T>absent();
+    }
+
+    @Override
+    public void set(DataQuery path, Object value) {
+        checkNotNull(value, "value");
+        String name = last(path);
+        getOrCreateParent(path).setChild(name, value);
+    }
+
+    private void setChild(String name, Object value) {
+        if (value instanceof DataView) {
+            // Copy the view first, as it may be replaced by the new one
+            setChild(name, toMap((DataView) value));
+        } else if (value instanceof Map) {
+            LazyDataView view = createChild(name);
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                view.setChild(entry.getKey().toString(), entry.getValue());
+            }
+        } else {
+            replace(name, new Entry(value));
+        }
+    }
+
+    private static Map<String, Object> toMap(DataView view) {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        for (Map.Entry<DataQuery, Object> entry : view.getValues(false).entrySet()) {
+            List<String> parts = entry.getKey().getParts();
+            Object value = entry.getValue();
+            map.put(parts.get(parts.size() - 1), value instanceof DataView ? toMap((DataView) value) : value);
+        }
+        return map;
+    }
+
+    private LazyDataView createChild(String name) {
+        LazyDataView view = new LazyDataView(container(), this, name, null);
+        replace(name, new Entry(view));
+        return view;
+    }
+
+    private void replace(String name, Entry entry) {
+        Entry previous = entries().put(name, entry);
+        if (previous != null && previous.value instanceof LazyDataView) {
+            ((LazyDataView) previous.value).detach();
+        }
+        this.modified = true;
+    }
+
+    private LazyDataView getOrCreateParent(DataQuery path) {
+        checkState(!this.detached, "This view has been removed from its container");
+        LazyDataView view = this;
+        List<String> parts = path.getParts();
+        for (int i = 0; i < parts.size() - 1; i++) {
+            LazyDataView child = view.childView(parts.get(i));
+            view = child != null ? child : view.createChild(parts.get(i));
+        }
+        return view;
+    }
+
+    private static String last(DataQuery path) {
+        List<String> parts = checkNotNull(path, "path").getParts();
+        checkArgument(!parts.isEmpty(), "The path is empty");
+        return parts.get(parts.size() - 1);
+    }
+
+    @Override
+    public void remove(DataQuery path) {
+        String name = last(path);
+        checkState(!this.detached, "This view has been removed from its container");
+        LazyDataView view = parentOf(path.getParts());
+        Entry previous = view != null ? view.entries().remove(name) : null;
+        if (previous != null) {
+            if (previous.value instanceof LazyDataView) {
+                ((LazyDataView) previous.value).detach();
+            }
+            view.modified = true;
+        }
+    }
+
+    @Override
+    public DataView createView(DataQuery path) {
+        String name = last(path);
+        return getOrCreateParent(path).createChild(name);
+    }
+
+    @Override
+    public DataView createView(DataQuery path, Map<?, ?> map) {
+        checkNotNull(map, "map");
+        String name = last(path);
+        LazyDataView parent = getOrCreateParent(path);
+        parent.setChild(name, map);
+        return parent.childView(name);
+    }
+
+    @Override
+    public Optional<DataView> getView(DataQuery path) {
+        return getObject(path, DataView.class);
+    }
+
+    @Override
+    public Optional<Boolean> getBoolean(DataQuery path) {
+        return getObject(path, Boolean.class);
+    }
+
+    @Override
+    public Optional<Integer> getInt(DataQuery path) {
+        return getObject(path, Integer.class);
+    }
+
+    @Override
+    public Optional<Long> getLong(DataQuery path) {
+        return getObject(path, Long.class);
+    }
+
+    @Override
+    public Optional<Double> getDouble(DataQuery path) {
+        return getObject(path, Double.class);
+    }
+
+    @Override
+    public Optional<String> getString(DataQuery path) {
+        return getObject(path, String.class);
+    }
+
+    @Override
+    public Optional<List<?>> getList(DataQuery path) {
+        Object value = value(path);
+        return value instanceof List ? Optional.<List<?>>of((List<?>) value) : Optional.<List<?>>absent();
+    }
+
+    private <T> Optional<List<T>> getList(DataQuery path, Class<T> elementType) {
+        return Optional.fromNullable(listOf(value(path), elementType));
+    }
+
+    /**
+     * Gets a value as a list if it is a list of instances of the element
+     * type, or a primitive array of it. Arrays are wrapped, not copied.
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> listOf(@Nullable Object value, Class<T> elementType) {
+        if (value instanceof byte[] && elementType == Byte.class) {
+            return (List<T>) Bytes.asList((byte[]) value);
+        } else if (value instanceof int[] && elementType == Integer.class) {
+            return (List<T>) Ints.asList((int[]) value);
+        } else if (value instanceof long[] && elementType == Long.class) {
+            return (List<T>) Longs.asList((long[]) value);
+        } else if (value instanceof double[] && elementType == Double.class) {
+            return (List<T>) Doubles.asList((double[]) value);
+        } else if (!(value instanceof List)) {
+            return null;
+        }
+        for (Object element : (List<?>) value) {
+            if (!elementType.isInstance(element)) {
+                return null;
+            }
+        }
+        return (List<T>) value;
+    }
+
+    @Override
+    public Optional<List<String>> getStringList(DataQuery path) {
+        return getList(path, String.class);
+    }
+
+    @Override
+    public Optional<List<Character>> getCharacterList(DataQuery path) {
+        return getList(path, Character.class);
+    }
+
+    @Override
+    public Optional<List<Boolean>> getBooleanList(DataQuery path) {
+        return getList(path, Boolean.class);
+    }
+
+    @Override
+    public Optional<List<Byte>> getByteList(DataQuery path) {
+        return getList(path, Byte.class);
+    }
+
+    @Override
+    public Optional<List<Short>> getShortList(DataQuery path) {
+        return getList(path, Short.class);
+    }
+
+    @Override
+    public Optional<List<Integer>> getIntegerList(DataQuery path) {
+        return getList(path, Integer.class);
+    }
+
+    @Override
+    public Optional<List<Long>> getLongList(DataQuery path) {
+        return getList(path, Long.class);
+    }
+
+    @Override
+    public Optional<List<Float>> getFloatList(DataQuery path) {
+        return getList(path, Float.class);
+    }
+
+    @Override
+    public Optional<List<Double>> getDoubleList(DataQuery path) {
+        return getList(path, Double.class);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    @Override
+    public Optional<List<Map<?, ?>>> getMapList(DataQuery path) {
+        return (Optional) getList(path, Map.class);
+    }
+
+    @Override
+    public Optional<byte[]> getByteArray(DataQuery path) {
+        Object value = value(path);
+        if (value instanceof byte[]) {
+            return Optional.of((byte[]) value);
+        }
+        List<Byte> list = listOf(value, Byte.class);
+        return list != null ? Optional.of(Bytes.toArray(list)) : Optional.<byte[]>absent();
+    }
+
+    @Override
+    public Optional<int[]> getIntArray(DataQuery path) {
+        Object value = value(path);
+        if (value instanceof int[]) {
+            return Optional.of((int[]) value);
+        }
+        List<Integer> list = listOf(value, Integer.class);
+        return list != null ? Optional.of(Ints.toArray(list)) : Optional.<int[]>absent();
+    }
+
+    @Override
+    public Optional<long[]> getLongArray(DataQuery path) {
+        Object value = value(path);
+        if (value instanceof long[]) {
+            return Optional.of((long[]) value);
+        }
+        List<Long> list = listOf(value, Long.class);
+        return list != null ? Optional.of(Longs.toArray(list)) : Optional.<long[]>absent();
+    }
+
+    @Override
+    public Optional<double[]> getDoubleArray(DataQuery path) {
+        Object value = value(path);
+        if (value instanceof double[]) {
+            return Optional.of((double[]) value);
+        }
+        List<Double> list = listOf(value, Double.class);
+        return list != null ? Optional.of(Doubles.toArray(list)) : Optional.<double[]>absent();
+    }
+
+    @Override
+    public void setByteArray(DataQuery path, byte[] value) {
+        set(path, value);
+    }
+
+    @Override
+    public void setIntArray(DataQuery path, int[] value) {
+        set(path, value);
+    }
+
+    @Override
+    public void setLongArray(DataQuery path, long[] value) {
+        set(path, value);
+    }
+
+    @Override
+    public void setDoubleArray(DataQuery path, double[] value) {
+        set(path, value);
+    }
+
+    @Override
+    public <T extends DataSerializable> Optional<T> getSerializable(DataQuery path, Class<T> clazz) {
+        checkNotNull(clazz, "clazz");
+        return getObject(path, clazz);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{path=" + getCurrentPath().asString('.') + "}";
+    }
+
+}
@@ -0,0 +1,639 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.persistence.data;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.primitives.Booleans;
+import com.google.common.primitives.Bytes;
+import com.google.common.primitives.Chars;
+import com.google.common.primitives.Doubles;
+import com.google.common.primitives.Floats;
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+import com.google.common.primitives.Shorts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A reference {@link DataContainer} that is kept in memory.
+ *
+ * <p>All entries of a container and its views are kept in one flat hash
+ * table, keyed by the view that contains them and their name. Looking up a
+ * path walks the table once per part of the path, so no intermediate views
+ * or keys are created. Primitive values are stored unboxed, lists of a
+ * single primitive type are stored as primitive arrays, and primitive arrays
+ * are stored as they are.</p>
+ *
+ * <p>Views of a container stay valid until they are removed or overwritten,
+ * after which they are empty and can no longer be changed.</p>
+ *
+ * <p>Containers track which of their entries were changed, so that the
+ * changes can be saved as a {@link DataPatch} instead of saving the whole
+ * container again. Tracking costs a flag per entry, and the paths of
+ * changes are only built when the changes are requested. Stored arrays and
+ * lists of primitives are returned as they are and may be changed in place,
+ * so returning one marks its entry as changed.</p>
+ *
+ * <p>Containers are not thread safe.</p>
+ */
+public final class MemoryDataContainer extends MemoryDataView implements DataContainer {
+
+    static final int ROOT = -2;
+
+    // Types of entries
+    static final byte VIEW = 1;
+    static final byte OBJECT = 2;
+    static final byte BOOLEAN = 3;
+    static final byte BYTE = 4;
+    static final byte SHORT = 5;
+    static final byte CHAR = 6;
+    static final byte INT = 7;
+    static final byte LONG = 8;
+    static final byte FLOAT = 9;
+    static final byte DOUBLE = 10;
+    static final byte BOOLEAN_LIST = 11;
+    static final byte BYTE_LIST = 12;
+    static final byte SHORT_LIST = 13;
+    static final byte CHAR_LIST = 14;
+    static final byte INT_LIST = 15;
+    static final byte LONG_LIST = 16;
+    static final byte FLOAT_LIST = 17;
+    static final byte DOUBLE_LIST = 18;
+    static final byte BYTE_ARRAY = 19;
+    static final byte INT_ARRAY = 20;
+    static final byte LONG_ARRAY = 21;
+    static final byte DOUBLE_ARRAY = 22;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // The hash table holds entry indices plus one, so that zero is free
+    private int[] table = new int[INITIAL_CAPACITY * 2];
+
+    // Entries, by index; the indices of removed entries are reused
+    private int[] parents = new int[INITIAL_CAPACITY];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private long[] bits = new long[INITIAL_CAPACITY];
+    private Object[] values = new Object[INITIAL_CAPACITY];
+    private int[] next = new int[INITIAL_CAPACITY];
+    private int[] previous = new int[INITIAL_CAPACITY];
+
+    private int allocated;
+    private int free = -1;
+    private int size;
+
+    // Changes since they were last cleared: the entries that were set, and
+    // the paths of entries that were removed
+    private boolean[] changed = new boolean[INITIAL_CAPACITY];
+    private int[] changes = new int[INITIAL_CAPACITY];
+    private int changeCount;
+    private final Set<DataQuery> removals = new LinkedHashSet<DataQuery>();
+
+    /**
+     * Create a new empty container.
+     */
+    public MemoryDataContainer() {
+        super(ROOT, "");
+    }
+
+    @Override
+    public DataContainer getContainer() {
+        return this;
+    }
+
+    @Override
+    public Optional<DataView> getParent() {
+        return Optional.absent();
+    }
+
+    @Override
+    public DataQuery getCurrentPath() {
+        return new DataQuery();
+    }
+
+    @Override
+    MemoryDataContainer container() {
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("values", getValues(false))
+                .toString();
+    }
+
+    /**
+     * Gets the number of entries in this container, including views.
+     *
+     * @return The number of entries
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Gets the changes to this container since it was created or its changes
+     * were last cleared. Values of the patch are copies, so the patch may be
+     * used while this container is changed further.
+     *
+     * @return The changes
+     */
+    public DataPatch getChanges() {
+        Set<DataQuery> paths = new LinkedHashSet<DataQuery>();
+        for (int i = 0; i < this.changeCount; i++) {
+            int entry = this.changes[i];
+            if (this.changed[entry]) {
+                paths.add(pathOf(entry));
+            }
+        }
+        paths.addAll(this.removals);
+        return DataPatch.of(this, paths);
+    }
+
+    /**
+     * Forgets the changes to this container, usually after they were saved.
+     */
+    public void clearChanges() {
+        for (int i = 0; i < this.changeCount; i++) {
+            this.changed[this.changes[i]] = false;
+        }
+        this.changeCount = 0;
+        this.removals.clear();
+    }
+
+    private void markChanged(int entry) {
+        if (!this.changed[entry]) {
+            this.changed[entry] = true;
+            if (this.changeCount == this.changes.length) {
+                this.changes = Arrays.copyOf(this.changes, this.changeCount * 2);
+            }
+            this.changes[this.changeCount++] = entry;
+        }
+    }
+
+    private DataQuery pathOf(int entry) {
+        List<String> parts = new ArrayList<String>();
+        for (int i = entry; i != ROOT; i = this.parents[i]) {
+            parts.add(this.names[i]);
+        }
+        Collections.reverse(parts);
+        return new DataQuery(parts);
+    }
+
+    // Lookups
+
+    private static int hash(int parent, String name) {
+        int h = name.hashCode() * 31 + parent;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Finds the entry of a view with a name.
+     *
+     * @return The index of the entry, or -1 if it does not exist
+     */
+    int find(int parent, String name) {
+        int mask = this.table.length - 1;
+        for (int slot = hash(parent, name) & mask;; slot = (slot + 1) & mask) {
+            int entry = this.table[slot] - 1;
+            if (entry < 0) {
+                return -1;
+            }
+            if (this.parents[entry] == parent && this.names[entry].equals(name)) {
+                return entry;
+            }
+        }
+    }
+
+    /**
+     * Finds the entry at a path relative to a view.
+     *
+     * @return The index of the entry, or -1 if it does not exist
+     */
+    int resolve(int view, List<String> parts) {
+        int entry = view;
+        for (int i = 0; i < parts.size(); i++) {
+            if (i > 0 && this.types[entry] != VIEW) {
+                return -1;
+            }
+            entry = find(entry, parts.get(i));
+            if (entry < 0) {
+                return -1;
+            }
+        }
+        return entry;
+    }
+
+    byte type(int entry) {
+        return this.types[entry];
+    }
+
+    String name(int entry) {
+        return this.names[entry];
+    }
+
+    int next(int entry) {
+        return this.next[entry];
+    }
+
+    Object value(int entry) {
+        return this.values[entry];
+    }
+
+    MemoryDataView view(int entry) {
+        return entry == ROOT ? this : (MemoryDataView) this.values[entry];
+    }
+
+    /**
+     * Gets the value of an entry, boxing primitives.
+     */
+    Object get(int entry) {
+        long bits = this.bits[entry];
+        switch (this.types[entry]) {
+            case BOOLEAN:
+                return bits != 0;
+            case BYTE:
+                return (byte) bits;
+            case SHORT:
+                return (short) bits;
+            case CHAR:
+                return (char) bits;
+            case INT:
+                return (int) bits;
+            case LONG:
+                return bits;
+            case FLOAT:
+                return Float.intBitsToFloat((int) bits);
+            case DOUBLE:
+                return Double.longBitsToDouble(bits);
+            default:
+                return this.values[entry];
+        }
+    }
+
+    /**
+     * Gets the value of an entry to return from this container, like
+     * {@link #get(int)}. Stored arrays and lists of primitives are returned
+     * as they are and may be changed in place, so their entries are marked
+     * as changed.
+     */
+    Object share(int entry) {
+        byte type = this.types[entry];
+        if (type >= BOOLEAN_LIST && type <= DOUBLE_ARRAY) {
+            markChanged(entry);
+        }
+        return get(entry);
+    }
+
+    long bits(int entry) {
+        return this.bits[entry];
+    }
+
+    // Changes
+
+    /**
+     * Sets the value of a view with a name, replacing any existing entry.
+     *
+     * @return The index of the entry
+     */
+    int set(int parent, String name, Object value) {
+        checkNotNull(value, "value");
+        int entry = replace(parent, name);
+        if (value instanceof Boolean) {
+            this.types[entry] = BOOLEAN;
+            this.bits[entry] = (Boolean) value ? 1 : 0;
+        } else if (value instanceof Byte) {
+            this.types[entry] = BYTE;
+            this.bits[entry] = (Byte) value;
+        } else if (value instanceof Short) {
+            this.types[entry] = SHORT;
+            this.bits[entry] = (Short) value;
+        } else if (value instanceof Character) {
+            this.types[entry] = CHAR;
+            this.bits[entry] = (Character) value;
+        } else if (value instanceof Integer) {
+            this.types[entry] = INT;
+            this.bits[entry] = (Integer) value;
+        } else if (value instanceof Long) {
+            this.types[entry] = LONG;
+            this.bits[entry] = (Long) value;
+        } else if (value instanceof Float) {
+            this.types[entry] = FLOAT;
+            this.bits[entry] = Float.floatToRawIntBits((Float) value);
+        } else if (value instanceof Double) {
+            this.types[entry] = DOUBLE;
+            this.bits[entry] = Double.doubleToRawLongBits((Double) value);
+        } else if (value instanceof List) {
+            setList(entry, (List<?>) value);
+        } else if (value instanceof byte[]) {
+            this.types[entry] = BYTE_ARRAY;
+            this.values[entry] = value;
+        } else if (value instanceof int[]) {
+            this.types[entry] = INT_ARRAY;
+            this.values[entry] = value;
+        } else if (value instanceof long[]) {
+            this.types[entry] = LONG_ARRAY;
+            this.values[entry] = value;
+        } else if (value instanceof double[]) {
+            this.types[entry] = DOUBLE_ARRAY;
+            this.values[entry] = value;
+        } else {
+            this.types[entry] = OBJECT;
+            this.values[entry] = value;
+        }
+        return entry;
+    }
+
+    /**
+     * Sets a primitive value of a view with a name, replacing any existing
+     * entry.
+     *
+     * @return The index of the entry
+     */
+    int setBits(int parent, String name, byte type, long bits) {
+        int entry = replace(parent, name);
+        this.types[entry] = type;
+        this.bits[entry] = bits;
+        return entry;
+    }
+
+    /**
+     * Sets a list of a view with a name, replacing any existing entry. The
+     * list must already be stored in the way the type requires.
+     *
+     * @return The index of the entry
+     */
+    int setTypedList(int parent, String name, byte type, List<?> list) {
+        int entry = replace(parent, name);
+        this.types[entry] = type;
+        this.values[entry] = list;
+        return entry;
+    }
+
+    /**
+     * Finds or inserts the entry of a view with a name and clears it.
+     */
+    private int replace(int parent, String name) {
+        int entry = find(parent, name);
+        if (entry >= 0 && this.types[entry] == VIEW) {
+            discard(entry);
+            entry = -1;
+        }
+        if (entry < 0) {
+            entry = insert(parent, name);
+        }
+        this.values[entry] = null;
+        this.bits[entry] = 0;
+        markChanged(entry);
+        return entry;
+    }
+
+    private void setList(int entry, List<?> list) {
+        byte type = list.isEmpty() ? OBJECT : listType(list.get(0));
+        for (int i = 1; i < list.size() && type != OBJECT; i++) {
+            if (listType(list.get(i)) != type) {
+                type = OBJECT;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Object> objects = (List<Object>) list;
+        this.types[entry] = type;
+        switch (type) {
+            case BOOLEAN_LIST:
+                this.values[entry] = Booleans.asList(Booleans.toArray(cast(objects, Boolean.class)));
+                break;
+            case BYTE_LIST:
+                this.values[entry] = Bytes.asList(Bytes.toArray(cast(objects, Byte.class)));
+                break;
+            case SHORT_LIST:
+                this.values[entry] = Shorts.asList(Shorts.toArray(cast(objects, Short.class)));
+                break;
+            case CHAR_LIST:
+                this.values[entry] = Chars.asList(Chars.toArray(cast(objects, Character.class)));
+                break;
+            case INT_LIST:
+                this.values[entry] = Ints.asList(Ints.toArray(cast(objects, Integer.class)));
+                break;
+            case LONG_LIST:
+                this.values[entry] = Longs.asList(Longs.toArray(cast(objects, Long.class)));
+                break;
+            case FLOAT_LIST:
+                this.values[entry] = Floats.asList(Floats.toArray(cast(objects, Float.class)));
+                break;
+            case DOUBLE_LIST:
+                this.values[entry] = Doubles.asList(Doubles.toArray(cast(objects, Double.class)));
+                break;
+            default:
+                this.values[entry] = Collections.unmodifiableList(new ArrayList<Object>(list));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> cast(List<Object> list, Class<T> type) {
+        return (List<T>) list;
+    }
+
+    private static byte listType(Object element) {
+        if (element instanceof Boolean) {
+            return BOOLEAN_LIST;
+        } else if (element instanceof Byte) {
+            return BYTE_LIST;
+        } else if (element instanceof Short) {
+            return SHORT_LIST;
+        } else if (element instanceof Character) {
+            return CHAR_LIST;
+        } else if (element instanceof Integer) {
+            return INT_LIST;
+        } else if (element instanceof Long) {
+            return LONG_LIST;
+        } else if (element instanceof Float) {
+            return FLOAT_LIST;
+        } else if (element instanceof Double) {
+            return DOUBLE_LIST;
+        }
+        return OBJECT;
+    }
+
+    /**
+     * Creates an empty view with a name, replacing any existing entry.
+     */
+    MemoryDataView createView(MemoryDataView parent, String name) {
+        int entry = find(parent.id, name);
+        if (entry >= 0) {
+            discard(entry);
+        }
+        entry = insert(parent.id, name);
+        MemoryDataView view = new MemoryDataView(this, parent, entry, name);
+        this.types[entry] = VIEW;
+        this.values[entry] = view;
+        markChanged(entry);
+        return view;
+    }
+
+    private int insert(int parent, String name) {
+        if ((this.size + 1) * 2 > this.table.length) {
+            rehash(this.table.length * 2);
+        }
+
+        int entry = this.free;
+        if (entry >= 0) {
+            this.free = this.next[entry];
+        } else {
+            if (this.allocated == this.parents.length) {
+                growEntries();
+            }
+            entry = this.allocated++;
+        }
+
+        this.parents[entry] = parent;
+        this.names[entry] = name;
+        this.size++;
+        place(entry);
+
+        // Link the entry at the end of its view
+        MemoryDataView view = view(parent);
+        this.next[entry] = -1;
+        this.previous[entry] = view.tail;
+        if (view.tail >= 0) {
+            this.next[view.tail] = entry;
+        } else {
+            view.head = entry;
+        }
+        view.tail = entry;
+        return entry;
+    }
+
+    private void place(int entry) {
+        int mask = this.table.length - 1;
+        int slot = hash(this.parents[entry], this.names[entry]) & mask;
+        while (this.table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        this.table[slot] = entry + 1;
+    }
+
+    /**
+     * Removes an entry, and all entries within it if it is a view, and
+     * tracks the removal.
+     */
+    void remove(int entry) {
+        this.removals.add(pathOf(entry));
+        discard(entry);
+    }
+
+    /**
+     * Removes an entry, and all entries within it if it is a view.
+     */
+    private void discard(int entry) {
+        if (this.types[entry] == VIEW) {
+            MemoryDataView view = (MemoryDataView) this.values[entry];
+            while (view.head >= 0) {
+                discard(view.head);
+            }
+            view.detach();
+        }
+
+        // Unlink the entry from its view
+        MemoryDataView parent = view(this.parents[entry]);
+        int previous = this.previous[entry];
+        int next = this.next[entry];
+        if (previous >= 0) {
+            this.next[previous] = next;
+        } else {
+            parent.head = next;
+        }
+        if (next >= 0) {
+            this.previous[next] = previous;
+        } else {
+            parent.tail = previous;
+        }
+
+        unplace(entry);
+        this.names[entry] = null;
+        this.values[entry] = null;
+        this.types[entry] = 0;
+        this.changed[entry] = false;
+        this.next[entry] = this.free;
+        this.free = entry;
+        this.size--;
+    }
+
+    private void unplace(int entry) {
+        int mask = this.table.length - 1;
+        int slot = hash(this.parents[entry], this.names[entry]) & mask;
+        while (this.table[slot] != entry + 1) {
+            slot = (slot + 1) & mask;
+        }
+
+        // Shift back later entries of the same run, so lookups need no tombstones
+        for (int gap = slot, i = (slot + 1) & mask;; i = (i + 1) & mask) {
+            int other = this.table[i] - 1;
+            if (other < 0) {
+                this.table[gap] = 0;
+                return;
+            }
+            int home = hash(this.parents[other], this.names[other]) & mask;
+            // Move the entry into the gap unless its home lies after the gap
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                this.table[gap] = other + 1;
+                gap = i;
+            }
+        }
+    }
+
+    private void growEntries() {
+        int capacity = this.parents.length * 2;
+        this.parents = Arrays.copyOf(this.parents, capacity);
+        this.names = Arrays.copyOf(this.names, capacity);
+        this.types = Arrays.copyOf(this.types, capacity);
+        this.bits = Arrays.copyOf(this.bits, capacity);
+        this.values = Arrays.copyOf(this.values, capacity);
+        this.next = Arrays.copyOf(this.next, capacity);
+        this.previous = Arrays.copyOf(this.previous, capacity);
+        this.changed = Arrays.copyOf(this.changed, capacity);
+    }
+
+    private void rehash(int capacity) {
+        checkArgument(capacity > 0, "too many entries");
+        this.table = new int[capacity];
+        for (int entry = 0; entry < this.allocated; entry++) {
+            if (this.names[entry] != null) {
+                place(entry);
+            }
+        }
+    }
+
+}
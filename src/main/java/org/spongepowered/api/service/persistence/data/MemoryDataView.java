@@ -0,0 +1,482 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.persistence.data;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.primitives.Bytes;
+import com.google.common.primitives.Doubles;
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+import org.spongepowered.api.service.persistence.DataSerializable;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * A view of a {@link MemoryDataContainer}, which reads and writes the
+ * entries of the container that lie within it.
+ */
+class MemoryDataView implements DataView {
+
+    final int id;
+    private final String name;
+    @Nullable private final MemoryDataContainer container;
+    @Nullable private final MemoryDataView parent;
+    private boolean detached;
+
+    // The first and last entries within this view
+    int head = -1;
+    int tail = -1;
+
+    /**
+     * Create the root view of a container.
+     */
+    MemoryDataView(int id, String name) {
+        this.id = id;
+        this.name = name;
+        this.container = null;
+        this.parent = null;
+    }
+
+    MemoryDataView(MemoryDataContainer container, MemoryDataView parent, int id, String name) {
+        this.id = id;
+        this.name = name;
+        this.container = container;
+        this.parent = parent;
+    }
+
+    MemoryDataContainer container() {
+        return this.container;
+    }
+
+    /**
+     * Marks this view as removed from its container.
+     */
+    void detach() {
+        this.detached = true;
+    }
+
+    @Override
+    public DataContainer getContainer() {
+        return container();
+    }
+
+    @Override
+    public DataQuery getCurrentPath() {
+        return this.parent.getCurrentPath().then(this.name);
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public Optional<DataView> getParent() {
+        return Optional.<DataView>fromNullable(this.parent);
+    }
+
+    @Override
+    public Set<DataQuery> getKeys(boolean deep) {
+        Map<DataQuery, Object> values = new LinkedHashMap<DataQuery, Object>();
+        collect(this, new DataQuery(), deep, values);
+        return ImmutableSet.copyOf(values.keySet());
+    }
+
+    @Override
+    public Map<DataQuery, Object> getValues(boolean deep) {
+        Map<DataQuery, Object> values = new LinkedHashMap<DataQuery, Object>();
+        collect(this, new DataQuery(), deep, values);
+        return Collections.unmodifiableMap(values);
+    }
+
+    private void collect(MemoryDataView view, DataQuery path, boolean deep, Map<DataQuery, Object> values) {
+        if (view.detached) {
+            return;
+        }
+        MemoryDataContainer container = container();
+        for (int entry = view.head; entry >= 0; entry = container.next(entry)) {
+            DataQuery query = path.then(container.name(entry));
+            values.put(query, container.share(entry));
+            if (deep && container.type(entry) == MemoryDataContainer.VIEW) {
+                collect(container.view(entry), query, true, values);
+            }
+        }
+    }
+
+    /**
+     * Finds the entry at a path.
+     *
+     * @return The index of the entry, -1 if there is none, or the id of
+     *         this view if the path is empty
+     */
+    private int find(DataQuery path) {
+        checkNotNull(path, "path");
+        if (this.detached) {
+            return -1;
+        }
+        return container().resolve(this.id, path.getParts());
+    }
+
+    @Override
+    public boolean contains(DataQuery path) {
+        return find(path) != -1;
+    }
+
+    @Override
+    public Optional<Object> get(DataQuery path) {
+        int entry = find(path);
+        if (entry == -1) {
+            return Optional.absent();
+        } else if (entry == this.id) {
+            return Optional.<Object>of(this);
+        }
+        return Optional.of(container().share(entry));
+    }
+
+    @Override
+    public void set(DataQuery path, Object value) {
+        checkNotNull(value, "value");
+        String name = last(path);
+        getOrCreateParent(path).setChild(name, value);
+    }
+
+    private void setChild(String name, Object value) {
+        if (value instanceof DataView) {
+            // Copy the view first, as it may be replaced by the new one
+            setChild(name, toMap((DataView) value));
+        } else if (value instanceof Map) {
+            MemoryDataView view = container().createView(this, name);
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                view.setChild(entry.getKey().toString(), entry.getValue());
+            }
+        } else {
+            container().set(this.id, name, value);
+        }
+    }
+
+    private static Map<String, Object> toMap(DataView view) {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        for (Map.Entry<DataQuery, Object> entry : view.getValues(false).entrySet()) {
+            List<String> parts = entry.getKey().getParts();
+            Object value = entry.getValue();
+            map.put(parts.get(parts.size() - 1), value instanceof DataView ? toMap((DataView) value) : value);
+        }
+        return map;
+    }
+
+    private MemoryDataView getOrCreateParent(DataQuery path) {
+        checkState(!this.detached, "This view has been removed from its container");
+        MemoryDataContainer container = container();
+        MemoryDataView view = this;
+        List<String> parts = path.getParts();
+        for (int i = 0; i < parts.size() - 1; i++) {
+            int entry = container.find(view.id, parts.get(i));
+            if (entry >= 0 && container.type(entry) == MemoryDataContainer.VIEW) {
+                view = container.view(entry);
+            } else {
+                view = container.createView(view, parts.get(i));
+            }
+        }
+        return view;
+    }
+
+    private static String last(DataQuery path) {
+        List<String> parts = checkNotNull(path, "path").getParts();
+        checkArgument(!parts.isEmpty(), "The path is empty");
+        return parts.get(parts.size() - 1);
+    }
+
+    @Override
+    public void remove(DataQuery path) {
+        checkArgument(!checkNotNull(path, "path").getParts().isEmpty(), "The path is empty");
+        checkState(!this.detached, "This view has been removed from its container");
+        int entry = find(path);
+        if (entry >= 0) {
+            container().remove(entry);
+        }
+    }
+
+    @Override
+    public DataView createView(DataQuery path) {
+        String name = last(path);
+        return container().createView(getOrCreateParent(path), name);
+    }
+
+    @Override
+    public DataView createView(DataQuery path, Map<?, ?> map) {
+        checkNotNull(map, "map");
+        String name = last(path);
+        MemoryDataView parent = getOrCreateParent(path);
+        parent.setChild(name, map);
+        return parent.container().view(parent.container().find(parent.id, name));
+    }
+
+    private int findTyped(DataQuery path, byte type) {
+        int entry = find(path);
+        return entry >= 0 && container().type(entry) == type ? entry : -1;
+    }
+
+    @Override
+    public Optional<DataView> getView(DataQuery path) {
+        int entry = findTyped(path, MemoryDataContainer.VIEW);
+        return entry >= 0 ? Optional.<DataView>of(container().view(entry)) : Optional.<DataView>absent();
+    }
+
+    @Override
+    public Optional<Boolean> getBoolean(DataQuery path) {
+        int entry = findTyped(path, MemoryDataContainer.BOOLEAN);
+        return entry >= 0 ? Optional.of(container().bits(entry) != 0) : Optional.<Boolean>absent();
+    }
+
+    @Override
+    public Optional<Integer> getInt(DataQuery path) {
+        int entry = findTyped(path, MemoryDataContainer.INT);
+        return entry >= 0 ? Optional.of((int) container().bits(entry)) : Optional.<Integer>absent();
+    }
+
+    @Override
+    public Optional<Long> getLong(DataQuery path) {
+        int entry = findTyped(path, MemoryDataContainer.LONG);
+        return entry >= 0 ? Optional.of(container().bits(entry)) : Optional.<Long>absent();
+    }
+
+    @Override
+    public Optional<Double> getDouble(DataQuery path) {
+        int entry = findTyped(path, MemoryDataContainer.DOUBLE);
+        return entry >= 0 ? Optional.of(Double.longBitsToDouble(container().bits(entry))) : Optional.<Double>absent();
+    }
+
+    @Override
+    public Optional<String> getString(DataQuery path) {
+        return getObject(path, String.class);
+    }
+
+    private <T> Optional<T> getObject(DataQuery path, Class<T> type) {
+        int entry = findTyped(path, MemoryDataContainer.OBJECT);
+        if (entry >= 0 && type.isInstance(container().value(entry))) {
+            return Optional.of(type.cast(container().value(entry)));
+        }
+        return Optional.absent();
+    }
+
+    @Override
+    public Optional<List<?>> getList(DataQuery path) {
+        int entry = find(path);
+        if (entry >= 0 && container().value(entry) instanceof List) {
+            return Optional.<List<?>>of((List<?>) container().share(entry));
+        }
+        return Optional.absent();
+    }
+
+    /**
+     * Gets a list, either stored as a primitive list of the given type, or
+     * as a list of objects that are all instances of the element type.
+     */
+    private <T> Optional<List<T>> getList(DataQuery path, byte listType, Class<T> elementType) {
+        return getList(path, listType, (byte) 0, elementType);
+    }
+
+    /**
+     * Gets a list, either stored as a primitive list or array of the given
+     * types, or as a list of objects that are all instances of the element
+     * type. Arrays are wrapped, not copied, so writes through the list are
+     * tracked as changes like writes to the array.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Optional<List<T>> getList(DataQuery path, byte listType, byte arrayType, Class<T> elementType) {
+        int entry = find(path);
+        if (entry < 0) {
+            return Optional.absent();
+        }
+        MemoryDataContainer container = container();
+        Object value = container.value(entry);
+        if (container.type(entry) == listType) {
+            return Optional.of((List<T>) container.share(entry));
+        } else if (container.type(entry) == arrayType) {
+            return Optional.of((List<T>) asList(container.share(entry)));
+        } else if (container.type(entry) != MemoryDataContainer.OBJECT || !(value instanceof List)) {
+            return Optional.absent();
+        }
+        for (Object element : (List<?>) value) {
+            if (!elementType.isInstance(element)) {
+                return Optional.absent();
+            }
+        }
+        return Optional.of((List<T>) value);
+    }
+
+    @Override
+    public Optional<List<String>> getStringList(DataQuery path) {
+        return getList(path, (byte) 0, String.class);
+    }
+
+    @Override
+    public Optional<List<Character>> getCharacterList(DataQuery path) {
+        return getList(path, MemoryDataContainer.CHAR_LIST, Character.class);
+    }
+
+    @Override
+    public Optional<List<Boolean>> getBooleanList(DataQuery path) {
+        return getList(path, MemoryDataContainer.BOOLEAN_LIST, Boolean.class);
+    }
+
+    @Override
+    public Optional<List<Byte>> getByteList(DataQuery path) {
+        return getList(path, MemoryDataContainer.BYTE_LIST, MemoryDataContainer.BYTE_ARRAY, Byte.class);
+    }
+
+    @Override
+    public Optional<List<Short>> getShortList(DataQuery path) {
+        return getList(path, MemoryDataContainer.SHORT_LIST, Short.class);
+    }
+
+    @Override
+    public Optional<List<Integer>> getIntegerList(DataQuery path) {
+        return getList(path, MemoryDataContainer.INT_LIST, MemoryDataContainer.INT_ARRAY, Integer.class);
+    }
+
+    @Override
+    public Optional<List<Long>> getLongList(DataQuery path) {
+        return getList(path, MemoryDataContainer.LONG_LIST, MemoryDataContainer.LONG_ARRAY, Long.class);
+    }
+
+    @Override
+    public Optional<List<Float>> getFloatList(DataQuery path) {
+        return getList(path, MemoryDataContainer.FLOAT_LIST, Float.class);
+    }
+
+    @Override
+    public Optional<List<Double>> getDoubleList(DataQuery path) {
+        return getList(path, MemoryDataContainer.DOUBLE_LIST, MemoryDataContainer.DOUBLE_ARRAY, Double.class);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    @Override
+    public Optional<List<Map<?, ?>>> getMapList(DataQuery path) {
+        return (Optional) getList(path, (byte) 0, Map.class);
+    }
+
+    private static List<?> asList(Object array) {
+        if (array instanceof byte[]) {
+            return Bytes.asList((byte[]) array);
+        } else if (array instanceof int[]) {
+            return Ints.asList((int[]) array);
+        } else if (array instanceof long[]) {
+            return Longs.asList((long[]) array);
+        }
+        return Doubles.asList((double[]) array);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Optional<byte[]> getByteArray(DataQuery path) {
+        int entry = find(path);
+        if (entry >= 0 && container().type(entry) == MemoryDataContainer.BYTE_ARRAY) {
+            return Optional.of((byte[]) container().share(entry));
+        } else if (entry >= 0 && container().type(entry) == MemoryDataContainer.BYTE_LIST) {
+            return Optional.of(Bytes.toArray((List<Byte>) container().value(entry)));
+        }
+        return Optional.absent();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Optional<int[]> getIntArray(DataQuery path) {
+        int entry = find(path);
+        if (entry >= 0 && container().type(entry) == MemoryDataContainer.INT_ARRAY) {
+            return Optional.of((int[]) container().share(entry));
+        } else if (entry >= 0 && container().type(entry) == MemoryDataContainer.INT_LIST) {
+            return Optional.of(Ints.toArray((List<Integer>) container().value(entry)));
+        }
+        return Optional.absent();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Optional<long[]> getLongArray(DataQuery path) {
+        int entry = find(path);
+        if (entry >= 0 && container().type(entry) == MemoryDataContainer.LONG_ARRAY) {
+            return Optional.of((long[]) container().share(entry));
+        } else if (entry >= 0 && container().type(entry) == MemoryDataContainer.LONG_LIST) {
+            return Optional.of(Longs.toArray((List<Long>) container().value(entry)));
+        }
+        return Optional.absent();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Optional<double[]> getDoubleArray(DataQuery path) {
+        int entry = find(path);
+        if (entry >= 0 && container().type(entry) == MemoryDataContainer.DOUBLE_ARRAY) {
+            return Optional.of((double[]) container().share(entry));
+        } else if (entry >= 0 && container().type(entry) == MemoryDataContainer.DOUBLE_LIST) {
+            return Optional.of(Doubles.toArray((List<Double>) container().value(entry)));
+        }
+        return Optional.absent();
+    }
+
+    @Override
+    public void setByteArray(DataQuery path, byte[] value) {
+        set(path, value);
+    }
+
+    @Override
+    public void setIntArray(DataQuery path, int[] value) {
+        set(path, value);
+    }
+
+    @Override
+    public void setLongArray(DataQuery path, long[] value) {
+        set(path, value);
+    }
+
+    @Override
+    public void setDoubleArray(DataQuery path, double[] value) {
+        set(path, value);
+    }
+
+    @Override
+    public <T extends DataSerializable> Optional<T> getSerializable(DataQuery path, Class<T> clazz) {
+        checkNotNull(clazz, "clazz");
+        return getObject(path, clazz);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{path=" + getCurrentPath().asString('.') + "}";
+    }
+
+}
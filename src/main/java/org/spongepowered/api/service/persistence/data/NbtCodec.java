@@ -0,0 +1,616 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.persistence.data;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.primitives.Bytes;
+import com.google.common.primitives.Doubles;
+import com.google.common.primitives.Floats;
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+import com.google.common.primitives.Shorts;
+import org.spongepowered.api.service.persistence.DataSerializable;
+import org.spongepowered.api.service.persistence.InvalidDataException;
+
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes {@link DataView}s in the binary NBT format, as a
+ * compound tag with an empty name.
+ *
+ * <p>Data is streamed directly between a view and its binary form without
+ * building any intermediate tree. Views of a {@link MemoryDataContainer} are
+ * written without boxing their primitive values, and read data is stored in
+ * a new {@link MemoryDataContainer}. To decode data only as it is
+ * accessed, wrap it in a {@link LazyDataContainer} instead.</p>
+ *
+ * <p>The values of a view are written as follows:</p>
+ *
+ * <ul>
+ *     <li>Bytes, shorts, integers, longs, floats, doubles and strings as
+ *     their respective tags</li>
+ *     <li>Booleans as bytes, and characters as shorts</li>
+ *     <li>Byte, integer and long arrays as their respective array tags</li>
+ *     <li>Double arrays as lists of doubles, as NBT has no double array</li>
+ *     <li>Lists as lists, if all their elements are written as the same
+ *     tag</li>
+ *     <li>Views, maps and {@link DataSerializable}s as compounds</li>
+ * </ul>
+ *
+ * <p>Other values cannot be written. Lists of numbers are read as lists of
+ * the numbers' type, and compounds within lists are read as maps.</p>
+ */
+public final class NbtCodec {
+
+    static final byte TAG_END = 0;
+    static final byte TAG_BYTE = 1;
+    static final byte TAG_SHORT = 2;
+    static final byte TAG_INT = 3;
+    static final byte TAG_LONG = 4;
+    static final byte TAG_FLOAT = 5;
+    static final byte TAG_DOUBLE = 6;
+    static final byte TAG_BYTE_ARRAY = 7;
+    static final byte TAG_STRING = 8;
+    static final byte TAG_LIST = 9;
+    static final byte TAG_COMPOUND = 10;
+    static final byte TAG_INT_ARRAY = 11;
+    static final byte TAG_LONG_ARRAY = 12;
+
+    // The smallest number of bytes of the payload of each tag
+    private static final int[] MINIMUM_SIZES = {0, 1, 2, 4, 8, 4, 8, 4, 2, 5, 1, 4, 4};
+
+    private static final int MAXIMUM_DEPTH = 512;
+
+    private NbtCodec() {
+    }
+
+    /**
+     * Writes a view to a stream.
+     *
+     * @param view The view to write
+     * @param out The stream to write to
+     * @throws IOException If the stream could not be written to
+     * @throws InvalidDataException If the view contains a value that
+     *     cannot be written
+     */
+    public static void write(DataView view, OutputStream out) throws IOException {
+        checkNotNull(view, "view");
+        checkNotNull(out, "out");
+        NbtOutput output = NbtOutput.of(out);
+        writeRoot(view, output);
+        output.flush();
+    }
+
+    /**
+     * Writes a view to a buffer, from its current position. The order of the
+     * buffer is kept.
+     *
+     * @param view The view to write
+     * @param buffer The buffer to write to
+     * @throws java.nio.BufferOverflowException If the buffer has not enough
+     *     space left
+     * @throws InvalidDataException If the view contains a value that
+     *     cannot be written
+     */
+    public static void write(DataView view, ByteBuffer buffer) {
+        checkNotNull(view, "view");
+        ByteOrder order = checkNotNull(buffer, "buffer").order();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        try {
+            writeRoot(view, NbtOutput.of(buffer));
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        } finally {
+            buffer.order(order);
+        }
+    }
+
+    /**
+     * Reads a view from a stream. As reads are buffered, more bytes than
+     * the data spans may be read from the stream.
+     *
+     * @param in The stream to read from
+     * @return A new container with the data that was read
+     * @throws IOException If the stream could not be read from, or ended
+     *     before the data
+     * @throws InvalidDataException If the data is malformed
+     */
+    public static DataContainer read(InputStream in) throws IOException {
+        return readRoot(NbtInput.of(checkNotNull(in, "in")));
+    }
+
+    /**
+     * Reads a view from a buffer, from its current position. The order of
+     * the buffer is kept.
+     *
+     * @param buffer The buffer to read from
+     * @return A new container with the data that was read
+     * @throws InvalidDataException If the data is malformed or the buffer
+     *     ends before the data
+     */
+    public static DataContainer read(ByteBuffer buffer) {
+        ByteOrder order = checkNotNull(buffer, "buffer").order();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        try {
+            return readRoot(NbtInput.of(buffer));
+        } catch (IOException e) {
+            throw new InvalidDataException("The buffer ended before the data", e);
+        } catch (BufferUnderflowException e) {
+            throw new InvalidDataException("The buffer ended before the data", e);
+        } finally {
+            buffer.order(order);
+        }
+    }
+
+    private static void checkDepth(int depth) {
+        if (depth > MAXIMUM_DEPTH) {
+            throw new InvalidDataException("The data is nested deeper than " + MAXIMUM_DEPTH + " levels");
+        }
+    }
+
+    // Writing
+
+    private static void writeRoot(DataView view, NbtOutput out) throws IOException {
+        out.writeByte(TAG_COMPOUND);
+        out.writeUtf("");
+        writeCompound(view, out, 0);
+    }
+
+    private static void writeCompound(DataView view, NbtOutput out, int depth) throws IOException {
+        checkDepth(depth);
+        if (view instanceof LazyDataView) {
+            writeLazy((LazyDataView) view, out, depth);
+            return;
+        } else if (view instanceof MemoryDataView) {
+            writeEntries((MemoryDataView) view, out, depth);
+        } else {
+            for (Map.Entry<DataQuery, Object> entry : view.getValues(false).entrySet()) {
+                List<String> parts = entry.getKey().getParts();
+                writeNamed(parts.get(parts.size() - 1), entry.getValue(), out, depth);
+            }
+        }
+        out.writeByte(TAG_END);
+    }
+
+    /**
+     * Writes the entries of a view straight from its container.
+     */
+    private static void writeEntries(MemoryDataView view, NbtOutput out, int depth) throws IOException {
+        MemoryDataContainer container = view.container();
+        for (int entry = view.head; entry >= 0; entry = container.next(entry)) {
+            String name = container.name(entry);
+            long bits = container.bits(entry);
+            switch (container.type(entry)) {
+                case MemoryDataContainer.BOOLEAN:
+                case MemoryDataContainer.BYTE:
+                    writeHeader(TAG_BYTE, name, out);
+                    out.writeByte((int) bits);
+                    break;
+                case MemoryDataContainer.SHORT:
+                case MemoryDataContainer.CHAR:
+                    writeHeader(TAG_SHORT, name, out);
+                    out.writeShort((int) bits);
+                    break;
+                case MemoryDataContainer.INT:
+                    writeHeader(TAG_INT, name, out);
+                    out.writeInt((int) bits);
+                    break;
+                case MemoryDataContainer.LONG:
+                    writeHeader(TAG_LONG, name, out);
+                    out.writeLong(bits);
+                    break;
+                case MemoryDataContainer.FLOAT:
+                    writeHeader(TAG_FLOAT, name, out);
+                    out.writeInt((int) bits);
+                    break;
+                case MemoryDataContainer.DOUBLE:
+                    writeHeader(TAG_DOUBLE, name, out);
+                    out.writeLong(bits);
+                    break;
+                case MemoryDataContainer.VIEW:
+                    writeHeader(TAG_COMPOUND, name, out);
+                    writeCompound(container.view(entry), out, depth + 1);
+                    break;
+                default:
+                    writeNamed(name, container.value(entry), out, depth);
+            }
+        }
+    }
+
+    /**
+     * Writes a lazy view, copying the bytes of any of its parts that have
+     * not been changed.
+     */
+    private static void writeLazy(LazyDataView view, NbtOutput out, int depth) throws IOException {
+        if (view.isVerbatim()) {
+            out.write(view.payload());
+            return;
+        }
+        for (Map.Entry<String, LazyDataView.Entry> entry : view.entries().entrySet()) {
+            String name = entry.getKey();
+            LazyDataView.Entry value = entry.getValue();
+            if (value.value instanceof LazyDataView) {
+                writeHeader(TAG_COMPOUND, name, out);
+                writeCompound((LazyDataView) value.value, out, depth + 1);
+            } else if (value.verbatim) {
+                writeHeader(value.tag, name, out);
+                out.write(view.payload(value));
+            } else {
+                writeNamed(name, value.value, out, depth);
+            }
+        }
+        out.writeByte(TAG_END);
+    }
+
+    private static void writeHeader(byte tag, String name, NbtOutput out) throws IOException {
+        out.writeByte(tag);
+        out.writeUtf(name);
+    }
+
+    private static void writeNamed(String name, Object value, NbtOutput out, int depth) throws IOException {
+        byte tag = tagOf(value);
+        writeHeader(tag, name, out);
+        writePayload(tag, value, out, depth + 1);
+    }
+
+    private static byte tagOf(Object value) {
+        if (value instanceof Byte || value instanceof Boolean) {
+            return TAG_BYTE;
+        } else if (value instanceof Short || value instanceof Character) {
+            return TAG_SHORT;
+        } else if (value instanceof Integer) {
+            return TAG_INT;
+        } else if (value instanceof Long) {
+            return TAG_LONG;
+        } else if (value instanceof Float) {
+            return TAG_FLOAT;
+        } else if (value instanceof Double) {
+            return TAG_DOUBLE;
+        } else if (value instanceof String) {
+            return TAG_STRING;
+        } else if (value instanceof byte[]) {
+            return TAG_BYTE_ARRAY;
+        } else if (value instanceof int[]) {
+            return TAG_INT_ARRAY;
+        } else if (value instanceof long[]) {
+            return TAG_LONG_ARRAY;
+        } else if (value instanceof List || value instanceof double[]) {
+            return TAG_LIST;
+        } else if (value instanceof DataView || value instanceof Map || value instanceof DataSerializable) {
+            return TAG_COMPOUND;
+        }
+        throw new InvalidDataException("Cannot write a value of " + value.getClass());
+    }
+
+    private static void writePayload(byte tag, Object value, NbtOutput out, int depth) throws IOException {
+        switch (tag) {
+            case TAG_BYTE:
+                out.writeByte(value instanceof Boolean ? ((Boolean) value ? 1 : 0) : (Byte) value);
+                break;
+            case TAG_SHORT:
+                out.writeShort(value instanceof Character ? (Character) value : (Short) value);
+                break;
+            case TAG_INT:
+                out.writeInt((Integer) value);
+                break;
+            case TAG_LONG:
+                out.writeLong((Long) value);
+                break;
+            case TAG_FLOAT:
+                out.writeInt(Float.floatToRawIntBits((Float) value));
+                break;
+            case TAG_DOUBLE:
+                out.writeLong(Double.doubleToRawLongBits((Double) value));
+                break;
+            case TAG_STRING:
+                out.writeUtf((String) value);
+                break;
+            case TAG_BYTE_ARRAY:
+                byte[] bytes = (byte[]) value;
+                out.writeInt(bytes.length);
+                out.write(bytes, 0, bytes.length);
+                break;
+            case TAG_INT_ARRAY:
+                out.writeInt(((int[]) value).length);
+                out.writeInts((int[]) value);
+                break;
+            case TAG_LONG_ARRAY:
+                out.writeInt(((long[]) value).length);
+                out.writeLongs((long[]) value);
+                break;
+            case TAG_LIST:
+                if (value instanceof double[]) {
+                    out.writeByte(TAG_DOUBLE);
+                    out.writeInt(((double[]) value).length);
+                    out.writeDoubles((double[]) value);
+                } else {
+                    writeList((List<?>) value, out, depth);
+                }
+                break;
+            default:
+                writeCompoundValue(value, out, depth);
+        }
+    }
+
+    private static void writeList(List<?> list, NbtOutput out, int depth) throws IOException {
+        checkDepth(depth);
+        byte tag = list.isEmpty() ? TAG_END : tagOf(list.get(0));
+        out.writeByte(tag);
+        out.writeInt(list.size());
+        for (Object element : list) {
+            if (tagOf(element) != tag) {
+                throw new InvalidDataException("Cannot write a list with elements of different types: " + list);
+            }
+            writePayload(tag, element, out, depth + 1);
+        }
+    }
+
+    private static void writeCompoundValue(Object value, NbtOutput out, int depth) throws IOException {
+        if (value instanceof DataView) {
+            writeCompound((DataView) value, out, depth);
+        } else if (value instanceof DataSerializable) {
+            writeCompound(((DataSerializable) value).toContainer(), out, depth);
+        } else {
+            checkDepth(depth);
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                writeNamed(entry.getKey().toString(), entry.getValue(), out, depth);
+            }
+            out.writeByte(TAG_END);
+        }
+    }
+
+    // Reading
+
+    private static DataContainer readRoot(NbtInput in) throws IOException {
+        byte tag = in.readByte();
+        if (tag != TAG_COMPOUND) {
+            throw new InvalidDataException("The data does not start with a compound, but with tag " + tag);
+        }
+        in.readUtf();
+        MemoryDataContainer container = new MemoryDataContainer();
+        readCompound(container, in, 0);
+        return container;
+    }
+
+    /**
+     * Reads the entries of a compound straight into a view.
+     */
+    private static void readCompound(MemoryDataView view, NbtInput in, int depth) throws IOException {
+        checkDepth(depth);
+        MemoryDataContainer container = view.container();
+        for (byte tag = in.readByte(); tag != TAG_END; tag = in.readByte()) {
+            String name = in.readUtf();
+            switch (tag) {
+                case TAG_BYTE:
+                    container.setBits(view.id, name, MemoryDataContainer.BYTE, in.readByte());
+                    break;
+                case TAG_SHORT:
+                    container.setBits(view.id, name, MemoryDataContainer.SHORT, in.readShort());
+                    break;
+                case TAG_INT:
+                    container.setBits(view.id, name, MemoryDataContainer.INT, in.readInt());
+                    break;
+                case TAG_LONG:
+                    container.setBits(view.id, name, MemoryDataContainer.LONG, in.readLong());
+                    break;
+                case TAG_FLOAT:
+                    container.setBits(view.id, name, MemoryDataContainer.FLOAT, in.readInt());
+                    break;
+                case TAG_DOUBLE:
+                    container.setBits(view.id, name, MemoryDataContainer.DOUBLE, in.readLong());
+                    break;
+                case TAG_COMPOUND:
+                    readCompound(container.createView(view, name), in, depth + 1);
+                    break;
+                case TAG_LIST:
+                    byte elementTag = in.readByte();
+                    List<?> list = readList(elementTag, in, depth + 1);
+                    container.setTypedList(view.id, name, listType(elementTag), list);
+                    break;
+                default:
+                    container.set(view.id, name, readPayload(tag, in, depth + 1));
+            }
+        }
+    }
+
+    static Object readPayload(byte tag, NbtInput in, int depth) throws IOException {
+        switch (tag) {
+            case TAG_BYTE:
+                return in.readByte();
+            case TAG_SHORT:
+                return in.readShort();
+            case TAG_INT:
+                return in.readInt();
+            case TAG_LONG:
+                return in.readLong();
+            case TAG_FLOAT:
+                return Float.intBitsToFloat(in.readInt());
+            case TAG_DOUBLE:
+                return Double.longBitsToDouble(in.readLong());
+            case TAG_STRING:
+                return in.readUtf();
+            case TAG_BYTE_ARRAY:
+                byte[] bytes = new byte[in.readLength(1)];
+                in.readFully(bytes, 0, bytes.length);
+                return bytes;
+            case TAG_INT_ARRAY:
+                return in.readInts(in.readLength(4));
+            case TAG_LONG_ARRAY:
+                return in.readLongs(in.readLength(8));
+            case TAG_LIST:
+                return readList(in.readByte(), in, depth);
+            case TAG_COMPOUND:
+                return readMap(in, depth);
+            default:
+                throw new InvalidDataException("Unknown tag " + tag);
+        }
+    }
+
+    /**
+     * Reads the elements of a list, storing numbers in a primitive array.
+     */
+    private static List<?> readList(byte tag, NbtInput in, int depth) throws IOException {
+        checkDepth(depth);
+        if (tag < TAG_END || tag > TAG_LONG_ARRAY) {
+            throw new InvalidDataException("Unknown tag " + tag);
+        }
+        int length = in.readLength(MINIMUM_SIZES[tag]);
+        switch (tag) {
+            case TAG_BYTE:
+                byte[] bytes = new byte[length];
+                in.readFully(bytes, 0, length);
+                return Bytes.asList(bytes);
+            case TAG_SHORT:
+                short[] shorts = new short[length];
+                for (int i = 0; i < length; i++) {
+                    shorts[i] = in.readShort();
+                }
+                return Shorts.asList(shorts);
+            case TAG_INT:
+                return Ints.asList(in.readInts(length));
+            case TAG_LONG:
+                return Longs.asList(in.readLongs(length));
+            case TAG_FLOAT:
+                float[] floats = new float[length];
+                for (int i = 0; i < length; i++) {
+                    floats[i] = Float.intBitsToFloat(in.readInt());
+                }
+                return Floats.asList(floats);
+            case TAG_DOUBLE:
+                return Doubles.asList(in.readDoubles(length));
+            default:
+                List<Object> list = new ArrayList<Object>(Math.min(length, 1024));
+                for (int i = 0; i < length; i++) {
+                    list.add(readPayload(tag, in, depth + 1));
+                }
+                return Collections.unmodifiableList(list);
+        }
+    }
+
+    /**
+     * Skips the payload of a tag in a big-endian buffer.
+     *
+     * @throws InvalidDataException If the payload is malformed
+     * @throws BufferUnderflowException If the buffer ends before the payload
+     */
+    static void skipPayload(byte tag, ByteBuffer buffer, int depth) {
+        switch (tag) {
+            case TAG_BYTE:
+            case TAG_SHORT:
+            case TAG_INT:
+            case TAG_LONG:
+            case TAG_FLOAT:
+            case TAG_DOUBLE:
+                skip(buffer, MINIMUM_SIZES[tag]);
+                break;
+            case TAG_BYTE_ARRAY:
+                skip(buffer, buffer.getInt());
+                break;
+            case TAG_INT_ARRAY:
+                skip(buffer, buffer.getInt() * 4L);
+                break;
+            case TAG_LONG_ARRAY:
+                skip(buffer, buffer.getInt() * 8L);
+                break;
+            case TAG_STRING:
+                skip(buffer, buffer.getShort() & 0xFFFF);
+                break;
+            case TAG_LIST:
+                checkDepth(depth);
+                byte elementTag = buffer.get();
+                int length = buffer.getInt();
+                if (elementTag >= TAG_BYTE && elementTag <= TAG_DOUBLE) {
+                    skip(buffer, (long) length * MINIMUM_SIZES[elementTag]);
+                } else {
+                    for (int i = 0; i < length; i++) {
+                        skipPayload(elementTag, buffer, depth + 1);
+                    }
+                }
+                break;
+            case TAG_COMPOUND:
+                checkDepth(depth);
+                for (byte child = buffer.get(); child != TAG_END; child = buffer.get()) {
+                    skip(buffer, buffer.getShort() & 0xFFFF);
+                    skipPayload(child, buffer, depth + 1);
+                }
+                break;
+            default:
+                throw new InvalidDataException("Unknown tag " + tag);
+        }
+    }
+
+    private static void skip(ByteBuffer buffer, long count) {
+        if (count < 0) {
+            throw new InvalidDataException("Negative length: " + count);
+        } else if (count > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        buffer.position(buffer.position() + (int) count);
+    }
+
+    /**
+     * Gets how a {@link MemoryDataContainer} stores a list that was read.
+     */
+    private static byte listType(byte tag) {
+        switch (tag) {
+            case TAG_BYTE:
+                return MemoryDataContainer.BYTE_LIST;
+            case TAG_SHORT:
+                return MemoryDataContainer.SHORT_LIST;
+            case TAG_INT:
+                return MemoryDataContainer.INT_LIST;
+            case TAG_LONG:
+                return MemoryDataContainer.LONG_LIST;
+            case TAG_FLOAT:
+                return MemoryDataContainer.FLOAT_LIST;
+            case TAG_DOUBLE:
+                return MemoryDataContainer.DOUBLE_LIST;
+            default:
+                return MemoryDataContainer.OBJECT;
+        }
+    }
+
+    private static Map<String, Object> readMap(NbtInput in, int depth) throws IOException {
+        checkDepth(depth);
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        for (byte tag = in.readByte(); tag != TAG_END; tag = in.readByte()) {
+            String name = in.readUtf();
+            map.put(name, readPayload(tag, in, depth + 1));
+        }
+        return map;
+    }
+
+}
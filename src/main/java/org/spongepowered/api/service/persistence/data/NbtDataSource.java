@@ -0,0 +1,192 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.persistence.data;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Optional;
+import org.spongepowered.api.service.persistence.DataSerializable;
+import org.spongepowered.api.service.persistence.IncrementalDataSource;
+import org.spongepowered.api.service.persistence.InvalidDataException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * An {@link IncrementalDataSource} that holds data in memory in the binary
+ * NBT format, as written by {@link NbtCodec}.
+ *
+ * <p>Data is deserialized as a {@link LazyDataContainer}. Patches are
+ * appended to a log instead of being written into the data right away, so
+ * applying a patch costs as much as encoding its changes, whatever the size
+ * of the data. Once the encoded changes in the log outgrow the data, or
+ * when the data is read, the log is merged into the data. Merging applies
+ * the patches to a lazy container over the data, so data that no patch
+ * changes is copied without being decoded or encoded again.</p>
+ *
+ * <p>Sources are thread safe. The data of a source is replaced, never
+ * changed, so containers that were deserialized stay valid.</p>
+ */
+public class NbtDataSource implements IncrementalDataSource {
+
+    // The data is written before the log is cleared, so that a reader that
+    // finds no log also finds the data the log was merged into
+    @Nullable private volatile ByteBuffer data;
+    @Nullable private volatile Log log;
+
+    /**
+     * Create a new source without data.
+     */
+    public NbtDataSource() {
+    }
+
+    /**
+     * Create a new source with the data in a buffer, from its current
+     * position to its limit. The data is copied.
+     *
+     * @param data The data
+     */
+    public NbtDataSource(ByteBuffer data) {
+        ByteBuffer copy = ByteBuffer.allocate(checkNotNull(data, "data").remaining());
+        copy.put(data.duplicate()).flip();
+        this.data = copy;
+    }
+
+    /**
+     * Gets the data of this source. Patches that were applied since the
+     * data was last read are merged into it first.
+     *
+     * @return A read-only buffer of the data, if available
+     */
+    public Optional<ByteBuffer> getData() {
+        ByteBuffer data = current();
+        return data != null ? Optional.of(data.asReadOnlyBuffer()) : Optional.<ByteBuffer>absent();
+    }
+
+    @Override
+    public <T extends DataSerializable> Optional<DataContainer> deserialize(Class<T> clazz) throws InvalidDataException {
+        checkNotNull(clazz, "clazz");
+        ByteBuffer data = current();
+        return data != null ? Optional.<DataContainer>of(new LazyDataContainer(data)) : Optional.<DataContainer>absent();
+    }
+
+    @Override
+    public synchronized void serialize(DataSerializable section) throws InvalidDataException {
+        this.data = encode(checkNotNull(section, "section").toContainer(), 0);
+        this.log = null;
+    }
+
+    @Override
+    public synchronized void apply(DataPatch patch) throws InvalidDataException {
+        checkNotNull(patch, "patch");
+        ByteBuffer data = this.data;
+        if (data == null) {
+            MemoryDataContainer view = new MemoryDataContainer();
+            patch.applyTo(view);
+            this.data = encode(view, 0);
+            return;
+        } else if (patch.isEmpty()) {
+            return;
+        }
+
+        // The changes are encoded on their own, which rejects values that
+        // cannot be written before they reach the log, and weighs them
+        MemoryDataContainer changes = new MemoryDataContainer();
+        patch.applyTo(changes);
+        Log log = this.log;
+        long size = (log != null ? log.size : 0) + encode(changes, 0).remaining();
+        this.log = new Log(patch, log, size);
+        if (size > data.remaining()) {
+            merge();
+        }
+    }
+
+    @Nullable
+    private ByteBuffer current() {
+        return this.log != null ? merge() : this.data;
+    }
+
+    @Nullable
+    private synchronized ByteBuffer merge() {
+        ByteBuffer data = this.data;
+        Log log = this.log;
+        if (log == null || data == null) {
+            return data;
+        }
+
+        List<DataPatch> patches = new ArrayList<DataPatch>();
+        for (Log entry = log; entry != null; entry = entry.previous) {
+            patches.add(entry.patch);
+        }
+        LazyDataContainer view = new LazyDataContainer(data);
+        for (int i = patches.size() - 1; i >= 0; i--) {
+            patches.get(i).applyTo(view);
+        }
+        data = encode(view, data.remaining());
+        this.data = data;
+        this.log = null;
+        return data;
+    }
+
+    private static ByteBuffer encode(DataView view, int expectedSize) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(expectedSize + 256);
+        try {
+            NbtCodec.write(view, out);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+    @Override
+    public boolean isClosed() {
+        return false;
+    }
+
+    /**
+     * A patch that was applied but not merged into the data yet, and the
+     * patches applied before it.
+     */
+    private static final class Log {
+
+        final DataPatch patch;
+        @Nullable final Log previous;
+        // The encoded size of the changes of this patch and those before it
+        final long size;
+
+        Log(DataPatch patch, @Nullable Log previous, long size) {
+            this.patch = patch;
+            this.previous = previous;
+            this.size = size;
+        }
+
+    }
+
+}
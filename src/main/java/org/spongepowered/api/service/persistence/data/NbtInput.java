@@ -0,0 +1,331 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.persistence.data;
+
+import org.spongepowered.api.service.persistence.InvalidDataException;
+
+import java.io.EOFException;
+import java.io.InputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A source of big-endian binary data, as read by {@link NbtCodec}.
+ */
+abstract class NbtInput {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Gets an input that buffers reads from a stream, and so may read past
+     * the end of the data.
+     */
+    static NbtInput of(InputStream in) {
+        return new StreamInput(in);
+    }
+
+    /**
+     * Gets an input that reads from a buffer, which must be big-endian.
+     */
+    static NbtInput of(ByteBuffer buffer) {
+        return new BufferInput(buffer);
+    }
+
+    abstract byte readByte() throws IOException;
+
+    abstract short readShort() throws IOException;
+
+    abstract int readInt() throws IOException;
+
+    abstract long readLong() throws IOException;
+
+    abstract void readFully(byte[] bytes, int offset, int length) throws IOException;
+
+    /**
+     * Checks that a number of bytes may still be read, before space is
+     * allocated for them.
+     */
+    void require(long count) throws IOException {
+    }
+
+    /**
+     * Reads a length, checking that at least as many elements of the given
+     * size may still be read.
+     */
+    int readLength(int elementSize) throws IOException {
+        int length = readInt();
+        if (length < 0) {
+            throw new InvalidDataException("Negative length: " + length);
+        }
+        require((long) length * elementSize);
+        return length;
+    }
+
+    int[] readInts(int length) throws IOException {
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = readInt();
+        }
+        return values;
+    }
+
+    long[] readLongs(int length) throws IOException {
+        long[] values = new long[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = readLong();
+        }
+        return values;
+    }
+
+    double[] readDoubles(int length) throws IOException {
+        double[] values = new double[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = Double.longBitsToDouble(readLong());
+        }
+        return values;
+    }
+
+    /**
+     * Reads a string as modified UTF-8, prefixed by its encoded length.
+     */
+    String readUtf() throws IOException {
+        int length = readShort() & 0xFFFF;
+        byte[] bytes = new byte[length];
+        readFully(bytes, 0, length);
+        return decode(bytes, 0, length);
+    }
+
+    /**
+     * Decodes a string from modified UTF-8.
+     *
+     * @throws InvalidDataException If the bytes are malformed
+     */
+    static String decode(byte[] bytes, int offset, int length) {
+        char[] chars = new char[length];
+        int count = 0;
+        int end = offset + length;
+        for (int i = offset; i < end; count++) {
+            int b = bytes[i];
+            if (b >= 0) {
+                chars[count] = (char) b;
+                i++;
+            } else if ((b & 0xE0) == 0xC0 && i + 1 < end && (bytes[i + 1] & 0xC0) == 0x80) {
+                chars[count] = (char) ((b & 0x1F) << 6 | bytes[i + 1] & 0x3F);
+                i += 2;
+            } else if ((b & 0xF0) == 0xE0 && i + 2 < end && (bytes[i + 1] & 0xC0) == 0x80 && (bytes[i + 2] & 0xC0) == 0x80) {
+                chars[count] = (char) ((b & 0x0F) << 12 | (bytes[i + 1] & 0x3F) << 6 | bytes[i + 2] & 0x3F);
+                i += 3;
+            } else {
+                throw new InvalidDataException("Malformed string at byte " + (i - offset));
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+    private static final class StreamInput extends NbtInput {
+
+        private final InputStream in;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int position;
+        private int limit;
+
+        StreamInput(InputStream in) {
+            this.in = in;
+        }
+
+        /**
+         * Fills the buffer until it holds at least a number of bytes, which
+         * must not exceed its size.
+         */
+        private void fill(int count) throws IOException {
+            if (this.limit - this.position >= count) {
+                return;
+            }
+            System.arraycopy(this.buffer, this.position, this.buffer, 0, this.limit - this.position);
+            this.limit -= this.position;
+            this.position = 0;
+            while (this.limit < count) {
+                int read = this.in.read(this.buffer, this.limit, this.buffer.length - this.limit);
+                if (read < 0) {
+                    throw new EOFException();
+                }
+                this.limit += read;
+            }
+        }
+
+        @Override
+        byte readByte() throws IOException {
+            fill(1);
+            return this.buffer[this.position++];
+        }
+
+        @Override
+        short readShort() throws IOException {
+            fill(2);
+            short value = (short) ((this.buffer[this.position] & 0xFF) << 8 | this.buffer[this.position + 1] & 0xFF);
+            this.position += 2;
+            return value;
+        }
+
+        @Override
+        int readInt() throws IOException {
+            fill(4);
+            return getInt();
+        }
+
+        private int getInt() {
+            int value = (this.buffer[this.position] & 0xFF) << 24
+                    | (this.buffer[this.position + 1] & 0xFF) << 16
+                    | (this.buffer[this.position + 2] & 0xFF) << 8
+                    | this.buffer[this.position + 3] & 0xFF;
+            this.position += 4;
+            return value;
+        }
+
+        @Override
+        long readLong() throws IOException {
+            fill(8);
+            return (long) getInt() << 32 | getInt() & 0xFFFFFFFFL;
+        }
+
+        @Override
+        void readFully(byte[] bytes, int offset, int length) throws IOException {
+            int buffered = Math.min(length, this.limit - this.position);
+            System.arraycopy(this.buffer, this.position, bytes, offset, buffered);
+            this.position += buffered;
+            int remaining = length - buffered;
+            if (remaining > 0 && remaining < this.buffer.length) {
+                fill(remaining);
+                System.arraycopy(this.buffer, 0, bytes, offset + buffered, remaining);
+                this.position = remaining;
+                return;
+            }
+            for (int done = buffered; done < length;) {
+                int read = this.in.read(bytes, offset + done, length - done);
+                if (read < 0) {
+                    throw new EOFException();
+                }
+                done += read;
+            }
+        }
+
+        @Override
+        String readUtf() throws IOException {
+            int length = readShort() & 0xFFFF;
+            if (length > this.buffer.length) {
+                // Longer than the buffer can hold, so read it on its own
+                byte[] bytes = new byte[length];
+                readFully(bytes, 0, length);
+                return decode(bytes, 0, length);
+            }
+            fill(length);
+            String string = decode(this.buffer, this.position, length);
+            this.position += length;
+            return string;
+        }
+
+    }
+
+    private static final class BufferInput extends NbtInput {
+
+        private final ByteBuffer buffer;
+
+        BufferInput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        void require(long count) throws IOException {
+            if (count > this.buffer.remaining()) {
+                throw new EOFException();
+            }
+        }
+
+        @Override
+        byte readByte() {
+            return this.buffer.get();
+        }
+
+        @Override
+        short readShort() {
+            return this.buffer.getShort();
+        }
+
+        @Override
+        int readInt() {
+            return this.buffer.getInt();
+        }
+
+        @Override
+        long readLong() {
+            return this.buffer.getLong();
+        }
+
+        @Override
+        void readFully(byte[] bytes, int offset, int length) {
+            this.buffer.get(bytes, offset, length);
+        }
+
+        @Override
+        int[] readInts(int length) {
+            int[] values = new int[length];
+            this.buffer.asIntBuffer().get(values);
+            this.buffer.position(this.buffer.position() + length * 4);
+            return values;
+        }
+
+        @Override
+        long[] readLongs(int length) {
+            long[] values = new long[length];
+            this.buffer.asLongBuffer().get(values);
+            this.buffer.position(this.buffer.position() + length * 8);
+            return values;
+        }
+
+        @Override
+        double[] readDoubles(int length) {
+            double[] values = new double[length];
+            this.buffer.asDoubleBuffer().get(values);
+            this.buffer.position(this.buffer.position() + length * 8);
+            return values;
+        }
+
+        @Override
+        String readUtf() throws IOException {
+            int length = readShort() & 0xFFFF;
+            if (!this.buffer.hasArray()) {
+                byte[] bytes = new byte[length];
+                readFully(bytes, 0, length);
+                return decode(bytes, 0, length);
+            }
+            require(length);
+            String string = decode(this.buffer.array(), this.buffer.arrayOffset() + this.buffer.position(), length);
+            this.buffer.position(this.buffer.position() + length);
+            return string;
+        }
+
+    }
+
+}
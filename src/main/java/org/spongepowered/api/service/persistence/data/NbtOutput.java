@@ -0,0 +1,303 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.persistence.data;
+
+import org.spongepowered.api.service.persistence.InvalidDataException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A destination for big-endian binary data, as written by {@link NbtCodec}.
+ */
+abstract class NbtOutput {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Gets an output that buffers writes to a stream.
+     */
+    static NbtOutput of(OutputStream out) {
+        return new StreamOutput(out);
+    }
+
+    /**
+     * Gets an output that writes to a buffer, which must be big-endian.
+     */
+    static NbtOutput of(ByteBuffer buffer) {
+        return new BufferOutput(buffer);
+    }
+
+    abstract void writeByte(int value) throws IOException;
+
+    abstract void writeShort(int value) throws IOException;
+
+    abstract void writeInt(int value) throws IOException;
+
+    abstract void writeLong(long value) throws IOException;
+
+    abstract void write(byte[] bytes, int offset, int length) throws IOException;
+
+    /**
+     * Writes the remaining bytes of a buffer, without changing its position.
+     */
+    void write(ByteBuffer bytes) throws IOException {
+        if (bytes.hasArray()) {
+            write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+        } else {
+            byte[] copy = new byte[bytes.remaining()];
+            bytes.duplicate().get(copy);
+            write(copy, 0, copy.length);
+        }
+    }
+
+    void writeInts(int[] values) throws IOException {
+        for (int value : values) {
+            writeInt(value);
+        }
+    }
+
+    void writeLongs(long[] values) throws IOException {
+        for (long value : values) {
+            writeLong(value);
+        }
+    }
+
+    void writeDoubles(double[] values) throws IOException {
+        for (double value : values) {
+            writeLong(Double.doubleToRawLongBits(value));
+        }
+    }
+
+    /**
+     * Writes a string as modified UTF-8, prefixed by its encoded length.
+     */
+    void writeUtf(String string) throws IOException {
+        int length = encodedLength(string);
+        byte[] bytes = new byte[length];
+        encode(string, bytes, 0);
+        writeShort(length);
+        write(bytes, 0, length);
+    }
+
+    /**
+     * Writes any buffered data.
+     */
+    void flush() throws IOException {
+    }
+
+    /**
+     * Gets the length of a string in modified UTF-8.
+     *
+     * @throws InvalidDataException If the string is too long to be written
+     */
+    static int encodedLength(String string) {
+        int length = string.length();
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c == 0 || c >= 0x80) {
+                length += c >= 0x800 ? 2 : 1;
+            }
+        }
+        if (length > 0xFFFF) {
+            throw new InvalidDataException("The string is too long to be written (" + length + " bytes)");
+        }
+        return length;
+    }
+
+    /**
+     * Encodes a string as modified UTF-8.
+     *
+     * @return The offset after the encoded string
+     */
+    static int encode(String string, byte[] bytes, int offset) {
+        int position = offset;
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c != 0 && c < 0x80) {
+                bytes[position++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[position++] = (byte) (0xC0 | c >> 6);
+                bytes[position++] = (byte) (0x80 | c & 0x3F);
+            } else {
+                bytes[position++] = (byte) (0xE0 | c >> 12);
+                bytes[position++] = (byte) (0x80 | c >> 6 & 0x3F);
+                bytes[position++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        return position;
+    }
+
+    private static final class StreamOutput extends NbtOutput {
+
+        private final OutputStream out;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int position;
+
+        StreamOutput(OutputStream out) {
+            this.out = out;
+        }
+
+        private void require(int count) throws IOException {
+            if (this.position + count > this.buffer.length) {
+                flushBuffer();
+            }
+        }
+
+        private void flushBuffer() throws IOException {
+            this.out.write(this.buffer, 0, this.position);
+            this.position = 0;
+        }
+
+        @Override
+        void writeByte(int value) throws IOException {
+            require(1);
+            this.buffer[this.position++] = (byte) value;
+        }
+
+        @Override
+        void writeShort(int value) throws IOException {
+            require(2);
+            this.buffer[this.position] = (byte) (value >>> 8);
+            this.buffer[this.position + 1] = (byte) value;
+            this.position += 2;
+        }
+
+        @Override
+        void writeInt(int value) throws IOException {
+            require(4);
+            putInt(value);
+        }
+
+        private void putInt(int value) {
+            this.buffer[this.position] = (byte) (value >>> 24);
+            this.buffer[this.position + 1] = (byte) (value >>> 16);
+            this.buffer[this.position + 2] = (byte) (value >>> 8);
+            this.buffer[this.position + 3] = (byte) value;
+            this.position += 4;
+        }
+
+        @Override
+        void writeLong(long value) throws IOException {
+            require(8);
+            putInt((int) (value >>> 32));
+            putInt((int) value);
+        }
+
+        @Override
+        void write(byte[] bytes, int offset, int length) throws IOException {
+            if (length > this.buffer.length - this.position) {
+                flushBuffer();
+                if (length >= this.buffer.length) {
+                    this.out.write(bytes, offset, length);
+                    return;
+                }
+            }
+            System.arraycopy(bytes, offset, this.buffer, this.position, length);
+            this.position += length;
+        }
+
+        @Override
+        void writeUtf(String string) throws IOException {
+            int length = encodedLength(string);
+            if (length + 2 > this.buffer.length) {
+                super.writeUtf(string);
+                return;
+            }
+            require(length + 2);
+            this.buffer[this.position] = (byte) (length >>> 8);
+            this.buffer[this.position + 1] = (byte) length;
+            this.position = encode(string, this.buffer, this.position + 2);
+        }
+
+        @Override
+        void flush() throws IOException {
+            flushBuffer();
+            this.out.flush();
+        }
+
+    }
+
+    private static final class BufferOutput extends NbtOutput {
+
+        private final ByteBuffer buffer;
+
+        BufferOutput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        void writeByte(int value) {
+            this.buffer.put((byte) value);
+        }
+
+        @Override
+        void writeShort(int value) {
+            this.buffer.putShort((short) value);
+        }
+
+        @Override
+        void writeInt(int value) {
+            this.buffer.putInt(value);
+        }
+
+        @Override
+        void writeLong(long value) {
+            this.buffer.putLong(value);
+        }
+
+        @Override
+        void write(byte[] bytes, int offset, int length) {
+            this.buffer.put(bytes, offset, length);
+        }
+
+        @Override
+        void write(ByteBuffer bytes) {
+            this.buffer.put(bytes.duplicate());
+        }
+
+        @Override
+        void writeInts(int[] values) {
+            // Bulk puts through a view check the space before writing anything
+            this.buffer.asIntBuffer().put(values);
+            this.buffer.position(this.buffer.position() + values.length * 4);
+        }
+
+        @Override
+        void writeLongs(long[] values) {
+            this.buffer.asLongBuffer().put(values);
+            this.buffer.position(this.buffer.position() + values.length * 8);
+        }
+
+        @Override
+        void writeDoubles(double[] values) {
+            this.buffer.asDoubleBuffer().put(values);
+            this.buffer.position(this.buffer.position() + values.length * 8);
+        }
+
+    }
+
+}
@@ -0,0 +1,395 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.scheduler;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spongepowered.api.plugin.PluginContainer;
+import org.spongepowered.api.plugin.PluginManager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+
+/**
+ * A simple implementation of an {@link AsynchronousScheduler}.
+ *
+ * <p>A single timer thread keeps track of delays and intervals. When a
+ * {@link Task} is due, its {@link Runnable} is handed to the worker
+ * {@link ExecutorService}, which by default is the one created by
+ * {@link TaskExecutors#newBlockingTaskExecutor(String)}: a virtual thread
+ * per task where the JVM supports it, and a cached thread pool otherwise.</p>
+ *
+ * <p>The choice of worker executor does not change the semantics of the
+ * scheduler. Tasks keep their identifiers and names, a repeating task never
+ * overlaps with its own previous occurrence, and {@link Task#cancel()}
+ * prevents any occurrence that has not started yet.</p>
+ */
+public class SimpleAsynchronousScheduler implements AsynchronousScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(SimpleAsynchronousScheduler.class);
+
+    private static final int SCHEDULED = 0;
+    private static final int STARTED = 1;
+    private static final int CANCELLED = 2;
+
+    private final PluginManager pluginManager;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService timer;
+    private final ConcurrentMap<UUID, AsynchronousTask> tasks = Maps.newConcurrentMap();
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Construct a simple {@link AsynchronousScheduler} that runs tasks on the
+     * {@link TaskExecutors#newBlockingTaskExecutor(String) preferred executor}
+     * for blocking work.
+     *
+     * @param pluginManager The plugin manager to get the
+     *            {@link PluginContainer} for a given plugin
+     */
+    @Inject
+    public SimpleAsynchronousScheduler(PluginManager pluginManager) {
+        this(pluginManager, TaskExecutors.newBlockingTaskExecutor("Sponge-AsyncScheduler-"));
+    }
+
+    /**
+     * Construct a simple {@link AsynchronousScheduler} that runs tasks on the
+     * given executor.
+     *
+     * @param pluginManager The plugin manager to get the
+     *            {@link PluginContainer} for a given plugin
+     * @param executor The executor to run the tasks on
+     */
+    public SimpleAsynchronousScheduler(PluginManager pluginManager, ExecutorService executor) {
+        checkNotNull(pluginManager, "pluginManager");
+        checkNotNull(executor, "executor");
+        this.pluginManager = pluginManager;
+        this.executor = executor;
+        this.timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("Sponge-AsyncScheduler-Timer")
+                .setDaemon(true)
+                .build());
+    }
+
+    @Override
+    public Optional<Task> runTask(Object plugin, Runnable task) {
+        return schedule(plugin, task, TimeUnit.MILLISECONDS, null, null);
+    }
+
+    @Override
+    public Optional<Task> runTaskAfter(Object plugin, Runnable task, TimeUnit scale, long delay) {
+        return schedule(plugin, task, scale, delay, null);
+    }
+
+    @Override
+    public Optional<Task> runRepeatingTask(Object plugin, Runnable task, TimeUnit scale, long interval) {
+        return schedule(plugin, task, scale, null, interval);
+    }
+
+    @Override
+    public Optional<Task> runRepeatingTaskAfter(Object plugin, Runnable task, TimeUnit scale, long interval, long delay) {
+        return schedule(plugin, task, scale, delay, interval);
+    }
+
+    private Optional<Task> schedule(Object plugin, Runnable runnable, TimeUnit scale, @Nullable Long delay, @Nullable Long interval) {
+        checkNotNull(plugin, "plugin");
+        checkNotNull(runnable, "task");
+        checkNotNull(scale, "scale");
+
+        if ((delay != null && delay < 0) || (interval != null && interval <= 0) || this.timer.isShutdown()) {
+            return Optional.absent();
+        }
+
+        Optional<PluginContainer> container = this.pluginManager.fromInstance(plugin);
+        if (!container.isPresent()) {
+            return Optional.absent();
+        }
+
+        AsynchronousTask task = new AsynchronousTask(container.get(), runnable, scale, delay, interval);
+        this.tasks.put(task.getUniqueId(), task);
+        try {
+            task.start();
+        } catch (RejectedExecutionException e) {
+            this.tasks.remove(task.getUniqueId(), task);
+            return Optional.absent();
+        }
+        return Optional.<Task>of(task);
+    }
+
+    @Override
+    public Optional<Task> getTaskById(UUID id) {
+        checkNotNull(id, "id");
+        return Optional.<Task>fromNullable(this.tasks.get(id));
+    }
+
+    @Override
+    public Optional<UUID> getUuidOfTaskByName(String name) {
+        checkNotNull(name, "name");
+        for (AsynchronousTask task : this.tasks.values()) {
+            if (name.equals(task.name)) {
+                return Optional.of(task.getUniqueId());
+            }
+        }
+        return Optional.absent();
+    }
+
+    @Override
+    public Collection<Task> getTasksByName(String pattern) {
+        Pattern compiled = Pattern.compile(pattern);
+        ImmutableList.Builder<Task> matching = ImmutableList.builder();
+        for (AsynchronousTask task : this.tasks.values()) {
+            if (compiled.matcher(task.name).matches()) {
+                matching.add(task);
+            }
+        }
+        return matching.build();
+    }
+
+    @Override
+    public Collection<Task> getScheduledTasks() {
+        return ImmutableList.<Task>copyOf(this.tasks.values());
+    }
+
+    @Override
+    public Collection<Task> getScheduledTasks(Object plugin) {
+        checkNotNull(plugin, "plugin");
+        Optional<PluginContainer> container = this.pluginManager.fromInstance(plugin);
+        if (!container.isPresent()) {
+            return Collections.emptyList();
+        }
+        ImmutableList.Builder<Task> owned = ImmutableList.builder();
+        for (AsynchronousTask task : this.tasks.values()) {
+            if (task.owner.equals(container.get())) {
+                owned.add(task);
+            }
+        }
+        return owned.build();
+    }
+
+    /**
+     * Cancel all scheduled tasks and stop accepting new ones.
+     *
+     * <p>Tasks that are already running are allowed to finish.</p>
+     *
+     * @return The tasks that were cancelled
+     */
+    public List<Task> shutdown() {
+        this.timer.shutdownNow();
+        ImmutableList.Builder<Task> cancelled = ImmutableList.builder();
+        for (AsynchronousTask task : this.tasks.values()) {
+            if (task.cancel()) {
+                cancelled.add(task);
+            }
+        }
+        this.executor.shutdown();
+        return cancelled.build();
+    }
+
+    private final class AsynchronousTask implements Task {
+
+        private final UUID id = UUID.randomUUID();
+        private final PluginContainer owner;
+        private final Runnable runnable;
+        private final TimeUnit scale;
+        private final Optional<Long> delay;
+        private final Optional<Long> interval;
+        private final AtomicInteger state = new AtomicInteger(SCHEDULED);
+        private final AtomicBoolean running = new AtomicBoolean();
+        private final Runnable body = new Runnable() {
+
+            @Override
+            public void run() {
+                runBody();
+            }
+        };
+        private volatile String name;
+        @Nullable private volatile Future<?> trigger;
+
+        AsynchronousTask(PluginContainer owner, Runnable runnable, TimeUnit scale, @Nullable Long delay, @Nullable Long interval) {
+            this.owner = owner;
+            this.runnable = runnable;
+            this.scale = scale;
+            this.delay = Optional.fromNullable(delay);
+            this.interval = Optional.fromNullable(interval);
+            this.name = owner.getId() + "-A" + SimpleAsynchronousScheduler.this.sequence.incrementAndGet();
+        }
+
+        void start() {
+            Runnable fire = new Runnable() {
+
+                @Override
+                public void run() {
+                    fire();
+                }
+            };
+            long initialDelay = this.delay.or(0L);
+            Future<?> trigger;
+            if (this.interval.isPresent()) {
+                trigger = SimpleAsynchronousScheduler.this.timer.scheduleAtFixedRate(fire, initialDelay, this.interval.get(), this.scale);
+            } else if (initialDelay > 0) {
+                trigger = SimpleAsynchronousScheduler.this.timer.schedule(fire, initialDelay, this.scale);
+            } else {
+                fire();
+                return;
+            }
+            this.trigger = trigger;
+            // cancel() may have run before the trigger was assigned, in which
+            // case it found no trigger to cancel
+            if (this.state.get() == CANCELLED) {
+                trigger.cancel(false);
+            }
+        }
+
+        /**
+         * Called when an occurrence is due. Skips the occurrence if the
+         * previous one is still running.
+         */
+        void fire() {
+            if (this.interval.isPresent()) {
+                if (this.state.get() != SCHEDULED) {
+                    return;
+                }
+            } else if (!this.state.compareAndSet(SCHEDULED, STARTED)) {
+                return;
+            }
+            if (!this.running.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                SimpleAsynchronousScheduler.this.executor.execute(this.body);
+            } catch (RejectedExecutionException e) {
+                this.running.set(false);
+                finish();
+                throw e;
+            }
+        }
+
+        void runBody() {
+            try {
+                this.runnable.run();
+            } catch (Throwable t) {
+                log.error("The asynchronous task " + this.name + " from " + this.owner.getId() + " failed", t);
+            } finally {
+                this.running.set(false);
+                if (!this.interval.isPresent()) {
+                    finish();
+                }
+            }
+        }
+
+        private void finish() {
+            SimpleAsynchronousScheduler.this.tasks.remove(this.id, this);
+        }
+
+        @Override
+        public UUID getUniqueId() {
+            return this.id;
+        }
+
+        @Override
+        public Optional<String> getName() {
+            return Optional.of(this.name);
+        }
+
+        @Override
+        public PluginContainer getOwner() {
+            return this.owner;
+        }
+
+        @Override
+        public Optional<Long> getDelay() {
+            return this.delay;
+        }
+
+        @Override
+        public Optional<Long> getInterval() {
+            return this.interval;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!this.state.compareAndSet(SCHEDULED, CANCELLED)) {
+                return false;
+            }
+            Future<?> trigger = this.trigger;
+            if (trigger != null) {
+                trigger.cancel(false);
+            }
+            finish();
+            return true;
+        }
+
+        @Override
+        public Optional<Runnable> getRunnable() {
+            return Optional.of(this.runnable);
+        }
+
+        @Override
+        public boolean isSynchronous() {
+            return false;
+        }
+
+        @Override
+        public String setName(@Nullable String name) {
+            if (name != null) {
+                this.name = name;
+            }
+            return this.name;
+        }
+
+        @Override
+        public String toString() {
+            return "AsynchronousTask{"
+                    + "name='" + this.name + '\''
+                    + ", owner=" + this.owner.getId()
+                    + ", delay=" + this.delay
+                    + ", interval=" + this.interval
+                    + ", scale=" + this.scale
+                    + '}';
+        }
+    }
+
+}
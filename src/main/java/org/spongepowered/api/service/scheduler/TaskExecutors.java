@@ -0,0 +1,157 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.scheduler;
+
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Factories for the {@link ExecutorService}s that back the
+ * {@link AsynchronousScheduler}.
+ *
+ * <p>Asynchronous tasks are typically dominated by blocking I/O (database
+ * queries, HTTP requests, file writes) rather than by CPU work. On JVMs that
+ * support virtual threads, {@link #newBlockingTaskExecutor(String)} runs
+ * each task on its own virtual thread so that a blocked task does not pin a
+ * platform thread. Elsewhere it falls back to a cached pool of platform
+ * threads.</p>
+ *
+ * <p>Virtual threads are looked up reflectively, so this class remains
+ * usable on every Java version supported by the API.</p>
+ */
+public final class TaskExecutors {
+
+    private static final Optional<Method> NEW_THREAD_PER_TASK_EXECUTOR;
+    private static final Optional<Method> OF_VIRTUAL;
+    private static final Optional<Method> BUILDER_NAME;
+    private static final Optional<Method> BUILDER_FACTORY;
+
+    static {
+        Method newThreadPerTaskExecutor = null;
+        Method ofVirtual = null;
+        Method builderName = null;
+        Method builderFactory = null;
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            builderName = builderClass.getMethod("name", String.class, long.class);
+            builderFactory = builderClass.getMethod("factory");
+        } catch (ClassNotFoundException ignored) {
+            newThreadPerTaskExecutor = null;
+        } catch (NoSuchMethodException ignored) {
+            newThreadPerTaskExecutor = null;
+        }
+        NEW_THREAD_PER_TASK_EXECUTOR = Optional.fromNullable(newThreadPerTaskExecutor);
+        OF_VIRTUAL = Optional.fromNullable(ofVirtual);
+        BUILDER_NAME = Optional.fromNullable(builderName);
+        BUILDER_FACTORY = Optional.fromNullable(builderFactory);
+    }
+
+    private TaskExecutors() {
+    }
+
+    /**
+     * Returns whether the running JVM is able to create virtual threads.
+     *
+     * <p>On JVMs where virtual threads are a preview feature that has not
+     * been enabled, this returns false.</p>
+     *
+     * @return True if virtual threads are available
+     */
+    public static boolean isVirtualThreadSupported() {
+        return newVirtualThreadFactory("probe-").isPresent();
+    }
+
+    /**
+     * Creates an executor that starts a new virtual thread for each task, if
+     * the running JVM supports virtual threads.
+     *
+     * @param namePrefix The prefix of the thread names, followed by a counter
+     * @return The executor, or {@link Optional#absent()} if unsupported
+     */
+    public static Optional<ExecutorService> newVirtualThreadExecutor(String namePrefix) {
+        Optional<ThreadFactory> factory = newVirtualThreadFactory(namePrefix);
+        if (!factory.isPresent()) {
+            return Optional.absent();
+        }
+        try {
+            return Optional.of((ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.get().invoke(null, factory.get()));
+        } catch (IllegalAccessException e) {
+            return Optional.absent();
+        } catch (InvocationTargetException e) {
+            return Optional.absent();
+        }
+    }
+
+    /**
+     * Creates a cached pool of daemon platform threads.
+     *
+     * @param namePrefix The prefix of the thread names, followed by a counter
+     * @return The executor
+     */
+    public static ExecutorService newThreadPool(String namePrefix) {
+        return Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                .setNameFormat(namePrefix.replace("%", "%%") + "%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    /**
+     * Creates the preferred executor for tasks that spend most of their
+     * time blocked: a virtual thread per task where supported, otherwise a
+     * {@link #newThreadPool(String) cached thread pool}.
+     *
+     * @param namePrefix The prefix of the thread names, followed by a counter
+     * @return The executor
+     */
+    public static ExecutorService newBlockingTaskExecutor(String namePrefix) {
+        Optional<ExecutorService> virtual = newVirtualThreadExecutor(namePrefix);
+        return virtual.isPresent() ? virtual.get() : newThreadPool(namePrefix);
+    }
+
+    private static Optional<ThreadFactory> newVirtualThreadFactory(String namePrefix) {
+        if (!NEW_THREAD_PER_TASK_EXECUTOR.isPresent()) {
+            return Optional.absent();
+        }
+        try {
+            Object builder = OF_VIRTUAL.get().invoke(null);
+            builder = BUILDER_NAME.get().invoke(builder, namePrefix, 0L);
+            return Optional.of((ThreadFactory) BUILDER_FACTORY.get().invoke(builder));
+        } catch (IllegalAccessException e) {
+            return Optional.absent();
+        } catch (InvocationTargetException e) {
+            // Thrown as UnsupportedOperationException where virtual threads are a disabled preview feature
+            return Optional.absent();
+        }
+    }
+
+}
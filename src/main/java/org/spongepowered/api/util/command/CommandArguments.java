@@ -0,0 +1,178 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.util.command;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndex;
+
+/**
+ * A tokenizer over the raw arguments of a command, splitting them at runs of
+ * spaces.
+ *
+ * <p>Tokens are described by their offsets into the original input, so
+ * walking the arguments does not copy them. A tokenizer is passed down
+ * through nested {@link TokenizedCommandCallable}s, each consuming the
+ * tokens it handles, and can be {@link #reset(CharSequence) reset} to be
+ * used for another input.</p>
+ *
+ * <p>Tokenizers are not thread-safe.</p>
+ */
+public final class CommandArguments {
+
+    private static final char SEPARATOR = ' ';
+
+    private CharSequence input;
+    private int position;
+
+    /**
+     * Creates a tokenizer over the given input.
+     *
+     * @param input The raw arguments
+     */
+    public CommandArguments(CharSequence input) {
+        reset(input);
+    }
+
+    /**
+     * Resets this tokenizer to the start of a new input.
+     *
+     * @param input The raw arguments
+     * @return This tokenizer
+     */
+    public CommandArguments reset(CharSequence input) {
+        this.input = checkNotNull(input, "input");
+        this.position = skipSeparators(0);
+        return this;
+    }
+
+    /**
+     * Gets the input this tokenizer walks.
+     *
+     * @return The raw arguments
+     */
+    public CharSequence getInput() {
+        return this.input;
+    }
+
+    /**
+     * Gets the offset of the next token, or the length of the input if no
+     * token is left.
+     *
+     * @return The current position
+     */
+    public int getPosition() {
+        return this.position;
+    }
+
+    /**
+     * Moves this tokenizer to a position previously returned by
+     * {@link #getPosition()}.
+     *
+     * @param position The position
+     */
+    public void setPosition(int position) {
+        checkPositionIndex(position, this.input.length());
+        this.position = position;
+    }
+
+    /**
+     * Returns whether any token is left.
+     *
+     * @return Whether a token is left
+     */
+    public boolean hasNext() {
+        return this.position < this.input.length();
+    }
+
+    /**
+     * Gets the offset at which the next token ends.
+     *
+     * @return The exclusive end of the next token, which is equal to
+     *     {@link #getPosition()} if no token is left
+     */
+    public int getTokenEnd() {
+        int end = this.position;
+        int length = this.input.length();
+        while (end < length && this.input.charAt(end) != SEPARATOR) {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Returns whether the next token is the last part of the input, without
+     * a separator after it.
+     *
+     * @return Whether the next token ends the input
+     */
+    public boolean isAtLastToken() {
+        return getTokenEnd() == this.input.length();
+    }
+
+    /**
+     * Skips the next token and the separators following it.
+     */
+    public void skip() {
+        checkElementIndex(this.position, this.input.length(), "No token left");
+        this.position = skipSeparators(getTokenEnd());
+    }
+
+    /**
+     * Consumes the next token.
+     *
+     * @return The token
+     */
+    public String next() {
+        checkElementIndex(this.position, this.input.length(), "No token left");
+        int end = getTokenEnd();
+        String token = this.input.subSequence(this.position, end).toString();
+        this.position = skipSeparators(end);
+        return token;
+    }
+
+    /**
+     * Gets the input from the next token onwards, without consuming it.
+     *
+     * @return The remaining raw arguments
+     */
+    public String getRemaining() {
+        return this.input.subSequence(this.position, this.input.length()).toString();
+    }
+
+    private int skipSeparators(int position) {
+        int length = this.input.length();
+        while (position < length && this.input.charAt(position) == SEPARATOR) {
+            position++;
+        }
+        return position;
+    }
+
+    @Override
+    public String toString() {
+        return getRemaining();
+    }
+
+}
@@ -63,4 +63,16 @@ public interface CommandMapping {
      */
     CommandCallable getCallable();
 
+    /**
+     * Returns whether the callable should be executed away from the main
+     * thread.
+     *
+     * <p>Asynchronous commands must not access the game state, except
+     * through the scheduler. Messages they send to the command source are
+     * delivered on the main thread.</p>
+     *
+     * @return Whether the command is asynchronous
+     */
+    boolean isAsynchronous();
+
 }
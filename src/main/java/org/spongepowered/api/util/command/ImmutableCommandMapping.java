@@ -42,6 +42,7 @@ public class ImmutableCommandMapping implements CommandMapping {
     private final String primary;
     private final Set<String> aliases;
     private final CommandCallable callable;
+    private final boolean asynchronous;
 
     /**
      * Create a new instance.
@@ -64,6 +65,20 @@ public class ImmutableCommandMapping implements CommandMapping {
      * @throws IllegalArgumentException Thrown if aliases are duplicated
      */
     public ImmutableCommandMapping(CommandCallable callable, String primary, Collection<String> aliases) {
+        this(callable, false, primary, aliases);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param callable The command callable
+     * @param asynchronous Whether the command is executed away from the main
+     *                     thread
+     * @param primary The primary alias
+     * @param aliases A collection of all aliases
+     * @throws IllegalArgumentException Thrown if aliases are duplicated
+     */
+    public ImmutableCommandMapping(CommandCallable callable, boolean asynchronous, String primary, Collection<String> aliases) {
         checkNotNull(callable);
         checkNotNull(primary);
         checkNotNull(aliases);
@@ -71,6 +86,7 @@ public class ImmutableCommandMapping implements CommandMapping {
         this.aliases = new HashSet<String>(aliases);
         this.aliases.add(primary);
         this.callable = callable;
+        this.asynchronous = asynchronous;
     }
 
     @Override
@@ -88,12 +104,18 @@ public class ImmutableCommandMapping implements CommandMapping {
         return this.callable;
     }
 
+    @Override
+    public boolean isAsynchronous() {
+        return this.asynchronous;
+    }
+
     @Override
     public String toString() {
         return "ImmutableCommandMapping{"
                 + "primary='" + this.primary + '\''
                 + ", aliases=" + this.aliases
                 + ", callable=" + this.callable
+                + ", asynchronous=" + this.asynchronous
                 + '}';
     }
 }
@@ -0,0 +1,66 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.util.command;
+
+import java.util.List;
+
+/**
+ * A command that accepts its arguments as a {@link CommandArguments}
+ * tokenizer, so that a dispatcher calling it does not need to copy the
+ * remaining arguments into a new string.
+ *
+ * <p>The methods taking a string are expected to behave the same as calling
+ * these methods with a new tokenizer over the string.</p>
+ */
+public interface TokenizedCommandCallable extends CommandCallable {
+
+    /**
+     * Execute the command based on tokenized arguments, consuming the
+     * tokens it handles.
+     *
+     * @param source The caller of the command
+     * @param arguments The arguments for this command, starting at the first
+     *                  argument
+     * @param parents A stack of parent commands, where the first entry is
+     *                the root command
+     * @return Whether a command was processed
+     * @throws CommandException Thrown on a command error
+     * @see #call(CommandSource, String, List)
+     */
+    boolean call(CommandSource source, CommandArguments arguments, List<String> parents) throws CommandException;
+
+    /**
+     * Get a list of suggestions based on tokenized arguments.
+     *
+     * @param source The command source
+     * @param arguments The arguments entered up to this point, starting at
+     *                  the first argument
+     * @return A list of suggestions
+     * @throws CommandException Thrown if there was a parsing error
+     * @see #getSuggestions(CommandSource, String)
+     */
+    List<String> getSuggestions(CommandSource source, CommandArguments arguments) throws CommandException;
+
+}
@@ -0,0 +1,327 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.util.command.dispatcher;
+
+import org.spongepowered.api.util.command.CommandMapping;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * An immutable radix trie mapping case-insensitive aliases to command
+ * mappings.
+ *
+ * <p>Every change returns a new trie that shares all untouched nodes with
+ * the old one, so a trie can be published through a volatile field and read
+ * without locking. Lookups and prefix searches take time proportional to
+ * the length of the alias, and fold the case of the alias as they walk it
+ * instead of copying it.</p>
+ */
+final class AliasTrie {
+
+    static final AliasTrie EMPTY = new AliasTrie(Node.ROOT, 0);
+
+    private final Node root;
+    private final int size;
+
+    private AliasTrie(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Gets the number of aliases in this trie.
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Gets the mapping of an alias.
+     */
+    @Nullable
+    CommandMapping get(CharSequence alias) {
+        return get(alias, 0, alias.length());
+    }
+
+    /**
+     * Gets the mapping of the alias formed by a range of characters.
+     */
+    @Nullable
+    CommandMapping get(CharSequence alias, int start, int end) {
+        @Nullable Node node = find(alias, start, end, false);
+        return node == null || node.entry == null ? null : node.entry.mapping;
+    }
+
+    /**
+     * Gets all entries whose alias starts with the given prefix.
+     */
+    List<Entry> getByPrefix(CharSequence prefix) {
+        return getByPrefix(prefix, 0, prefix.length());
+    }
+
+    /**
+     * Gets all entries whose alias starts with the prefix formed by a range
+     * of characters.
+     */
+    List<Entry> getByPrefix(CharSequence prefix, int start, int end) {
+        List<Entry> entries = new ArrayList<Entry>();
+        @Nullable Node node = find(prefix, start, end, true);
+        if (node != null) {
+            node.collect(entries);
+        }
+        return entries;
+    }
+
+    /**
+     * Gets all entries of this trie.
+     */
+    List<Entry> getEntries() {
+        List<Entry> entries = new ArrayList<Entry>(this.size);
+        this.root.collect(entries);
+        return entries;
+    }
+
+    /**
+     * Returns a trie that maps the given alias to a mapping.
+     */
+    AliasTrie with(String alias, CommandMapping mapping) {
+        String key = fold(alias);
+        boolean added = get(key) == null;
+        return new AliasTrie(put(this.root, key, 0, new Entry(alias, mapping)), added ? this.size + 1 : this.size);
+    }
+
+    /**
+     * Returns a trie without the given alias.
+     */
+    AliasTrie without(String alias) {
+        String key = fold(alias);
+        if (get(key) == null) {
+            return this;
+        }
+        Node root = remove(this.root, key, 0);
+        return new AliasTrie(root == null ? Node.ROOT : root, this.size - 1);
+    }
+
+    /**
+     * Walks the trie along a range of characters.
+     *
+     * @param prefix Whether the range may end inside the label of a node,
+     *     in which case that node is returned
+     */
+    @Nullable
+    private Node find(CharSequence alias, int start, int end, boolean prefix) {
+        Node node = this.root;
+        int i = start;
+        while (i < end) {
+            @Nullable Node child = node.child(fold(alias.charAt(i)));
+            if (child == null) {
+                return null;
+            }
+            String label = child.label;
+            int length = Math.min(label.length(), end - i);
+            for (int j = 1; j < length; j++) {
+                if (label.charAt(j) != fold(alias.charAt(i + j))) {
+                    return null;
+                }
+            }
+            if (length < label.length() && !prefix) {
+                return null;
+            }
+            i += length;
+            node = child;
+        }
+        return node;
+    }
+
+    private static Node put(Node node, String key, int start, Entry entry) {
+        if (start == key.length()) {
+            return node.withEntry(entry);
+        }
+        int index = node.indexOf(key.charAt(start));
+        if (index < 0) {
+            return node.withChild(new Node(key.substring(start), entry, Node.NO_CHILDREN));
+        }
+        Node child = node.children[index];
+        int common = commonPrefix(child.label, key, start);
+        if (common == child.label.length()) {
+            return node.withChild(index, put(child, key, start + common, entry));
+        }
+        // Split the label of the child where the key diverges
+        Node tail = new Node(child.label.substring(common), child.entry, child.children);
+        Node split = new Node(child.label.substring(0, common), null, new Node[] {tail});
+        return node.withChild(index, put(split, key, start + common, entry));
+    }
+
+    /**
+     * Removes a key below a node, which must contain it. Returns null if
+     * the node is left without entries.
+     */
+    @Nullable
+    private static Node remove(Node node, String key, int start) {
+        if (start == key.length()) {
+            return node.withEntry(null).compact();
+        }
+        int index = node.indexOf(key.charAt(start));
+        Node child = node.children[index];
+        @Nullable Node removed = remove(child, key, start + child.label.length());
+        return (removed == null ? node.withoutChild(index) : node.withChild(index, removed)).compact();
+    }
+
+    private static int commonPrefix(String label, String key, int start) {
+        int length = Math.min(label.length(), key.length() - start);
+        int i = 0;
+        while (i < length && label.charAt(i) == key.charAt(start + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static char fold(char c) {
+        return Character.toLowerCase(c);
+    }
+
+    private static String fold(String alias) {
+        char[] folded = alias.toCharArray();
+        for (int i = 0; i < folded.length; i++) {
+            folded[i] = fold(folded[i]);
+        }
+        return new String(folded);
+    }
+
+    /**
+     * An alias as it was registered, with its mapping.
+     */
+    static final class Entry {
+
+        final String alias;
+        final CommandMapping mapping;
+
+        Entry(String alias, CommandMapping mapping) {
+            this.alias = alias;
+            this.mapping = mapping;
+        }
+    }
+
+    /**
+     * An immutable node, whose children are sorted by the first character
+     * of their label.
+     */
+    private static final class Node {
+
+        static final Node[] NO_CHILDREN = new Node[0];
+        static final Node ROOT = new Node("", null, NO_CHILDREN);
+
+        final String label;
+        @Nullable final Entry entry;
+        final Node[] children;
+
+        Node(String label, @Nullable Entry entry, Node[] children) {
+            this.label = label;
+            this.entry = entry;
+            this.children = children;
+        }
+
+        @Nullable
+        Node child(char c) {
+            int index = indexOf(c);
+            return index < 0 ? null : this.children[index];
+        }
+
+        int indexOf(char c) {
+            int low = 0;
+            int high = this.children.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char midChar = this.children[mid].label.charAt(0);
+                if (midChar < c) {
+                    low = mid + 1;
+                } else if (midChar > c) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        Node withEntry(@Nullable Entry entry) {
+            return new Node(this.label, entry, this.children);
+        }
+
+        Node withChild(int index, Node child) {
+            Node[] children = this.children.clone();
+            children[index] = child;
+            return new Node(this.label, this.entry, children);
+        }
+
+        Node withChild(Node child) {
+            int index = -(indexOf(child.label.charAt(0)) + 1);
+            Node[] children = new Node[this.children.length + 1];
+            System.arraycopy(this.children, 0, children, 0, index);
+            children[index] = child;
+            System.arraycopy(this.children, index, children, index + 1, this.children.length - index);
+            return new Node(this.label, this.entry, children);
+        }
+
+        Node withoutChild(int index) {
+            Node[] children = new Node[this.children.length - 1];
+            System.arraycopy(this.children, 0, children, 0, index);
+            System.arraycopy(this.children, index + 1, children, index, children.length - index);
+            return new Node(this.label, this.entry, children);
+        }
+
+        /**
+         * Removes this node if it holds nothing, or merges it with its only
+         * child. The root is never merged, as its label must stay empty.
+         */
+        @Nullable
+        Node compact() {
+            if (this.entry != null || this.children.length > 1) {
+                return this;
+            }
+            if (this.children.length == 0) {
+                return this.label.isEmpty() ? ROOT : null;
+            }
+            if (this.label.isEmpty()) {
+                return this;
+            }
+            Node child = this.children[0];
+            return new Node(this.label + child.label, child.entry, child.children);
+        }
+
+        void collect(List<Entry> entries) {
+            if (this.entry != null) {
+                entries.add(this.entry);
+            }
+            for (Node child : this.children) {
+                child.collect(entries);
+            }
+        }
+    }
+
+}
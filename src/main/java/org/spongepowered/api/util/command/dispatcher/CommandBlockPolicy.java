@@ -0,0 +1,229 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.util.command.dispatcher;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.flowpowered.math.vector.Vector3i;
+import com.google.common.base.Objects;
+import com.google.common.base.Throwables;
+import org.spongepowered.api.util.command.CommandArguments;
+import org.spongepowered.api.util.command.CommandException;
+import org.spongepowered.api.util.command.CommandMapping;
+import org.spongepowered.api.util.command.IdempotentCommandCallable;
+import org.spongepowered.api.util.command.source.CommandBlockSource;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.extent.Extent;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+/**
+ * Limits how often command blocks may run commands.
+ *
+ * <p>Each block position may run the same command with the same arguments
+ * a limited number of times per tick, and further executions within the
+ * tick are dropped. Commands that are {@link IdempotentCommandCallable}
+ * only run once per tick and position, and later executions within the tick
+ * reuse the outcome of the first, waiting for it if it is still running. A
+ * failure of the first execution is thrown again by the later ones.</p>
+ *
+ * <p>The implementation should call {@link #tick()} once per server tick.</p>
+ *
+ * @see SimpleDispatcher#setCommandBlockPolicy(CommandBlockPolicy)
+ */
+public class CommandBlockPolicy {
+
+    /**
+     * The default number of times a command block may run the same command
+     * per tick.
+     */
+    public static final int DEFAULT_MAXIMUM_PER_TICK = 1;
+
+    private final int maximumPerTick;
+    private final ConcurrentMap<Key, Slot> slots = new ConcurrentHashMap<Key, Slot>();
+    private final AtomicLong throttled = new AtomicLong();
+
+    /**
+     * Create a new policy that allows {@link #DEFAULT_MAXIMUM_PER_TICK}
+     * executions per tick.
+     */
+    public CommandBlockPolicy() {
+        this(DEFAULT_MAXIMUM_PER_TICK);
+    }
+
+    /**
+     * Create a new policy.
+     *
+     * @param maximumPerTick The number of times a command block may run the
+     *                       same command per tick
+     */
+    public CommandBlockPolicy(int maximumPerTick) {
+        checkArgument(maximumPerTick > 0, "maximumPerTick must be positive");
+        this.maximumPerTick = maximumPerTick;
+    }
+
+    /**
+     * Start a new tick, forgetting the executions and outcomes of the last.
+     */
+    public void tick() {
+        this.slots.clear();
+    }
+
+    /**
+     * Gets the number of executions that have been dropped.
+     *
+     * @return The number of dropped executions
+     */
+    public long getThrottledCount() {
+        return this.throttled.get();
+    }
+
+    /**
+     * Execute a command for a command block, unless it is throttled.
+     */
+    void execute(SimpleDispatcher dispatcher, CommandMapping mapping, CommandBlockSource source, CommandArguments arguments,
+            List<String> parents) throws CommandException {
+        Slot slot = getSlot(new Key(source.getLocation(), mapping, arguments.getRemaining()));
+
+        if (mapping.getCallable() instanceof IdempotentCommandCallable) {
+            executeOnce(dispatcher, mapping, source, arguments, parents, slot);
+            return;
+        }
+
+        if (slot.executions.incrementAndGet() > this.maximumPerTick) {
+            this.throttled.incrementAndGet();
+            return;
+        }
+        dispatcher.execute(mapping, source, arguments, parents);
+    }
+
+    /**
+     * Execute an idempotent command only for the first caller of a slot.
+     * Other callers wait for it to complete and share its outcome, including
+     * any failure.
+     */
+    private void executeOnce(SimpleDispatcher dispatcher, CommandMapping mapping, CommandBlockSource source, CommandArguments arguments,
+            List<String> parents, Slot slot) throws CommandException {
+        if (slot.executions.incrementAndGet() == 1) {
+            slot.owner = Thread.currentThread();
+            try {
+                dispatcher.execute(mapping, source, arguments, parents);
+            } catch (CommandException e) {
+                slot.failure = e;
+                throw e;
+            } catch (RuntimeException e) {
+                slot.failure = e;
+                throw e;
+            } catch (Error e) {
+                slot.failure = e;
+                throw e;
+            } finally {
+                slot.completed.countDown();
+            }
+            return;
+        }
+
+        if (slot.completed.getCount() > 0 && slot.owner == Thread.currentThread()) {
+            // The command runs itself again, which would wait on itself forever
+            this.throttled.incrementAndGet();
+            return;
+        }
+
+        try {
+            slot.completed.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CommandException("Interrupted while waiting for the command to complete", e);
+        }
+        @Nullable Throwable failure = slot.failure;
+        if (failure != null) {
+            Throwables.propagateIfPossible(failure, CommandException.class);
+            throw new CommandException(failure);
+        }
+    }
+
+    private Slot getSlot(Key key) {
+        Slot slot = this.slots.get(key);
+        if (slot == null) {
+            Slot created = new Slot();
+            slot = this.slots.putIfAbsent(key, created);
+            if (slot == null) {
+                slot = created;
+            }
+        }
+        return slot;
+    }
+
+    private static final class Slot {
+
+        final AtomicInteger executions = new AtomicInteger();
+        final CountDownLatch completed = new CountDownLatch(1);
+        @Nullable volatile Thread owner;
+        @Nullable volatile Throwable failure;
+
+    }
+
+    private static final class Key {
+
+        private final Extent extent;
+        private final Vector3i position;
+        private final CommandMapping mapping;
+        private final String arguments;
+
+        Key(Location location, CommandMapping mapping, String arguments) {
+            this.extent = location.getExtent();
+            this.position = location.getPosition().floor().toInt();
+            this.mapping = mapping;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return this.extent.equals(other.extent) && this.position.equals(other.position) && this.mapping.equals(other.mapping)
+                    && this.arguments.equals(other.arguments);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(this.extent, this.position, this.mapping, this.arguments);
+        }
+
+    }
+
+}
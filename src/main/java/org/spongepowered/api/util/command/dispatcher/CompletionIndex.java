@@ -0,0 +1,162 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.util.command.dispatcher;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.MapMaker;
+import org.spongepowered.api.service.permission.context.ContextSet;
+import org.spongepowered.api.util.command.CommandMapping;
+import org.spongepowered.api.util.command.CommandSource;
+
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * Completes aliases of a snapshot of the commands of a dispatcher, leaving
+ * out the commands that a source may not use.
+ *
+ * <p>Sources are grouped by the set of commands they may use, so that
+ * every group of sources with the same permissions shares one cache of
+ * completions by prefix. The group of a source is remembered until its
+ * active contexts change; an index is only valid for the commands and the
+ * permission epoch it was built for, and is replaced when either changes.</p>
+ */
+final class CompletionIndex {
+
+    private static final int MAXIMUM_PREFIXES = 512;
+
+    private final AliasTrie commands;
+    private final long epoch;
+    private final List<CommandMapping> mappings;
+    private final Map<CommandMapping, Integer> ordinals = new IdentityHashMap<CommandMapping, Integer>();
+    private final ConcurrentMap<CommandSource, Membership> members = new MapMaker().weakKeys().makeMap();
+    private final ConcurrentMap<BitSet, Group> groups = new ConcurrentHashMap<BitSet, Group>();
+
+    CompletionIndex(AliasTrie commands, long epoch) {
+        this.commands = commands;
+        this.epoch = epoch;
+
+        ImmutableList.Builder<CommandMapping> mappings = ImmutableList.builder();
+        for (AliasTrie.Entry entry : commands.getEntries()) {
+            if (!this.ordinals.containsKey(entry.mapping)) {
+                this.ordinals.put(entry.mapping, this.ordinals.size());
+                mappings.add(entry.mapping);
+            }
+        }
+        this.mappings = mappings.build();
+    }
+
+    /**
+     * Gets whether this index was built for the given commands and epoch.
+     */
+    boolean isCurrent(AliasTrie commands, long epoch) {
+        return this.commands == commands && this.epoch == epoch;
+    }
+
+    /**
+     * Gets the aliases starting with the given range of characters that the
+     * source may use, in alias order.
+     */
+    List<String> complete(CommandSource source, CharSequence input, int start, int end) {
+        StringBuilder prefix = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            prefix.append(Character.toLowerCase(input.charAt(i)));
+        }
+        return getGroup(source).completions.getUnchecked(prefix.toString());
+    }
+
+    private Group getGroup(CommandSource source) {
+        @Nullable ContextSet contexts = source.getActiveContexts();
+        @Nullable Membership membership = this.members.get(source);
+        if (membership != null && membership.contexts == contexts) {
+            return membership.group;
+        }
+
+        BitSet permitted = new BitSet(this.mappings.size());
+        for (int i = 0; i < this.mappings.size(); i++) {
+            if (this.mappings.get(i).getCallable().testPermission(source)) {
+                permitted.set(i);
+            }
+        }
+
+        Group group = this.groups.get(permitted);
+        if (group == null) {
+            Group created = new Group(permitted);
+            group = this.groups.putIfAbsent(permitted, created);
+            if (group == null) {
+                group = created;
+            }
+        }
+        this.members.put(source, new Membership(contexts, group));
+        return group;
+    }
+
+    private static final class Membership {
+
+        // Context sets are interned, so they are compared by identity
+        @Nullable final ContextSet contexts;
+        final Group group;
+
+        Membership(@Nullable ContextSet contexts, Group group) {
+            this.contexts = contexts;
+            this.group = group;
+        }
+
+    }
+
+    private final class Group extends CacheLoader<String, List<String>> {
+
+        private final BitSet permitted;
+        final LoadingCache<String, List<String>> completions = CacheBuilder.newBuilder()
+                .maximumSize(MAXIMUM_PREFIXES)
+                .build(this);
+
+        Group(BitSet permitted) {
+            this.permitted = permitted;
+        }
+
+        @Override
+        public List<String> load(String prefix) {
+            ImmutableList.Builder<String> aliases = ImmutableList.builder();
+            for (AliasTrie.Entry entry : CompletionIndex.this.commands.getByPrefix(prefix)) {
+                if (this.permitted.get(CompletionIndex.this.ordinals.get(entry.mapping))) {
+                    aliases.add(entry.alias);
+                }
+            }
+            return aliases.build();
+        }
+
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.util.command.dispatcher;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+import java.util.AbstractList;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * An immutable list of parent commands that appends one alias to an
+ * existing list without copying it. The alias is given as a range of the
+ * command input and only turned into a string when it is read.
+ */
+final class ParentList extends AbstractList<String> {
+
+    private final List<String> parents;
+    private final CharSequence input;
+    private final int start;
+    private final int end;
+    @Nullable private String alias;
+
+    ParentList(List<String> parents, CharSequence input, int start, int end) {
+        this.parents = parents;
+        this.input = input;
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public String get(int index) {
+        int size = size();
+        checkElementIndex(index, size);
+        if (index < size - 1) {
+            return this.parents.get(index);
+        }
+        String alias = this.alias;
+        if (alias == null) {
+            this.alias = alias = this.input.subSequence(this.start, this.end).toString();
+        }
+        return alias;
+    }
+
+    @Override
+    public int size() {
+        return this.parents.size() + 1;
+    }
+
+}
@@ -30,30 +30,73 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import com.google.common.base.Function;
 import com.google.common.base.Functions;
 import com.google.common.base.Optional;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Maps;
+import org.spongepowered.api.util.command.CommandArguments;
 import org.spongepowered.api.util.command.CommandCallable;
 import org.spongepowered.api.util.command.CommandException;
 import org.spongepowered.api.util.command.CommandMapping;
 import org.spongepowered.api.util.command.CommandSource;
 import org.spongepowered.api.util.command.ImmutableCommandMapping;
+import org.spongepowered.api.util.command.TokenizedCommandCallable;
+import org.spongepowered.api.util.command.source.CommandBlockSource;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
+import javax.annotation.Nullable;
+
 /**
  * A simple implementation of a {@link Dispatcher}.
+ *
+ * <p>Aliases are kept in an immutable radix trie that is replaced on every
+ * change. Changes are serialized, while lookups and completions read the
+ * current trie without locking.</p>
+ *
+ * <p>Arguments are walked with a {@link CommandArguments} tokenizer, which
+ * is passed on to {@link TokenizedCommandCallable} sub-commands so that
+ * nested dispatchers do not parse the arguments again.</p>
+ *
+ * <p>Completions only include commands that the source may use. They are
+ * cached for each group of sources with the same permissions until the
+ * commands or the permission epoch change, or until
+ * {@link #invalidateCompletions()} is called.</p>
+ *
+ * <p>Commands run by command blocks can be limited with a
+ * {@link CommandBlockPolicy}.</p>
  */
-public class SimpleDispatcher implements Dispatcher {
+public class SimpleDispatcher implements Dispatcher, TokenizedCommandCallable {
+
+    private final Supplier<Long> permissionEpoch;
+    private volatile AliasTrie commands = AliasTrie.EMPTY;
+    @Nullable private volatile CompletionIndex completions;
+    @Nullable private volatile CommandBlockPolicy commandBlockPolicy;
+
+    /**
+     * Create a new dispatcher whose cached completions are only invalidated
+     * by changes to its commands or by {@link #invalidateCompletions()}.
+     */
+    public SimpleDispatcher() {
+        this(Suppliers.ofInstance(0L));
+    }
 
-    private final Map<String, CommandMapping> commands = Maps.newHashMap();
+    /**
+     * Create a new dispatcher whose cached completions are also invalidated
+     * whenever the given permission epoch changes.
+     *
+     * @param permissionEpoch A supplier of a number that changes whenever
+     *                        permissions change, such as
+     *                        {@link org.spongepowered.api.service.permission.PermissionResolver#getEpoch()}
+     */
+    public SimpleDispatcher(Supplier<Long> permissionEpoch) {
+        this.permissionEpoch = checkNotNull(permissionEpoch, "permissionEpoch");
+    }
 
     /**
      * Register a given command using the given list of aliases.
@@ -114,17 +157,35 @@ public class SimpleDispatcher implements Dispatcher {
      * @return The registered command mapping, unless no aliases could be registered
      * @throws IllegalArgumentException Thrown if new conflicting aliases are added in the callback
      */
-    public synchronized Optional<CommandMapping> register(CommandCallable callable, List<String> aliases,
+    public Optional<CommandMapping> register(CommandCallable callable, List<String> aliases,
             Function<List<String>, List<String>> callback) {
+        return register(callable, aliases, callback, false);
+    }
+
+    /**
+     * Register a given command using a given list of aliases, as described
+     * in {@link #register(CommandCallable, List, Function)}.
+     *
+     * @param callable The command
+     * @param aliases A list of aliases
+     * @param callback The callback
+     * @param asynchronous Whether the command is executed away from the main
+     *                     thread, see {@link CommandMapping#isAsynchronous()}
+     * @return The registered command mapping, unless no aliases could be registered
+     * @throws IllegalArgumentException Thrown if new conflicting aliases are added in the callback
+     */
+    public synchronized Optional<CommandMapping> register(CommandCallable callable, List<String> aliases,
+            Function<List<String>, List<String>> callback, boolean asynchronous) {
         checkNotNull(aliases);
         checkNotNull(callable);
         checkNotNull(callback);
 
         List<String> free = new ArrayList<String>();
+        AliasTrie commands = this.commands;
 
         // Filter out commands that are already registered
         for (String alias : aliases) {
-            if (!this.commands.containsKey(alias.toLowerCase())) {
+            if (commands.get(alias) == null) {
                 free.add(alias);
             }
         }
@@ -136,18 +197,19 @@ public class SimpleDispatcher implements Dispatcher {
         if (!free.isEmpty()) {
             // The callback should /not/ have added any new commands
             for (String alias : free) {
-                if (this.commands.containsKey(alias.toLowerCase())) {
+                if (commands.get(alias) != null) {
                     throw new IllegalArgumentException("A command by the name of '" + alias + "' already exists");
                 }
             }
 
             String primary = free.get(0);
             List<String> secondary = free.subList(1, free.size());
-            CommandMapping mapping = new ImmutableCommandMapping(callable, primary, secondary);
+            CommandMapping mapping = new ImmutableCommandMapping(callable, asynchronous, primary, secondary);
 
             for (String alias : free) {
-                this.commands.put(alias.toLowerCase(), mapping);
+                commands = commands.with(alias, mapping);
             }
+            this.commands = commands;
 
             return Optional.of(mapping);
         } else {
@@ -162,7 +224,9 @@ public class SimpleDispatcher implements Dispatcher {
      * @return The previous mapping associated with the alias, if one was found
      */
     public synchronized Optional<CommandMapping> remove(String alias) {
-        return Optional.of(this.commands.remove(alias.toLowerCase()));
+        CommandMapping mapping = this.commands.get(alias);
+        this.commands = this.commands.without(alias);
+        return Optional.fromNullable(mapping);
     }
 
     /**
@@ -174,13 +238,13 @@ public class SimpleDispatcher implements Dispatcher {
     public synchronized boolean removeAll(Collection<?> c) {
         checkNotNull(c);
 
-        boolean found = false;
-
+        AliasTrie commands = this.commands;
         for (Object alias : c) {
-            this.commands.remove(alias.toString().toLowerCase());
-            found = true;
+            commands = commands.without(alias.toString());
         }
 
+        boolean found = commands != this.commands;
+        this.commands = commands;
         return found;
     }
 
@@ -195,14 +259,14 @@ public class SimpleDispatcher implements Dispatcher {
 
         CommandMapping found = null;
 
-        Iterator<CommandMapping> it = this.commands.values().iterator();
-        while (it.hasNext()) {
-            CommandMapping current = it.next();
-            if (current.equals(mapping)) {
-                it.remove();
-                found = current;
+        AliasTrie commands = this.commands;
+        for (AliasTrie.Entry entry : commands.getEntries()) {
+            if (entry.mapping.equals(mapping)) {
+                commands = commands.without(entry.alias);
+                found = entry.mapping;
             }
         }
+        this.commands = commands;
 
         return Optional.fromNullable(found);
     }
@@ -218,27 +282,34 @@ public class SimpleDispatcher implements Dispatcher {
 
         boolean found = false;
 
-        Iterator<CommandMapping> it = this.commands.values().iterator();
-        while (it.hasNext()) {
-            if (c.contains(it.next())) {
-                it.remove();
+        AliasTrie commands = this.commands;
+        for (AliasTrie.Entry entry : commands.getEntries()) {
+            if (c.contains(entry.mapping)) {
+                commands = commands.without(entry.alias);
                 found = true;
             }
         }
+        this.commands = commands;
 
         return found;
     }
 
     @Override
-    public synchronized Set<CommandMapping> getCommands() {
-        return ImmutableSet.copyOf(this.commands.values());
+    public Set<CommandMapping> getCommands() {
+        ImmutableSet.Builder<CommandMapping> mappings = ImmutableSet.builder();
+
+        for (AliasTrie.Entry entry : this.commands.getEntries()) {
+            mappings.add(entry.mapping);
+        }
+
+        return mappings.build();
     }
 
     @Override
-    public synchronized Set<String> getPrimaryAliases() {
+    public Set<String> getPrimaryAliases() {
         Set<String> aliases = new HashSet<String>();
 
-        for (CommandMapping mapping : this.commands.values()) {
+        for (CommandMapping mapping : getCommands()) {
             aliases.add(mapping.getPrimaryAlias());
         }
 
@@ -246,10 +317,10 @@ public class SimpleDispatcher implements Dispatcher {
     }
 
     @Override
-    public synchronized Set<String> getAliases() {
+    public Set<String> getAliases() {
         Set<String> aliases = new HashSet<String>();
 
-        for (CommandMapping mapping : this.commands.values()) {
+        for (CommandMapping mapping : getCommands()) {
             aliases.addAll(mapping.getAllAliases());
         }
 
@@ -257,21 +328,21 @@ public class SimpleDispatcher implements Dispatcher {
     }
 
     @Override
-    public synchronized Optional<CommandMapping> get(String alias) {
-        return Optional.fromNullable(this.commands.get(alias.toLowerCase()));
+    public Optional<CommandMapping> get(String alias) {
+        return Optional.fromNullable(this.commands.get(alias));
     }
 
     @Override
-    public synchronized boolean containsAlias(String alias) {
-        return this.commands.containsKey(alias.toLowerCase());
+    public boolean containsAlias(String alias) {
+        return this.commands.get(alias) != null;
     }
 
     @Override
     public boolean containsMapping(CommandMapping mapping) {
         checkNotNull(mapping);
 
-        for (CommandMapping test : this.commands.values()) {
-            if (mapping.equals(test)) {
+        for (AliasTrie.Entry entry : this.commands.getEntries()) {
+            if (mapping.equals(entry.mapping)) {
                 return true;
             }
         }
@@ -284,31 +355,90 @@ public class SimpleDispatcher implements Dispatcher {
      *
      * @return The number of aliases
      */
-    public synchronized int size() {
+    public int size() {
         return this.commands.size();
     }
 
     @Override
     public boolean call(CommandSource source, String arguments, List<String> parents) throws CommandException {
-        String[] parts = arguments.split(" +", 2);
-        Optional<CommandMapping> mapping = get(parts[0]);
+        return call(source, new CommandArguments(arguments), parents);
+    }
+
+    @Override
+    public boolean call(CommandSource source, CommandArguments arguments, List<String> parents) throws CommandException {
+        if (!arguments.hasNext()) {
+            return false;
+        }
+        CharSequence input = arguments.getInput();
+        int start = arguments.getPosition();
+        int end = arguments.getTokenEnd();
+        CommandMapping mapping = this.commands.get(input, start, end);
+        if (mapping == null) {
+            return false;
+        }
+        arguments.skip();
+        dispatch(mapping, source, arguments, new ParentList(parents, input, start, end));
+        return true;
+    }
 
-        if (mapping.isPresent()) {
-            List<String> passedParents = new ArrayList<String>(parents.size() + 1);
-            passedParents.addAll(parents);
-            passedParents.add(parts[0]);
+    /**
+     * Execute the command registered for an alias that has already been
+     * separated from its arguments.
+     *
+     * @param source The caller of the command
+     * @param alias The alias of the command to execute
+     * @param arguments The arguments for the command
+     * @param parents A stack of parent commands, where the first entry is
+     *                the root command
+     * @return Whether a command was processed
+     * @throws CommandException Thrown on a command error
+     */
+    public boolean call(CommandSource source, String alias, CommandArguments arguments, List<String> parents) throws CommandException {
+        CommandMapping mapping = this.commands.get(alias);
+        if (mapping == null) {
+            return false;
+        }
+        dispatch(mapping, source, arguments, new ParentList(parents, alias, 0, alias.length()));
+        return true;
+    }
 
-            mapping.get().getCallable().call(source, parts.length > 1 ? parts[1] : "", Collections.unmodifiableList(passedParents));
+    private void dispatch(CommandMapping mapping, CommandSource source, CommandArguments arguments, List<String> parents)
+            throws CommandException {
+        @Nullable CommandBlockPolicy policy = this.commandBlockPolicy;
+        if (policy != null && source instanceof CommandBlockSource) {
+            policy.execute(this, mapping, (CommandBlockSource) source, arguments, parents);
+        } else {
+            execute(mapping, source, arguments, parents);
+        }
+    }
 
-            return true;
+    /**
+     * Execute the callable of a mapping that has been looked up.
+     *
+     * <p>Subclasses may override this to run commands elsewhere, for example
+     * to run {@link CommandMapping#isAsynchronous() asynchronous} commands
+     * away from the main thread.</p>
+     *
+     * @param mapping The mapping of the command
+     * @param source The caller of the command
+     * @param arguments The arguments for the command
+     * @param parents A stack of parent commands, including the alias of the
+     *                command itself
+     * @throws CommandException Thrown on a command error
+     */
+    protected void execute(CommandMapping mapping, CommandSource source, CommandArguments arguments, List<String> parents)
+            throws CommandException {
+        CommandCallable callable = mapping.getCallable();
+        if (callable instanceof TokenizedCommandCallable) {
+            ((TokenizedCommandCallable) callable).call(source, arguments, parents);
         } else {
-            return false;
+            callable.call(source, arguments.getRemaining(), parents);
         }
     }
 
     @Override
-    public synchronized boolean testPermission(CommandSource source) {
-        for (CommandMapping mapping : this.commands.values()) {
+    public boolean testPermission(CommandSource source) {
+        for (CommandMapping mapping : getCommands()) {
             if (!mapping.getCallable().testPermission(source)) {
                 return false;
             }
@@ -319,32 +449,72 @@ public class SimpleDispatcher implements Dispatcher {
 
     @Override
     public List<String> getSuggestions(CommandSource source, String arguments) throws CommandException {
-        String[] parts = arguments.split(" +", 2);
-        List<String> suggestions = new ArrayList<String>();
+        return getSuggestions(source, new CommandArguments(arguments));
+    }
 
-        if (parts.length == 1) { // Auto completing commands
-            String incompleteCommand = parts[0].toLowerCase();
+    @Override
+    public List<String> getSuggestions(CommandSource source, CommandArguments arguments) throws CommandException {
+        CharSequence input = arguments.getInput();
+        int start = arguments.getPosition();
+        int end = arguments.getTokenEnd();
+        List<String> suggestions = new ArrayList<String>();
 
-            synchronized (this) {
-                for (CommandMapping mapping : this.commands.values()) {
-                    for (String alias : mapping.getAllAliases()) {
-                        if (alias.toLowerCase().startsWith(incompleteCommand)) {
-                            suggestions.add(alias);
-                        }
-                    }
-                }
-            }
+        if (end == input.length()) { // Auto completing commands
+            suggestions.addAll(getCompletionIndex().complete(source, input, start, end));
         } else { // Complete using subcommand
-            Optional<CommandMapping> mapping = get(parts[0]);
-
-            if (mapping.isPresent()) {
-                mapping.get().getCallable().getSuggestions(source, parts.length > 1 ? parts[1] : "");
+            CommandMapping mapping = this.commands.get(input, start, end);
+
+            if (mapping != null && mapping.getCallable().testPermission(source)) {
+                arguments.skip();
+                CommandCallable callable = mapping.getCallable();
+                if (callable instanceof TokenizedCommandCallable) {
+                    suggestions.addAll(((TokenizedCommandCallable) callable).getSuggestions(source, arguments));
+                } else {
+                    suggestions.addAll(callable.getSuggestions(source, arguments.getRemaining()));
+                }
             }
         }
 
         return Collections.unmodifiableList(suggestions);
     }
 
+    /**
+     * Gets the policy that limits the commands run by command blocks.
+     *
+     * @return The policy, if command blocks are limited
+     */
+    public Optional<CommandBlockPolicy> getCommandBlockPolicy() {
+        return Optional.fromNullable(this.commandBlockPolicy);
+    }
+
+    /**
+     * Sets the policy that limits the commands run by command blocks.
+     *
+     * @param policy The policy, or null to not limit command blocks
+     */
+    public void setCommandBlockPolicy(@Nullable CommandBlockPolicy policy) {
+        this.commandBlockPolicy = policy;
+    }
+
+    private CompletionIndex getCompletionIndex() {
+        AliasTrie commands = this.commands;
+        long epoch = this.permissionEpoch.get();
+        @Nullable CompletionIndex index = this.completions;
+        if (index == null || !index.isCurrent(commands, epoch)) {
+            index = new CompletionIndex(commands, epoch);
+            this.completions = index;
+        }
+        return index;
+    }
+
+    /**
+     * Discard all cached completions, for example after permissions have
+     * changed in a way the permission epoch does not reflect.
+     */
+    public void invalidateCompletions() {
+        this.completions = null;
+    }
+
     @Override
     public Optional<String> getShortDescription() {
         return Optional.absent();
@@ -0,0 +1,172 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import org.junit.After;
+import org.junit.Test;
+import org.spongepowered.api.service.SimpleServiceManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class PluginInitializerTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final PluginManager pluginManager = mock(PluginManager.class);
+    private final SimpleServiceManager serviceManager = new SimpleServiceManager(this.pluginManager);
+    private final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+    @After
+    public void tearDown() {
+        this.executor.shutdownNow();
+    }
+
+    private PluginContainer container(Object instance, String id) {
+        PluginContainer container = mock(PluginContainer.class);
+        when(container.getId()).thenReturn(id);
+        when(container.getInstance()).thenReturn(instance);
+        when(this.pluginManager.fromInstance(instance)).thenReturn(Optional.of(container));
+        return container;
+    }
+
+    @Test
+    public void testOrder() throws Exception {
+        final PluginContainer economy = container(new Economy(), "economy");
+        PluginContainer shop = container(new Shop(), "shop");
+        PluginContainer bank = container(new Bank(), "bank");
+        final CountDownLatch bankStarted = new CountDownLatch(1);
+
+        PluginInitializer.Report report = new PluginInitializer(this.serviceManager, this.executor).initialize(
+                ImmutableList.of(shop, bank, economy), new PluginInitializer.Step() {
+                    @Override
+                    public void run(PluginContainer plugin) throws Exception {
+                        if (plugin == economy) {
+                            // Runs alongside the bank, which has no dependencies
+                            assertTrue(bankStarted.await(5, TimeUnit.SECONDS));
+                            PluginInitializerTest.this.order.add(plugin.getId());
+                            PluginInitializerTest.this.serviceManager.setProvider(plugin.getInstance(), Economy.class,
+                                    (Economy) plugin.getInstance());
+                        } else {
+                            bankStarted.countDown();
+                            PluginInitializerTest.this.order.add(plugin.getId());
+                        }
+                    }
+                });
+
+        assertEquals(3, report.getPlugins().size());
+        assertTrue(report.getFailures().isEmpty());
+        assertTrue(this.order.indexOf("shop") > this.order.indexOf("economy"));
+    }
+
+    @Test
+    public void testMissingServiceAndFailure() throws Exception {
+        final PluginContainer shop = container(new Shop(), "shop");
+        final IllegalStateException failure = new IllegalStateException();
+
+        PluginInitializer.Report report = new PluginInitializer(this.serviceManager, this.executor).initialize(
+                ImmutableList.of(shop), new PluginInitializer.Step() {
+                    @Override
+                    public void run(PluginContainer plugin) throws Exception {
+                        throw failure;
+                    }
+                });
+
+        assertSame(failure, report.getFailures().get(shop));
+        assertTrue(report.toString().contains("shop"));
+    }
+
+    @Test
+    public void testRejected() throws Exception {
+        PluginContainer economy = container(new Economy(), "economy");
+        PluginContainer mint = container(new Mint(), "mint");
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                if (PluginInitializerTest.this.order.isEmpty()) {
+                    PluginInitializerTest.this.order.add("rejected");
+                    throw new RejectedExecutionException();
+                }
+                PluginInitializerTest.this.executor.execute(command);
+            }
+        };
+
+        PluginInitializer.Report report = new PluginInitializer(this.serviceManager, executor).initialize(
+                ImmutableList.of(economy, mint), new PluginInitializer.Step() {
+                    @Override
+                    public void run(PluginContainer plugin) throws Exception {
+                        PluginInitializerTest.this.order.add(plugin.getId());
+                    }
+                });
+
+        assertTrue(report.getFailures().get(economy) instanceof RejectedExecutionException);
+        assertEquals(ImmutableList.of("rejected", "mint"), this.order);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCycle() throws Exception {
+        new PluginInitializer(this.serviceManager, this.executor).initialize(
+                ImmutableList.of(container(new Bank(), "bank"), container(new Vault(), "vault")), new PluginInitializer.Step() {
+                    @Override
+                    public void run(PluginContainer plugin) throws Exception {
+                    }
+                });
+    }
+
+    @Plugin(id = "economy", name = "Economy")
+    public static class Economy {
+    }
+
+    @Plugin(id = "shop", name = "Shop", serviceDependencies = Economy.class)
+    public static class Shop {
+    }
+
+    @Plugin(id = "mint", name = "Mint", dependencies = "after:economy")
+    public static class Mint {
+    }
+
+    @Plugin(id = "bank", name = "Bank", dependencies = "before:vault")
+    public static class Bank {
+    }
+
+    @Plugin(id = "vault", name = "Vault", dependencies = "required-before:bank@[1.0,)")
+    public static class Vault {
+    }
+
+}
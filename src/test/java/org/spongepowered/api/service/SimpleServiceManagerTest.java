@@ -27,6 +27,8 @@ package org.spongepowered.api.service;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import com.google.common.base.Optional;
@@ -122,6 +124,27 @@ public class SimpleServiceManagerTest {
 
     }
 
+    @Test
+    public void testHandle() throws ProviderExistsException {
+        SimpleServiceManager serviceManager = new SimpleServiceManager(manager);
+
+        ServiceHandle<TestInterface> handle = serviceManager.getHandle(TestInterface.class);
+        assertFalse(handle.isPresent());
+        assertNull(handle.get());
+        assertSame(handle, serviceManager.getHandle(TestInterface.class));
+
+        TestInterface cow = new TestImplCow();
+        serviceManager.setProvider(testPlugin, TestInterface.class, cow);
+        assertSame(cow, handle.get());
+        assertEquals("moo", handle.getUnchecked().bark());
+        assertSame(serviceManager.provide(TestInterface.class), serviceManager.provide(TestInterface.class));
+    }
+
+    @Test(expected = ProvisioningException.class)
+    public void testHandleWithoutProvider() {
+        new SimpleServiceManager(manager).getHandle(TestInterface.class).getUnchecked();
+    }
+
     public interface TestInterface {
 
         String bark();
@@ -0,0 +1,233 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.command;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.base.Optional;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.spongepowered.api.entity.player.Player;
+import org.spongepowered.api.plugin.PluginContainer;
+import org.spongepowered.api.plugin.PluginManager;
+import org.spongepowered.api.service.command.CommandMetrics.SourceType;
+import org.spongepowered.api.service.command.CommandMetrics.Statistics;
+import org.spongepowered.api.service.scheduler.AsynchronousScheduler;
+import org.spongepowered.api.service.scheduler.SynchronousScheduler;
+import org.spongepowered.api.service.scheduler.Task;
+import org.spongepowered.api.util.command.CommandCallable;
+import org.spongepowered.api.util.command.CommandException;
+import org.spongepowered.api.util.command.CommandMapping;
+import org.spongepowered.api.util.command.CommandSource;
+import org.spongepowered.api.util.command.source.ConsoleSource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class SimpleCommandServiceTest {
+
+    private final Object plugin = new Object();
+    private final CommandSource source = mock(CommandSource.class);
+    private final List<Runnable> asyncTasks = new ArrayList<Runnable>();
+    private final List<Runnable> syncTasks = new ArrayList<Runnable>();
+    private SimpleCommandService service;
+
+    @Before
+    public void setUp() {
+        PluginContainer container = mock(PluginContainer.class);
+        when(container.getId()).thenReturn("test");
+        when(container.getInstance()).thenReturn(this.plugin);
+        PluginManager pluginManager = mock(PluginManager.class);
+        when(pluginManager.fromInstance(this.plugin)).thenReturn(Optional.of(container));
+
+        AsynchronousScheduler asyncScheduler = mock(AsynchronousScheduler.class);
+        when(asyncScheduler.runTask(eq(this.plugin), any(Runnable.class))).thenAnswer(queue(this.asyncTasks));
+        SynchronousScheduler syncScheduler = mock(SynchronousScheduler.class);
+        when(syncScheduler.runTask(eq(this.plugin), any(Runnable.class))).thenAnswer(queue(this.syncTasks));
+
+        this.service = new SimpleCommandService(pluginManager, asyncScheduler, syncScheduler, 2);
+    }
+
+    private static Answer<Optional<Task>> queue(final List<Runnable> tasks) {
+        return new Answer<Optional<Task>>() {
+            @Override
+            public Optional<Task> answer(InvocationOnMock invocation) throws Throwable {
+                tasks.add((Runnable) invocation.getArguments()[1]);
+                return Optional.of(mock(Task.class));
+            }
+        };
+    }
+
+    private static void runAll(List<Runnable> tasks) {
+        List<Runnable> copy = new ArrayList<Runnable>(tasks);
+        tasks.clear();
+        for (Runnable task : copy) {
+            task.run();
+        }
+    }
+
+    @Test
+    public void testAsynchronousHandoff() throws Exception {
+        CommandCallable callable = mock(CommandCallable.class);
+        doAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) throws Throwable {
+                ((CommandSource) invocation.getArguments()[0]).sendMessage("found " + invocation.getArguments()[1]);
+                return true;
+            }
+        }).when(callable).call(any(CommandSource.class), anyString(), anyListOf(String.class));
+        CommandMapping mapping = this.service.registerAsynchronous(this.plugin, callable, Collections.singletonList("lookup")).get();
+        assertTrue(mapping.isAsynchronous());
+
+        assertTrue(this.service.call(this.source, "test:lookup notch", Collections.<String>emptyList()));
+        verify(callable, never()).call(any(CommandSource.class), anyString(), anyListOf(String.class));
+        assertEquals(1, this.asyncTasks.size());
+
+        runAll(this.asyncTasks);
+        verify(this.source, never()).sendMessage(any(String[].class));
+        assertEquals(1, this.syncTasks.size());
+
+        runAll(this.syncTasks);
+        verify(this.source).sendMessage("found notch");
+    }
+
+    @Test
+    public void testAsynchronousSourceKeepsType() throws Exception {
+        final List<CommandSource> sources = new ArrayList<CommandSource>();
+        CommandCallable callable = mock(CommandCallable.class);
+        doAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) throws Throwable {
+                CommandSource source = (CommandSource) invocation.getArguments()[0];
+                sources.add(source);
+                source.sendMessage("hello");
+                return true;
+            }
+        }).when(callable).call(any(CommandSource.class), anyString(), anyListOf(String.class));
+        this.service.registerAsynchronous(this.plugin, callable, Collections.singletonList("whoami"));
+
+        Player player = mock(Player.class);
+        when(player.getIdentifier()).thenReturn("notch");
+        this.service.call(player, "whoami", Collections.<String>emptyList());
+        runAll(this.asyncTasks);
+
+        assertTrue(sources.get(0) instanceof Player);
+        assertEquals("notch", sources.get(0).getIdentifier());
+        assertEquals(Optional.of(sources.get(0)), sources.get(0).getCommandSource());
+        verify(player, never()).sendMessage(any(String[].class));
+        runAll(this.syncTasks);
+        verify(player).sendMessage("hello");
+    }
+
+    @Test
+    public void testSynchronousCommandsRunInline() throws Exception {
+        CommandCallable callable = mock(CommandCallable.class);
+        assertFalse(this.service.register(this.plugin, callable, "list").get().isAsynchronous());
+
+        this.service.call(this.source, "list", Collections.<String>emptyList());
+        verify(callable).call(this.source, "", Collections.singletonList("list"));
+        assertTrue(this.asyncTasks.isEmpty());
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        CommandCallable callable = mock(CommandCallable.class);
+        when(callable.call(any(CommandSource.class), eq("fail"), anyListOf(String.class))).thenThrow(new CommandException("Failed"));
+        when(callable.call(any(CommandSource.class), eq("throw"), anyListOf(String.class))).thenThrow(new IllegalStateException());
+        final CommandMapping mapping = this.service.register(this.plugin, callable, "list").get();
+        CommandSource console = mock(ConsoleSource.class);
+
+        this.service.call(console, "list", Collections.<String>emptyList());
+        this.service.call(this.source, "list", Collections.<String>emptyList());
+        try {
+            this.service.call(console, "list fail", Collections.<String>emptyList());
+            fail();
+        } catch (CommandException e) {
+            assertEquals("Failed", e.getMessage());
+        }
+        try {
+            this.service.call(console, "list throw", Collections.<String>emptyList());
+            fail();
+        } catch (IllegalStateException e) {
+            assertNull(e.getMessage());
+        }
+
+        CommandMetrics metrics = this.service.getMetrics();
+        Statistics fromConsole = metrics.getStatistics(mapping, SourceType.CONSOLE);
+        assertEquals(3, fromConsole.getInvocations());
+        assertEquals(1, fromConsole.getFailures());
+        assertEquals(1, fromConsole.getInvocationFailures());
+        assertEquals(1, metrics.getStatistics(mapping, SourceType.OTHER).getInvocations());
+        assertEquals(0, metrics.getStatistics(SourceType.COMMAND_BLOCK).getInvocations());
+
+        Statistics total = metrics.getStatistics(mapping);
+        long counted = 0;
+        for (int i = 0; i < CommandMetrics.BUCKETS; i++) {
+            counted += total.getCount(i);
+        }
+        assertEquals(4, counted);
+
+        this.service.removeMapping(mapping);
+        assertTrue(this.service.getMetrics().getCommands().isEmpty());
+    }
+
+    @Test
+    public void testPerSourceLimit() throws Exception {
+        CommandCallable callable = mock(CommandCallable.class);
+        this.service.registerAsynchronous(this.plugin, callable, Collections.singletonList("history"));
+
+        for (int i = 0; i < 3; i++) {
+            this.service.call(this.source, "history", Collections.<String>emptyList());
+        }
+        assertEquals(2, this.asyncTasks.size());
+        verify(this.source).sendMessage(SimpleCommandService.DEFAULT_BUSY_MESSAGE);
+
+        this.service.call(mock(CommandSource.class), "history", Collections.<String>emptyList());
+        assertEquals(3, this.asyncTasks.size());
+
+        runAll(this.asyncTasks);
+        verify(callable, times(3)).call(any(CommandSource.class), eq(""), anyListOf(String.class));
+        this.service.call(this.source, "history", Collections.<String>emptyList());
+        assertEquals(1, this.asyncTasks.size());
+    }
+
+}
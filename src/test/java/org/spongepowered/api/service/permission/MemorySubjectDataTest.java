@@ -0,0 +1,74 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.permission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+import org.spongepowered.api.util.Tristate;
+
+import java.util.Collections;
+
+public class MemorySubjectDataTest {
+
+    private final MemorySubjectData data = new MemorySubjectData(mock(PermissionService.class));
+
+    @Test
+    public void testSetInheritedValue() {
+        assertTrue(this.data.setPermission(SubjectData.GLOBAL_CONTEXT, "essentials", Tristate.TRUE));
+
+        // A value equal to the inherited one is still set on the node itself
+        assertTrue(this.data.setPermission(SubjectData.GLOBAL_CONTEXT, "essentials.fly", Tristate.TRUE));
+        assertFalse(this.data.setPermission(SubjectData.GLOBAL_CONTEXT, "essentials.fly", Tristate.TRUE));
+        assertEquals(ImmutableMap.of("essentials", true, "essentials.fly", true), this.data.getPermissions(SubjectData.GLOBAL_CONTEXT));
+
+        assertTrue(this.data.setPermissions(SubjectData.GLOBAL_CONTEXT, ImmutableMap.of("essentials.home", Tristate.TRUE)));
+        assertFalse(this.data.setPermissions(SubjectData.GLOBAL_CONTEXT, ImmutableMap.of("essentials.home", Tristate.TRUE)));
+        assertEquals(3, this.data.getPermissions(SubjectData.GLOBAL_CONTEXT).size());
+    }
+
+    @Test
+    public void testSetNegatedValue() {
+        assertTrue(this.data.setPermission(SubjectData.GLOBAL_CONTEXT, "essentials.fly", Tristate.TRUE));
+        assertFalse(this.data.setPermission(SubjectData.GLOBAL_CONTEXT, "-essentials.fly", Tristate.FALSE));
+
+        assertTrue(this.data.setPermission(SubjectData.GLOBAL_CONTEXT, "-essentials.fly", Tristate.UNDEFINED));
+        assertEquals(Collections.<String, Boolean>emptyMap(), this.data.getPermissions(SubjectData.GLOBAL_CONTEXT));
+
+        assertTrue(this.data.setPermissions(SubjectData.GLOBAL_CONTEXT, ImmutableMap.of("-essentials.fly", Tristate.TRUE)));
+        assertEquals(ImmutableMap.of("essentials.fly", false), this.data.getPermissions(SubjectData.GLOBAL_CONTEXT));
+        assertFalse(this.data.setPermissions(SubjectData.GLOBAL_CONTEXT, ImmutableMap.of("essentials.fly", Tristate.FALSE)));
+    }
+
+    @Test
+    public void testUnsetMissingValue() {
+        assertFalse(this.data.setPermission(SubjectData.GLOBAL_CONTEXT, "essentials.fly", Tristate.UNDEFINED));
+        assertTrue(this.data.getAllPermissions().isEmpty());
+    }
+}
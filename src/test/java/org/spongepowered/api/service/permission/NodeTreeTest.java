@@ -83,7 +83,8 @@ public class NodeTreeTest {
         assertEquals(Tristate.TRUE, newTree.get("generate.sunset.red"));
 
         assertEquals(Tristate.FALSE, oldTree.get("generate.thunderstorm.explosive"));
-        assertEquals(Tristate.UNDEFINED, newTree.get("generate.thunderstorm.explosive"));
+        assertEquals(Tristate.TRUE, newTree.get("generate.thunderstorm.explosive"));
+        assertEquals(Tristate.TRUE, newTree.get("generate"));
 
         assertEquals(Tristate.UNDEFINED, oldTree.get("something.new"));
         assertEquals(Tristate.FALSE, newTree.get("something.new"));
@@ -107,4 +108,170 @@ public class NodeTreeTest {
         assertEquals(Tristate.FALSE, nodes.get("generate.thunderstorm.explosive"));
         assertEquals(Tristate.UNDEFINED, nodes.get("random.perm"));
     }
+
+    @Test
+    public void testCaseInsensitiveLookup() throws Exception {
+        final Map<String, Boolean> testPermissions = new HashMap<String, Boolean>();
+        testPermissions.put("Generate.Rainbow", true);
+        testPermissions.put("generate.SUNSET", false);
+
+        NodeTree nodes = NodeTree.of(testPermissions);
+
+        assertEquals(Tristate.TRUE, nodes.get("generate.rainbow"));
+        assertEquals(Tristate.TRUE, nodes.get("GENERATE.RAINBOW.double"));
+        assertEquals(Tristate.FALSE, nodes.get("generate.Sunset"));
+        assertEquals(Tristate.UNDEFINED, nodes.get("generate"));
+        assertEquals(Tristate.FALSE, nodes.withValue("GENERATE.rainbow", Tristate.FALSE).get("generate.RAINBOW"));
+    }
+
+    @Test
+    public void testDefaultValue() throws Exception {
+        final Map<String, Boolean> testPermissions = new HashMap<String, Boolean>();
+        testPermissions.put("generate.rainbow", false);
+
+        NodeTree nodes = NodeTree.of(testPermissions, Tristate.TRUE);
+
+        assertEquals(Tristate.FALSE, nodes.get("generate.rainbow"));
+        assertEquals(Tristate.TRUE, nodes.get("generate.sunset"));
+        assertEquals(Tristate.TRUE, nodes.get("random.perm"));
+    }
+
+    @Test
+    public void testWithFallback() throws Exception {
+        final Map<String, Boolean> childPermissions = new HashMap<String, Boolean>();
+        childPermissions.put("generate", false);
+        childPermissions.put("generate.sunset.red", true);
+        final Map<String, Boolean> parentPermissions = new HashMap<String, Boolean>();
+        parentPermissions.put("generate.rainbow", true);
+        parentPermissions.put("generate.sunset", true);
+        parentPermissions.put("random.perm", true);
+
+        NodeTree merged = NodeTree.of(childPermissions).withFallback(NodeTree.of(parentPermissions));
+
+        assertEquals(Tristate.FALSE, merged.get("generate.rainbow"));
+        assertEquals(Tristate.FALSE, merged.get("generate.sunset"));
+        assertEquals(Tristate.TRUE, merged.get("generate.sunset.red"));
+        assertEquals(Tristate.TRUE, merged.get("random.perm"));
+        assertEquals(Tristate.UNDEFINED, merged.get("random"));
+    }
+
+    @Test
+    public void testWithFallbackWildcards() throws Exception {
+        final Map<String, Boolean> childPermissions = new HashMap<String, Boolean>();
+        childPermissions.put("worldedit.*", true);
+        childPermissions.put("region.*.build", true);
+        childPermissions.put("region.arena.build", false);
+        final Map<String, Boolean> parentPermissions = new HashMap<String, Boolean>();
+        parentPermissions.put("worldedit.wand", false);
+        parentPermissions.put("worldedit.history.undo", false);
+        parentPermissions.put("region.spawn.build", false);
+        parentPermissions.put("region.arena.build", true);
+        parentPermissions.put("region.*.enter", false);
+        parentPermissions.put("region.spawn.enter", true);
+
+        NodeTree child = NodeTree.of(childPermissions);
+        NodeTree merged = child.withFallback(NodeTree.of(parentPermissions));
+
+        assertEquals(child.get("worldedit.wand"), merged.get("worldedit.wand"));
+        assertEquals(Tristate.TRUE, merged.get("worldedit.wand"));
+        assertEquals(Tristate.TRUE, merged.get("worldedit.history.undo"));
+        assertEquals(Tristate.UNDEFINED, merged.get("worldedit"));
+        assertEquals(Tristate.TRUE, merged.get("region.spawn.build"));
+        assertEquals(Tristate.FALSE, merged.get("region.arena.build"));
+        assertEquals(Tristate.TRUE, merged.get("region.other.build"));
+        assertEquals(Tristate.TRUE, merged.get("region.spawn.enter"));
+        assertEquals(Tristate.FALSE, merged.get("region.arena.enter"));
+
+        // The fallback's wildcards still apply where this tree is undefined
+        NodeTree reversed = NodeTree.of(parentPermissions).withFallback(child);
+        assertEquals(Tristate.FALSE, reversed.get("worldedit.wand"));
+        assertEquals(Tristate.TRUE, reversed.get("worldedit.selection"));
+        assertEquals(Tristate.TRUE, reversed.get("region.spawn.enter"));
+        assertEquals(Tristate.FALSE, reversed.get("region.spawn.build"));
+        assertEquals(Tristate.TRUE, reversed.get("region.other.build"));
+    }
+
+    @Test
+    public void testBuilder() throws Exception {
+        final Map<String, Boolean> testPermissions = new HashMap<String, Boolean>();
+        testPermissions.put("generate.rainbow", true);
+        testPermissions.put("generate.sunset", false);
+        testPermissions.put("random.perm", true);
+        NodeTree oldTree = NodeTree.of(testPermissions);
+
+        final Map<String, Tristate> changes = new HashMap<String, Tristate>();
+        changes.put("generate.sunset", Tristate.UNDEFINED);
+        changes.put("Generate.Thunderstorm", Tristate.FALSE);
+        changes.put("random", Tristate.FALSE);
+        NodeTree newTree = oldTree.toBuilder().values(changes).value("generate.rainbow.double", Tristate.FALSE).build();
+
+        assertEquals(Tristate.TRUE, newTree.get("generate.rainbow"));
+        assertEquals(Tristate.FALSE, newTree.get("generate.rainbow.double"));
+        assertEquals(Tristate.UNDEFINED, newTree.get("generate.sunset"));
+        assertEquals(Tristate.FALSE, newTree.get("generate.thunderstorm"));
+        assertEquals(Tristate.TRUE, newTree.get("random.perm"));
+        assertEquals(Tristate.FALSE, newTree.get("random.other"));
+        assertEquals(4, oldTree.withAll(changes).asMap().size());
+        assertEquals(Tristate.FALSE, oldTree.get("generate.sunset"));
+
+        assertEquals(Tristate.TRUE, NodeTree.builder().defaultValue(Tristate.TRUE).build().get("random.perm"));
+    }
+
+    @Test
+    public void testWildcards() throws Exception {
+        final Map<String, Boolean> testPermissions = new HashMap<String, Boolean>();
+        testPermissions.put("worldedit.*", true);
+        testPermissions.put("worldedit.superpickaxe", false);
+        testPermissions.put("region.*.build", true);
+        testPermissions.put("region.spawn", false);
+        testPermissions.put("region.*.*.flag", true);
+
+        NodeTree nodes = NodeTree.of(testPermissions);
+
+        assertEquals(Tristate.UNDEFINED, nodes.get("worldedit"));
+        assertEquals(Tristate.TRUE, nodes.get("worldedit.wand"));
+        assertEquals(Tristate.TRUE, nodes.get("WorldEdit.Selection.Pos1"));
+        assertEquals(Tristate.FALSE, nodes.get("worldedit.superpickaxe"));
+        assertEquals(Tristate.TRUE, nodes.get("region.arena.build"));
+        assertEquals(Tristate.UNDEFINED, nodes.get("region.arena.enter"));
+        assertEquals(Tristate.TRUE, nodes.get("region.spawn.build"));
+        assertEquals(Tristate.FALSE, nodes.get("region.spawn.enter"));
+        assertEquals(Tristate.TRUE, nodes.get("region.spawn.members.flag"));
+        assertEquals(testPermissions, nodes.asMap());
+
+        NodeTree everything = nodes.withValue("*", Tristate.TRUE);
+        assertEquals(Tristate.TRUE, everything.get("random.perm"));
+        assertEquals(Tristate.FALSE, everything.get("region.spawn.enter"));
+    }
+
+    @Test
+    public void testNegation() throws Exception {
+        final Map<String, Boolean> testPermissions = new HashMap<String, Boolean>();
+        testPermissions.put("essentials", true);
+        testPermissions.put("-essentials.fly", true);
+
+        NodeTree nodes = NodeTree.of(testPermissions);
+
+        assertEquals(Tristate.TRUE, nodes.get("essentials.home"));
+        assertEquals(Tristate.FALSE, nodes.get("essentials.fly"));
+        assertEquals(false, nodes.asMap().get("essentials.fly"));
+        assertEquals(Tristate.TRUE, nodes.withValue("-essentials.fly", Tristate.FALSE).get("essentials.fly"));
+    }
+
+    @Test
+    public void testGetExplicit() throws Exception {
+        final Map<String, Boolean> testPermissions = new HashMap<String, Boolean>();
+        testPermissions.put("essentials", true);
+        testPermissions.put("essentials.fly", false);
+        testPermissions.put("worldedit.*", true);
+
+        NodeTree nodes = NodeTree.of(testPermissions);
+
+        assertEquals(Tristate.FALSE, nodes.getExplicit("Essentials.Fly"));
+        assertEquals(Tristate.TRUE, nodes.getExplicit("-essentials.fly"));
+        assertEquals(Tristate.UNDEFINED, nodes.getExplicit("essentials.home"));
+        assertEquals(Tristate.UNDEFINED, nodes.getExplicit("worldedit.wand"));
+        assertEquals(Tristate.TRUE, nodes.getExplicit("worldedit.*"));
+        assertEquals(Tristate.UNDEFINED, nodes.getExplicit("random.perm"));
+    }
 }
@@ -0,0 +1,102 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.permission;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Before;
+import org.junit.Test;
+import org.spongepowered.api.util.Tristate;
+
+public class PermissionIndexTest {
+
+    private final PermissionService service = mock(PermissionService.class);
+    private final SubjectCollection groups = mock(SubjectCollection.class);
+    private final PermissionResolver resolver = new PermissionResolver(this.service);
+    private final PermissionIndex index = new PermissionIndex(this.resolver);
+
+    @Before
+    public void setUp() {
+        when(this.groups.getIdentifier()).thenReturn(PermissionService.SUBJECTS_GROUP);
+        when(this.service.getSubjects(PermissionService.SUBJECTS_GROUP)).thenReturn(Optional.of(this.groups));
+        when(this.service.getDefaultData()).thenReturn(new MemorySubjectData(this.service));
+    }
+
+    private Subject group(String identifier) {
+        Subject subject = mock(Subject.class);
+        MemorySubjectData data = new MemorySubjectData(this.service);
+        MemorySubjectData transientData = new MemorySubjectData(this.service);
+        data.addListener(this.resolver);
+        transientData.addListener(this.resolver);
+        when(subject.getIdentifier()).thenReturn(identifier);
+        when(subject.getContainingCollection()).thenReturn(this.groups);
+        when(subject.getData()).thenReturn(data);
+        when(subject.getTransientData()).thenReturn(transientData);
+        when(this.groups.get(identifier)).thenReturn(subject);
+        this.index.track(subject);
+        return subject;
+    }
+
+    @Test
+    public void testGetAllWithPermission() {
+        Subject staff = group("staff");
+        Subject moderator = group("moderator");
+        Subject guest = group("guest");
+        moderator.getData().addParent(SubjectData.GLOBAL_CONTEXT, staff);
+        staff.getData().setPermission(SubjectData.GLOBAL_CONTEXT, "Chat.Staff", Tristate.TRUE);
+        guest.getData().setPermission(SubjectData.GLOBAL_CONTEXT, "chat.staff.notify", Tristate.FALSE);
+        guest.getData().setPermission(SubjectData.GLOBAL_CONTEXT, "chat.global", Tristate.TRUE);
+
+        assertEquals(ImmutableMap.of(staff, true, moderator, true, guest, false),
+                this.index.getAllWithPermission(PermissionService.SUBJECTS_GROUP, SubjectData.GLOBAL_CONTEXT, "chat.staff.notify"));
+        assertEquals(ImmutableMap.of(staff, true, moderator, true),
+                this.index.getAllWithPermission(PermissionService.SUBJECTS_GROUP, SubjectData.GLOBAL_CONTEXT, "chat.staff"));
+
+        moderator.getData().removeParent(SubjectData.GLOBAL_CONTEXT, staff);
+        staff.getData().clearPermissions();
+        assertEquals(ImmutableMap.of(guest, false),
+                this.index.getAllWithPermission(PermissionService.SUBJECTS_GROUP, SubjectData.GLOBAL_CONTEXT, "chat.staff.notify"));
+
+        this.index.untrack(guest);
+        assertEquals(ImmutableMap.of(),
+                this.index.getAllWithPermission(PermissionService.SUBJECTS_GROUP, SubjectData.GLOBAL_CONTEXT, "chat.staff.notify"));
+    }
+
+    @Test
+    public void testWildcardsAreCandidates() {
+        Subject builder = group("builder");
+        Subject visitor = group("visitor");
+        builder.getData().setPermission(SubjectData.GLOBAL_CONTEXT, "region.*.build", Tristate.TRUE);
+        visitor.getData().setPermission(SubjectData.GLOBAL_CONTEXT, "-region.spawn.build", Tristate.TRUE);
+
+        assertEquals(ImmutableMap.of(builder, true, visitor, false),
+                this.index.getAllWithPermission(PermissionService.SUBJECTS_GROUP, SubjectData.GLOBAL_CONTEXT, "region.spawn.build"));
+    }
+
+}
@@ -0,0 +1,187 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.permission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Before;
+import org.junit.Test;
+import org.spongepowered.api.util.Tristate;
+
+import java.util.Map;
+
+public class PermissionResolverTest {
+
+    private final PermissionService service = mock(PermissionService.class);
+    private final SubjectCollection groups = mock(SubjectCollection.class);
+    private final MemorySubjectData defaults = new MemorySubjectData(this.service);
+    private final PermissionResolver resolver = new PermissionResolver(this.service);
+
+    @Before
+    public void setUp() {
+        when(this.groups.getIdentifier()).thenReturn(PermissionService.SUBJECTS_GROUP);
+        when(this.service.getSubjects(PermissionService.SUBJECTS_GROUP)).thenReturn(Optional.of(this.groups));
+        when(this.service.getDefaultData()).thenReturn(this.defaults);
+        this.defaults.addListener(this.resolver);
+    }
+
+    private Subject group(String identifier) {
+        Subject subject = mock(Subject.class);
+        MemorySubjectData data = new MemorySubjectData(this.service);
+        MemorySubjectData transientData = new MemorySubjectData(this.service);
+        data.addListener(this.resolver);
+        transientData.addListener(this.resolver);
+        when(subject.getIdentifier()).thenReturn(identifier);
+        when(subject.getContainingCollection()).thenReturn(this.groups);
+        when(subject.getData()).thenReturn(data);
+        when(subject.getTransientData()).thenReturn(transientData);
+        when(this.groups.get(identifier)).thenReturn(subject);
+        return subject;
+    }
+
+    @Test
+    public void testInheritance() {
+        Subject member = group("member");
+        Subject vip = group("vip");
+        Subject user = group("user");
+        vip.getData().addParent(SubjectData.GLOBAL_CONTEXT, member);
+        user.getData().addParent(SubjectData.GLOBAL_CONTEXT, vip);
+
+        member.getData().setPermission(SubjectData.GLOBAL_CONTEXT, "chat.color", Tristate.TRUE);
+        vip.getData().setPermission(SubjectData.GLOBAL_CONTEXT, "chat.color.red", Tristate.FALSE);
+        this.defaults.setPermission(SubjectData.GLOBAL_CONTEXT, "spawn", Tristate.TRUE);
+
+        assertEquals(Tristate.TRUE, this.resolver.getPermissionValue(user, SubjectData.GLOBAL_CONTEXT, "chat.color.blue"));
+        assertEquals(Tristate.FALSE, this.resolver.getPermissionValue(user, SubjectData.GLOBAL_CONTEXT, "chat.color.red"));
+        assertEquals(Tristate.TRUE, this.resolver.getPermissionValue(user, SubjectData.GLOBAL_CONTEXT, "spawn"));
+        assertEquals(Tristate.UNDEFINED, this.resolver.getPermissionValue(user, SubjectData.GLOBAL_CONTEXT, "fly"));
+
+        user.getTransientData().setPermission(SubjectData.GLOBAL_CONTEXT, "chat", Tristate.FALSE);
+        assertEquals(Tristate.FALSE, this.resolver.getPermissionValue(user, SubjectData.GLOBAL_CONTEXT, "chat.color.blue"));
+    }
+
+    @Test
+    public void testUpdateInvalidatesCache() {
+        Subject member = group("member");
+        Subject user = group("user");
+        user.getData().addParent(SubjectData.GLOBAL_CONTEXT, member);
+
+        assertEquals(Tristate.UNDEFINED, this.resolver.getPermissionValue(user, SubjectData.GLOBAL_CONTEXT, "home"));
+        member.getData().setPermission(SubjectData.GLOBAL_CONTEXT, "home", Tristate.TRUE);
+        assertEquals(Tristate.TRUE, this.resolver.getPermissionValue(user, SubjectData.GLOBAL_CONTEXT, "home"));
+        user.getData().removeParent(SubjectData.GLOBAL_CONTEXT, member);
+        assertEquals(Tristate.UNDEFINED, this.resolver.getPermissionValue(user, SubjectData.GLOBAL_CONTEXT, "home"));
+    }
+
+    @Test
+    public void testInheritanceCycle() {
+        Subject first = group("first");
+        Subject second = group("second");
+        first.getData().addParent(SubjectData.GLOBAL_CONTEXT, second);
+        second.getData().addParent(SubjectData.GLOBAL_CONTEXT, first);
+        second.getData().setPermission(SubjectData.GLOBAL_CONTEXT, "build", Tristate.TRUE);
+
+        assertEquals(Tristate.TRUE, this.resolver.getPermissionValue(first, SubjectData.GLOBAL_CONTEXT, "build"));
+        assertEquals(Tristate.UNDEFINED, this.resolver.getPermissionValue(first, SubjectData.GLOBAL_CONTEXT, "destroy"));
+    }
+
+    @Test
+    public void testEffectiveTreeRebuild() {
+        Subject member = group("member");
+        Subject vip = group("vip");
+        Subject user = group("user");
+        vip.getData().addParent(SubjectData.GLOBAL_CONTEXT, member);
+        user.getData().addParent(SubjectData.GLOBAL_CONTEXT, vip);
+        member.getData().setPermission(SubjectData.GLOBAL_CONTEXT, "warp", Tristate.TRUE);
+
+        NodeTree tree = this.resolver.getEffectiveTree(user, SubjectData.GLOBAL_CONTEXT);
+        assertEquals(Tristate.TRUE, tree.get("warp.spawn"));
+        assertSame(tree, this.resolver.getEffectiveTree(user, SubjectData.GLOBAL_CONTEXT));
+
+        NodeTree vipTree = this.resolver.getEffectiveTree(vip, SubjectData.GLOBAL_CONTEXT);
+        user.getData().setPermission(SubjectData.GLOBAL_CONTEXT, "warp.spawn", Tristate.FALSE);
+        assertSame(vipTree, this.resolver.getEffectiveTree(vip, SubjectData.GLOBAL_CONTEXT));
+        assertEquals(Tristate.FALSE, this.resolver.getEffectiveTree(user, SubjectData.GLOBAL_CONTEXT).get("warp.spawn"));
+
+        member.getData().setPermission(SubjectData.GLOBAL_CONTEXT, "warp", Tristate.FALSE);
+        assertEquals(Tristate.FALSE, this.resolver.getEffectiveTree(vip, SubjectData.GLOBAL_CONTEXT).get("warp.home"));
+        assertEquals(Tristate.FALSE, this.resolver.getPermissionValue(user, SubjectData.GLOBAL_CONTEXT, "warp.home"));
+    }
+
+    @Test
+    public void testInheritanceCycleFromEitherSide() {
+        Subject first = group("first");
+        Subject second = group("second");
+        first.getData().addParent(SubjectData.GLOBAL_CONTEXT, second);
+        second.getData().addParent(SubjectData.GLOBAL_CONTEXT, first);
+        first.getData().setPermission(SubjectData.GLOBAL_CONTEXT, "build", Tristate.TRUE);
+        second.getData().setPermission(SubjectData.GLOBAL_CONTEXT, "build", Tristate.FALSE);
+        second.getData().setPermission(SubjectData.GLOBAL_CONTEXT, "destroy", Tristate.TRUE);
+
+        assertEquals(Tristate.TRUE, this.resolver.getPermissionValue(first, SubjectData.GLOBAL_CONTEXT, "build"));
+        assertEquals(Tristate.FALSE, this.resolver.getPermissionValue(second, SubjectData.GLOBAL_CONTEXT, "build"));
+        assertEquals(Tristate.TRUE, this.resolver.getPermissionValue(first, SubjectData.GLOBAL_CONTEXT, "destroy"));
+    }
+
+    @Test
+    public void testBulkUpdate() {
+        Subject user = group("user");
+        Map<String, Tristate> values = ImmutableMap.of("kit.starter", Tristate.TRUE, "kit.vip", Tristate.FALSE);
+
+        long epoch = this.resolver.getEpoch();
+        assertTrue(user.getData().setPermissions(SubjectData.GLOBAL_CONTEXT, values));
+        assertEquals(epoch + 1, this.resolver.getEpoch());
+        assertFalse(user.getData().setPermissions(SubjectData.GLOBAL_CONTEXT, values));
+        assertEquals(Tristate.TRUE, this.resolver.getPermissionValue(user, SubjectData.GLOBAL_CONTEXT, "kit.starter"));
+        assertEquals(Tristate.FALSE, this.resolver.getPermissionValue(user, SubjectData.GLOBAL_CONTEXT, "kit.vip"));
+    }
+
+    @Test
+    public void testWildcardOverridesInheritedNode() {
+        Subject member = group("member");
+        Subject user = group("user");
+        user.getData().addParent(SubjectData.GLOBAL_CONTEXT, member);
+        member.getData().setPermission(SubjectData.GLOBAL_CONTEXT, "worldedit.wand", Tristate.FALSE);
+        member.getData().setPermission(SubjectData.GLOBAL_CONTEXT, "worldedit.history.undo", Tristate.FALSE);
+        user.getData().setPermission(SubjectData.GLOBAL_CONTEXT, "worldedit.*", Tristate.TRUE);
+
+        assertEquals(Tristate.TRUE, this.resolver.getPermissionValue(user, SubjectData.GLOBAL_CONTEXT, "worldedit.wand"));
+        assertEquals(Tristate.TRUE, this.resolver.getPermissionValue(user, SubjectData.GLOBAL_CONTEXT, "worldedit.history.undo"));
+        assertEquals(Tristate.FALSE, this.resolver.getPermissionValue(member, SubjectData.GLOBAL_CONTEXT, "worldedit.wand"));
+
+        // Transient wildcards override persistent nodes in the same way
+        user.getData().setPermission(SubjectData.GLOBAL_CONTEXT, "region.spawn.build", Tristate.FALSE);
+        user.getTransientData().setPermission(SubjectData.GLOBAL_CONTEXT, "region.*.build", Tristate.TRUE);
+        assertEquals(Tristate.TRUE, this.resolver.getPermissionValue(user, SubjectData.GLOBAL_CONTEXT, "region.spawn.build"));
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.permission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.spongepowered.api.service.permission.context.Context;
+import org.spongepowered.api.util.Tristate;
+
+import java.io.File;
+import java.util.Set;
+
+public class SubjectDataStoreTest {
+
+    private static final String USERS = PermissionService.SUBJECTS_USER;
+    private static final Set<Context> NETHER = ImmutableSet.of(new Context(Context.WORLD_KEY, "nether"));
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final PermissionService service = mock(PermissionService.class);
+    private final SubjectCollection groups = mock(SubjectCollection.class);
+    private final Subject admin = mock(Subject.class);
+
+    @Before
+    public void setUp() {
+        when(this.groups.getIdentifier()).thenReturn(PermissionService.SUBJECTS_GROUP);
+        when(this.groups.get("admin")).thenReturn(this.admin);
+        when(this.admin.getIdentifier()).thenReturn("admin");
+        when(this.admin.getContainingCollection()).thenReturn(this.groups);
+        when(this.service.getSubjects(PermissionService.SUBJECTS_GROUP)).thenReturn(Optional.of(this.groups));
+    }
+
+    @Test
+    public void testPersistence() throws Exception {
+        File directory = this.folder.getRoot();
+        SubjectDataStore store = new SubjectDataStore(this.service, directory);
+        MemorySubjectData data = store.get(USERS, "alice");
+        data.setPermission(SubjectData.GLOBAL_CONTEXT, "home.set", Tristate.TRUE);
+        data.setPermission(NETHER, "fly", Tristate.FALSE);
+        data.addParent(SubjectData.GLOBAL_CONTEXT, this.admin);
+        store.get(USERS, "bob").setPermission(SubjectData.GLOBAL_CONTEXT, "spawn", Tristate.TRUE);
+        store.close();
+
+        store = new SubjectDataStore(this.service, directory);
+        assertTrue(store.hasRegistered(USERS, "alice"));
+        assertFalse(store.hasRegistered(USERS, "carol"));
+        data = store.get(USERS, "alice");
+        assertEquals(ImmutableMap.of("home.set", true), data.getPermissions(SubjectData.GLOBAL_CONTEXT));
+        assertEquals(ImmutableMap.of("fly", false), data.getPermissions(NETHER));
+        assertEquals(ImmutableList.of(this.admin), data.getParents(SubjectData.GLOBAL_CONTEXT));
+
+        store.get(USERS, "bob").clearPermissions();
+        data.setPermission(SubjectData.GLOBAL_CONTEXT, "home.set", Tristate.FALSE);
+        store.compact();
+        store.close();
+
+        store = new SubjectDataStore(this.service, directory);
+        assertFalse(store.hasRegistered(USERS, "bob"));
+        assertEquals(ImmutableMap.of("home.set", false), store.get(USERS, "alice").getPermissions(SubjectData.GLOBAL_CONTEXT));
+        assertEquals(0, new File(directory, "subjects.log").length());
+        store.close();
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        SubjectDataStore store = new SubjectDataStore(this.service, this.folder.getRoot(), 1);
+        MemorySubjectData alice = store.get(USERS, "alice");
+        alice.setPermission(SubjectData.GLOBAL_CONTEXT, "home", Tristate.TRUE);
+        store.setOnline(USERS, "bob", true);
+        final MemorySubjectData bob = store.get(USERS, "bob");
+
+        store.get(USERS, "carol");
+        MemorySubjectData reloaded = store.get(USERS, "alice");
+        assertNotSame(alice, reloaded);
+        assertEquals(ImmutableMap.of("home", true), reloaded.getPermissions(SubjectData.GLOBAL_CONTEXT));
+        assertSame(bob, store.get(USERS, "bob"));
+        store.close();
+    }
+
+}
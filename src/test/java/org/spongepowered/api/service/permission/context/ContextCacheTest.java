@@ -0,0 +1,130 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.permission.context;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+import org.junit.Test;
+import org.spongepowered.api.service.permission.Subject;
+
+import java.util.Set;
+
+public class ContextCacheTest {
+
+    private final ContextCache cache = new ContextCache();
+    private final Subject subject = mock(Subject.class);
+
+    @Test
+    public void testLifetimes() {
+        CountingCalculator world = new CountingCalculator(Context.WORLD_KEY);
+        CountingCalculator position = new CountingCalculator("position");
+        CountingCalculator random = new CountingCalculator("random");
+        this.cache.register(world, ContextCache.Lifetime.UNTIL_INVALIDATED);
+        this.cache.register(position);
+        this.cache.register(random, ContextCache.Lifetime.NONE);
+
+        this.cache.getActiveContexts(this.subject);
+        ContextSet contexts = this.cache.getActiveContexts(this.subject);
+        assertEquals(3, contexts.size());
+        assertEquals(1, world.calls);
+        assertEquals(1, position.calls);
+        assertEquals(2, random.calls);
+
+        this.cache.tick();
+        this.cache.getActiveContexts(this.subject);
+        assertEquals(1, world.calls);
+        assertEquals(2, position.calls);
+
+        this.cache.invalidate(this.subject);
+        this.cache.getActiveContexts(this.subject);
+        assertEquals(2, world.calls);
+        assertEquals(3, position.calls);
+
+        this.cache.invalidate(world);
+        this.cache.getActiveContexts(this.subject);
+        assertEquals(3, world.calls);
+    }
+
+    @Test
+    public void testCachedSetIsReused() {
+        this.cache.register(new CountingCalculator(Context.WORLD_KEY));
+        ContextSet contexts = this.cache.getActiveContexts(this.subject);
+        assertSame(contexts, this.cache.getActiveContexts(this.subject));
+        this.cache.tick();
+        assertSame(contexts, this.cache.getActiveContexts(this.subject));
+    }
+
+    @Test
+    public void testInvalidateDuringCalculation() {
+        // Invalidates the subject while its contexts are being calculated,
+        // as another thread may do when the subject changes world
+        this.cache.register(new ContextCalculator() {
+
+            private String world = "first";
+
+            @Override
+            public void accumulateContexts(Subject subject, Set<Context> accumulator) {
+                accumulator.add(new Context(Context.WORLD_KEY, this.world));
+                if (this.world.equals("first")) {
+                    this.world = "second";
+                    ContextCacheTest.this.cache.invalidate(subject);
+                }
+            }
+
+            @Override
+            public boolean matches(Context context, Subject subject) {
+                return context.getType().equals(Context.WORLD_KEY);
+            }
+        }, ContextCache.Lifetime.UNTIL_INVALIDATED);
+
+        assertEquals("first", this.cache.getActiveContexts(this.subject).iterator().next().getName());
+        assertEquals("second", this.cache.getActiveContexts(this.subject).iterator().next().getName());
+        assertEquals("second", this.cache.getActiveContexts(this.subject).iterator().next().getName());
+    }
+
+    private static final class CountingCalculator implements ContextCalculator {
+
+        private final String type;
+        int calls;
+
+        CountingCalculator(String type) {
+            this.type = type;
+        }
+
+        @Override
+        public void accumulateContexts(Subject subject, Set<Context> accumulator) {
+            this.calls++;
+            accumulator.add(new Context(this.type, "default"));
+        }
+
+        @Override
+        public boolean matches(Context context, Subject subject) {
+            return context.getType().equals(this.type);
+        }
+    }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.permission.context;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+import org.spongepowered.api.service.permission.SubjectData;
+
+import java.util.HashSet;
+import java.util.Set;
+
+public class ContextSetTest {
+
+    @Test
+    public void testInterning() {
+        Set<Context> contexts = new HashSet<Context>();
+        contexts.add(new Context(Context.WORLD_KEY, "nether"));
+        contexts.add(new Context("server", "lobby"));
+
+        ContextSet set = ContextSet.of(contexts);
+        assertSame(set, ContextSet.of(new Context("server", "lobby"), new Context(Context.WORLD_KEY, "nether")));
+        assertSame(set, ContextSet.of(set));
+        assertNotSame(set, ContextSet.of(new Context(Context.WORLD_KEY, "nether")));
+        assertSame(SubjectData.GLOBAL_CONTEXT, ContextSet.of(new HashSet<Context>()));
+    }
+
+    @Test
+    public void testSetEquality() {
+        Set<Context> contexts = ImmutableSet.of(new Context(Context.WORLD_KEY, "nether"));
+        ContextSet set = ContextSet.of(contexts);
+
+        assertEquals(contexts, set);
+        assertEquals(set, contexts);
+        assertEquals(contexts.hashCode(), set.hashCode());
+    }
+
+}
@@ -0,0 +1,490 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.persistence.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+import org.spongepowered.api.service.persistence.data.DataContainer;
+import org.spongepowered.api.service.persistence.data.DataQuery;
+import org.spongepowered.api.service.persistence.data.DataView;
+import org.spongepowered.api.service.persistence.data.MemoryDataContainer;
+import org.spongepowered.api.service.persistence.data.NbtCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+public class DataCodecRegistryTest {
+
+    private static Bean createBean() {
+        Inner inner = new Inner();
+        inner.setValue(7);
+        inner.setLabel("inner");
+
+        Bean bean = new Bean();
+        bean.setFlag(true);
+        bean.setByteValue((byte) -2);
+        bean.setShortValue((short) 300);
+        bean.setCharValue('x');
+        bean.setIntValue(123456);
+        bean.setLongValue(1L << 40);
+        bean.setFloatValue(1.5F);
+        bean.setDoubleValue(2.25);
+        bean.setBoxed(42);
+        bean.setName("bean");
+        bean.setInts(new int[] {1, 2, 3});
+        bean.setDoubles(new double[] {0.5, -1});
+        bean.setColor(Color.GREEN);
+        bean.setInner(inner);
+        bean.setTags(ImmutableList.of("a", "b"));
+        return bean;
+    }
+
+    private static void assertBeanEquals(Bean expected, Bean actual) {
+        assertEquals(expected.isFlag(), actual.isFlag());
+        assertEquals(expected.getByteValue(), actual.getByteValue());
+        assertEquals(expected.getShortValue(), actual.getShortValue());
+        assertEquals(expected.getCharValue(), actual.getCharValue());
+        assertEquals(expected.getIntValue(), actual.getIntValue());
+        assertEquals(expected.getLongValue(), actual.getLongValue());
+        assertEquals(expected.getFloatValue(), actual.getFloatValue(), 0);
+        assertEquals(expected.getDoubleValue(), actual.getDoubleValue(), 0);
+        assertEquals(expected.getBoxed(), actual.getBoxed());
+        assertEquals(expected.getName(), actual.getName());
+        assertArrayEquals(expected.getInts(), actual.getInts());
+        assertArrayEquals(expected.getDoubles(), actual.getDoubles(), 0);
+        assertEquals(expected.getColor(), actual.getColor());
+        assertEquals(expected.getInner().getValue(), actual.getInner().getValue());
+        assertEquals(expected.getInner().getLabel(), actual.getInner().getLabel());
+        assertEquals(expected.getTags(), actual.getTags());
+    }
+
+    @Test
+    public void testWrite() {
+        DataCodec<Bean> codec = new DataCodecRegistry().getCodec(Bean.class);
+        assertSame(Bean.class, codec.getType());
+
+        DataContainer container = new MemoryDataContainer();
+        codec.write(createBean(), container);
+        assertEquals(123456, container.getInt(new DataQuery("intValue")).get().intValue());
+        assertEquals("GREEN", container.getString(new DataQuery("color")).get());
+        assertEquals(7, container.getInt(new DataQuery("inner", "value")).get().intValue());
+        assertFalse(container.contains(new DataQuery("class")));
+    }
+
+    @Test
+    public void testRoundTrip() {
+        DataCodec<Bean> codec = new DataCodecRegistry().getCodec(Bean.class);
+        Bean bean = createBean();
+        DataContainer container = new MemoryDataContainer();
+        codec.write(bean, container);
+        assertBeanEquals(bean, codec.read(container));
+    }
+
+    @Test
+    public void testRoundTripNbt() throws IOException {
+        DataCodec<Bean> codec = new DataCodecRegistry().getCodec(Bean.class);
+        Bean bean = createBean();
+        DataContainer container = new MemoryDataContainer();
+        codec.write(bean, container);
+
+        // Booleans are read back as bytes and double arrays as lists
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NbtCodec.write(container, out);
+        DataView read = NbtCodec.read(new ByteArrayInputStream(out.toByteArray()));
+        assertBeanEquals(bean, codec.read(read));
+    }
+
+    @Test
+    public void testMissingValues() {
+        DataCodec<Bean> codec = new DataCodecRegistry().getCodec(Bean.class);
+        DataContainer container = new MemoryDataContainer();
+        container.set(new DataQuery("intValue"), 5);
+
+        Bean bean = codec.read(container);
+        assertEquals(5, bean.getIntValue());
+        assertNull(bean.getName());
+        assertNull(bean.getInner());
+    }
+
+    @Test
+    public void testRegister() {
+        DataCodecRegistry registry = new DataCodecRegistry();
+        registry.register(new DataCodec<Inner>() {
+            @Override
+            public Class<Inner> getType() {
+                return Inner.class;
+            }
+
+            @Override
+            public void write(Inner object, DataView view) {
+                view.set(new DataQuery("both"), object.getLabel() + ":" + object.getValue());
+            }
+
+            @Override
+            public Inner read(DataView view) {
+                String[] parts = view.getString(new DataQuery("both")).get().split(":");
+                Inner inner = new Inner();
+                inner.setLabel(parts[0]);
+                inner.setValue(Integer.parseInt(parts[1]));
+                return inner;
+            }
+        });
+
+        DataCodec<Bean> codec = registry.getCodec(Bean.class);
+        Bean bean = createBean();
+        DataContainer container = new MemoryDataContainer();
+        codec.write(bean, container);
+        assertEquals("inner:7", container.getString(new DataQuery("inner", "both")).get());
+        assertBeanEquals(bean, codec.read(container));
+    }
+
+    @Test
+    public void testRecursive() {
+        Node node = new Node();
+        node.setValue(1);
+        node.setNext(new Node());
+        node.getNext().setValue(2);
+
+        DataCodec<Node> codec = new DataCodecRegistry().getCodec(Node.class);
+        DataContainer container = new MemoryDataContainer();
+        codec.write(node, container);
+        Node read = codec.read(container);
+        assertEquals(1, read.getValue());
+        assertEquals(2, read.getNext().getValue());
+        assertNull(read.getNext().getNext());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoConstructor() {
+        new DataCodecRegistry().getCodec(NoConstructor.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInterface() {
+        new DataCodecRegistry().getCodec(List.class);
+    }
+
+    @Test
+    public void testCollections() throws IOException {
+        Holder holder = new Holder();
+        holder.setNames(new ArrayList<String>(ImmutableList.of("a", "b")));
+        holder.setCounts(new HashMap<String, Integer>(ImmutableMap.of("x", 1)));
+        holder.setValue("value");
+        DataCodec<Holder> codec = new DataCodecRegistry().getCodec(Holder.class);
+        DataContainer container = new MemoryDataContainer();
+        codec.write(holder, container);
+
+        // Lists and maps of concrete types are written as they are, not as beans
+        assertEquals(ImmutableList.of("a", "b"), container.getStringList(new DataQuery("names")).get());
+        assertEquals(1, container.getInt(new DataQuery("counts", "x")).get().intValue());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NbtCodec.write(container, out);
+        Holder read = codec.read(NbtCodec.read(new ByteArrayInputStream(out.toByteArray())));
+        assertEquals(holder.getNames(), read.getNames());
+        assertEquals(holder.getCounts(), read.getCounts());
+        assertEquals("value", read.getValue());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoProperties() {
+        new DataCodecRegistry().getCodec(Object.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNestedNoProperties() {
+        Wrapper wrapper = new Wrapper();
+        wrapper.setEmpty(new Empty());
+        new DataCodecRegistry().getCodec(Wrapper.class).write(wrapper, new MemoryDataContainer());
+    }
+
+    @Test
+    public void testCached() {
+        DataCodecRegistry registry = new DataCodecRegistry();
+        assertSame(registry.getCodec(Inner.class), registry.getCodec(Inner.class));
+        assertTrue(registry.getCodec(Inner.class) instanceof AbstractDataCodec);
+    }
+
+    public enum Color {
+        RED,
+        GREEN
+    }
+
+    public static class Inner {
+
+        private int value;
+        private String label;
+
+        public int getValue() {
+            return this.value;
+        }
+
+        public void setValue(int value) {
+            this.value = value;
+        }
+
+        public String getLabel() {
+            return this.label;
+        }
+
+        public void setLabel(String label) {
+            this.label = label;
+        }
+    }
+
+    public static class Node {
+
+        private int value;
+        private Node next;
+
+        public int getValue() {
+            return this.value;
+        }
+
+        public void setValue(int value) {
+            this.value = value;
+        }
+
+        public Node getNext() {
+            return this.next;
+        }
+
+        public void setNext(Node next) {
+            this.next = next;
+        }
+    }
+
+    public static class Empty {
+    }
+
+    public static class Wrapper {
+
+        private Empty empty;
+
+        public Empty getEmpty() {
+            return this.empty;
+        }
+
+        public void setEmpty(Empty empty) {
+            this.empty = empty;
+        }
+    }
+
+    public static class Holder {
+
+        private ArrayList<String> names;
+        private HashMap<String, Integer> counts;
+        private Object value;
+
+        public ArrayList<String> getNames() {
+            return this.names;
+        }
+
+        public void setNames(ArrayList<String> names) {
+            this.names = names;
+        }
+
+        public HashMap<String, Integer> getCounts() {
+            return this.counts;
+        }
+
+        public void setCounts(HashMap<String, Integer> counts) {
+            this.counts = counts;
+        }
+
+        public Object getValue() {
+            return this.value;
+        }
+
+        public void setValue(Object value) {
+            this.value = value;
+        }
+    }
+
+    public static class NoConstructor {
+
+        private final int value;
+
+        public NoConstructor(int value) {
+            this.value = value;
+        }
+
+        public int getValue() {
+            return this.value;
+        }
+    }
+
+    public static class Bean {
+
+        private boolean flag;
+        private byte byteValue;
+        private short shortValue;
+        private char charValue;
+        private int intValue;
+        private long longValue;
+        private float floatValue;
+        private double doubleValue;
+        private Integer boxed;
+        private String name;
+        private int[] ints;
+        private double[] doubles;
+        private Color color;
+        private Inner inner;
+        private List<String> tags;
+
+        public boolean isFlag() {
+            return this.flag;
+        }
+
+        public void setFlag(boolean flag) {
+            this.flag = flag;
+        }
+
+        public byte getByteValue() {
+            return this.byteValue;
+        }
+
+        public void setByteValue(byte byteValue) {
+            this.byteValue = byteValue;
+        }
+
+        public short getShortValue() {
+            return this.shortValue;
+        }
+
+        public void setShortValue(short shortValue) {
+            this.shortValue = shortValue;
+        }
+
+        public char getCharValue() {
+            return this.charValue;
+        }
+
+        public void setCharValue(char charValue) {
+            this.charValue = charValue;
+        }
+
+        public int getIntValue() {
+            return this.intValue;
+        }
+
+        public void setIntValue(int intValue) {
+            this.intValue = intValue;
+        }
+
+        public long getLongValue() {
+            return this.longValue;
+        }
+
+        public void setLongValue(long longValue) {
+            this.longValue = longValue;
+        }
+
+        public float getFloatValue() {
+            return this.floatValue;
+        }
+
+        public void setFloatValue(float floatValue) {
+            this.floatValue = floatValue;
+        }
+
+        public double getDoubleValue() {
+            return this.doubleValue;
+        }
+
+        public void setDoubleValue(double doubleValue) {
+            this.doubleValue = doubleValue;
+        }
+
+        public Integer getBoxed() {
+            return this.boxed;
+        }
+
+        public void setBoxed(Integer boxed) {
+            this.boxed = boxed;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int[] getInts() {
+            return this.ints;
+        }
+
+        public void setInts(int[] ints) {
+            this.ints = ints;
+        }
+
+        public double[] getDoubles() {
+            return this.doubles;
+        }
+
+        public void setDoubles(double[] doubles) {
+            this.doubles = doubles;
+        }
+
+        public Color getColor() {
+            return this.color;
+        }
+
+        public void setColor(Color color) {
+            this.color = color;
+        }
+
+        public Inner getInner() {
+            return this.inner;
+        }
+
+        public void setInner(Inner inner) {
+            this.inner = inner;
+        }
+
+        public List<String> getTags() {
+            return this.tags;
+        }
+
+        public void setTags(List<String> tags) {
+            this.tags = tags;
+        }
+    }
+
+}
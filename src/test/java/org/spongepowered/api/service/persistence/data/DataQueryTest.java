@@ -0,0 +1,62 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.persistence.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+public class DataQueryTest {
+
+    @Test
+    public void testParse() {
+        assertEquals(ImmutableList.of("a", "b", "c"), new DataQuery('/', "a/b/c").getParts());
+        assertEquals(ImmutableList.of("a", "", "b"), new DataQuery('.', "a..b.").getParts());
+        assertEquals(ImmutableList.of(""), new DataQuery('.', "").getParts());
+        assertEquals(ImmutableList.of(), new DataQuery('.', "..").getParts());
+        assertEquals(new DataQuery("a", "b"), DataQuery.of("a.b"));
+        assertSame(DataQuery.of("entity.health"), DataQuery.of("entity.health"));
+        assertEquals(DataQuery.of("a.b"), DataQuery.of('|', "a|b"));
+    }
+
+    @Test
+    public void testThen() {
+        DataQuery entity = DataQuery.of("entity");
+        DataQuery health = entity.then(DataQuery.of("attributes.health"));
+
+        assertEquals(DataQuery.of("entity.attributes.health"), health);
+        assertEquals(DataQuery.of("entity.attributes.health").hashCode(), health.hashCode());
+        assertEquals(3, health.size());
+        assertEquals(ImmutableList.of("entity", "attributes", "health", "max"), health.then("max").getParts());
+        assertSame(entity, entity.then(new DataQuery()));
+        assertSame(entity, new DataQuery().then(entity));
+        assertFalse(health.equals(entity.then("attributes")));
+        assertEquals("entity.attributes", entity.then("attributes").toString());
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.persistence.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+import org.spongepowered.api.service.persistence.InvalidDataException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class LazyDataContainerTest {
+
+    private static DataQuery path(String path) {
+        return new DataQuery('.', path);
+    }
+
+    private static byte[] write(DataView view) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NbtCodec.write(view, out);
+        return out.toByteArray();
+    }
+
+    private static MemoryDataContainer sample() {
+        MemoryDataContainer container = new MemoryDataContainer();
+        container.set(path("player.name"), "Notch");
+        container.set(path("player.health"), 20.0);
+        container.set(path("player.position"), Arrays.asList(12.5, 64.0, -3.5));
+        container.set(path("player.inventory.slot0.id"), "stone");
+        container.set(path("player.inventory.slot0.count"), 3);
+        container.setIntArray(path("chunk.heights"), new int[] {64, 65, 66});
+        container.set(path("chunk.version"), 2L);
+        return container;
+    }
+
+    @Test
+    public void testRead() throws IOException {
+        LazyDataContainer container = new LazyDataContainer(ByteBuffer.wrap(write(sample())));
+
+        assertEquals("Notch", container.getString(path("player.name")).get());
+        assertEquals(20.0, container.getDouble(path("player.health")).get(), 0);
+        assertEquals(Arrays.asList(12.5, 64.0, -3.5), container.getDoubleList(path("player.position")).get());
+        assertEquals(3, (int) container.getInt(path("player.inventory.slot0.count")).get());
+        assertArrayEquals(new int[] {64, 65, 66}, container.getIntArray(path("chunk.heights")).get());
+        assertTrue(container.contains(path("chunk.version")));
+        assertFalse(container.contains(path("chunk.version.major")));
+        assertFalse(container.getInt(path("player.name")).isPresent());
+        assertEquals("player.inventory", container.getView(path("player.inventory")).get().getCurrentPath().asString('.'));
+        assertEquals(ImmutableSet.of(path("player"), path("chunk")), container.getKeys(false));
+        assertEquals(sample().getKeys(true), container.getKeys(true));
+    }
+
+    @Test
+    public void testVerbatim() throws IOException {
+        byte[] bytes = write(sample());
+        LazyDataContainer container = new LazyDataContainer(ByteBuffer.wrap(bytes));
+        container.getString(path("player.name"));
+        container.getDoubleList(path("player.position"));
+        container.getView(path("player.inventory.slot0"));
+
+        assertTrue(container.isVerbatim());
+        assertArrayEquals(bytes, write(container));
+    }
+
+    @Test
+    public void testChanges() throws IOException {
+        LazyDataContainer container = new LazyDataContainer(ByteBuffer.wrap(write(sample())));
+        MemoryDataContainer expected = sample();
+        for (DataView view : Arrays.<DataView>asList(container, expected)) {
+            view.set(path("player.health"), 15.0);
+            view.remove(path("chunk.version"));
+            view.set(path("player.inventory.slot1"), ImmutableMap.of("id", "dirt", "count", 64));
+        }
+
+        assertFalse(container.isVerbatim());
+        assertFalse(container.contains(path("chunk.version")));
+        assertEquals(64, (int) container.getInt(path("player.inventory.slot1.count")).get());
+        assertArrayEquals(write(expected), write(container));
+    }
+
+    @Test
+    public void testChangedArray() throws IOException {
+        LazyDataContainer container = new LazyDataContainer(ByteBuffer.wrap(write(sample())));
+        container.getIntArray(path("chunk.heights")).get()[0] = 70;
+
+        DataContainer read = NbtCodec.read(ByteBuffer.wrap(write(container)));
+        assertArrayEquals(new int[] {70, 65, 66}, read.getIntArray(path("chunk.heights")).get());
+    }
+
+    @Test
+    public void testRemovedView() throws IOException {
+        LazyDataContainer container = new LazyDataContainer(ByteBuffer.wrap(write(sample())));
+        DataView inventory = container.getView(path("player.inventory")).get();
+        container.remove(path("player"));
+
+        assertTrue(inventory.getKeys(true).isEmpty());
+        try {
+            inventory.set(path("slot0"), 1);
+            fail();
+        } catch (IllegalStateException e) {
+            assertFalse(container.contains(path("player.inventory")));
+        }
+    }
+
+    @Test
+    public void testMalformed() throws IOException {
+        byte[] bytes = write(sample());
+        LazyDataContainer container = new LazyDataContainer(ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length - 8)));
+        try {
+            container.get(path("chunk.version"));
+            fail();
+        } catch (InvalidDataException e) {
+            assertEquals(InvalidDataException.class, e.getClass());
+        }
+        try {
+            new LazyDataContainer(ByteBuffer.wrap(new byte[] {NbtCodec.TAG_INT, 0, 0}));
+            fail();
+        } catch (InvalidDataException e) {
+            assertEquals(InvalidDataException.class, e.getClass());
+        }
+    }
+
+}
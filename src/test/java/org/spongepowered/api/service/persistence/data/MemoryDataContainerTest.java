@@ -0,0 +1,234 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.persistence.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class MemoryDataContainerTest {
+
+    private static DataQuery path(String path) {
+        return new DataQuery('.', path);
+    }
+
+    @Test
+    public void testPrimitives() {
+        MemoryDataContainer container = new MemoryDataContainer();
+        container.set(path("player.health"), 20.0);
+        container.set(path("player.level"), 7);
+        container.set(path("player.xp"), 1234567890123L);
+        container.set(path("player.flying"), true);
+        container.set(path("player.name"), "Notch");
+        container.set(path("player.speed"), 0.1f);
+
+        assertEquals(20.0, container.getDouble(path("player.health")).get(), 0);
+        assertEquals(7, (int) container.getInt(path("player.level")).get());
+        assertEquals(1234567890123L, (long) container.getLong(path("player.xp")).get());
+        assertTrue(container.getBoolean(path("player.flying")).get());
+        assertEquals("Notch", container.getString(path("player.name")).get());
+        assertEquals(0.1f, container.get(path("player.speed")).get());
+        assertFalse(container.getInt(path("player.health")).isPresent());
+        assertFalse(container.getString(path("player.name.first")).isPresent());
+        assertFalse(container.contains(path("player.mana")));
+        assertEquals(7, container.size());
+    }
+
+    @Test
+    public void testViews() {
+        MemoryDataContainer container = new MemoryDataContainer();
+        DataView inventory = container.createView(path("player.inventory"));
+        inventory.set(path("slot"), 3);
+
+        assertEquals(3, (int) container.getInt(path("player.inventory.slot")).get());
+        assertEquals("player.inventory", inventory.getCurrentPath().asString('.'));
+        assertSame(container, inventory.getContainer());
+        assertSame(container.getView(path("player")).get(), inventory.getParent().get());
+
+        container.set(path("player"), "replaced");
+        assertFalse(container.contains(path("player.inventory.slot")));
+        assertFalse(inventory.get(path("slot")).isPresent());
+        assertEquals(1, container.size());
+
+        DataView copied = container.createView(path("copy"), ImmutableMap.of("a", 1, "b", ImmutableMap.of("c", "d")));
+        assertEquals("d", copied.getString(path("b.c")).get());
+        container.set(path("copy.b"), copied);
+        assertEquals(1, (int) container.getInt(path("copy.b.a")).get());
+        assertEquals("d", container.getString(path("copy.b.b.c")).get());
+    }
+
+    @Test
+    public void testValues() {
+        MemoryDataContainer container = new MemoryDataContainer();
+        container.set(path("a.b"), 1);
+        container.set(path("a.c.d"), 2);
+        container.set(path("e"), 3);
+
+        assertEquals(ImmutableList.of("a", "e"), keys(container.getValues(false)));
+        assertEquals(ImmutableList.of("a", "a.b", "a.c", "a.c.d", "e"), keys(container.getValues(true)));
+        assertEquals(ImmutableList.of("b", "c"), keys(container.getView(path("a")).get().getValues(false)));
+
+        container.remove(path("a.c"));
+        assertEquals(ImmutableList.of("a", "a.b", "e"), keys(container.getValues(true)));
+        assertEquals(3, container.size());
+    }
+
+    private static List<String> keys(Map<DataQuery, Object> values) {
+        List<String> keys = new ArrayList<String>();
+        for (DataQuery query : values.keySet()) {
+            keys.add(query.asString('.'));
+        }
+        return keys;
+    }
+
+    @Test
+    public void testLists() {
+        MemoryDataContainer container = new MemoryDataContainer();
+        container.set(path("ints"), Arrays.asList(1, 2, 3));
+        container.set(path("strings"), Arrays.asList("a", "b"));
+        container.set(path("mixed"), Arrays.<Object>asList(1, "b"));
+        container.set(path("empty"), ImmutableList.of());
+
+        assertEquals(Arrays.asList(1, 2, 3), container.getIntegerList(path("ints")).get());
+        assertFalse(container.getLongList(path("ints")).isPresent());
+        assertEquals(Arrays.asList("a", "b"), container.getStringList(path("strings")).get());
+        assertFalse(container.getStringList(path("mixed")).isPresent());
+        assertEquals(2, container.getList(path("mixed")).get().size());
+        assertTrue(container.getDoubleList(path("empty")).get().isEmpty());
+    }
+
+    @Test
+    public void testArrays() {
+        MemoryDataContainer container = new MemoryDataContainer();
+        int[] heights = {64, 65, 63};
+        container.setIntArray(path("chunk.heights"), heights);
+        container.setByteArray(path("chunk.biomes"), new byte[] {1, 2});
+        container.set(path("chunk.times"), Arrays.asList(1L, 2L));
+
+        assertSame(heights, container.getIntArray(path("chunk.heights")).get());
+        assertEquals(Arrays.asList(64, 65, 63), container.getIntegerList(path("chunk.heights")).get());
+        assertArrayEquals(new byte[] {1, 2}, container.getByteArray(path("chunk.biomes")).get());
+        assertArrayEquals(new long[] {1, 2}, container.getLongArray(path("chunk.times")).get());
+        assertFalse(container.getDoubleArray(path("chunk.heights")).isPresent());
+        assertFalse(container.getList(path("chunk.heights")).isPresent());
+    }
+
+    @Test
+    public void testManyEntries() {
+        MemoryDataContainer container = new MemoryDataContainer();
+        for (int i = 0; i < 1000; i++) {
+            container.set(new DataQuery("chunk" + i % 10, "entity" + i), i);
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            container.remove(new DataQuery("chunk" + i % 10, "entity" + i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i % 2 == 1, container.getInt(new DataQuery("chunk" + i % 10, "entity" + i)).isPresent());
+        }
+        assertEquals(510, container.size());
+    }
+
+    @Test
+    public void testChanges() {
+        MemoryDataContainer container = new MemoryDataContainer();
+        container.set(path("player.name"), "Notch");
+        container.set(path("player.health"), 20.0);
+        container.set(path("player.inventory.slot0"), 3);
+        container.set(path("world"), "overworld");
+        container.clearChanges();
+        assertTrue(container.getChanges().isEmpty());
+
+        container.set(path("player.health"), 15.0);
+        container.set(path("player.inventory.slot1"), 4);
+        container.set(path("player.inventory.slot1"), 5);
+        container.remove(path("world"));
+        container.createView(path("player.effects"));
+        container.set(path("player.effects.speed"), 2);
+        container.set(path("player.name"), "Dinnerbone");
+        container.remove(path("player.name"));
+
+        DataPatch patch = container.getChanges();
+        assertEquals(ImmutableMap.of(path("player.health"), 15.0, path("player.inventory.slot1"), 5,
+                path("player.effects"), ImmutableMap.of("speed", 2)), patch.getChanges());
+        assertEquals(ImmutableSet.of(path("world"), path("player.name")), patch.getRemovals());
+
+        MemoryDataContainer copy = new MemoryDataContainer();
+        DataPatch.of(container).applyTo(copy);
+        assertEquals(container.getValues(true).keySet(), copy.getValues(true).keySet());
+        container.clearChanges();
+        assertTrue(container.getChanges().isEmpty());
+    }
+
+    @Test
+    public void testArrayChanges() {
+        MemoryDataContainer container = new MemoryDataContainer();
+        container.setIntArray(path("chunk.heights"), new int[] {1, 2, 3});
+        container.setByteArray(path("chunk.blocks"), new byte[] {4});
+        container.clearChanges();
+
+        // Arrays are returned as they are stored, so writes to them are changes
+        container.getIntArray(path("chunk.heights")).get()[0] = 99;
+        DataPatch patch = container.getChanges();
+        assertEquals(ImmutableSet.of(path("chunk.heights")), patch.getChanges().keySet());
+        assertArrayEquals(new int[] {99, 2, 3}, (int[]) patch.getChanges().get(path("chunk.heights")));
+        container.clearChanges();
+
+        ((byte[]) container.get(path("chunk.blocks")).get())[0] = 5;
+        assertEquals(ImmutableSet.of(path("chunk.blocks")), container.getChanges().getChanges().keySet());
+    }
+
+    @Test
+    public void testListChanges() {
+        MemoryDataContainer container = new MemoryDataContainer();
+        container.setIntArray(path("chunk.heights"), new int[] {1, 2, 3});
+        container.set(path("entity.position"), Arrays.asList(0.5, 1.5));
+        container.clearChanges();
+
+        // Lists over arrays wrap the stored array, so writes through them are changes
+        container.getIntegerList(path("chunk.heights")).get().set(0, 99);
+        DataPatch patch = container.getChanges();
+        assertEquals(ImmutableSet.of(path("chunk.heights")), patch.getChanges().keySet());
+        assertArrayEquals(new int[] {99, 2, 3}, (int[]) patch.getChanges().get(path("chunk.heights")));
+        container.clearChanges();
+
+        container.getDoubleList(path("entity.position")).get().set(1, 2.5);
+        patch = container.getChanges();
+        assertEquals(ImmutableSet.of(path("entity.position")), patch.getChanges().keySet());
+        assertEquals(Arrays.asList(0.5, 2.5), patch.getChanges().get(path("entity.position")));
+    }
+
+}
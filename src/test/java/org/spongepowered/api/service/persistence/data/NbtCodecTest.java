@@ -0,0 +1,235 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.persistence.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+import org.spongepowered.api.service.persistence.DataSerializable;
+import org.spongepowered.api.service.persistence.InvalidDataException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class NbtCodecTest {
+
+    private static DataQuery path(String path) {
+        return new DataQuery('.', path);
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+
+    private static byte[] write(DataView view) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NbtCodec.write(view, out);
+        return out.toByteArray();
+    }
+
+    private static MemoryDataContainer sample() {
+        MemoryDataContainer container = new MemoryDataContainer();
+        container.set(path("entity.health"), 20.0);
+        container.set(path("entity.speed"), 0.1f);
+        container.set(path("entity.level"), 7);
+        container.set(path("entity.xp"), 1234567890123L);
+        container.set(path("entity.damage"), (short) -3);
+        container.set(path("entity.slot"), (byte) 4);
+        container.set(path("entity.flying"), true);
+        container.set(path("entity.name"), "Spönge ☃ \0 😀");
+        container.set(path("entity.position"), Arrays.asList(12.5, 64.0, -3.5));
+        container.set(path("entity.tags"), Arrays.asList("a", "b"));
+        container.set(path("entity.none"), Collections.emptyList());
+        container.set(path("entity.items"), ImmutableList.of(ImmutableMap.of("id", "stone", "count", 3)));
+        container.setByteArray(path("chunk.blocks"), bytes(1, 2, 3, -1));
+        container.setIntArray(path("chunk.heights"), new int[] {64, 65, -1});
+        container.setLongArray(path("chunk.states"), new long[] {Long.MIN_VALUE, 0, Long.MAX_VALUE});
+        container.setDoubleArray(path("chunk.motion"), new double[] {0.5, -0.25});
+        return container;
+    }
+
+    private static void assertSample(DataView view) {
+        assertEquals(20.0, view.getDouble(path("entity.health")).get(), 0);
+        assertEquals(0.1f, view.get(path("entity.speed")).get());
+        assertEquals(7, (int) view.getInt(path("entity.level")).get());
+        assertEquals(1234567890123L, (long) view.getLong(path("entity.xp")).get());
+        assertEquals((short) -3, view.get(path("entity.damage")).get());
+        assertEquals((byte) 4, view.get(path("entity.slot")).get());
+        assertEquals((byte) 1, view.get(path("entity.flying")).get());
+        assertEquals("Spönge ☃ \0 😀", view.getString(path("entity.name")).get());
+        assertEquals(Arrays.asList(12.5, 64.0, -3.5), view.getDoubleList(path("entity.position")).get());
+        assertEquals(Arrays.asList("a", "b"), view.getStringList(path("entity.tags")).get());
+        assertEquals(Collections.emptyList(), view.getList(path("entity.none")).get());
+        List<Map<?, ?>> items = view.getMapList(path("entity.items")).get();
+        assertEquals(ImmutableMap.of("id", "stone", "count", 3), items.get(0));
+        assertArrayEquals(bytes(1, 2, 3, -1), view.getByteArray(path("chunk.blocks")).get());
+        assertArrayEquals(new int[] {64, 65, -1}, view.getIntArray(path("chunk.heights")).get());
+        assertArrayEquals(new long[] {Long.MIN_VALUE, 0, Long.MAX_VALUE}, view.getLongArray(path("chunk.states")).get());
+        assertArrayEquals(new double[] {0.5, -0.25}, view.getDoubleArray(path("chunk.motion")).get(), 0);
+    }
+
+    @Test
+    public void testFormat() throws IOException {
+        MemoryDataContainer container = new MemoryDataContainer();
+        container.set(path("a"), 1);
+
+        assertArrayEquals(bytes(10, 0, 0, 3, 0, 1, 'a', 0, 0, 0, 1, 0), write(container));
+    }
+
+    @Test
+    public void testStream() throws IOException {
+        DataContainer read = NbtCodec.read(new ByteArrayInputStream(write(sample())));
+
+        assertSample(read);
+        assertArrayEquals(write(read), write(sample()));
+    }
+
+    @Test(timeout = 10000)
+    public void testLongString() throws IOException {
+        char[] chars = new char[10000];
+        Arrays.fill(chars, 'x');
+        String text = new String(chars);
+        MemoryDataContainer container = new MemoryDataContainer();
+        container.set(path("a"), text.substring(0, 8000));
+        container.set(path("b"), text);
+        container.set(path("c"), 1);
+
+        DataContainer read = NbtCodec.read(new ByteArrayInputStream(write(container)));
+        assertEquals(text.substring(0, 8000), read.getString(path("a")).get());
+        assertEquals(text, read.getString(path("b")).get());
+        assertEquals(1, (int) read.getInt(path("c")).get());
+    }
+
+    @Test
+    public void testBuffer() {
+        ByteBuffer buffer = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+        NbtCodec.write(sample(), buffer);
+        buffer.flip();
+        DataContainer read = NbtCodec.read(buffer);
+
+        assertSample(read);
+        assertFalse(buffer.hasRemaining());
+        assertEquals(ByteOrder.LITTLE_ENDIAN, buffer.order());
+    }
+
+    @Test
+    public void testDirectBuffer() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1024);
+        NbtCodec.write(sample(), buffer);
+        buffer.flip();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+
+        assertArrayEquals(write(sample()), bytes);
+        assertSample(NbtCodec.read(buffer));
+    }
+
+    @Test
+    public void testSerializable() throws IOException {
+        DataSerializable serializable = mock(DataSerializable.class);
+        MemoryDataContainer inner = new MemoryDataContainer();
+        inner.set(path("id"), "stone");
+        when(serializable.toContainer()).thenReturn(inner);
+        MemoryDataContainer container = new MemoryDataContainer();
+        container.set(path("item"), serializable);
+
+        DataContainer read = NbtCodec.read(new ByteArrayInputStream(write(container)));
+        assertEquals("stone", read.getString(path("item.id")).get());
+    }
+
+    @Test
+    public void testInvalidValues() throws IOException {
+        MemoryDataContainer container = new MemoryDataContainer();
+        container.set(path("mixed"), Arrays.<Object>asList(1, "a"));
+        try {
+            write(container);
+            fail();
+        } catch (InvalidDataException e) {
+            assertEquals(InvalidDataException.class, e.getClass());
+        }
+
+        container.remove(path("mixed"));
+        container.set(path("object"), new Object());
+        try {
+            write(container);
+            fail();
+        } catch (InvalidDataException e) {
+            assertEquals(InvalidDataException.class, e.getClass());
+        }
+    }
+
+    @Test
+    public void testMalformed() throws IOException {
+        final byte[] truncated = Arrays.copyOf(write(sample()), 40);
+        try {
+            NbtCodec.read(new ByteArrayInputStream(truncated));
+            fail();
+        } catch (EOFException e) {
+            assertEquals(EOFException.class, e.getClass());
+        }
+        try {
+            NbtCodec.read(ByteBuffer.wrap(truncated));
+            fail();
+        } catch (InvalidDataException e) {
+            assertEquals(InvalidDataException.class, e.getClass());
+        }
+
+        final byte[] unknownTag = bytes(10, 0, 0, 99, 0, 1, 'a', 0);
+        try {
+            NbtCodec.read(ByteBuffer.wrap(unknownTag));
+            fail();
+        } catch (InvalidDataException e) {
+            assertEquals(InvalidDataException.class, e.getClass());
+        }
+
+        final byte[] hugeArray = bytes(10, 0, 0, 11, 0, 1, 'a', 0x7F, 0, 0, 0, 0);
+        try {
+            NbtCodec.read(ByteBuffer.wrap(hugeArray));
+            fail();
+        } catch (InvalidDataException e) {
+            assertEquals(InvalidDataException.class, e.getClass());
+        }
+    }
+
+}
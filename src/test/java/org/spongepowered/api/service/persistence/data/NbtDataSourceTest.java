@@ -0,0 +1,140 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.persistence.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Test;
+import org.spongepowered.api.service.persistence.DataSerializable;
+import org.spongepowered.api.service.persistence.InvalidDataException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public class NbtDataSourceTest {
+
+    private static DataQuery path(String path) {
+        return new DataQuery('.', path);
+    }
+
+    @Test
+    public void testSerialize() {
+        MemoryDataContainer container = new MemoryDataContainer();
+        container.set(path("player.name"), "Notch");
+        DataSerializable serializable = mock(DataSerializable.class);
+        when(serializable.toContainer()).thenReturn(container);
+        NbtDataSource source = new NbtDataSource();
+        assertFalse(source.deserialize(DataSerializable.class).isPresent());
+
+        source.serialize(serializable);
+        DataContainer read = source.deserialize(DataSerializable.class).get();
+        assertEquals("Notch", read.getString(path("player.name")).get());
+    }
+
+    @Test
+    public void testApply() {
+        MemoryDataContainer container = new MemoryDataContainer();
+        container.set(path("player.name"), "Notch");
+        container.set(path("player.health"), 20.0);
+        container.setIntArray(path("chunk.heights"), new int[] {64, 65});
+        NbtDataSource source = new NbtDataSource();
+        source.apply(container.getChanges());
+        container.clearChanges();
+
+        container.set(path("player.health"), 15.0);
+        container.remove(path("player.name"));
+        source.apply(container.getChanges());
+        ByteBuffer data = source.getData().get();
+        source.apply(DataPatch.empty());
+        assertEquals(data, source.getData().get());
+
+        DataContainer read = source.deserialize(DataSerializable.class).get();
+        assertEquals(15.0, read.getDouble(path("player.health")).get(), 0);
+        assertFalse(read.contains(path("player.name")));
+        assertArrayEquals(new int[] {64, 65}, read.getIntArray(path("chunk.heights")).get());
+        assertEquals(new NbtDataSource(data).getData().get(), source.getData().get());
+
+        container.clearChanges();
+        container.getIntArray(path("chunk.heights")).get()[1] = 99;
+        source.apply(container.getChanges());
+        read = source.deserialize(DataSerializable.class).get();
+        assertArrayEquals(new int[] {64, 99}, read.getIntArray(path("chunk.heights")).get());
+    }
+
+    @Test
+    public void testLog() throws IOException {
+        MemoryDataContainer container = new MemoryDataContainer();
+        container.setByteArray(path("chunk.blocks"), new byte[1024]);
+        container.set(path("player.health"), 20.0);
+        NbtDataSource source = new NbtDataSource();
+        source.apply(container.getChanges());
+        container.clearChanges();
+
+        // Enough patches to outgrow the data, and some left in the log
+        for (int i = 0; i < 500; i++) {
+            container.set(path("player.health"), (double) i);
+            container.set(path("player.level"), i);
+            source.apply(container.getChanges());
+            container.clearChanges();
+        }
+        container.remove(path("player.level"));
+        source.apply(container.getChanges());
+
+        DataContainer read = source.deserialize(DataSerializable.class).get();
+        assertEquals(499.0, read.getDouble(path("player.health")).get(), 0);
+        assertFalse(read.contains(path("player.level")));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NbtCodec.write(container, out);
+        assertEquals(ByteBuffer.wrap(out.toByteArray()), source.getData().get());
+    }
+
+    @Test
+    public void testApplyInvalid() {
+        MemoryDataContainer container = new MemoryDataContainer();
+        container.set(path("player.name"), "Notch");
+        NbtDataSource source = new NbtDataSource();
+        source.apply(container.getChanges());
+        container.clearChanges();
+
+        // Values that cannot be written are rejected before they are logged
+        container.set(path("player.pet"), new Object());
+        try {
+            source.apply(container.getChanges());
+            fail();
+        } catch (InvalidDataException e) {
+            assertEquals(InvalidDataException.class, e.getClass());
+        }
+        DataContainer read = source.deserialize(DataSerializable.class).get();
+        assertEquals("Notch", read.getString(path("player.name")).get());
+        assertFalse(read.contains(path("player.pet")));
+    }
+
+}
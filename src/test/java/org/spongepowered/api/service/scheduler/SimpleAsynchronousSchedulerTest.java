@@ -0,0 +1,140 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.service.scheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.base.Optional;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.spongepowered.api.plugin.PluginContainer;
+import org.spongepowered.api.plugin.PluginManager;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SimpleAsynchronousSchedulerTest {
+
+    private static final PluginManager manager = Mockito.mock(PluginManager.class);
+    private static final Object testPlugin = new Object();
+    private static final PluginContainer testPluginContainer = Mockito.mock(PluginContainer.class);
+
+    {
+        Mockito.when(testPluginContainer.getId()).thenReturn("TestPlugin");
+        Mockito.when(manager.fromInstance(Mockito.any())).thenReturn(Optional.<PluginContainer>absent());
+        Mockito.when(manager.fromInstance(testPlugin)).thenReturn(Optional.of(testPluginContainer));
+    }
+
+    private final ExecutorService executor = TaskExecutors.newBlockingTaskExecutor("TestScheduler-");
+    private final SimpleAsynchronousScheduler scheduler = new SimpleAsynchronousScheduler(manager, this.executor);
+
+    @After
+    public void shutdown() {
+        this.scheduler.shutdown();
+    }
+
+    @Test
+    public void testRunTask() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        Optional<Task> task = this.scheduler.runTask(testPlugin, new Runnable() {
+
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+
+        assertTrue(task.isPresent());
+        assertEquals("TestPlugin-A1", task.get().getName().get());
+        assertFalse(task.get().isSynchronous());
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testInvalidPlugin() {
+        Optional<Task> task = this.scheduler.runTask(new Object(), new Runnable() {
+
+            @Override
+            public void run() {
+            }
+        });
+        assertFalse(task.isPresent());
+    }
+
+    @Test
+    public void testCancelDelayedTask() throws InterruptedException {
+        final AtomicInteger runs = new AtomicInteger();
+        Task task = this.scheduler.runTaskAfter(testPlugin, new Runnable() {
+
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        }, TimeUnit.MILLISECONDS, 200).get();
+
+        assertTrue(this.scheduler.getTaskById(task.getUniqueId()).isPresent());
+        assertTrue(task.cancel());
+        assertFalse(task.cancel());
+        assertFalse(this.scheduler.getTaskById(task.getUniqueId()).isPresent());
+
+        Thread.sleep(400);
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    public void testRepeatingTaskDoesNotOverlap() throws InterruptedException {
+        final AtomicInteger concurrent = new AtomicInteger();
+        final AtomicInteger maxConcurrent = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(3);
+        Optional<Task> task = this.scheduler.runRepeatingTask(testPlugin, new Runnable() {
+
+            @Override
+            public void run() {
+                int current = concurrent.incrementAndGet();
+                if (current > maxConcurrent.get()) {
+                    maxConcurrent.set(current);
+                }
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                }
+                concurrent.decrementAndGet();
+                latch.countDown();
+            }
+        }, TimeUnit.MILLISECONDS, 5);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(task.get().cancel());
+        assertEquals(1, maxConcurrent.get());
+        assertTrue(this.scheduler.getTasksByName("TestPlugin-A\\d+").isEmpty());
+    }
+
+}
@@ -0,0 +1,279 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered.org <http://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.api.util.command.dispatcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.flowpowered.math.vector.Vector3d;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.spongepowered.api.util.command.CommandArguments;
+import org.spongepowered.api.util.command.CommandCallable;
+import org.spongepowered.api.util.command.CommandException;
+import org.spongepowered.api.util.command.CommandMapping;
+import org.spongepowered.api.util.command.CommandSource;
+import org.spongepowered.api.util.command.IdempotentCommandCallable;
+import org.spongepowered.api.util.command.source.CommandBlockSource;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.extent.Extent;
+
+import java.util.HashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SimpleDispatcherTest {
+
+    private final CommandSource source = mock(CommandSource.class);
+
+    private static CommandBlockSource commandBlock() {
+        CommandBlockSource block = mock(CommandBlockSource.class);
+        when(block.getLocation()).thenReturn(new Location(mock(Extent.class), new Vector3d(0, 64, 0)));
+        return block;
+    }
+
+    private static CommandCallable permitted() {
+        CommandCallable callable = mock(CommandCallable.class);
+        when(callable.testPermission(any(CommandSource.class))).thenReturn(true);
+        return callable;
+    }
+
+    @Test
+    public void testLookup() {
+        SimpleDispatcher dispatcher = new SimpleDispatcher();
+        CommandMapping teleport = dispatcher.register(mock(CommandCallable.class), "teleport", "tp").get();
+        final CommandMapping team = dispatcher.register(mock(CommandCallable.class), "team", "TP").get();
+
+        assertEquals(3, dispatcher.size());
+        assertSame(teleport, dispatcher.get("TelePort").get());
+        assertSame(teleport, dispatcher.get("tp").get());
+        assertSame(team, dispatcher.get("team").get());
+        assertEquals("team", team.getPrimaryAlias());
+        assertFalse(dispatcher.containsAlias("tea"));
+        assertFalse(dispatcher.containsAlias("teams"));
+        assertEquals(ImmutableSet.of(teleport, team), dispatcher.getCommands());
+    }
+
+    @Test
+    public void testRemoval() {
+        SimpleDispatcher dispatcher = new SimpleDispatcher();
+        CommandMapping teleport = dispatcher.register(mock(CommandCallable.class), "teleport", "tp").get();
+        dispatcher.register(mock(CommandCallable.class), "team");
+
+        assertSame(teleport, dispatcher.remove("TP").get());
+        assertFalse(dispatcher.remove("tp").isPresent());
+        assertTrue(dispatcher.containsAlias("teleport"));
+        assertTrue(dispatcher.removeMapping(teleport).isPresent());
+        assertFalse(dispatcher.containsMapping(teleport));
+        assertTrue(dispatcher.containsAlias("team"));
+        assertEquals(1, dispatcher.size());
+        assertTrue(dispatcher.removeAll(ImmutableSet.of("team")));
+        assertFalse(dispatcher.removeAll(ImmutableSet.of("team")));
+        assertEquals(0, dispatcher.size());
+    }
+
+    @Test
+    public void testSuggestions() throws Exception {
+        SimpleDispatcher dispatcher = new SimpleDispatcher();
+        dispatcher.register(permitted(), "teleport", "tp");
+        dispatcher.register(permitted(), "Team");
+        dispatcher.register(permitted(), "time");
+
+        assertEquals(ImmutableSet.of("teleport", "Team"), new HashSet<String>(dispatcher.getSuggestions(this.source, "TE")));
+        assertEquals(ImmutableSet.of("teleport", "tp", "Team", "time"), new HashSet<String>(dispatcher.getSuggestions(this.source, "t")));
+        assertEquals(ImmutableSet.of("time"), new HashSet<String>(dispatcher.getSuggestions(this.source, "time")));
+        assertTrue(dispatcher.getSuggestions(this.source, "x").isEmpty());
+    }
+
+    @Test
+    public void testPermissionAwareSuggestions() throws Exception {
+        final AtomicLong epoch = new AtomicLong();
+        SimpleDispatcher dispatcher = new SimpleDispatcher(new Supplier<Long>() {
+            @Override
+            public Long get() {
+                return epoch.get();
+            }
+        });
+        CommandCallable teleport = permitted();
+        CommandCallable team = mock(CommandCallable.class);
+        dispatcher.register(teleport, "teleport", "tp");
+        dispatcher.register(team, "team");
+
+        assertEquals(ImmutableList.of("teleport", "tp"), dispatcher.getSuggestions(this.source, "t"));
+        assertEquals(ImmutableList.of("teleport"), dispatcher.getSuggestions(this.source, "te"));
+        verify(team, times(1)).testPermission(this.source);
+        assertTrue(dispatcher.getSuggestions(this.source, "team x").isEmpty());
+
+        when(team.testPermission(this.source)).thenReturn(true);
+        assertEquals(ImmutableList.of("teleport"), dispatcher.getSuggestions(this.source, "te"));
+        epoch.incrementAndGet();
+        assertEquals(ImmutableList.of("team", "teleport"), dispatcher.getSuggestions(this.source, "te"));
+
+        dispatcher.register(permitted(), "tell");
+        assertEquals(ImmutableList.of("team", "teleport", "tell"), dispatcher.getSuggestions(this.source, "TE"));
+    }
+
+    @Test
+    public void testCommandBlockPolicy() throws Exception {
+        SimpleDispatcher dispatcher = new SimpleDispatcher();
+        CommandBlockPolicy policy = new CommandBlockPolicy(2);
+        dispatcher.setCommandBlockPolicy(policy);
+        CommandCallable say = mock(CommandCallable.class);
+        CommandCallable test = mock(IdempotentCommandCallable.class);
+        dispatcher.register(say, "say");
+        dispatcher.register(test, "testfor");
+        Extent extent = mock(Extent.class);
+        CommandBlockSource block = mock(CommandBlockSource.class);
+        when(block.getLocation()).thenReturn(new Location(extent, new Vector3d(1.5, 64, -2.5)));
+
+        for (int i = 0; i < 3; i++) {
+            dispatcher.call(block, "say hi", ImmutableList.<String>of());
+            dispatcher.call(block, "testfor @p", ImmutableList.<String>of());
+            dispatcher.call(this.source, "say hi", ImmutableList.<String>of());
+        }
+        dispatcher.call(block, "say bye", ImmutableList.<String>of());
+        verify(say, times(2)).call(block, "hi", ImmutableList.of("say"));
+        verify(say).call(block, "bye", ImmutableList.of("say"));
+        verify(say, times(3)).call(this.source, "hi", ImmutableList.of("say"));
+        verify(test, times(1)).call(block, "@p", ImmutableList.of("testfor"));
+        assertEquals(1, policy.getThrottledCount());
+
+        policy.tick();
+        dispatcher.call(block, "testfor @p", ImmutableList.<String>of());
+        verify(test, times(2)).call(block, "@p", ImmutableList.of("testfor"));
+    }
+
+    @Test
+    public void testCommandBlockPolicyFailure() throws Exception {
+        SimpleDispatcher dispatcher = new SimpleDispatcher();
+        dispatcher.setCommandBlockPolicy(new CommandBlockPolicy());
+        CommandBlockSource block = commandBlock();
+        CommandCallable test = mock(IdempotentCommandCallable.class);
+        IllegalStateException failure = new IllegalStateException();
+        when(test.call(block, "@p", ImmutableList.of("testfor"))).thenThrow(failure);
+        dispatcher.register(test, "testfor");
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                dispatcher.call(block, "testfor @p", ImmutableList.<String>of());
+                fail();
+            } catch (IllegalStateException e) {
+                assertSame(failure, e);
+            }
+        }
+        verify(test, times(1)).call(block, "@p", ImmutableList.of("testfor"));
+    }
+
+    @Test
+    public void testCommandBlockPolicyConcurrentCall() throws Exception {
+        final SimpleDispatcher dispatcher = new SimpleDispatcher();
+        dispatcher.setCommandBlockPolicy(new CommandBlockPolicy());
+        final CommandBlockSource block = commandBlock();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CommandException failure = new CommandException("Failed");
+        CommandCallable test = mock(IdempotentCommandCallable.class);
+        when(test.call(block, "@p", ImmutableList.of("testfor"))).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) throws Throwable {
+                entered.countDown();
+                release.await();
+                throw failure;
+            }
+        });
+        dispatcher.register(test, "testfor");
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> first = executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    return dispatcher.call(block, "testfor @p", ImmutableList.<String>of());
+                }
+            });
+            entered.await();
+            release.countDown();
+            // The second call waits for the first and shares its failure
+            try {
+                dispatcher.call(block, "testfor @p", ImmutableList.<String>of());
+                fail();
+            } catch (CommandException e) {
+                assertSame(failure, e);
+            }
+            try {
+                first.get();
+                fail();
+            } catch (ExecutionException e) {
+                assertSame(failure, e.getCause());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        verify(test, times(1)).call(block, "@p", ImmutableList.of("testfor"));
+    }
+
+    @Test
+    public void testNestedCall() throws Exception {
+        SimpleDispatcher child = new SimpleDispatcher();
+        CommandCallable callable = permitted();
+        child.register(callable, "add");
+        SimpleDispatcher root = new SimpleDispatcher();
+        root.register(child, "region");
+
+        assertTrue(root.call(this.source, "region  ADD  spawn 10", ImmutableList.of("sponge")));
+        verify(callable).call(this.source, "spawn 10", ImmutableList.of("sponge", "region", "ADD"));
+        assertFalse(root.call(this.source, "  ", ImmutableList.<String>of()));
+        assertEquals(ImmutableList.of("add"), root.getSuggestions(this.source, "region a"));
+    }
+
+    @Test
+    public void testTokenizer() {
+        CommandArguments arguments = new CommandArguments(" give  notch diamond ");
+        assertEquals("give notch", arguments.next() + " " + arguments.next());
+        assertEquals("diamond ", arguments.getRemaining());
+        assertFalse(arguments.isAtLastToken());
+        arguments.skip();
+        assertFalse(arguments.hasNext());
+        assertEquals("", arguments.getRemaining());
+    }
+
+}